@@ -0,0 +1,61 @@
+package com.example.snipreader.repository;
+
+import com.example.snipreader.model.QuestionSet;
+import org.springframework.boot.SpringBootConfiguration;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.autoconfigure.domain.EntityScan;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Only the persistence layer for repository benchmarks: the entities, the repositories and an
+ * H2 database, with the application's JPA settings.
+ */
+@SpringBootConfiguration
+@EnableAutoConfiguration
+@EntityScan(basePackageClasses = QuestionSet.class)
+@EnableJpaRepositories(basePackageClasses = QuestionSetRepository.class)
+class BenchmarkPersistence {
+    
+    /**
+     * Starts a context on a fresh in-memory database whose schema Hibernate creates.
+     *
+     * @param database the name of the in-memory database
+     * @param properties extra properties as {@code key=value}, overriding application.properties
+     * @return the started context
+     */
+    static ConfigurableApplicationContext start(String database, String... properties) {
+        List<String> allProperties = new ArrayList<>(List.of(
+                "spring.datasource.url=jdbc:h2:mem:" + database + ";DB_CLOSE_DELAY=-1",
+                "spring.jpa.hibernate.ddl-auto=create-drop"));
+        allProperties.addAll(List.of(properties));
+        return run(allProperties);
+    }
+    
+    /**
+     * Starts a context with the prod profile, on a file database in the given directory that Flyway migrates.
+     *
+     * @param dataDirectory the directory holding the database files
+     * @return the started context
+     */
+    static ConfigurableApplicationContext startProd(Path dataDirectory) {
+        return run(new ArrayList<>(List.of(
+                "spring.profiles.active=prod",
+                "SNIPREADER_DATA_DIR=" + dataDirectory.toAbsolutePath())));
+    }
+    
+    private static ConfigurableApplicationContext run(List<String> properties) {
+        properties.add("spring.jpa.properties.hibernate.generate_statistics=true");
+        properties.add("logging.level.root=WARN");
+        // Passed as command-line arguments, since default properties would lose to application.properties
+        return new SpringApplicationBuilder(BenchmarkPersistence.class)
+                .web(WebApplicationType.NONE)
+                .run(properties.stream().map(property -> "--" + property).toArray(String[]::new));
+    }
+}
@@ -0,0 +1,144 @@
+package com.example.snipreader.repository;
+
+import com.example.snipreader.model.QuestionSet;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.Limit;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the prod profile's file database at realistic sizes: how long the persistence layer takes
+ * to start on an existing database (opening the files, Flyway's check, Hibernate bootstrap), and the
+ * queries behind the history, results and export pages. Run with {@code ./gradlew jmh}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class PersistentDatabaseBenchmark {
+    
+    private static final int QUESTIONS_PER_SET = 20;
+    private static final int BATCH_SETS = 500;
+    
+    /**
+     * A file database migrated by Flyway and filled with question sets, shared by every benchmark.
+     */
+    @State(Scope.Benchmark)
+    public static class Database {
+        
+        @Param({"10000", "50000"})
+        int sets;
+        
+        Path directory;
+        
+        @Setup
+        public void create() throws IOException {
+            directory = Files.createTempDirectory("snipreader-bench");
+            try (ConfigurableApplicationContext context = BenchmarkPersistence.startProd(directory)) {
+                fill(context.getBean(JdbcTemplate.class));
+            }
+        }
+        
+        @TearDown
+        public void delete() throws IOException {
+            FileSystemUtils.deleteRecursively(directory);
+        }
+        
+        /**
+         * Inserts the sets through JDBC with explicit IDs, which would take far longer through JPA.
+         */
+        private void fill(JdbcTemplate jdbcTemplate) {
+            LocalDateTime start = LocalDateTime.of(2023, 1, 1, 0, 0);
+            for (int first = 0; first < sets; first += BATCH_SETS) {
+                List<Object[]> setRows = new ArrayList<>(BATCH_SETS);
+                List<Object[]> questionRows = new ArrayList<>(BATCH_SETS * QUESTIONS_PER_SET);
+                for (int set = first; set < Math.min(first + BATCH_SETS, sets); set++) {
+                    setRows.add(new Object[] {set + 1, Timestamp.valueOf(start.plusMinutes(set * 7L)), "Quiz " + set});
+                    for (int question = 0; question < QUESTIONS_PER_SET; question++) {
+                        questionRows.add(new Object[] {
+                                (long) set * QUESTIONS_PER_SET + question + 1,
+                                "Question " + question + " of quiz " + set + ": which of the following is correct?",
+                                "[\"The first option\",\"The second option\",\"The third option\",\"The fourth option\"]",
+                                "B",
+                                "The second option is correct for reasons explained at some length in the answer.",
+                                set + 1
+                        });
+                    }
+                }
+                jdbcTemplate.batchUpdate("insert into question_sets (id, created_at, title) values (?, ?, ?)", setRows);
+                jdbcTemplate.batchUpdate("insert into questions (id, question_text, question_type, options, answer, "
+                        + "explanation, question_set_id) values (?, ?, 'MCQ', ?, ?, ?, ?)", questionRows);
+            }
+        }
+    }
+    
+    /**
+     * The persistence layer started on the filled database, for the query benchmarks.
+     */
+    @State(Scope.Benchmark)
+    public static class Repositories {
+        
+        ConfigurableApplicationContext context;
+        QuestionSetRepository questionSetRepository;
+        QuestionSet middle;
+        
+        @Setup
+        public void open(Database database) {
+            context = BenchmarkPersistence.startProd(database.directory);
+            questionSetRepository = context.getBean(QuestionSetRepository.class);
+            middle = questionSetRepository.findById((long) database.sets / 2).orElseThrow();
+        }
+        
+        @TearDown
+        public void close() {
+            context.close();
+        }
+    }
+    
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    public void startup(Database database) {
+        try (ConfigurableApplicationContext context = BenchmarkPersistence.startProd(database.directory)) {
+            context.getBean(QuestionSetRepository.class).findSummaries(Limit.of(1));
+        }
+    }
+    
+    @Benchmark
+    public List<QuestionSetSummary> historyFirstPage(Repositories repositories) {
+        return repositories.questionSetRepository.findSummaries(Limit.of(21));
+    }
+    
+    @Benchmark
+    public List<QuestionSetSummary> historyMiddlePage(Repositories repositories) {
+        QuestionSet middle = repositories.middle;
+        return repositories.questionSetRepository.findSummariesOlderThan(middle.getCreatedAt(), middle.getId(),
+                Limit.of(21));
+    }
+    
+    @Benchmark
+    public Object[] resultsPage(Repositories repositories) {
+        QuestionSet middle = repositories.middle;
+        QuestionSetRepository questionSetRepository = repositories.questionSetRepository;
+        return new Object[] {
+                questionSetRepository.findAllWithQuestionsById(List.of(middle.getId())),
+                questionSetRepository.findNewerThan(middle.getCreatedAt(), middle.getId(), Limit.of(1)),
+                questionSetRepository.findOlderThan(middle.getCreatedAt(), middle.getId(), Limit.of(1))
+        };
+    }
+}
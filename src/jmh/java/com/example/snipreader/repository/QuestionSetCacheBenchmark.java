@@ -0,0 +1,91 @@
+package com.example.snipreader.repository;
+
+import com.example.snipreader.model.QuestionSet;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.Limit;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Load test for the queries behind {@code /results/{id}}: eight threads view a small set of hot question
+ * sets out of many, with Hibernate's second-level and query caches off and on. Run with
+ * {@code ./gradlew jmh}; throughput is page views per millisecond across all threads.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Threads(8)
+public class QuestionSetCacheBenchmark {
+    
+    private static final int SETS = 10000;
+    private static final int HOT_SETS = 50;
+    private static final int QUESTIONS_PER_SET = 20;
+    
+    @Param({"false", "true"})
+    private boolean cached;
+    
+    private ConfigurableApplicationContext context;
+    private QuestionSetRepository questionSetRepository;
+    
+    @Setup
+    public void setUp() {
+        context = BenchmarkPersistence.start("cache",
+                "spring.jpa.properties.hibernate.cache.use_second_level_cache=" + cached,
+                "spring.jpa.properties.hibernate.cache.use_query_cache=" + cached);
+        questionSetRepository = context.getBean(QuestionSetRepository.class);
+        
+        // Insert through JDBC in batches, with explicit IDs, which also leaves the caches empty
+        JdbcTemplate jdbcTemplate = context.getBean(JdbcTemplate.class);
+        LocalDateTime start = LocalDateTime.of(2024, 1, 1, 0, 0);
+        List<Object[]> setRows = new ArrayList<>(SETS);
+        List<Object[]> questionRows = new ArrayList<>(SETS * QUESTIONS_PER_SET);
+        for (int set = 0; set < SETS; set++) {
+            setRows.add(new Object[] {set + 1, Timestamp.valueOf(start.plusMinutes(set)), "Quiz " + set});
+            for (int question = 0; question < QUESTIONS_PER_SET; question++) {
+                questionRows.add(new Object[] {
+                        (long) set * QUESTIONS_PER_SET + question + 1,
+                        "Question " + question + " of quiz " + set + ": which of the following is correct?",
+                        "[\"The first option\",\"The second option\",\"The third option\",\"The fourth option\"]",
+                        "B",
+                        set + 1
+                });
+            }
+        }
+        jdbcTemplate.batchUpdate("insert into question_sets (id, created_at, title) values (?, ?, ?)", setRows);
+        jdbcTemplate.batchUpdate("insert into questions (id, question_text, question_type, options, answer, "
+                + "question_set_id) values (?, ?, 'MCQ', ?, ?, ?)", questionRows);
+    }
+    
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+    
+    @Benchmark
+    public Object[] resultsPage() {
+        // The most recently shared sets, as links to them go round
+        long id = SETS - ThreadLocalRandom.current().nextInt(HOT_SETS);
+        QuestionSet questionSet = questionSetRepository.findWithQuestionsById(id).orElseThrow();
+        return new Object[] {
+                questionSet,
+                questionSetRepository.findNewerThan(questionSet.getCreatedAt(), id, Limit.of(1)),
+                questionSetRepository.findOlderThan(questionSet.getCreatedAt(), id, Limit.of(1))
+        };
+    }
+}
@@ -0,0 +1,98 @@
+package com.example.snipreader.repository;
+
+import com.example.snipreader.model.Question;
+import com.example.snipreader.model.QuestionSet;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures loading large question sets with their questions and options for export through
+ * {@code findAllWithQuestionsById}. Run with {@code ./gradlew jmh}; time is per load, and the statements
+ * prepared per load and the rows stored for the sets are printed after each iteration. Together with
+ * {@link QuestionSetSaveBenchmark} this shows the cost of the question options mapping.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class QuestionSetLoadBenchmark {
+    
+    private static final int SETS = 10;
+    
+    @Param({"40", "400"})
+    private int questions;
+    
+    private ConfigurableApplicationContext context;
+    private QuestionSetRepository questionSetRepository;
+    private JdbcTemplate jdbcTemplate;
+    private Statistics statistics;
+    private final List<Long> ids = new ArrayList<>();
+    private long loads;
+    
+    @Setup
+    public void setUp() {
+        context = BenchmarkPersistence.start("load");
+        questionSetRepository = context.getBean(QuestionSetRepository.class);
+        jdbcTemplate = context.getBean(JdbcTemplate.class);
+        statistics = context.getBean(EntityManagerFactory.class).unwrap(SessionFactory.class).getStatistics();
+        
+        for (int i = 0; i < SETS; i++) {
+            QuestionSet questionSet = new QuestionSet("Benchmark quiz " + i);
+            for (int j = 0; j < questions; j++) {
+                Question question = new Question("Question " + j + ": which of these options is correct?",
+                        new ArrayList<>(List.of("Option A", "Option B", "Option C", "Option D")));
+                question.setAnswer("C");
+                questionSet.addQuestion(question);
+            }
+            ids.add(questionSetRepository.save(questionSet).getId());
+        }
+    }
+    
+    @Setup(Level.Iteration)
+    public void resetStatistics() {
+        statistics.clear();
+        loads = 0;
+    }
+    
+    @TearDown(Level.Iteration)
+    public void reportStatements() {
+        // With options packed into questions.options, a set is one row plus one row per question
+        Long rows = jdbcTemplate.queryForObject(
+                "select (select count(*) from question_sets) + (select count(*) from questions)", Long.class);
+        System.out.printf("%n%d statements per load, %d rows stored (%d sets of %d questions)%n",
+                loads > 0 ? statistics.getPrepareStatementCount() / loads : 0, rows, SETS, questions);
+    }
+    
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+    
+    @Benchmark
+    public int load() {
+        loads++;
+        int options = 0;
+        for (QuestionSet questionSet : questionSetRepository.findAllWithQuestionsById(ids)) {
+            for (Question question : questionSet.getQuestions()) {
+                options += question.getOptions().size();
+            }
+        }
+        return options;
+    }
+}
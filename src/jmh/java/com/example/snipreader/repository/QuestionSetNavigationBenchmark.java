@@ -0,0 +1,88 @@
+package com.example.snipreader.repository;
+
+import com.example.snipreader.model.QuestionSet;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.Limit;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares finding the neighbours of a question set by scanning the whole history, as the results page
+ * used to, with the two {@code LIMIT 1} keyset queries on the {@code (created_at, id)} index. Runs against
+ * an in-memory H2 database with the application's JPA mapping. Run with {@code ./gradlew jmh}; time is
+ * per page view, and the keyset queries should stay flat as {@code sets} grows.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class QuestionSetNavigationBenchmark {
+    
+    @Param({"1000", "100000"})
+    private int sets;
+    
+    private ConfigurableApplicationContext context;
+    private QuestionSetRepository questionSetRepository;
+    private QuestionSet current;
+    
+    @Setup
+    public void setUp() {
+        context = BenchmarkPersistence.start("navigation");
+        questionSetRepository = context.getBean(QuestionSetRepository.class);
+        
+        // Insert through JDBC in batches, with explicit IDs; going through JPA would make setup take minutes
+        JdbcTemplate jdbcTemplate = context.getBean(JdbcTemplate.class);
+        LocalDateTime start = LocalDateTime.of(2024, 1, 1, 0, 0);
+        List<Object[]> rows = new ArrayList<>(sets);
+        for (int i = 0; i < sets; i++) {
+            rows.add(new Object[] {i + 1, Timestamp.valueOf(start.plusMinutes(i)), "Question set " + i});
+        }
+        jdbcTemplate.batchUpdate("insert into question_sets (id, created_at, title) values (?, ?, ?)", rows);
+        
+        // A set from the middle of the history, which the old scan reaches halfway through
+        Long middleId = questionSetRepository.findSummaries(Limit.of(sets / 2 + 1)).get(sets / 2).getId();
+        current = questionSetRepository.findById(middleId).orElseThrow();
+    }
+    
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+    
+    @Benchmark
+    public QuestionSet[] scanHistory() {
+        List<QuestionSet> allSets = questionSetRepository.findAllByOrderByCreatedAtDesc();
+        for (int i = 0; i < allSets.size(); i++) {
+            if (allSets.get(i).getId().equals(current.getId())) {
+                return new QuestionSet[] {
+                        i > 0 ? allSets.get(i - 1) : null,
+                        i < allSets.size() - 1 ? allSets.get(i + 1) : null
+                };
+            }
+        }
+        return new QuestionSet[2];
+    }
+    
+    @Benchmark
+    public QuestionSet[] keysetNeighbours() {
+        return new QuestionSet[] {
+                questionSetRepository.findNewerThan(current.getCreatedAt(), current.getId(), Limit.of(1))
+                        .stream().findFirst().orElse(null),
+                questionSetRepository.findOlderThan(current.getCreatedAt(), current.getId(), Limit.of(1))
+                        .stream().findFirst().orElse(null)
+        };
+    }
+}
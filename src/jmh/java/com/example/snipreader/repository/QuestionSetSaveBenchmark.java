@@ -0,0 +1,83 @@
+package com.example.snipreader.repository;
+
+import com.example.snipreader.model.Question;
+import com.example.snipreader.model.QuestionSet;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@code questionSetRepository.save} for a new set of MCQs with four options each, with JDBC
+ * batching off ({@code batchSize} 1, one round trip per row as under IDENTITY IDs) and on (the
+ * application's setting). Run with {@code ./gradlew jmh}; time is per save, and the statements prepared
+ * per save are printed after each iteration.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class QuestionSetSaveBenchmark {
+    
+    @Param({"1", "50"})
+    private int batchSize;
+    
+    @Param({"40", "400"})
+    private int questions;
+    
+    private ConfigurableApplicationContext context;
+    private QuestionSetRepository questionSetRepository;
+    private Statistics statistics;
+    private long saves;
+    
+    @Setup
+    public void setUp() {
+        context = BenchmarkPersistence.start("save", "spring.jpa.properties.hibernate.jdbc.batch_size=" + batchSize);
+        questionSetRepository = context.getBean(QuestionSetRepository.class);
+        statistics = context.getBean(EntityManagerFactory.class).unwrap(SessionFactory.class).getStatistics();
+    }
+    
+    @Setup(Level.Iteration)
+    public void resetStatistics() {
+        statistics.clear();
+        saves = 0;
+    }
+    
+    @TearDown(Level.Iteration)
+    public void reportStatements() {
+        System.out.printf("%n%d statements per save (batch size %d, %d questions)%n",
+                saves > 0 ? statistics.getPrepareStatementCount() / saves : 0, batchSize, questions);
+    }
+    
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+    
+    @Benchmark
+    public Long save() {
+        QuestionSet questionSet = new QuestionSet("Benchmark quiz");
+        for (int i = 0; i < questions; i++) {
+            Question question = new Question("Question " + i + ": which of these options is correct?",
+                    new ArrayList<>(List.of("Option A", "Option B", "Option C", "Option D")));
+            question.setAnswer("B");
+            question.setExplanation("Option B is correct because of reason " + i);
+            questionSet.addQuestion(question);
+        }
+        saves++;
+        return questionSetRepository.save(questionSet).getId();
+    }
+}
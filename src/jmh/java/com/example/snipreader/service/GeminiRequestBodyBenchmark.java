@@ -0,0 +1,142 @@
+package com.example.snipreader.service;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.commons.codec.binary.Base64;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.http.StreamingHttpOutputMessage;
+import org.springframework.http.client.ClientHttpRequest;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares ways of sending the Gemini request through the same {@link ClientHttpRequest} GeminiClient uses,
+ * to a local server that discards the body: a Gson tree and String (as GeminiService used to), a
+ * {@link GeminiRequestBody} written to {@code getBody()}, which the JDK request collects in memory before
+ * sending, and a {@link GeminiRequestBody} set as a streaming body, which the client pulls as it sends.
+ * Run with {@code ./gradlew jmh}; the gc profiler reports {@code gc.alloc.rate.norm} bytes per request.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class GeminiRequestBodyBenchmark {
+    
+    @Param({"1048576", "8388608"})
+    private int imageSize;
+    
+    private byte[] image;
+    private JsonObject generationConfig;
+    private HttpServer server;
+    private JdkClientHttpRequestFactory requestFactory;
+    private URI uri;
+    
+    @Setup
+    public void setUp() throws IOException {
+        image = new byte[imageSize];
+        new Random(42).nextBytes(image);
+        generationConfig = new JsonObject();
+        generationConfig.addProperty("temperature", 0.4);
+        generationConfig.addProperty("maxOutputTokens", 8192);
+        
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/", exchange -> {
+            try (InputStream requestBody = exchange.getRequestBody()) {
+                requestBody.transferTo(OutputStream.nullOutputStream());
+            }
+            exchange.sendResponseHeaders(200, -1);
+            exchange.close();
+        });
+        server.start();
+        uri = URI.create("http://localhost:" + server.getAddress().getPort() + "/models/test:generateContent");
+        requestFactory = new JdkClientHttpRequestFactory(HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .build());
+    }
+    
+    @TearDown
+    public void tearDown() {
+        server.stop(0);
+    }
+    
+    @Benchmark
+    public void jsonTree() throws IOException {
+        String base64Image = Base64.encodeBase64String(image);
+        
+        JsonObject requestBody = new JsonObject();
+        JsonArray contents = new JsonArray();
+        JsonObject content = new JsonObject();
+        JsonArray parts = new JsonArray();
+        JsonObject textPart = new JsonObject();
+        textPart.addProperty("text", GeminiService.EXTRACTION_PROMPT);
+        parts.add(textPart);
+        JsonObject imagePart = new JsonObject();
+        JsonObject inlineData = new JsonObject();
+        inlineData.addProperty("mimeType", "image/png");
+        inlineData.addProperty("data", base64Image);
+        imagePart.add("inlineData", inlineData);
+        parts.add(imagePart);
+        content.add("parts", parts);
+        contents.add(content);
+        requestBody.add("contents", contents);
+        requestBody.add("generationConfig", generationConfig);
+        
+        // What HttpEntity<String> and StringHttpMessageConverter did with the body
+        ClientHttpRequest request = request();
+        request.getBody().write(requestBody.toString().getBytes(StandardCharsets.UTF_8));
+        execute(request);
+    }
+    
+    @Benchmark
+    public void bufferedBody() throws IOException {
+        ClientHttpRequest request = request();
+        body().writeTo(request.getBody());
+        execute(request);
+    }
+    
+    @Benchmark
+    public void streamedBody() throws IOException {
+        ClientHttpRequest request = request();
+        ((StreamingHttpOutputMessage) request).setBody(body()::writeTo);
+        execute(request);
+    }
+    
+    private GeminiRequestBody body() {
+        return new GeminiRequestBody(GeminiService.EXTRACTION_PROMPT, "image/png",
+                () -> new ByteArrayInputStream(image), generationConfig);
+    }
+    
+    private ClientHttpRequest request() throws IOException {
+        ClientHttpRequest request = requestFactory.createRequest(uri, HttpMethod.POST);
+        request.getHeaders().setContentType(MediaType.APPLICATION_JSON);
+        return request;
+    }
+    
+    private static void execute(ClientHttpRequest request) throws IOException {
+        try (ClientHttpResponse response = request.execute()) {
+            response.getStatusCode();
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.example.snipreader.service;
+
+import com.example.snipreader.model.Question;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the regex parser {@link QuestionParserService} used to have with the single-pass scanner
+ * on multi-megabyte question text. Run with {@code ./gradlew jmh}; throughput is in parses per second,
+ * and the gc profiler reports {@code gc.alloc.rate.norm} bytes per parse.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class QuestionParserBenchmark {
+    
+    @Param({"1048576", "4194304"})
+    private int textSize;
+    
+    private String text;
+    private final QuestionParserService parser = new QuestionParserService();
+    private final LegacyQuestionParser legacyParser = new LegacyQuestionParser();
+    
+    @Setup
+    public void setUp() {
+        text = generate(textSize);
+    }
+    
+    @Benchmark
+    public List<Question> regex() {
+        return legacyParser.parseQuestions(text);
+    }
+    
+    @Benchmark
+    public List<Question> scanner() {
+        return parser.parseQuestions(text);
+    }
+    
+    /**
+     * Builds a quiz of roughly the given size, with a heading so the regex parser keeps the first question.
+     */
+    static String generate(int size) {
+        StringBuilder text = new StringBuilder(size + 256).append("Practice quiz\n\n");
+        for (int i = 1; text.length() < size; i++) {
+            text.append(i).append(". Which of the following statements about topic ").append(i)
+                    .append(" is correct when the system is under load?\n");
+            for (char label = 'A'; label <= 'D'; label++) {
+                text.append(label).append(") Option ").append(label).append(" describes behaviour number ")
+                        .append(i * 4 + (label - 'A')).append(" in some detail\n");
+            }
+            text.append('\n');
+        }
+        return text.toString();
+    }
+}
@@ -0,0 +1,92 @@
+package com.example.snipreader.service;
+
+import com.example.snipreader.model.QuestionSet;
+import com.example.snipreader.model.QuestionSetSavedEvent;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Looks up screenshots in a {@link SimilarImageIndex} holding 50,000 hashes: one a few bits from a stored
+ * hash, and one that matches nothing. Uniform hashes are the best case for the chunk tables; screenshots are
+ * mostly background, so their hashes lean towards zero bits and share chunks far more often, which the
+ * skewed density stands in for. Run with {@code ./gradlew jmh}; times are in microseconds per lookup.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SimilarImageIndexBenchmark {
+    
+    private static final int HASHES = 50_000;
+    
+    // Share of set bits in the stored hashes
+    @Param({"0.5", "0.2"})
+    private double bitDensity;
+    
+    private SimilarImageIndex index;
+    private PerceptualHash nearDuplicate;
+    private PerceptualHash unrelated;
+    
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        index = new SimilarImageIndex(null, true, 8);
+        PerceptualHash stored = null;
+        for (long id = 1; id <= HASHES; id++) {
+            stored = randomHash(random);
+            QuestionSet questionSet = new QuestionSet("Quiz " + id);
+            questionSet.setId(id);
+            questionSet.setImageHash(stored.toHex());
+            index.onQuestionSetSaved(new QuestionSetSavedEvent(questionSet));
+        }
+        nearDuplicate = flip(stored, random, 6);
+        unrelated = randomHash(random);
+    }
+    
+    @Benchmark
+    public Optional<Long> nearDuplicate() {
+        return index.findSimilar(nearDuplicate);
+    }
+    
+    @Benchmark
+    public Optional<Long> unrelated() {
+        return index.findSimilar(unrelated);
+    }
+    
+    private PerceptualHash randomHash(Random random) {
+        StringBuilder hex = new StringBuilder(PerceptualHash.BITS / 4);
+        for (int word = 0; word < PerceptualHash.BITS / Long.SIZE; word++) {
+            long value = 0;
+            for (int bit = 0; bit < Long.SIZE; bit++) {
+                if (random.nextDouble() < bitDensity) {
+                    value |= 1L << bit;
+                }
+            }
+            String part = Long.toHexString(value);
+            hex.append("0".repeat(16 - part.length())).append(part);
+        }
+        return PerceptualHash.fromHex(hex.toString());
+    }
+    
+    private static PerceptualHash flip(PerceptualHash hash, Random random, int count) {
+        StringBuilder hex = new StringBuilder(PerceptualHash.BITS / 4);
+        for (int word = 0; word < PerceptualHash.BITS / Long.SIZE; word++) {
+            long value = hash.bits(word * Long.SIZE, Long.SIZE);
+            for (int i = 0; i < count / 4 + (word < count % 4 ? 1 : 0); i++) {
+                value ^= 1L << random.nextInt(Long.SIZE);
+            }
+            String part = Long.toHexString(value);
+            hex.append("0".repeat(16 - part.length())).append(part);
+        }
+        return PerceptualHash.fromHex(hex.toString());
+    }
+}
@@ -0,0 +1,173 @@
+package com.example.snipreader.controller;
+
+import com.example.snipreader.model.ExtractionJob;
+import com.example.snipreader.repository.QuestionSetRepository;
+import com.example.snipreader.service.ExtractionJobService;
+import org.apache.commons.codec.binary.Base64;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Controller;
+import org.springframework.ui.Model;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseBody;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.support.RedirectAttributes;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.Optional;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Controller for following asynchronous extraction jobs.
+ */
+@Controller
+public class JobController {
+    private static final Logger logger = LoggerFactory.getLogger(JobController.class);
+    
+    private final ExtractionJobService extractionJobService;
+    private final QuestionSetRepository questionSetRepository;
+    
+    public JobController(ExtractionJobService extractionJobService, QuestionSetRepository questionSetRepository) {
+        this.extractionJobService = extractionJobService;
+        this.questionSetRepository = questionSetRepository;
+    }
+    
+    /**
+     * JSON view of a job's progress, used for polling and by API clients. When {@code similarMatch} is
+     * true, nothing was extracted and {@code questionSetId} is the earlier set the screenshot looks like.
+     */
+    public record JobStatus(String id, String stage, Long questionSetId, boolean similarMatch, String resultUrl,
+                            String error) {
+        
+        static JobStatus of(ExtractionJob job) {
+            return new JobStatus(job.getId(), job.getStage().name(), job.getQuestionSetId(), job.isSimilarMatch(),
+                    job.getResultUrl(), job.getError());
+        }
+    }
+    
+    /**
+     * Displays the progress page for a job, which redirects to the results once they are ready. A job
+     * that matched an earlier question set shows that set as an offer instead, alongside processing the
+     * screenshot anyway.
+     *
+     * @param jobId the ID of the job
+     * @param model the model to add attributes to
+     * @param redirectAttributes attributes for redirect scenarios
+     * @return the view name
+     */
+    @GetMapping("/jobs/{jobId}")
+    public String viewJob(@PathVariable String jobId, Model model, RedirectAttributes redirectAttributes) {
+        Optional<ExtractionJob> jobOpt = extractionJobService.getJob(jobId);
+        
+        if (jobOpt.isEmpty()) {
+            redirectAttributes.addFlashAttribute("error", "Processing job not found");
+            return "redirect:/";
+        }
+        
+        ExtractionJob job = jobOpt.get();
+        model.addAttribute("job", job);
+        if (job.getResultUrl() != null && job.isSimilarMatch()) {
+            questionSetRepository.findById(job.getQuestionSetId())
+                    .ifPresent(similarSet -> model.addAttribute("similarSet", similarSet));
+        }
+        return "job";
+    }
+    
+    /**
+     * Processes the screenshot of a job that matched an earlier question set, ignoring the match.
+     *
+     * @param jobId the ID of the job that matched an earlier set
+     * @param redirectAttributes attributes for redirect scenarios
+     * @return a redirect to the new job's progress page
+     */
+    @PostMapping("/jobs/{jobId}/process-anyway")
+    public String processAnyway(@PathVariable String jobId, RedirectAttributes redirectAttributes) {
+        try {
+            Optional<ExtractionJob> job = extractionJobService.processAnyway(jobId);
+            if (job.isEmpty()) {
+                redirectAttributes.addFlashAttribute("error", "The screenshot is no longer available. Please upload it again.");
+                return "redirect:/";
+            }
+            return "redirect:/jobs/" + job.get().getId();
+        } catch (RejectedExecutionException e) {
+            logger.warn("Extraction queue is full, rejecting job {} processed anyway", jobId);
+            redirectAttributes.addFlashAttribute("error", "The server is busy processing other screenshots. Please try again shortly.");
+            return "redirect:/jobs/" + jobId;
+        }
+    }
+    
+    /**
+     * Returns the current state of a job.
+     *
+     * @param jobId the ID of the job
+     * @return the job status
+     */
+    @GetMapping(value = "/jobs/{jobId}/status", produces = MediaType.APPLICATION_JSON_VALUE)
+    @ResponseBody
+    public ResponseEntity<JobStatus> jobStatus(@PathVariable String jobId) {
+        return extractionJobService.getJob(jobId)
+                .map(job -> ResponseEntity.ok(JobStatus.of(job)))
+                .orElse(ResponseEntity.notFound().build());
+    }
+    
+    /**
+     * Streams a job's progress as Server-Sent Events: {@code stage} while it runs,
+     * then {@code completed} (with the results URL) or {@code failed} (with the error).
+     *
+     * @param jobId the ID of the job
+     * @return the event stream
+     */
+    @GetMapping(value = "/jobs/{jobId}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @ResponseBody
+    public ResponseEntity<SseEmitter> jobEvents(@PathVariable String jobId) {
+        return extractionJobService.getJob(jobId)
+                .map(job -> ResponseEntity.ok(extractionJobService.subscribe(job)))
+                .orElse(ResponseEntity.notFound().build());
+    }
+    
+    /**
+     * Queues a screenshot for extraction and returns straight away with 202 Accepted.
+     * Accepts either a multipart {@code image} or a {@code base64Image} parameter.
+     *
+     * @param image the uploaded image file
+     * @param base64Image the base64 image data (without the data URL prefix)
+     * @param skipSimilar true to always extract, even when a similar screenshot has been processed before
+     * @return the status of the queued job, with its location
+     */
+    @PostMapping(value = "/api/jobs", produces = MediaType.APPLICATION_JSON_VALUE)
+    @ResponseBody
+    public ResponseEntity<JobStatus> submitJob(@RequestParam(value = "image", required = false) MultipartFile image,
+                                               @RequestParam(value = "base64Image", required = false) String base64Image,
+                                               @RequestParam(value = "skipSimilar", defaultValue = "false") boolean skipSimilar) {
+        try {
+            ExtractionJob job;
+            if (image != null && !image.isEmpty()) {
+                String title = "Uploaded Image: " + (image.getOriginalFilename() != null ? 
+                        image.getOriginalFilename() : "Unnamed");
+                job = extractionJobService.submit(image.getBytes(), title, skipSimilar);
+            } else if (base64Image != null && !base64Image.isEmpty()) {
+                job = extractionJobService.submit(Base64.decodeBase64(base64Image), "Pasted Image", skipSimilar);
+            } else {
+                return ResponseEntity.badRequest().build();
+            }
+            
+            return ResponseEntity.accepted()
+                    .location(URI.create("/jobs/" + job.getId() + "/status"))
+                    .body(JobStatus.of(job));
+        } catch (RejectedExecutionException e) {
+            logger.warn("Extraction queue is full, rejecting API submission");
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        } catch (IOException e) {
+            logger.error("Error reading the uploaded file", e);
+            return ResponseEntity.badRequest().build();
+        }
+    }
+}
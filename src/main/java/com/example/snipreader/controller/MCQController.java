@@ -1,16 +1,28 @@
 package com.example.snipreader.controller;
 
+import com.example.snipreader.model.ExtractionJob;
 import com.example.snipreader.model.ImageUploadForm;
-import com.example.snipreader.model.Question;
 import com.example.snipreader.model.QuestionSet;
 import com.example.snipreader.repository.QuestionSetRepository;
+import com.example.snipreader.repository.QuestionSetSummary;
 import com.example.snipreader.service.DocumentService;
-import com.example.snipreader.service.GeminiService;
+import com.example.snipreader.service.DocumentWriter;
+import com.example.snipreader.service.ExportCache;
+import com.example.snipreader.service.ExtractionJobService;
+import com.example.snipreader.service.ScrollCaptureService;
 import com.itextpdf.text.DocumentException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpSession;
+import org.apache.commons.codec.binary.Base64;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
@@ -21,14 +33,26 @@ import org.springframework.web.bind.annotation.ModelAttribute;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletWebRequest;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 
 import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.RejectedExecutionException;
 
 /**
  * Controller for handling MCQ screenshot uploads and processing.
@@ -37,151 +61,173 @@ import java.util.Optional;
 public class MCQController {
     private static final Logger logger = LoggerFactory.getLogger(MCQController.class);
     private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm");
+    private static final String CAPTURE_ATTRIBUTE = "scrollCaptureId";
+    private static final String EXPORT_ATTRIBUTE = "snipreaderExport";
+    // Request attributes through which Tomcat serves a file with sendfile after the response headers
+    private static final String SENDFILE_SUPPORTED_ATTRIBUTE = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME_ATTRIBUTE = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START_ATTRIBUTE = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END_ATTRIBUTE = "org.apache.tomcat.sendfile.end";
+    private static final MediaType WORD_MEDIA_TYPE =
+            MediaType.parseMediaType("application/vnd.openxmlformats-officedocument.wordprocessingml.document");
     
-    private final GeminiService geminiService;
+    private final ExtractionJobService extractionJobService;
     private final QuestionSetRepository questionSetRepository;
     private final DocumentService documentService;
+    private final ExportCache exportCache;
+    private final ScrollCaptureService scrollCaptureService;
+    private final int historyPageSize;
+    private final int recentSets;
     
     @Autowired
-    public MCQController(GeminiService geminiService, QuestionSetRepository questionSetRepository, 
-                         DocumentService documentService) {
-        this.geminiService = geminiService;
+    public MCQController(ExtractionJobService extractionJobService, QuestionSetRepository questionSetRepository, 
+                         DocumentService documentService, ExportCache exportCache,
+                         ScrollCaptureService scrollCaptureService,
+                         @Value("${snipreader.history.page-size:20}") int historyPageSize,
+                         @Value("${snipreader.home.recent-sets:3}") int recentSets) {
+        this.extractionJobService = extractionJobService;
         this.questionSetRepository = questionSetRepository;
         this.documentService = documentService;
+        this.exportCache = exportCache;
+        this.scrollCaptureService = scrollCaptureService;
+        this.historyPageSize = historyPageSize;
+        this.recentSets = recentSets;
     }
     
     /**
-     * Download a question set as a PDF document.
+     * Download a question set as a PDF document, from the export cache when it holds the current version.
      *
      * @param id the ID of the question set to download
-     * @return the PDF document as a response entity
+     * @param webRequest the request, for its conditional headers
+     * @return the PDF document as a response entity, or null if the client's copy is current
      */
     @GetMapping("/results/{id}/pdf")
-    public ResponseEntity<byte[]> downloadPdf(@PathVariable Long id) {
-        Optional<QuestionSet> questionSetOpt = questionSetRepository.findById(id);
+    public ResponseEntity<StreamingResponseBody> downloadPdf(@PathVariable Long id, ServletWebRequest webRequest) {
+        Optional<QuestionSet> questionSetOpt = findWithQuestions(id);
         
         if (questionSetOpt.isEmpty()) {
             return ResponseEntity.notFound().build();
         }
         
-        try {
-            QuestionSet questionSet = questionSetOpt.get();
-            byte[] pdfBytes = documentService.generatePdf(questionSet);
-            
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.APPLICATION_PDF);
-            headers.setContentDispositionFormData("attachment", "mcq-results-" + id + ".pdf");
-            headers.setContentLength(pdfBytes.length);
-            
-            return new ResponseEntity<>(pdfBytes, headers, HttpStatus.OK);
-        } catch (DocumentException e) {
-            logger.error("Error generating PDF", e);
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
-        }
+        QuestionSet questionSet = questionSetOpt.get();
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_PDF);
+        headers.setContentDispositionFormData("attachment", "mcq-results-" + id + ".pdf");
+        
+        return serveExport(questionSet, "pdf", headers,
+                outputStream -> documentService.writePdf(questionSet, outputStream), webRequest);
     }
     
     /**
-     * Download a question set as a Word document.
+     * Download a question set as a Word document, from the export cache when it holds the current version.
      *
      * @param id the ID of the question set to download
-     * @return the Word document as a response entity
+     * @param webRequest the request, for its conditional headers
+     * @return the Word document as a response entity, or null if the client's copy is current
      */
     @GetMapping("/results/{id}/word")
-    public ResponseEntity<byte[]> downloadWord(@PathVariable Long id) {
-        Optional<QuestionSet> questionSetOpt = questionSetRepository.findById(id);
+    public ResponseEntity<StreamingResponseBody> downloadWord(@PathVariable Long id, ServletWebRequest webRequest) {
+        Optional<QuestionSet> questionSetOpt = findWithQuestions(id);
         
         if (questionSetOpt.isEmpty()) {
             return ResponseEntity.notFound().build();
         }
         
-        try {
-            QuestionSet questionSet = questionSetOpt.get();
-            byte[] wordBytes = documentService.generateWord(questionSet);
-            
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.parseMediaType("application/vnd.openxmlformats-officedocument.wordprocessingml.document"));
-            headers.setContentDispositionFormData("attachment", "mcq-results-" + id + ".docx");
-            headers.setContentLength(wordBytes.length);
-            
-            return new ResponseEntity<>(wordBytes, headers, HttpStatus.OK);
-        } catch (IOException e) {
-            logger.error("Error generating Word document", e);
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
-        }
+        QuestionSet questionSet = questionSetOpt.get();
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(WORD_MEDIA_TYPE);
+        headers.setContentDispositionFormData("attachment", "mcq-results-" + id + ".docx");
+        
+        return serveExport(questionSet, "docx", headers,
+                outputStream -> documentService.writeWord(questionSet, outputStream), webRequest);
     }
     
     /**
-     * Download multiple selected question sets as a single document.
+     * Download multiple selected question sets as a single document, streamed as it is generated.
      *
      * @param selectedSets the IDs of the question sets to download
      * @param format the format to download (pdf or word)
      * @return the document as a response entity
      */
     @PostMapping("/download-selected")
-    public ResponseEntity<byte[]> downloadSelected(@RequestParam("selectedSets") List<Long> selectedSets, 
-                                                 @RequestParam("format") String format) {
+    public ResponseEntity<StreamingResponseBody> downloadSelected(
+            @RequestParam("selectedSets") List<Long> selectedSets, @RequestParam("format") String format) {
         if (selectedSets == null || selectedSets.isEmpty()) {
             return ResponseEntity.badRequest().build();
         }
         
+        // Load every selected set in one go, then put them back in the order they were selected
+        Map<Long, QuestionSet> questionSetsById = new HashMap<>();
+        for (QuestionSet questionSet : questionSetRepository.findAllWithQuestionsById(selectedSets)) {
+            questionSetsById.put(questionSet.getId(), questionSet);
+        }
         List<QuestionSet> questionSets = new ArrayList<>();
         for (Long id : selectedSets) {
-            Optional<QuestionSet> questionSetOpt = questionSetRepository.findById(id);
-            questionSetOpt.ifPresent(questionSets::add);
+            Optional.ofNullable(questionSetsById.get(id)).ifPresent(questionSets::add);
         }
         
         if (questionSets.isEmpty()) {
             return ResponseEntity.notFound().build();
         }
         
-        try {
-            byte[] documentBytes;
-            HttpHeaders headers = new HttpHeaders();
-            
-            if ("pdf".equalsIgnoreCase(format)) {
-                documentBytes = documentService.generatePdfFromMultiple(questionSets);
-                headers.setContentType(MediaType.APPLICATION_PDF);
-                headers.setContentDispositionFormData("attachment", "selected-mcq-results.pdf");
-            } else {
-                documentBytes = documentService.generateWordFromMultiple(questionSets);
-                headers.setContentType(MediaType.parseMediaType("application/vnd.openxmlformats-officedocument.wordprocessingml.document"));
-                headers.setContentDispositionFormData("attachment", "selected-mcq-results.docx");
-            }
-            
-            headers.setContentLength(documentBytes.length);
-            return new ResponseEntity<>(documentBytes, headers, HttpStatus.OK);
-            
-        } catch (Exception e) {
-            logger.error("Error generating document", e);
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        HttpHeaders headers = new HttpHeaders();
+        if ("pdf".equalsIgnoreCase(format)) {
+            headers.setContentType(MediaType.APPLICATION_PDF);
+            headers.setContentDispositionFormData("attachment", "selected-mcq-results.pdf");
+            return streamDocument(headers,
+                    outputStream -> documentService.writePdfFromMultiple(questionSets, outputStream));
         }
+        headers.setContentType(WORD_MEDIA_TYPE);
+        headers.setContentDispositionFormData("attachment", "selected-mcq-results.docx");
+        return streamDocument(headers,
+                outputStream -> documentService.writeWordFromMultiple(questionSets, outputStream));
     }
     
     /**
      * Displays the home page with the upload form.
      *
      * @param model the model to add attributes to
+     * @param session the HTTP session, which holds the current scrolling capture
      * @return the view name
      */
     @GetMapping("/")
-    public String home(Model model) {
+    public String home(Model model, HttpSession session) {
         model.addAttribute("imageUploadForm", new ImageUploadForm());
+        // Keep the scrolling capture box ticked until the user finishes the capture
+        model.addAttribute("capturing", scrollCaptureService.isActive((String) session.getAttribute(CAPTURE_ATTRIBUTE)));
         // Add recent question sets to the model
-        List<QuestionSet> recentSets = questionSetRepository.findAllByOrderByCreatedAtDesc();
-        model.addAttribute("recentSets", recentSets);
+        model.addAttribute("recentSets", questionSetRepository.findSummaries(Limit.of(recentSets)));
         return "index";
     }
     
     /**
-     * Displays the history of all question sets.
+     * Displays one page of the history of question sets, newest first. Pages are addressed by the
+     * last set of the previous page, so any page costs the same to load however long the history is.
      *
+     * @param beforeCreatedAt the creation time of the last set on the previous page, or null for the first page
+     * @param beforeId the ID of the last set on the previous page
      * @param model the model to add attributes to
      * @return the view name
      */
     @GetMapping("/history")
-    public String viewHistory(Model model) {
-        List<QuestionSet> questionSets = questionSetRepository.findAllByOrderByCreatedAtDesc();
+    public String viewHistory(@RequestParam(value = "before", required = false)
+                              @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime beforeCreatedAt,
+                              @RequestParam(value = "beforeId", required = false) Long beforeId,
+                              Model model) {
+        // Fetch one extra set to find out whether there is an older page
+        Limit limit = Limit.of(historyPageSize + 1);
+        List<QuestionSetSummary> questionSets = beforeCreatedAt != null && beforeId != null
+                ? questionSetRepository.findSummariesOlderThan(beforeCreatedAt, beforeId, limit)
+                : questionSetRepository.findSummaries(limit);
+        
+        if (questionSets.size() > historyPageSize) {
+            questionSets = questionSets.subList(0, historyPageSize);
+            QuestionSetSummary last = questionSets.get(questionSets.size() - 1);
+            model.addAttribute("olderCreatedAt", last.getCreatedAt());
+            model.addAttribute("olderId", last.getId());
+        }
         model.addAttribute("questionSets", questionSets);
+        model.addAttribute("firstPage", beforeCreatedAt == null || beforeId == null);
         model.addAttribute("dateFormatter", DATE_FORMATTER);
         return "history";
     }
@@ -196,7 +242,7 @@ public class MCQController {
      */
     @GetMapping("/results/{id}")
     public String viewQuestionSet(@PathVariable Long id, Model model, RedirectAttributes redirectAttributes) {
-        Optional<QuestionSet> questionSetOpt = questionSetRepository.findById(id);
+        Optional<QuestionSet> questionSetOpt = findWithQuestions(id);
         
         if (questionSetOpt.isEmpty()) {
             redirectAttributes.addFlashAttribute("error", "Question set not found");
@@ -208,30 +254,19 @@ public class MCQController {
         model.addAttribute("questionSet", questionSet);
         model.addAttribute("dateFormatter", DATE_FORMATTER);
         
-        // Find previous and next question sets for navigation
-        List<QuestionSet> allSets = questionSetRepository.findAllByOrderByCreatedAtDesc();
-        int currentIndex = -1;
-        
-        for (int i = 0; i < allSets.size(); i++) {
-            if (allSets.get(i).getId().equals(id)) {
-                currentIndex = i;
-                break;
-            }
-        }
-        
-        if (currentIndex > 0) {
-            model.addAttribute("previousSet", allSets.get(currentIndex - 1));
-        }
-        
-        if (currentIndex < allSets.size() - 1 && currentIndex >= 0) {
-            model.addAttribute("nextSet", allSets.get(currentIndex + 1));
+        // Find the previous (newer) and next (older) question sets in history order for navigation
+        if (questionSet.getCreatedAt() != null) {
+            questionSetRepository.findNewerThan(questionSet.getCreatedAt(), id, Limit.of(1)).stream().findFirst()
+                    .ifPresent(previousSet -> model.addAttribute("previousSet", previousSet));
+            questionSetRepository.findOlderThan(questionSet.getCreatedAt(), id, Limit.of(1)).stream().findFirst()
+                    .ifPresent(nextSet -> model.addAttribute("nextSet", nextSet));
         }
         
         return "results";
     }
     
     /**
-     * Processes the uploaded screenshot and displays the results.
+     * Queues the uploaded screenshot for processing and shows the job progress page.
      *
      * @param imageUploadForm the form with the uploaded image
      * @param model the model to add attributes to
@@ -253,29 +288,18 @@ public class MCQController {
         try {
             // Process the image with Gemini 2.5 Flash to extract questions and generate answers in one step
             logger.info("Processing uploaded image with Gemini 2.5 Flash: {}", imageFile.getOriginalFilename());
-            List<Question> questions = geminiService.processImageForQuestions(imageFile);
-            
-            if (questions.isEmpty()) {
-                redirectAttributes.addFlashAttribute("error", "No questions could be extracted from the image");
-                return "redirect:/";
-            }
-            
-            // Create and save a new QuestionSet
             String title = "Uploaded Image: " + (imageFile.getOriginalFilename() != null ? 
                     imageFile.getOriginalFilename() : "Unnamed");
-            QuestionSet questionSet = new QuestionSet(title);
-            
-            // Add all questions to the question set
-            for (Question question : questions) {
-                questionSet.addQuestion(question);
-            }
+            ExtractionJob job = extractionJobService.submit(imageFile.getBytes(), title,
+                    imageUploadForm.isSkipSimilar());
             
-            // Save to database
-            questionSet = questionSetRepository.save(questionSet);
-            
-            // Redirect to the saved question set
-            return "redirect:/results/" + questionSet.getId();
+            // Redirect to the job progress page
+            return "redirect:/jobs/" + job.getId();
             
+        } catch (RejectedExecutionException e) {
+            logger.warn("Extraction queue is full, rejecting upload");
+            redirectAttributes.addFlashAttribute("error", "The server is busy processing other screenshots. Please try again shortly.");
+            return "redirect:/";
         } catch (IOException e) {
             logger.error("Error processing the uploaded file", e);
             redirectAttributes.addFlashAttribute("error", "Error processing the uploaded file: " + e.getMessage());
@@ -288,16 +312,19 @@ public class MCQController {
     }
     
     /**
-     * Processes a pasted screenshot and displays the results.
+     * Queues a pasted screenshot for processing and shows the job progress page.
+     * Screenshots pasted as part of a scrolling capture are stitched into the capture's question set.
      *
      * @param imageUploadForm the form with the base64 image data
      * @param model the model to add attributes to
+     * @param session the HTTP session, which holds the current scrolling capture
      * @param redirectAttributes attributes for redirect scenarios
      * @return the view name
      */
     @PostMapping("/paste-image")
     public String processPastedImage(@ModelAttribute ImageUploadForm imageUploadForm, 
                                     Model model, 
+                                    HttpSession session,
                                     RedirectAttributes redirectAttributes) {
         String base64Image = imageUploadForm.getBase64Image();
         
@@ -308,32 +335,30 @@ public class MCQController {
         }
         
         try {
-            // Process the base64 image with Gemini 2.5 Flash
-            logger.info("Processing pasted image with Gemini 2.5 Flash");
-            List<Question> questions = geminiService.processBase64ImageForQuestions(base64Image);
-            
-            if (questions.isEmpty()) {
-                redirectAttributes.addFlashAttribute("error", "No questions could be extracted from the image");
-                return "redirect:/";
-            }
-            
-            // Create and save a new QuestionSet
-            QuestionSet questionSet = new QuestionSet("Pasted Image");
-            
-            // Add all questions to the question set
-            for (Question question : questions) {
-                questionSet.addQuestion(question);
+            ExtractionJob job;
+            if (imageUploadForm.isScrolling()) {
+                String captureId = (String) session.getAttribute(CAPTURE_ATTRIBUTE);
+                if (!scrollCaptureService.isActive(captureId)) {
+                    captureId = scrollCaptureService.startCapture();
+                    session.setAttribute(CAPTURE_ATTRIBUTE, captureId);
+                }
+                logger.info("Processing pasted image as part of scrolling capture {}", captureId);
+                job = extractionJobService.submitScreenshot(captureId, Base64.decodeBase64(base64Image),
+                        "Scrolling Capture");
+            } else {
+                // Process the base64 image with Gemini 2.5 Flash
+                logger.info("Processing pasted image with Gemini 2.5 Flash");
+                session.removeAttribute(CAPTURE_ATTRIBUTE);
+                job = extractionJobService.submit(Base64.decodeBase64(base64Image),
+                        "Pasted Image", imageUploadForm.isSkipSimilar());
             }
             
-            // Save to database
-            questionSet = questionSetRepository.save(questionSet);
+            // Redirect to the job progress page
+            return "redirect:/jobs/" + job.getId();
             
-            // Redirect to the saved question set
-            return "redirect:/results/" + questionSet.getId();
-            
-        } catch (IOException e) {
-            logger.error("Error processing the pasted image", e);
-            redirectAttributes.addFlashAttribute("error", "Error processing the pasted image: " + e.getMessage());
+        } catch (RejectedExecutionException e) {
+            logger.warn("Extraction queue is full, rejecting pasted image");
+            redirectAttributes.addFlashAttribute("error", "The server is busy processing other screenshots. Please try again shortly.");
             return "redirect:/";
         } catch (Exception e) {
             logger.error("Unexpected error", e);
@@ -341,4 +366,150 @@ public class MCQController {
             return "redirect:/";
         }
     }
-}
\ No newline at end of file
+    
+    /**
+     * Finishes the current scrolling capture, so the next pasted screenshot starts a new question set.
+     *
+     * @param session the HTTP session, which holds the current scrolling capture
+     * @return the view name
+     */
+    @PostMapping("/capture/finish")
+    public String finishCapture(HttpSession session) {
+        session.removeAttribute(CAPTURE_ATTRIBUTE);
+        return "redirect:/";
+    }
+    
+    /**
+     * Queues pasted question text for answering and shows the job progress page.
+     * An optional screenshot of the same questions is used if the text cannot be parsed.
+     *
+     * @param imageUploadForm the form with the pasted text and optional screenshot
+     * @param redirectAttributes attributes for redirect scenarios
+     * @return the view name
+     */
+    @PostMapping("/paste-text")
+    public String processPastedText(@ModelAttribute ImageUploadForm imageUploadForm,
+                                   RedirectAttributes redirectAttributes) {
+        String text = imageUploadForm.getText();
+        
+        // Validate the pasted text
+        if (text == null || text.isBlank()) {
+            redirectAttributes.addFlashAttribute("error", "No text was provided. Please paste the questions.");
+            return "redirect:/";
+        }
+        
+        try {
+            MultipartFile imageFile = imageUploadForm.getImage();
+            byte[] imageBytes = imageFile != null && !imageFile.isEmpty() ? imageFile.getBytes() : null;
+            
+            logger.info("Processing pasted text ({} characters)", text.length());
+            ExtractionJob job = extractionJobService.submitText(text, imageBytes, "Pasted Text",
+                    imageUploadForm.isSkipSimilar());
+            
+            // Redirect to the job progress page
+            return "redirect:/jobs/" + job.getId();
+            
+        } catch (RejectedExecutionException e) {
+            logger.warn("Extraction queue is full, rejecting pasted text");
+            redirectAttributes.addFlashAttribute("error", "The server is busy processing other screenshots. Please try again shortly.");
+            return "redirect:/";
+        } catch (IOException e) {
+            logger.error("Error processing the uploaded file", e);
+            redirectAttributes.addFlashAttribute("error", "Error processing the uploaded file: " + e.getMessage());
+            return "redirect:/";
+        }
+    }
+    
+    /**
+     * Serves the export of a single question set. Its ETag is the set's content version, so a client
+     * holding the current version gets a 304 without the export being rendered or sent. Otherwise the
+     * export comes from the on-disk cache, rendered into it first on a miss, and is sent straight from
+     * the file; with the cache turned off, it is streamed as it is generated. A cached export stays pinned
+     * until it has been sent, so it cannot be evicted or dropped part way through.
+     */
+    private ResponseEntity<StreamingResponseBody> serveExport(QuestionSet questionSet, String extension,
+                                                              HttpHeaders headers, DocumentWriter documentWriter,
+                                                              ServletWebRequest webRequest) {
+        String version = documentService.contentVersion(questionSet);
+        // Sets the ETag on the response, and the status to 304 when If-None-Match holds it
+        if (webRequest.checkNotModified(questionSet.getId() + "-" + version + "-" + extension)) {
+            return null;
+        }
+        headers.setCacheControl(CacheControl.noCache());
+        if (!exportCache.isEnabled()) {
+            return streamDocument(headers, documentWriter);
+        }
+        
+        try {
+            ExportCache.Export export = exportCache.get(questionSet.getId(), version, extension, documentWriter);
+            headers.setContentLength(export.size());
+            return sendFile(export, headers, webRequest.getRequest());
+        } catch (IOException e) {
+            logger.error("Error generating document", e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+    
+    /**
+     * Sends a cached export without copying it through the heap, closing it once it has been sent. On Tomcat
+     * the connector writes it to the socket with sendfile once the request has completed; elsewhere it is
+     * transferred from a file channel.
+     */
+    private ResponseEntity<StreamingResponseBody> sendFile(ExportCache.Export export, HttpHeaders headers,
+                                                          HttpServletRequest request) {
+        if (HttpMethod.HEAD.matches(request.getMethod())) {
+            export.close();
+            return new ResponseEntity<>(headers, HttpStatus.OK);
+        }
+        
+        if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORTED_ATTRIBUTE))) {
+            request.setAttribute(SENDFILE_FILENAME_ATTRIBUTE, export.file().toString());
+            request.setAttribute(SENDFILE_START_ATTRIBUTE, 0L);
+            request.setAttribute(SENDFILE_END_ATTRIBUTE, export.size());
+            // Tomcat opens the file only after the request has completed, so it stays pinned a little longer
+            RequestContextHolder.currentRequestAttributes().registerDestructionCallback(EXPORT_ATTRIBUTE,
+                    () -> exportCache.closeLater(export), RequestAttributes.SCOPE_REQUEST);
+            return new ResponseEntity<>(headers, HttpStatus.OK);
+        }
+        
+        StreamingResponseBody body = outputStream -> {
+            try (export; FileChannel channel = FileChannel.open(export.file(), StandardOpenOption.READ)) {
+                WritableByteChannel target = Channels.newChannel(outputStream);
+                long position = 0;
+                while (position < export.size()) {
+                    position += channel.transferTo(position, export.size() - position, target);
+                }
+            }
+        };
+        return new ResponseEntity<>(body, headers, HttpStatus.OK);
+    }
+    
+    /**
+     * Streams a document to the response while it is generated, so a download holds no more than the
+     * writer's buffers in memory however large the document is. The question sets must be fully loaded
+     * beforehand, as the body is written on another thread after the request's session has closed.
+     * A failure once the first bytes have gone out can only cut the download short, so it is logged here.
+     */
+    private ResponseEntity<StreamingResponseBody> streamDocument(HttpHeaders headers, DocumentWriter documentWriter) {
+        StreamingResponseBody body = outputStream -> {
+            try {
+                documentWriter.write(outputStream);
+            } catch (DocumentException e) {
+                logger.error("Error generating document", e);
+                throw new IOException("Error generating document", e);
+            } catch (IOException e) {
+                logger.error("Error writing document", e);
+                throw e;
+            }
+        };
+        return new ResponseEntity<>(body, headers, HttpStatus.OK);
+    }
+    
+    /**
+     * Loads a question set with its questions and their options, so rendering it issues no further queries;
+     * a recently viewed set comes from the second-level cache.
+     */
+    private Optional<QuestionSet> findWithQuestions(Long id) {
+        return questionSetRepository.findWithQuestionsById(id);
+    }
+}
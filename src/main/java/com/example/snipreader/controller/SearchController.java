@@ -0,0 +1,64 @@
+package com.example.snipreader.controller;
+
+import com.example.snipreader.model.Question;
+import com.example.snipreader.repository.QuestionRepository;
+import com.example.snipreader.service.search.QuestionSearchIndex;
+import com.example.snipreader.service.search.SearchHit;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Controller;
+import org.springframework.ui.Model;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Controller for searching the questions of every stored question set.
+ */
+@Controller
+public class SearchController {
+    
+    private final QuestionSearchIndex questionSearchIndex;
+    private final QuestionRepository questionRepository;
+    private final int maxResults;
+    
+    public SearchController(QuestionSearchIndex questionSearchIndex, QuestionRepository questionRepository,
+                            @Value("${snipreader.search.max-results:50}") int maxResults) {
+        this.questionSearchIndex = questionSearchIndex;
+        this.questionRepository = questionRepository;
+        this.maxResults = maxResults;
+    }
+    
+    /**
+     * Displays the questions matching a search, best first.
+     *
+     * @param query the search query
+     * @param model the model to add attributes to
+     * @return the view name
+     */
+    @GetMapping("/search")
+    public String search(@RequestParam(value = "q", defaultValue = "") String query, Model model) {
+        List<SearchHit> hits = questionSearchIndex.search(query, maxResults);
+        
+        Map<Long, Question> questionsById = hits.isEmpty() ? Map.of()
+                : questionRepository.findAllWithQuestionSetById(hits.stream().map(SearchHit::questionId).toList())
+                        .stream().collect(Collectors.toMap(Question::getId, Function.identity()));
+        
+        // Keep the index's ranking; a question deleted since it was indexed is left out
+        List<Question> results = new ArrayList<>(hits.size());
+        for (SearchHit hit : hits) {
+            Question question = questionsById.get(hit.questionId());
+            if (question != null) {
+                results.add(question);
+            }
+        }
+        
+        model.addAttribute("query", query);
+        model.addAttribute("results", results);
+        return "search";
+    }
+}
@@ -0,0 +1,99 @@
+package com.example.snipreader.model;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * Persisted result of a Gemini extraction, keyed by the digest of the image bytes,
+ * the model name and the prompt version. Backs the persistent tier of the extraction cache.
+ */
+@Entity
+@Table(name = "extraction_cache", indexes = @Index(name = "idx_extraction_cache_created_at", columnList = "created_at"))
+public class ExtractionCacheEntry {
+    
+    @Id
+    @Column(name = "cache_key", length = 64)
+    private String cacheKey;
+    
+    @Column(name = "image_digest", length = 64)
+    private String imageDigest;
+    
+    @Column(name = "model")
+    private String model;
+    
+    @Column(name = "prompt_version", length = 32)
+    private String promptVersion;
+    
+    @Lob
+    @Column(name = "questions_json")
+    private String questionsJson;
+    
+    @Column(name = "created_at")
+    private LocalDateTime createdAt;
+    
+    /**
+     * Default constructor required by JPA
+     */
+    public ExtractionCacheEntry() {
+    }
+    
+    public ExtractionCacheEntry(String cacheKey, String imageDigest, String model,
+                                String promptVersion, String questionsJson) {
+        this.cacheKey = cacheKey;
+        this.imageDigest = imageDigest;
+        this.model = model;
+        this.promptVersion = promptVersion;
+        this.questionsJson = questionsJson;
+        this.createdAt = LocalDateTime.now();
+    }
+    
+    // Getters and setters
+    
+    public String getCacheKey() {
+        return cacheKey;
+    }
+    
+    public void setCacheKey(String cacheKey) {
+        this.cacheKey = cacheKey;
+    }
+    
+    public String getImageDigest() {
+        return imageDigest;
+    }
+    
+    public void setImageDigest(String imageDigest) {
+        this.imageDigest = imageDigest;
+    }
+    
+    public String getModel() {
+        return model;
+    }
+    
+    public void setModel(String model) {
+        this.model = model;
+    }
+    
+    public String getPromptVersion() {
+        return promptVersion;
+    }
+    
+    public void setPromptVersion(String promptVersion) {
+        this.promptVersion = promptVersion;
+    }
+    
+    public String getQuestionsJson() {
+        return questionsJson;
+    }
+    
+    public void setQuestionsJson(String questionsJson) {
+        this.questionsJson = questionsJson;
+    }
+    
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+    
+    public void setCreatedAt(LocalDateTime createdAt) {
+        this.createdAt = createdAt;
+    }
+}
@@ -0,0 +1,111 @@
+package com.example.snipreader.model;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * In-memory state of an asynchronous screenshot extraction job.
+ */
+public class ExtractionJob {
+    
+    /**
+     * Enum to represent the progress of a job through the extraction pipeline
+     */
+    public enum Stage {
+        QUEUED,     // Waiting for a free worker
+        MATCHING,   // Looking for a near-duplicate screenshot
+        EXTRACTING, // Waiting for Gemini and parsing its response
+        SAVING,     // Persisting the question set
+        COMPLETED,  // Finished with a question set to show
+        FAILED;     // Finished without a question set
+        
+        public boolean isFinished() {
+            return this == COMPLETED || this == FAILED;
+        }
+    }
+    
+    private final String id = UUID.randomUUID().toString();
+    private final Instant createdAt = Instant.now();
+    private final String title;
+    private volatile Stage stage = Stage.QUEUED;
+    private volatile Long questionSetId;
+    private volatile boolean similarMatch;
+    private volatile String error;
+    private volatile Instant finishedAt;
+    
+    // JSON of each question streamed so far, replayed to subscribers that join late
+    private final List<String> previewQuestions = new CopyOnWriteArrayList<>();
+    
+    public ExtractionJob(String title) {
+        this.title = title;
+    }
+    
+    public String getId() {
+        return id;
+    }
+    
+    public Instant getCreatedAt() {
+        return createdAt;
+    }
+    
+    public String getTitle() {
+        return title;
+    }
+    
+    public Stage getStage() {
+        return stage;
+    }
+    
+    public void setStage(Stage stage) {
+        this.stage = stage;
+        if (stage.isFinished()) {
+            this.finishedAt = Instant.now();
+        }
+    }
+    
+    public Long getQuestionSetId() {
+        return questionSetId;
+    }
+    
+    public void setQuestionSetId(Long questionSetId) {
+        this.questionSetId = questionSetId;
+    }
+    
+    public boolean isSimilarMatch() {
+        return similarMatch;
+    }
+    
+    public void setSimilarMatch(boolean similarMatch) {
+        this.similarMatch = similarMatch;
+    }
+    
+    public String getError() {
+        return error;
+    }
+    
+    public void setError(String error) {
+        this.error = error;
+    }
+    
+    public Instant getFinishedAt() {
+        return finishedAt;
+    }
+    
+    public List<String> getPreviewQuestions() {
+        return previewQuestions;
+    }
+    
+    /**
+     * Returns the page to show once the job has completed, or null while it is still running. A job that
+     * matched an earlier question set stays on its own page, which offers that set or to process the
+     * screenshot anyway.
+     */
+    public String getResultUrl() {
+        if (stage != Stage.COMPLETED || questionSetId == null) {
+            return null;
+        }
+        return similarMatch ? "/jobs/" + id : "/results/" + questionSetId;
+    }
+}
@@ -3,11 +3,15 @@ package com.example.snipreader.model;
 import org.springframework.web.multipart.MultipartFile;
 
 /**
- * Form model for handling image uploads and pasted images.
+ * Form model for handling image uploads, pasted images (optionally as part of a scrolling capture)
+ * and pasted question text.
  */
 public class ImageUploadForm {
     private MultipartFile image;
     private String base64Image;
+    private String text;
+    private boolean skipSimilar;
+    private boolean scrolling;
 
     public MultipartFile getImage() {
         return image;
@@ -24,4 +28,28 @@ public class ImageUploadForm {
     public void setBase64Image(String base64Image) {
         this.base64Image = base64Image;
     }
+
+    public String getText() {
+        return text;
+    }
+
+    public void setText(String text) {
+        this.text = text;
+    }
+
+    public boolean isSkipSimilar() {
+        return skipSimilar;
+    }
+
+    public void setSkipSimilar(boolean skipSimilar) {
+        this.skipSimilar = skipSimilar;
+    }
+
+    public boolean isScrolling() {
+        return scrolling;
+    }
+
+    public void setScrolling(boolean scrolling) {
+        this.scrolling = scrolling;
+    }
 }
\ No newline at end of file
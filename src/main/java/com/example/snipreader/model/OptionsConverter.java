@@ -0,0 +1,35 @@
+package com.example.snipreader.model;
+
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+import jakarta.persistence.AttributeConverter;
+import jakarta.persistence.Converter;
+
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Stores the options of a question as a JSON array in a single column, so a question is one row
+ * that is read and written together with its options.
+ */
+@Converter
+public class OptionsConverter implements AttributeConverter<List<String>, String> {
+    private static final Gson GSON = new Gson();
+    private static final Type OPTIONS_TYPE = new TypeToken<List<String>>() { }.getType();
+    
+    @Override
+    public String convertToDatabaseColumn(List<String> options) {
+        return options != null ? GSON.toJson(options, OPTIONS_TYPE) : null;
+    }
+    
+    @Override
+    public List<String> convertToEntityAttribute(String json) {
+        // A question without options used to have no rows in question_options, which loaded as an empty list
+        if (json == null || json.isEmpty()) {
+            return new ArrayList<>();
+        }
+        List<String> options = GSON.fromJson(json, OPTIONS_TYPE);
+        return options != null ? new ArrayList<>(options) : new ArrayList<>();
+    }
+}
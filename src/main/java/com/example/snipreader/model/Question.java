@@ -1,6 +1,9 @@
 package com.example.snipreader.model;
 
 import jakarta.persistence.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+
 import java.util.List;
 
 /**
@@ -8,7 +11,9 @@ import java.util.List;
  * Can be either a multiple-choice question (MCQ) or a general question.
  */
 @Entity
-@Table(name = "questions")
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
+@Table(name = "questions", indexes = @Index(name = "idx_questions_question_set_id", columnList = "question_set_id"))
 public class Question {
     
     /**
@@ -20,7 +25,8 @@ public class Question {
     }
     
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "question_id")
+    @SequenceGenerator(name = "question_id", sequenceName = "questions_seq", allocationSize = 50)
     private Long id;
     
     @Column(name = "question_text", length = 1000)
@@ -30,11 +36,12 @@ public class Question {
     @Column(name = "question_type")
     private QuestionType questionType = QuestionType.MCQ; // Default to MCQ for backward compatibility
     
-    @ElementCollection
-    @CollectionTable(name = "question_options", joinColumns = @JoinColumn(name = "question_id"))
-    @Column(name = "option_text")
+    // Packed into one JSON column rather than a row per option in a collection table, so options are
+    // cached with their question rather than in a collection region of their own
+    @Convert(converter = OptionsConverter.class)
+    @Column(name = "options", length = 65535)
     private List<String> options;
-
+    
     @Column(name = "answer", length = 65535)
     private String answer;
     
@@ -44,10 +51,10 @@ public class Question {
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "question_set_id")
     private QuestionSet questionSet;
-
+    
     public Question() {
     }
-
+    
     public Question(String questionText, List<String> options) {
         this.questionText = questionText;
         this.options = options;
@@ -60,35 +67,35 @@ public class Question {
     public void setId(Long id) {
         this.id = id;
     }
-
+    
     public String getQuestionText() {
         return questionText;
     }
-
+    
     public void setQuestionText(String questionText) {
         this.questionText = questionText;
     }
-
+    
     public List<String> getOptions() {
         return options;
     }
-
+    
     public void setOptions(List<String> options) {
         this.options = options;
     }
-
+    
     public String getAnswer() {
         return answer;
     }
-
+    
     public void setAnswer(String answer) {
         this.answer = answer;
     }
-
+    
     public String getExplanation() {
         return explanation;
     }
-
+    
     public void setExplanation(String explanation) {
         this.explanation = explanation;
     }
@@ -108,7 +115,7 @@ public class Question {
     public void setQuestionSet(QuestionSet questionSet) {
         this.questionSet = questionSet;
     }
-
+    
     @Override
     public String toString() {
         return "Question{" +
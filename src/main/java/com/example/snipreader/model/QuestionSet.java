@@ -1,8 +1,13 @@
 package com.example.snipreader.model;
 
 import jakarta.persistence.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.springframework.data.domain.DomainEvents;
+
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 
 /**
@@ -10,11 +15,15 @@ import java.util.List;
  * This entity is used to store and retrieve question sets from the database.
  */
 @Entity
-@Table(name = "question_sets")
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
+@Table(name = "question_sets", indexes = @Index(name = "idx_question_sets_created_at", columnList = "created_at, id"))
 public class QuestionSet {
     
+    // IDs come from a sequence 50 at a time (pooled optimizer) so inserts can be batched; IDENTITY rules out batching
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "question_set_id")
+    @SequenceGenerator(name = "question_set_id", sequenceName = "question_sets_seq", allocationSize = 50)
     private Long id;
     
     @Column(name = "created_at")
@@ -23,7 +32,14 @@ public class QuestionSet {
     @Column(name = "title")
     private String title;
     
+    // Hex-encoded perceptual hash of the source screenshot, used to spot near-duplicate uploads
+    @Column(name = "image_hash", length = 64)
+    private String imageHash;
+    
+    // Cached as the list of question IDs; the questions themselves come from the Question region
     @OneToMany(mappedBy = "questionSet", cascade = CascadeType.ALL, orphanRemoval = true)
+    @OrderBy("id")
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
     private List<Question> questions = new ArrayList<>();
     
     /**
@@ -56,6 +72,14 @@ public class QuestionSet {
         question.setQuestionSet(null);
     }
     
+    /**
+     * Published by Spring Data whenever this set is passed to {@code QuestionSetRepository.save}
+     */
+    @DomainEvents
+    Collection<Object> domainEvents() {
+        return List.of(new QuestionSetSavedEvent(this));
+    }
+    
     // Getters and setters
     
     public Long getId() {
@@ -82,6 +106,14 @@ public class QuestionSet {
         this.title = title;
     }
     
+    public String getImageHash() {
+        return imageHash;
+    }
+    
+    public void setImageHash(String imageHash) {
+        this.imageHash = imageHash;
+    }
+    
     public List<Question> getQuestions() {
         return questions;
     }
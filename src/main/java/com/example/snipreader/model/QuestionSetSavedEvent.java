@@ -0,0 +1,8 @@
+package com.example.snipreader.model;
+
+/**
+ * Domain event published by {@code QuestionSetRepository.save} for every saved question set.
+ * Listeners keep in-memory indexes in step with the database.
+ */
+public record QuestionSetSavedEvent(QuestionSet questionSet) {
+}
@@ -0,0 +1,28 @@
+package com.example.snipreader.repository;
+
+import com.example.snipreader.model.ExtractionCacheEntry;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+
+/**
+ * Repository for the persistent tier of the extraction cache.
+ */
+@Repository
+public interface ExtractionCacheRepository extends JpaRepository<ExtractionCacheEntry, String> {
+    
+    /**
+     * Deletes the entries created before the given time in a single statement.
+     *
+     * @return the number of entries deleted
+     */
+    @Modifying
+    @Transactional
+    @Query("delete from ExtractionCacheEntry e where e.createdAt < :cutoff")
+    int deleteCreatedBefore(@Param("cutoff") LocalDateTime cutoff);
+}
@@ -0,0 +1,64 @@
+package com.example.snipreader.repository;
+
+import com.example.snipreader.model.Question;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Repository for Question entities.
+ */
+@Repository
+public interface QuestionRepository extends JpaRepository<Question, Long> {
+    
+    // Questions read from the database at a time by forEachBatch
+    int BATCH_SIZE = 1000;
+    
+    /**
+     * Find the next answered questions after the given ID, oldest first, for reading them all in batches.
+     */
+    @Query("select q from Question q where q.answer is not null and q.id > :afterId order by q.id")
+    List<Question> findAnsweredAfter(@Param("afterId") long afterId, Limit limit);
+    
+    /**
+     * Find the next questions after the given ID, oldest first, for reading them all in batches.
+     */
+    @Query("select q from Question q where q.id > :afterId order by q.id")
+    List<Question> findAllAfter(@Param("afterId") long afterId, Limit limit);
+    
+    /**
+     * Find the given questions with their question set loaded.
+     */
+    @Query("select q from Question q join fetch q.questionSet where q.id in :ids")
+    List<Question> findAllWithQuestionSetById(@Param("ids") Collection<Long> ids);
+    
+    /**
+     * Reads the questions a keyset query finds in ID order, {@value #BATCH_SIZE} at a time. Outside a
+     * transaction each batch gets its own persistence context, so only the current batch is held in memory.
+     *
+     * @param query the keyset query, such as {@link #findAllAfter}
+     * @param action called with each batch in turn
+     */
+    default void forEachBatch(KeysetQuery query, Consumer<List<Question>> action) {
+        List<Question> batch = query.findAfter(0, Limit.of(BATCH_SIZE));
+        action.accept(batch);
+        while (batch.size() == BATCH_SIZE) {
+            batch = query.findAfter(batch.get(batch.size() - 1).getId(), Limit.of(BATCH_SIZE));
+            action.accept(batch);
+        }
+    }
+    
+    /**
+     * Finds the next questions after the given ID, oldest first.
+     */
+    @FunctionalInterface
+    interface KeysetQuery {
+        List<Question> findAfter(long afterId, Limit limit);
+    }
+}
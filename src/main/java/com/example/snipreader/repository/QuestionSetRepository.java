@@ -1,13 +1,27 @@
 package com.example.snipreader.repository;
 
 import com.example.snipreader.model.QuestionSet;
+import jakarta.persistence.QueryHint;
+import org.hibernate.Hibernate;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 /**
- * Repository for QuestionSet entities.
+ * Repository for QuestionSet entities. Question sets and their questions are held in Hibernate's
+ * second-level cache, and the history and navigation queries in its query cache, so a set viewed
+ * over and over is served without touching the database until it is saved again.
  */
 @Repository
 public interface QuestionSetRepository extends JpaRepository<QuestionSet, Long> {
@@ -16,4 +30,68 @@ public interface QuestionSetRepository extends JpaRepository<QuestionSet, Long>
      * Find all question sets ordered by creation date (newest first).
      */
     List<QuestionSet> findAllByOrderByCreatedAtDesc();
+    
+    /**
+     * Find summaries of the newest question sets, newest first, counting questions in the same query.
+     */
+    @Query("select s.id as id, s.title as title, s.createdAt as createdAt, count(q) as questionCount "
+            + "from QuestionSet s left join s.questions q group by s.id, s.title, s.createdAt "
+            + "order by s.createdAt desc, s.id desc")
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
+    List<QuestionSetSummary> findSummaries(Limit limit);
+    
+    /**
+     * Find summaries of the question sets that come after the given one in history order (newest first),
+     * seeking on the {@code (created_at, id)} index rather than counting past earlier pages.
+     */
+    @Query("select s.id as id, s.title as title, s.createdAt as createdAt, count(q) as questionCount "
+            + "from QuestionSet s left join s.questions q "
+            + "where s.createdAt < :createdAt or (s.createdAt = :createdAt and s.id < :id) "
+            + "group by s.id, s.title, s.createdAt order by s.createdAt desc, s.id desc")
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
+    List<QuestionSetSummary> findSummariesOlderThan(@Param("createdAt") LocalDateTime createdAt,
+                                                    @Param("id") Long id, Limit limit);
+    
+    /**
+     * Find the question sets that come after the given one in history order, nearest first.
+     */
+    @Query("select s from QuestionSet s where s.createdAt < :createdAt or (s.createdAt = :createdAt and s.id < :id) "
+            + "order by s.createdAt desc, s.id desc")
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
+    List<QuestionSet> findOlderThan(@Param("createdAt") LocalDateTime createdAt, @Param("id") Long id, Limit limit);
+    
+    /**
+     * Find the question sets that come before the given one in history order, nearest first.
+     */
+    @Query("select s from QuestionSet s where s.createdAt > :createdAt or (s.createdAt = :createdAt and s.id > :id) "
+            + "order by s.createdAt asc, s.id asc")
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
+    List<QuestionSet> findNewerThan(@Param("createdAt") LocalDateTime createdAt, @Param("id") Long id, Limit limit);
+    
+    /**
+     * Find a question set with its questions, and so the questions' options, loaded. A set in the
+     * second-level cache is loaded without any statements; otherwise it takes one for the set and one
+     * for its questions, after which the set is cached.
+     */
+    @Transactional(readOnly = true)
+    default Optional<QuestionSet> findWithQuestionsById(Long id) {
+        Optional<QuestionSet> questionSet = findById(id);
+        questionSet.ifPresent(set -> Hibernate.initialize(set.getQuestions()));
+        return questionSet;
+    }
+    
+    /**
+     * Find question sets with their questions, and so the questions' options, loaded in one statement
+     * however many sets and questions there are. Reads the database rather than the second-level cache,
+     * which suits exports of many sets better than looking each one up.
+     */
+    @EntityGraph(attributePaths = "questions")
+    @Query("select s from QuestionSet s where s.id in :ids")
+    List<QuestionSet> findAllWithQuestionsById(@Param("ids") Collection<Long> ids);
+    
+    /**
+     * Find the ID and perceptual image hash of every question set that has one.
+     */
+    @Query("select s.id, s.imageHash from QuestionSet s where s.imageHash is not null")
+    List<Object[]> findAllImageHashes();
 }
\ No newline at end of file
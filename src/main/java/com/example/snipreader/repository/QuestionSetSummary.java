@@ -0,0 +1,18 @@
+package com.example.snipreader.repository;
+
+import java.time.LocalDateTime;
+
+/**
+ * Projection of a question set for listings: its columns and the number of questions,
+ * without loading the questions themselves.
+ */
+public interface QuestionSetSummary {
+    
+    Long getId();
+    
+    String getTitle();
+    
+    LocalDateTime getCreatedAt();
+    
+    long getQuestionCount();
+}
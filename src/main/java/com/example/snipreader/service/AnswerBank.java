@@ -0,0 +1,172 @@
+package com.example.snipreader.service;
+
+import com.example.snipreader.model.Question;
+import com.example.snipreader.model.QuestionSet;
+import com.example.snipreader.model.QuestionSetSavedEvent;
+import com.example.snipreader.repository.QuestionRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-memory index of every answered question, keyed on {@link QuestionNormalizer#key normalized}
+ * question text and options. The same exam questions turn up in many screenshots with different
+ * layouts; a question found here is answered without asking Gemini. MCQ answers are stored as the
+ * text of the correct option, so they still apply when the options are shown in another order.
+ */
+@Service
+public class AnswerBank {
+    private static final Logger logger = LoggerFactory.getLogger(AnswerBank.class);
+    
+    private final QuestionRepository questionRepository;
+    private final boolean enabled;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    
+    private final Counter hits;
+    private final Counter misses;
+    
+    public AnswerBank(QuestionRepository questionRepository, MeterRegistry meterRegistry,
+                      @Value("${snipreader.answer-bank.enabled:true}") boolean enabled) {
+        this.questionRepository = questionRepository;
+        this.enabled = enabled;
+        this.hits = Counter.builder("snipreader.answer-bank.lookups").tag("result", "hit").register(meterRegistry);
+        this.misses = Counter.builder("snipreader.answer-bank.lookups").tag("result", "miss").register(meterRegistry);
+        meterRegistry.gauge("snipreader.answer-bank.size", entries, Map::size);
+    }
+    
+    /**
+     * Loads every stored answered question once the application has started.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        if (!enabled) {
+            return;
+        }
+        
+        questionRepository.forEachBatch(questionRepository::findAnsweredAfter, batch -> batch.forEach(this::add));
+        logger.info("Loaded {} questions into the answer bank", entries.size());
+    }
+    
+    /**
+     * Adds the questions of newly saved question sets to the bank.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onQuestionSetSaved(QuestionSetSavedEvent event) {
+        QuestionSet questionSet = event.questionSet();
+        if (enabled) {
+            questionSet.getQuestions().forEach(this::add);
+        }
+    }
+    
+    /**
+     * Looks up a question, returning a copy with the stored answer and explanation filled in.
+     * For an MCQ the answer letter refers to the question's own option order.
+     *
+     * @param question the question to look up; it is not modified
+     * @return the answered copy, if the question is in the bank
+     */
+    public Optional<Question> answer(Question question) {
+        if (!enabled) {
+            return Optional.empty();
+        }
+        
+        Entry entry = entries.get(QuestionNormalizer.key(question.getQuestionText(), question.getOptions()));
+        String answer = entry != null ? entry.answerFor(question) : null;
+        if (answer == null) {
+            misses.increment();
+            return Optional.empty();
+        }
+        
+        hits.increment();
+        Question answered = new Question(question.getQuestionText(),
+                question.getOptions() != null ? new ArrayList<>(question.getOptions()) : new ArrayList<>());
+        answered.setQuestionType(entry.questionType());
+        answered.setAnswer(answer);
+        answered.setExplanation(entry.explanation());
+        return Optional.of(answered);
+    }
+    
+    /**
+     * Returns the number of questions in the bank.
+     */
+    public int size() {
+        return entries.size();
+    }
+    
+    private void add(Question question) {
+        if (question.getAnswer() == null || question.getAnswer().isBlank()) {
+            return;
+        }
+        
+        String answer = question.getAnswer().trim();
+        if (question.getQuestionType() == Question.QuestionType.MCQ) {
+            // Store the correct option itself rather than its letter
+            int option = optionIndex(question.getOptions(), answer);
+            if (option < 0) {
+                return;
+            }
+            answer = QuestionNormalizer.normalizeOption(question.getOptions().get(option));
+        }
+        
+        String explanation = question.getExplanation() != null ? question.getExplanation() : "";
+        // The most recent answer to a question wins, even when a saved set arrives during a rebuild
+        long questionId = question.getId() != null ? question.getId() : 0;
+        entries.merge(QuestionNormalizer.key(question.getQuestionText(), question.getOptions()),
+                new Entry(questionId, question.getQuestionType(), answer, explanation),
+                (current, added) -> added.questionId() >= current.questionId() ? added : current);
+    }
+    
+    /**
+     * Resolves an MCQ answer, given as a letter or as the option text, to the option's index.
+     *
+     * @return the index, or -1 if the answer matches no option
+     */
+    private static int optionIndex(List<String> options, String answer) {
+        if (options == null || options.isEmpty()) {
+            return -1;
+        }
+        if (answer.length() == 1 && Character.isLetter(answer.charAt(0))) {
+            int index = Character.toUpperCase(answer.charAt(0)) - 'A';
+            return index >= 0 && index < options.size() ? index : -1;
+        }
+        String normalized = QuestionNormalizer.normalizeOption(answer);
+        for (int i = 0; i < options.size(); i++) {
+            if (QuestionNormalizer.normalizeOption(options.get(i)).equals(normalized)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+    
+    /**
+     * A stored answer: the normalized text of the correct option for an MCQ, or the full answer otherwise,
+     * with the ID of the question it was taken from.
+     */
+    private record Entry(long questionId, Question.QuestionType questionType, String answer, String explanation) {
+        
+        String answerFor(Question question) {
+            if (questionType != Question.QuestionType.MCQ) {
+                return answer;
+            }
+            List<String> options = question.getOptions();
+            for (int i = 0; i < options.size(); i++) {
+                if (QuestionNormalizer.normalizeOption(options.get(i)).equals(answer)) {
+                    return String.valueOf((char) ('A' + i));
+                }
+            }
+            return null;
+        }
+    }
+}
@@ -10,20 +10,21 @@ import com.itextpdf.text.Font;
 import com.itextpdf.text.PageSize;
 import com.itextpdf.text.Paragraph;
 import com.itextpdf.text.pdf.PdfWriter;
-import org.apache.poi.xwpf.usermodel.ParagraphAlignment;
-import org.apache.poi.xwpf.usermodel.XWPFDocument;
-import org.apache.poi.xwpf.usermodel.XWPFParagraph;
-import org.apache.poi.xwpf.usermodel.XWPFRun;
+import org.apache.commons.codec.binary.Hex;
 import org.springframework.stereotype.Service;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.time.format.DateTimeFormatter;
 import java.util.Collection;
 import java.util.List;
 
 /**
- * Service for generating document exports (PDF and Word) of question sets.
+ * Service for generating document exports (PDF and Word) of question sets. Documents are written
+ * straight to the given stream as they are generated rather than built up in memory first.
  */
 @Service
 public class DocumentService {
@@ -34,20 +35,53 @@ public class DocumentService {
     private static final Font SUBHEADING_FONT = new Font(Font.FontFamily.HELVETICA, 12, Font.BOLD);
     private static final Font NORMAL_FONT = new Font(Font.FontFamily.HELVETICA, 10, Font.NORMAL);
     
+    // Part of every content version; bump it whenever the layout of the PDF or Word export changes
+    private static final String LAYOUT_VERSION = "1";
+    
+    /**
+     * Compute the version of a question set's exports: a digest of everything they show and of the
+     * export layout, so it changes whenever the exported documents would.
+     *
+     * @param questionSet the question set, with its questions loaded
+     * @return a hex string that identifies the content of the set's exports
+     */
+    public String contentVersion(QuestionSet questionSet) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+        
+        update(digest, LAYOUT_VERSION);
+        update(digest, questionSet.getTitle());
+        update(digest, questionSet.getCreatedAt() != null ? questionSet.getCreatedAt().format(DATE_FORMATTER) : null);
+        for (Question question : questionSet.getQuestions()) {
+            update(digest, String.valueOf(question.getQuestionType()));
+            update(digest, question.getQuestionText());
+            List<String> options = question.getOptions() != null ? question.getOptions() : List.of();
+            update(digest, String.valueOf(options.size()));
+            options.forEach(option -> update(digest, option));
+            update(digest, question.getAnswer());
+            update(digest, question.getExplanation());
+        }
+        
+        // 128 bits is plenty to tell versions of one set apart, and keeps file names and ETags short
+        return Hex.encodeHexString(digest.digest()).substring(0, 32);
+    }
+    
     /**
-     * Generate a PDF document from a question set.
+     * Write a PDF document of a question set to a stream, page by page as each fills up.
      *
      * @param questionSet the question set to generate a PDF from
-     * @return a byte array containing the PDF document
+     * @param outputStream the stream to write the PDF to, which is left open
      * @throws DocumentException if there is an error generating the PDF
      */
-    public byte[] generatePdf(QuestionSet questionSet) throws DocumentException {
-        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+    public void writePdf(QuestionSet questionSet, OutputStream outputStream) throws DocumentException {
         Document document = new Document(PageSize.A4, 50, 50, 50, 50);
         
         try {
-            PdfWriter.getInstance(document, outputStream);
-            document.open();
+            openPdf(document, outputStream);
             
             // Add title
             Paragraph title = new Paragraph(questionSet.getTitle(), TITLE_FONT);
@@ -114,36 +148,24 @@ public class DocumentService {
         } finally {
             document.close();
         }
-        
-        return outputStream.toByteArray();
     }
     
     /**
-     * Generate a Word document from a question set.
+     * Write a Word document of a question set to a stream, paragraph by paragraph.
      *
      * @param questionSet the question set to generate a Word document from
-     * @return a byte array containing the Word document
-     * @throws IOException if there is an error generating the Word document
+     * @param outputStream the stream to write the Word document to, which is left open
+     * @throws IOException if there is an error generating or writing the Word document
      */
-    public byte[] generateWord(QuestionSet questionSet) throws IOException {
-        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
-        XWPFDocument document = new XWPFDocument();
-        
-        try {
+    public void writeWord(QuestionSet questionSet, OutputStream outputStream) throws IOException {
+        try (DocxStreamWriter document = new DocxStreamWriter(outputStream)) {
             // Add title
-            XWPFParagraph titleParagraph = document.createParagraph();
-            titleParagraph.setAlignment(ParagraphAlignment.CENTER);
-            XWPFRun titleRun = titleParagraph.createRun();
-            titleRun.setText(questionSet.getTitle());
-            titleRun.setBold(true);
-            titleRun.setFontSize(18);
+            document.paragraph(true);
+            document.run(questionSet.getTitle(), true, 18);
             
             // Add date
-            XWPFParagraph dateParagraph = document.createParagraph();
-            dateParagraph.setAlignment(ParagraphAlignment.CENTER);
-            XWPFRun dateRun = dateParagraph.createRun();
-            dateRun.setText("Created: " + questionSet.getCreatedAt().format(DATE_FORMATTER));
-            dateRun.setFontSize(10);
+            document.paragraph(true);
+            document.run("Created: " + questionSet.getCreatedAt().format(DATE_FORMATTER), false, 10);
             
             // Add questions
             List<Question> questions = questionSet.getQuestions();
@@ -151,92 +173,64 @@ public class DocumentService {
                 Question question = questions.get(i);
                 
                 // Question number and text
-                XWPFParagraph questionParagraph = document.createParagraph();
-                XWPFRun questionRun = questionParagraph.createRun();
-                questionRun.setText("Question " + (i + 1) + ": " + question.getQuestionText());
-                questionRun.setBold(true);
-                questionRun.setFontSize(14);
-                questionRun.addBreak();
+                document.paragraph(false);
+                document.run("Question " + (i + 1) + ": " + question.getQuestionText(), true, 14);
+                document.addBreak();
                 
                 // Options - only for MCQ questions with options
                 if (question.getQuestionType() == Question.QuestionType.MCQ && 
                         question.getOptions() != null && !question.getOptions().isEmpty()) {
-                    XWPFParagraph optionsHeadingParagraph = document.createParagraph();
-                    XWPFRun optionsHeadingRun = optionsHeadingParagraph.createRun();
-                    optionsHeadingRun.setText("Options:");
-                    optionsHeadingRun.setBold(true);
-                    optionsHeadingRun.setFontSize(12);
+                    document.paragraph(false);
+                    document.run("Options:", true, 12);
                     
                     List<String> options = question.getOptions();
                     for (int j = 0; j < options.size(); j++) {
                         char optionLetter = (char) ('A' + j);
                         String optionText = optionLetter + ") " + options.get(j);
                         
-                        XWPFParagraph optionParagraph = document.createParagraph();
-                        XWPFRun optionRun = optionParagraph.createRun();
-                        optionRun.setText(optionText);
-                        
                         // Highlight correct answer
-                        if (question.getAnswer() != null && 
-                                question.getAnswer().contains(String.valueOf(optionLetter))) {
-                            optionRun.setBold(true);
-                        }
+                        boolean correct = question.getAnswer() != null && 
+                                question.getAnswer().contains(String.valueOf(optionLetter));
+                        document.paragraph(false);
+                        document.run(optionText, correct, 0);
                     }
                 }
                 
                 // Answer
-                XWPFParagraph answerHeadingParagraph = document.createParagraph();
-                XWPFRun answerHeadingRun = answerHeadingParagraph.createRun();
-                answerHeadingRun.setText("Answer:");
-                answerHeadingRun.setBold(true);
-                answerHeadingRun.setFontSize(12);
-                
-                XWPFParagraph answerParagraph = document.createParagraph();
-                XWPFRun answerRun = answerParagraph.createRun();
-                answerRun.setText(question.getAnswer());
+                document.paragraph(false);
+                document.run("Answer:", true, 12);
+                document.paragraph(false);
+                document.run(question.getAnswer(), false, 0);
                 
                 // Explanation
-                XWPFParagraph explanationHeadingParagraph = document.createParagraph();
-                XWPFRun explanationHeadingRun = explanationHeadingParagraph.createRun();
-                explanationHeadingRun.setText("Explanation:");
-                explanationHeadingRun.setBold(true);
-                explanationHeadingRun.setFontSize(12);
-                
-                XWPFParagraph explanationParagraph = document.createParagraph();
-                XWPFRun explanationRun = explanationParagraph.createRun();
-                explanationRun.setText(question.getExplanation());
+                document.paragraph(false);
+                document.run("Explanation:", true, 12);
+                document.paragraph(false);
+                document.run(question.getExplanation(), false, 0);
                 
                 // Add separator between questions
                 if (i < questions.size() - 1) {
-                    XWPFParagraph separatorParagraph = document.createParagraph();
-                    XWPFRun separatorRun = separatorParagraph.createRun();
-                    separatorRun.setText("---------------------------------------------------");
-                    separatorRun.addBreak();
+                    document.paragraph(false);
+                    document.run("---------------------------------------------------", false, 0);
+                    document.addBreak();
                 }
             }
-            
-            document.write(outputStream);
-        } finally {
-            document.close();
         }
-        
-        return outputStream.toByteArray();
     }
     
     /**
-     * Generate a PDF document from multiple question sets.
+     * Write a PDF document of multiple question sets to a stream, page by page as each fills up.
      *
      * @param questionSets the collection of question sets to generate a PDF from
-     * @return a byte array containing the PDF document
+     * @param outputStream the stream to write the PDF to, which is left open
      * @throws DocumentException if there is an error generating the PDF
      */
-    public byte[] generatePdfFromMultiple(Collection<QuestionSet> questionSets) throws DocumentException {
-        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+    public void writePdfFromMultiple(Collection<QuestionSet> questionSets, OutputStream outputStream)
+            throws DocumentException {
         Document document = new Document(PageSize.A4, 50, 50, 50, 50);
         
         try {
-            PdfWriter.getInstance(document, outputStream);
-            document.open();
+            openPdf(document, outputStream);
             
             // Add title
             Paragraph title = new Paragraph("Selected Question Sets", TITLE_FONT);
@@ -321,46 +315,33 @@ public class DocumentService {
         } finally {
             document.close();
         }
-        
-        return outputStream.toByteArray();
     }
     
     /**
-     * Generate a Word document from multiple question sets.
+     * Write a Word document of multiple question sets to a stream, paragraph by paragraph.
      *
      * @param questionSets the collection of question sets to generate a Word document from
-     * @return a byte array containing the Word document
-     * @throws IOException if there is an error generating the Word document
+     * @param outputStream the stream to write the Word document to, which is left open
+     * @throws IOException if there is an error generating or writing the Word document
      */
-    public byte[] generateWordFromMultiple(Collection<QuestionSet> questionSets) throws IOException {
-        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
-        XWPFDocument document = new XWPFDocument();
-        
-        try {
+    public void writeWordFromMultiple(Collection<QuestionSet> questionSets, OutputStream outputStream)
+            throws IOException {
+        try (DocxStreamWriter document = new DocxStreamWriter(outputStream)) {
             // Add title
-            XWPFParagraph titleParagraph = document.createParagraph();
-            titleParagraph.setAlignment(ParagraphAlignment.CENTER);
-            XWPFRun titleRun = titleParagraph.createRun();
-            titleRun.setText("Selected Question Sets");
-            titleRun.setBold(true);
-            titleRun.setFontSize(18);
-            titleRun.addBreak();
+            document.paragraph(true);
+            document.run("Selected Question Sets", true, 18);
+            document.addBreak();
             
             int setCounter = 1;
             // Process each question set
             for (QuestionSet questionSet : questionSets) {
                 // Add question set title and date
-                XWPFParagraph setTitleParagraph = document.createParagraph();
-                XWPFRun setTitleRun = setTitleParagraph.createRun();
-                setTitleRun.setText(questionSet.getTitle());
-                setTitleRun.setBold(true);
-                setTitleRun.setFontSize(16);
+                document.paragraph(false);
+                document.run(questionSet.getTitle(), true, 16);
                 
-                XWPFParagraph dateParagraph = document.createParagraph();
-                XWPFRun dateRun = dateParagraph.createRun();
-                dateRun.setText("Created: " + questionSet.getCreatedAt().format(DATE_FORMATTER));
-                dateRun.setFontSize(10);
-                dateRun.addBreak();
+                document.paragraph(false);
+                document.run("Created: " + questionSet.getCreatedAt().format(DATE_FORMATTER), false, 10);
+                document.addBreak();
                 
                 // Add questions
                 List<Question> questions = questionSet.getQuestions();
@@ -368,90 +349,82 @@ public class DocumentService {
                     Question question = questions.get(i);
                     
                     // Question number and text
-                    XWPFParagraph questionParagraph = document.createParagraph();
-                    XWPFRun questionRun = questionParagraph.createRun();
-                    questionRun.setText("Question " + (i + 1) + ": " + question.getQuestionText());
-                    questionRun.setBold(true);
-                    questionRun.setFontSize(14);
-                    questionRun.addBreak();
+                    document.paragraph(false);
+                    document.run("Question " + (i + 1) + ": " + question.getQuestionText(), true, 14);
+                    document.addBreak();
                     
                     // Options - only for MCQ questions with options
                     if (question.getQuestionType() == Question.QuestionType.MCQ && 
                             question.getOptions() != null && !question.getOptions().isEmpty()) {
-                        XWPFParagraph optionsHeadingParagraph = document.createParagraph();
-                        XWPFRun optionsHeadingRun = optionsHeadingParagraph.createRun();
-                        optionsHeadingRun.setText("Options:");
-                        optionsHeadingRun.setBold(true);
-                        optionsHeadingRun.setFontSize(12);
+                        document.paragraph(false);
+                        document.run("Options:", true, 12);
                         
                         List<String> options = question.getOptions();
                         for (int j = 0; j < options.size(); j++) {
                             char optionLetter = (char) ('A' + j);
                             String optionText = optionLetter + ") " + options.get(j);
                             
-                            XWPFParagraph optionParagraph = document.createParagraph();
-                            XWPFRun optionRun = optionParagraph.createRun();
-                            optionRun.setText(optionText);
-                            optionRun.setFontSize(10);
-                            
                             // Highlight correct answer
-                            if (question.getAnswer() != null && 
-                                    question.getAnswer().contains(String.valueOf(optionLetter))) {
-                                optionRun.setBold(true);
-                            }
+                            boolean correct = question.getAnswer() != null && 
+                                    question.getAnswer().contains(String.valueOf(optionLetter));
+                            document.paragraph(false);
+                            document.run(optionText, correct, 10);
                         }
                     }
                     
                     // Answer
-                    XWPFParagraph answerHeadingParagraph = document.createParagraph();
-                    XWPFRun answerHeadingRun = answerHeadingParagraph.createRun();
-                    answerHeadingRun.setText("Answer:");
-                    answerHeadingRun.setBold(true);
-                    answerHeadingRun.setFontSize(12);
-                    
-                    XWPFParagraph answerParagraph = document.createParagraph();
-                    XWPFRun answerRun = answerParagraph.createRun();
-                    answerRun.setText(question.getAnswer());
-                    answerRun.setFontSize(10);
+                    document.paragraph(false);
+                    document.run("Answer:", true, 12);
+                    document.paragraph(false);
+                    document.run(question.getAnswer(), false, 10);
                     
                     // Explanation
-                    XWPFParagraph explanationHeadingParagraph = document.createParagraph();
-                    XWPFRun explanationHeadingRun = explanationHeadingParagraph.createRun();
-                    explanationHeadingRun.setText("Explanation:");
-                    explanationHeadingRun.setBold(true);
-                    explanationHeadingRun.setFontSize(12);
-                    
-                    XWPFParagraph explanationParagraph = document.createParagraph();
-                    XWPFRun explanationRun = explanationParagraph.createRun();
-                    explanationRun.setText(question.getExplanation());
-                    explanationRun.setFontSize(10);
+                    document.paragraph(false);
+                    document.run("Explanation:", true, 12);
+                    document.paragraph(false);
+                    document.run(question.getExplanation(), false, 10);
                     
                     // Add separator between questions
                     if (i < questions.size() - 1) {
-                        XWPFParagraph separatorParagraph = document.createParagraph();
-                        XWPFRun separatorRun = separatorParagraph.createRun();
-                        separatorRun.setText("---------------------------------------------------");
-                        separatorRun.addBreak();
+                        document.paragraph(false);
+                        document.run("---------------------------------------------------", false, 0);
+                        document.addBreak();
                     }
                 }
                 
                 // Add separator between question sets
                 if (setCounter < questionSets.size()) {
-                    XWPFParagraph setSeparatorParagraph = document.createParagraph();
-                    XWPFRun setSeparatorRun = setSeparatorParagraph.createRun();
-                    setSeparatorRun.setText("==================================================");
-                    setSeparatorRun.addBreak();
-                    setSeparatorRun.addBreak();
+                    document.paragraph(false);
+                    document.run("==================================================", false, 0);
+                    document.addBreak();
+                    document.addBreak();
                 }
                 
                 setCounter++;
             }
-            
-            document.write(outputStream);
-        } finally {
-            document.close();
         }
-        
-        return outputStream.toByteArray();
+    }
+    
+    /**
+     * Add a value to a digest, keeping null apart from the empty string and each value apart from the next.
+     */
+    private static void update(MessageDigest digest, String value) {
+        if (value == null) {
+            digest.update((byte) 0);
+        } else {
+            digest.update((byte) 1);
+            digest.update(value.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+        }
+    }
+    
+    /**
+     * Open a PDF document that writes each page to the stream as it is completed, leaving the stream
+     * open when the document is closed.
+     */
+    private static void openPdf(Document document, OutputStream outputStream) throws DocumentException {
+        PdfWriter writer = PdfWriter.getInstance(document, outputStream);
+        writer.setCloseStream(false);
+        document.open();
     }
 }
\ No newline at end of file
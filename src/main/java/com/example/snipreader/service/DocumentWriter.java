@@ -0,0 +1,22 @@
+package com.example.snipreader.service;
+
+import com.itextpdf.text.DocumentException;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Writes a document export to a stream, typically one of the {@link DocumentService} methods.
+ */
+@FunctionalInterface
+public interface DocumentWriter {
+    
+    /**
+     * Writes the document, leaving the stream open.
+     *
+     * @param outputStream the stream to write to
+     * @throws DocumentException if there is an error generating a PDF
+     * @throws IOException if there is an error generating or writing the document
+     */
+    void write(OutputStream outputStream) throws DocumentException, IOException;
+}
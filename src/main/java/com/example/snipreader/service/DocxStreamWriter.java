@@ -0,0 +1,206 @@
+package com.example.snipreader.service;
+
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+import java.io.Closeable;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Writes a Word (.docx) document of plain paragraphs straight to an output stream, one paragraph at a
+ * time. POI's XWPFDocument holds the whole document in memory until it is written; this keeps only
+ * the zip and XML writers' buffers, however long the document gets.
+ * <p>
+ * The package holds just the three parts Word needs: the content types, the package relationships
+ * and {@code word/document.xml}. Closing finishes the document but leaves the stream open.
+ */
+class DocxStreamWriter implements Closeable {
+    
+    private static final String WORDPROCESSING_ML = "http://schemas.openxmlformats.org/wordprocessingml/2006/main";
+    
+    private static final String CONTENT_TYPES = "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>"
+            + "<Types xmlns=\"http://schemas.openxmlformats.org/package/2006/content-types\">"
+            + "<Default Extension=\"rels\" ContentType=\"application/vnd.openxmlformats-package.relationships+xml\"/>"
+            + "<Default Extension=\"xml\" ContentType=\"application/xml\"/>"
+            + "<Override PartName=\"/word/document.xml\" ContentType=\""
+            + "application/vnd.openxmlformats-officedocument.wordprocessingml.document.main+xml\"/>"
+            + "</Types>";
+    
+    private static final String RELATIONSHIPS = "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>"
+            + "<Relationships xmlns=\"http://schemas.openxmlformats.org/package/2006/relationships\">"
+            + "<Relationship Id=\"rId1\" Type=\""
+            + "http://schemas.openxmlformats.org/officeDocument/2006/relationships/officeDocument\" "
+            + "Target=\"word/document.xml\"/>"
+            + "</Relationships>";
+    
+    private final ZipOutputStream zip;
+    private final XMLStreamWriter xml;
+    private boolean inParagraph;
+    private boolean inRun;
+    
+    DocxStreamWriter(OutputStream outputStream) throws IOException {
+        zip = new ZipOutputStream(new NonClosingOutputStream(outputStream), StandardCharsets.UTF_8);
+        writeEntry("[Content_Types].xml", CONTENT_TYPES);
+        writeEntry("_rels/.rels", RELATIONSHIPS);
+        zip.putNextEntry(new ZipEntry("word/document.xml"));
+        try {
+            xml = XMLOutputFactory.newFactory().createXMLStreamWriter(zip, "UTF-8");
+            xml.writeStartDocument("UTF-8", "1.0");
+            xml.setPrefix("w", WORDPROCESSING_ML);
+            xml.writeStartElement(WORDPROCESSING_ML, "document");
+            xml.writeNamespace("w", WORDPROCESSING_ML);
+            xml.writeStartElement(WORDPROCESSING_ML, "body");
+        } catch (XMLStreamException e) {
+            throw new IOException("Error starting Word document", e);
+        }
+    }
+    
+    /**
+     * Starts a new paragraph, ending the current one.
+     *
+     * @param centered true to center the paragraph, false to align it left
+     */
+    void paragraph(boolean centered) throws IOException {
+        try {
+            endParagraph();
+            xml.writeStartElement(WORDPROCESSING_ML, "p");
+            if (centered) {
+                xml.writeStartElement(WORDPROCESSING_ML, "pPr");
+                xml.writeEmptyElement(WORDPROCESSING_ML, "jc");
+                xml.writeAttribute(WORDPROCESSING_ML, "val", "center");
+                xml.writeEndElement();
+            }
+            inParagraph = true;
+        } catch (XMLStreamException e) {
+            throw new IOException("Error writing Word document", e);
+        }
+    }
+    
+    /**
+     * Adds a run of text to the current paragraph.
+     *
+     * @param text the text, which may be null for an empty run
+     * @param bold true for bold text
+     * @param fontSize the font size in points, or 0 for Word's default
+     */
+    void run(String text, boolean bold, int fontSize) throws IOException {
+        try {
+            if (!inParagraph) {
+                paragraph(false);
+            }
+            endRun();
+            xml.writeStartElement(WORDPROCESSING_ML, "r");
+            if (bold || fontSize > 0) {
+                xml.writeStartElement(WORDPROCESSING_ML, "rPr");
+                if (bold) {
+                    xml.writeEmptyElement(WORDPROCESSING_ML, "b");
+                }
+                if (fontSize > 0) {
+                    // Sizes are in half-points
+                    xml.writeEmptyElement(WORDPROCESSING_ML, "sz");
+                    xml.writeAttribute(WORDPROCESSING_ML, "val", String.valueOf(fontSize * 2));
+                }
+                xml.writeEndElement();
+            }
+            xml.writeStartElement(WORDPROCESSING_ML, "t");
+            xml.writeAttribute("xml", "http://www.w3.org/XML/1998/namespace", "space", "preserve");
+            xml.writeCharacters(text == null ? "" : withoutInvalidCharacters(text));
+            xml.writeEndElement();
+            inRun = true;
+        } catch (XMLStreamException e) {
+            throw new IOException("Error writing Word document", e);
+        }
+    }
+    
+    /**
+     * Adds a line break after the current run.
+     */
+    void addBreak() throws IOException {
+        if (!inRun) {
+            run("", false, 0);
+        }
+        try {
+            xml.writeEmptyElement(WORDPROCESSING_ML, "br");
+        } catch (XMLStreamException e) {
+            throw new IOException("Error writing Word document", e);
+        }
+    }
+    
+    @Override
+    public void close() throws IOException {
+        try {
+            endParagraph();
+            xml.writeEndElement();
+            xml.writeEndElement();
+            xml.writeEndDocument();
+            xml.flush();
+            zip.closeEntry();
+            zip.close();
+        } catch (XMLStreamException e) {
+            throw new IOException("Error finishing Word document", e);
+        }
+    }
+    
+    private void endParagraph() throws XMLStreamException {
+        endRun();
+        if (inParagraph) {
+            xml.writeEndElement();
+            inParagraph = false;
+        }
+    }
+    
+    private void endRun() throws XMLStreamException {
+        if (inRun) {
+            xml.writeEndElement();
+            inRun = false;
+        }
+    }
+    
+    private void writeEntry(String name, String content) throws IOException {
+        zip.putNextEntry(new ZipEntry(name));
+        zip.write(content.getBytes(StandardCharsets.UTF_8));
+        zip.closeEntry();
+    }
+    
+    /**
+     * Drops characters XML 1.0 cannot hold, which extracted text occasionally contains.
+     */
+    private static String withoutInvalidCharacters(String text) {
+        StringBuilder valid = null;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            boolean allowed = c == '\t' || c == '\n' || c == '\r' || (c >= 0x20 && c <= 0xFFFD);
+            if (!allowed && valid == null) {
+                valid = new StringBuilder(text.length()).append(text, 0, i);
+            } else if (allowed && valid != null) {
+                valid.append(c);
+            }
+        }
+        return valid == null ? text : valid.toString();
+    }
+    
+    /**
+     * Lets the zip stream be closed, to write its central directory, without closing the response.
+     */
+    private static class NonClosingOutputStream extends FilterOutputStream {
+        
+        NonClosingOutputStream(OutputStream outputStream) {
+            super(outputStream);
+        }
+        
+        @Override
+        public void write(byte[] bytes, int offset, int length) throws IOException {
+            out.write(bytes, offset, length);
+        }
+        
+        @Override
+        public void close() throws IOException {
+            flush();
+        }
+    }
+}
@@ -0,0 +1,362 @@
+package com.example.snipreader.service;
+
+import com.example.snipreader.model.QuestionSet;
+import com.example.snipreader.model.QuestionSetSavedEvent;
+import com.itextpdf.text.DocumentException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.util.unit.DataSize;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * On-disk cache of rendered exports, so a popular question set is rendered once per format rather than
+ * on every download. Files are keyed by set ID, content version (see
+ * {@link DocumentService#contentVersion(QuestionSet)}) and format, so a changed set never matches an old
+ * file. Saving a set also drops its files straight away. The directory is bounded by total size,
+ * evicting the least recently downloaded files first.
+ * <p>
+ * Each file handed out is pinned by an {@link Export} until it is closed, once the download is over.
+ * Eviction passes over pinned files, and a file dropped while pinned is only deleted when its last
+ * download finishes, so a download never loses its file part way through. A file the server sends after
+ * the request has completed, as Tomcat does with sendfile, is released a little later through
+ * {@link #closeLater}.
+ */
+@Service
+public class ExportCache {
+    private static final Logger logger = LoggerFactory.getLogger(ExportCache.class);
+    
+    private static final String TEMP_SUFFIX = ".tmp";
+    
+    private final Path directory;
+    private final long maxBytes;
+    private final boolean enabled;
+    private final Duration releaseDelay;
+    private final ScheduledExecutorService releaser;
+    
+    // File name to entry, least recently used first; guards every entry's pins and removed flag too
+    private final LinkedHashMap<String, Entry> files = new LinkedHashMap<>(16, 0.75f, true);
+    private long totalBytes;
+    
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter evictions;
+    
+    public ExportCache(MeterRegistry meterRegistry,
+                       @Value("${snipreader.export-cache.enabled:true}") boolean enabled,
+                       @Value("${snipreader.export-cache.directory:${java.io.tmpdir}/snipreader-exports}") String directory,
+                       @Value("${snipreader.export-cache.max-size:256MB}") DataSize maxSize,
+                       @Value("${snipreader.export-cache.release-delay:PT30S}") Duration releaseDelay) {
+        this.directory = Path.of(directory).toAbsolutePath();
+        this.maxBytes = maxSize.toBytes();
+        this.releaseDelay = releaseDelay;
+        this.releaser = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "export-cache-release");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.hits = Counter.builder("snipreader.export.cache").tag("result", "hit").register(meterRegistry);
+        this.misses = Counter.builder("snipreader.export.cache").tag("result", "miss").register(meterRegistry);
+        this.evictions = Counter.builder("snipreader.export.cache.evictions").register(meterRegistry);
+        this.enabled = enabled && load();
+        meterRegistry.gauge("snipreader.export.cache.bytes", this, ExportCache::sizeInBytes);
+    }
+    
+    /**
+     * Returns true if exports are cached; otherwise they should be streamed as they are generated.
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+    
+    /**
+     * Returns the export of a question set, pinned until the returned export is closed, rendering it
+     * into the cache first if it is not there. Concurrent misses for the same export may each render
+     * it; the last one to finish is kept.
+     *
+     * @param setId the ID of the question set
+     * @param version the content version of the question set
+     * @param extension the file extension of the format, such as {@code pdf} or {@code docx}
+     * @param documentWriter renders the export on a miss
+     * @return the export, which must be closed once it has been sent
+     * @throws IOException if the export could not be rendered or written to disk
+     * @throws IllegalStateException if the cache is turned off
+     */
+    public Export get(Long setId, String version, String extension, DocumentWriter documentWriter) throws IOException {
+        if (!enabled) {
+            throw new IllegalStateException("The export cache is turned off");
+        }
+        
+        String fileName = setId + "-" + version + "." + extension;
+        synchronized (files) {
+            Entry entry = files.get(fileName);
+            if (entry != null) {
+                hits.increment();
+                return pin(fileName, entry);
+            }
+        }
+        
+        misses.increment();
+        Path temp = render(Files.createTempFile(directory, setId + "-", TEMP_SUFFIX), setId, documentWriter);
+        long size = Files.size(temp);
+        
+        synchronized (files) {
+            // Moved in under the lock, so a pinned file of the same name dropped meanwhile is not deleted on release
+            Files.move(temp, directory.resolve(fileName), StandardCopyOption.ATOMIC_MOVE,
+                    StandardCopyOption.REPLACE_EXISTING);
+            Entry entry = files.get(fileName);
+            if (entry == null) {
+                entry = new Entry(size);
+                files.put(fileName, entry);
+                totalBytes += size;
+            }
+            Export export = pin(fileName, entry);
+            evictOver();
+            return export;
+        }
+    }
+    
+    /**
+     * Closes an export once the release delay has passed, for a file that is read after the request serving
+     * it has completed. Tomcat opens a sendfile file only then, and an open file survives being deleted.
+     *
+     * @param export the export to close
+     */
+    public void closeLater(Export export) {
+        try {
+            releaser.schedule(export::close, releaseDelay.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            // Shutting down; nothing will be sent any more
+            export.close();
+        }
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        releaser.shutdownNow();
+    }
+    
+    /**
+     * Drops every cached export of a question set; files still being downloaded are deleted afterwards.
+     *
+     * @param setId the ID of the question set
+     */
+    public void evict(Long setId) {
+        if (!enabled) {
+            return;
+        }
+        
+        String prefix = setId + "-";
+        synchronized (files) {
+            Iterator<Map.Entry<String, Entry>> iterator = files.entrySet().iterator();
+            while (iterator.hasNext()) {
+                Map.Entry<String, Entry> entry = iterator.next();
+                if (entry.getKey().startsWith(prefix)) {
+                    iterator.remove();
+                    drop(entry.getKey(), entry.getValue());
+                }
+            }
+        }
+    }
+    
+    /**
+     * Drops the exports of saved question sets, whose content may have changed.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onQuestionSetSaved(QuestionSetSavedEvent event) {
+        Optional.ofNullable(event.questionSet().getId()).ifPresent(this::evict);
+    }
+    
+    private Export pin(String fileName, Entry entry) {
+        entry.pins++;
+        return new Export(directory.resolve(fileName), entry.size, () -> release(fileName, entry));
+    }
+    
+    private void release(String fileName, Entry entry) {
+        synchronized (files) {
+            entry.pins--;
+            // A file rendered again since the entry was dropped belongs to the new entry
+            if (entry.removed && entry.pins == 0 && !files.containsKey(fileName)) {
+                delete(fileName);
+            }
+        }
+    }
+    
+    /**
+     * Evicts least recently used files that are not being downloaded until the cache fits its size.
+     */
+    private void evictOver() {
+        Iterator<Map.Entry<String, Entry>> iterator = files.entrySet().iterator();
+        while (totalBytes > maxBytes && iterator.hasNext()) {
+            Map.Entry<String, Entry> eldest = iterator.next();
+            if (eldest.getValue().pins > 0) {
+                continue;
+            }
+            iterator.remove();
+            drop(eldest.getKey(), eldest.getValue());
+            evictions.increment();
+        }
+    }
+    
+    /**
+     * Accounts for an entry taken out of the index, deleting its file unless it is being downloaded.
+     */
+    private void drop(String fileName, Entry entry) {
+        totalBytes -= entry.size;
+        entry.removed = true;
+        if (entry.pins == 0) {
+            delete(fileName);
+        }
+    }
+    
+    private Path render(Path temp, Long setId, DocumentWriter documentWriter) throws IOException {
+        try {
+            try (OutputStream outputStream = new BufferedOutputStream(Files.newOutputStream(temp))) {
+                documentWriter.write(outputStream);
+            }
+            return temp;
+        } catch (DocumentException e) {
+            Files.deleteIfExists(temp);
+            throw new IOException("Error generating export of question set " + setId, e);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+    }
+    
+    /**
+     * Indexes the files left by a previous run, oldest first, and removes unfinished ones.
+     *
+     * @return false if the directory cannot be used
+     */
+    private boolean load() {
+        List<Path> existing = new ArrayList<>();
+        try {
+            Files.createDirectories(directory);
+            try (Stream<Path> paths = Files.list(directory)) {
+                paths.filter(Files::isRegularFile).forEach(existing::add);
+            }
+            existing.sort(Comparator.comparing(ExportCache::lastModified));
+            for (Path path : existing) {
+                String fileName = path.getFileName().toString();
+                if (fileName.endsWith(TEMP_SUFFIX)) {
+                    Files.deleteIfExists(path);
+                } else {
+                    long size = Files.size(path);
+                    files.put(fileName, new Entry(size));
+                    totalBytes += size;
+                }
+            }
+        } catch (IOException e) {
+            logger.warn("Export cache directory {} is not usable; exports will not be cached", directory, e);
+            return false;
+        }
+        
+        evictOver();
+        logger.info("Export cache in {} holds {} files ({} bytes)", directory, files.size(), totalBytes);
+        return true;
+    }
+    
+    private void delete(String fileName) {
+        delete(directory.resolve(fileName));
+    }
+    
+    private static void delete(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            logger.warn("Could not delete export {}", file, e);
+        }
+    }
+    
+    private double sizeInBytes() {
+        synchronized (files) {
+            return totalBytes;
+        }
+    }
+    
+    private static FileTime lastModified(Path path) {
+        try {
+            return Files.getLastModifiedTime(path);
+        } catch (IOException e) {
+            return FileTime.fromMillis(0);
+        }
+    }
+    
+    private static class Entry {
+        final long size;
+        int pins;
+        boolean removed;
+        
+        Entry(long size) {
+            this.size = size;
+        }
+    }
+    
+    /**
+     * A cached export, pinned on disk until it is closed.
+     */
+    public static final class Export implements AutoCloseable {
+        private final Path file;
+        private final long size;
+        private final Runnable release;
+        private boolean closed;
+        
+        private Export(Path file, long size, Runnable release) {
+            this.file = file;
+            this.size = size;
+            this.release = release;
+        }
+        
+        /**
+         * @return the file holding the export
+         */
+        public Path file() {
+            return file;
+        }
+        
+        /**
+         * @return the size of the export in bytes
+         */
+        public long size() {
+            return size;
+        }
+        
+        /**
+         * Unpins the export. Closing more than once has no further effect.
+         */
+        @Override
+        public synchronized void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            release.run();
+        }
+    }
+}
@@ -0,0 +1,222 @@
+package com.example.snipreader.service;
+
+import com.example.snipreader.model.ExtractionCacheEntry;
+import com.example.snipreader.model.Question;
+import com.example.snipreader.repository.ExtractionCacheRepository;
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.commons.codec.binary.Hex;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Content-addressed cache of Gemini extraction results.
+ * Results are keyed by the SHA-256 of the decoded image bytes, the model name and the prompt version,
+ * and held in a bounded in-memory LRU tier (with TTL) in front of a persistent tier in the database.
+ * Persistent entries expire after their own, longer TTL and are deleted on a schedule.
+ * Cached questions are stored as JSON so every lookup returns fresh, unsaved {@link Question} entities.
+ */
+@Service
+public class ExtractionCache {
+    private static final Logger logger = LoggerFactory.getLogger(ExtractionCache.class);
+    
+    private final ExtractionCacheRepository repository;
+    private final Gson gson = new Gson();
+    private final Map<String, MemoryEntry> memoryTier;
+    
+    private final boolean enabled;
+    private final long ttlMillis;
+    private final Duration persistentTtl;
+    
+    private final Counter memoryHits;
+    private final Counter persistentHits;
+    private final Counter misses;
+    
+    public ExtractionCache(ExtractionCacheRepository repository,
+                           MeterRegistry meterRegistry,
+                           @Value("${snipreader.cache.enabled:true}") boolean enabled,
+                           @Value("${snipreader.cache.memory.max-entries:256}") int maxEntries,
+                           @Value("${snipreader.cache.memory.ttl:PT1H}") Duration ttl,
+                           @Value("${snipreader.cache.persistent.ttl:P30D}") Duration persistentTtl) {
+        this.repository = repository;
+        this.enabled = enabled;
+        this.ttlMillis = ttl.toMillis();
+        this.persistentTtl = persistentTtl;
+        this.memoryTier = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, MemoryEntry> eldest) {
+                return size() > maxEntries;
+            }
+        };
+        
+        this.memoryHits = Counter.builder("snipreader.extraction.cache")
+                .tag("result", "hit").tag("tier", "memory").register(meterRegistry);
+        this.persistentHits = Counter.builder("snipreader.extraction.cache")
+                .tag("result", "hit").tag("tier", "persistent").register(meterRegistry);
+        this.misses = Counter.builder("snipreader.extraction.cache")
+                .tag("result", "miss").register(meterRegistry);
+        meterRegistry.gauge("snipreader.extraction.cache.memory.size", memoryTier, this::memorySize);
+    }
+    
+    /**
+     * Computes the SHA-256 digest of the given image bytes as a hex string.
+     *
+     * @param imageBytes the decoded image bytes
+     * @return the hex-encoded digest
+     */
+    public static String digest(byte[] imageBytes) {
+        return Hex.encodeHexString(sha256().digest(imageBytes));
+    }
+    
+    /**
+     * Builds the cache key for an image digest, model and prompt version.
+     *
+     * @param imageDigest the hex digest of the image bytes
+     * @param model the Gemini model name
+     * @param promptVersion the version of the extraction prompt
+     * @return the cache key
+     */
+    public static String keyFor(String imageDigest, String model, String promptVersion) {
+        String material = imageDigest + '|' + model + '|' + promptVersion;
+        return Hex.encodeHexString(sha256().digest(material.getBytes(StandardCharsets.UTF_8)));
+    }
+    
+    /**
+     * Looks up a previous extraction, checking the in-memory tier before the persistent one.
+     *
+     * @param cacheKey the key built by {@link #keyFor(String, String, String)}
+     * @return fresh copies of the cached questions, or empty on a miss
+     */
+    public Optional<List<Question>> get(String cacheKey) {
+        if (!enabled) {
+            return Optional.empty();
+        }
+        
+        String questionsJson = getFromMemory(cacheKey);
+        if (questionsJson != null) {
+            memoryHits.increment();
+            return Optional.of(toQuestions(questionsJson));
+        }
+        
+        try {
+            Optional<ExtractionCacheEntry> entry = repository.findById(cacheKey).filter(this::isFresh);
+            if (entry.isPresent()) {
+                persistentHits.increment();
+                putInMemory(cacheKey, entry.get().getQuestionsJson());
+                return Optional.of(toQuestions(entry.get().getQuestionsJson()));
+            }
+        } catch (Exception e) {
+            logger.warn("Could not read extraction cache entry {}", cacheKey, e);
+        }
+        
+        misses.increment();
+        return Optional.empty();
+    }
+    
+    /**
+     * Stores the result of an extraction in both tiers.
+     *
+     * @param cacheKey the key built by {@link #keyFor(String, String, String)}
+     * @param imageDigest the hex digest of the image bytes
+     * @param model the Gemini model name
+     * @param promptVersion the version of the extraction prompt
+     * @param questions the extracted questions
+     */
+    public void put(String cacheKey, String imageDigest, String model, String promptVersion, List<Question> questions) {
+        if (!enabled) {
+            return;
+        }
+        
+        String questionsJson = gson.toJson(QuestionJsonMapper.toJsonArray(questions));
+        putInMemory(cacheKey, questionsJson);
+        
+        try {
+            repository.save(new ExtractionCacheEntry(cacheKey, imageDigest, model, promptVersion, questionsJson));
+        } catch (Exception e) {
+            logger.warn("Could not persist extraction cache entry {}", cacheKey, e);
+        }
+    }
+    
+    /**
+     * Deletes persistent entries older than the persistent TTL and drops expired entries from memory.
+     */
+    @Scheduled(fixedDelayString = "${snipreader.cache.persistent.eviction-interval:PT1H}")
+    public void evictExpiredEntries() {
+        long now = System.currentTimeMillis();
+        synchronized (memoryTier) {
+            memoryTier.values().removeIf(entry -> entry.expiresAt < now);
+        }
+        
+        try {
+            int deleted = repository.deleteCreatedBefore(LocalDateTime.now().minus(persistentTtl));
+            if (deleted > 0) {
+                logger.info("Deleted {} expired extraction cache entries", deleted);
+            }
+        } catch (Exception e) {
+            logger.warn("Could not delete expired extraction cache entries", e);
+        }
+    }
+    
+    /**
+     * Entries stay readable until the scheduled cleanup deletes them, so expiry is checked on read as well.
+     */
+    private boolean isFresh(ExtractionCacheEntry entry) {
+        return entry.getCreatedAt() != null && !entry.getCreatedAt().isBefore(LocalDateTime.now().minus(persistentTtl));
+    }
+    
+    private String getFromMemory(String cacheKey) {
+        synchronized (memoryTier) {
+            MemoryEntry entry = memoryTier.get(cacheKey);
+            if (entry == null) {
+                return null;
+            }
+            if (entry.expiresAt < System.currentTimeMillis()) {
+                memoryTier.remove(cacheKey);
+                return null;
+            }
+            return entry.questionsJson;
+        }
+    }
+    
+    private void putInMemory(String cacheKey, String questionsJson) {
+        synchronized (memoryTier) {
+            memoryTier.put(cacheKey, new MemoryEntry(questionsJson, System.currentTimeMillis() + ttlMillis));
+        }
+    }
+    
+    private double memorySize(Map<String, MemoryEntry> tier) {
+        synchronized (tier) {
+            return tier.size();
+        }
+    }
+    
+    private List<Question> toQuestions(String questionsJson) {
+        return QuestionJsonMapper.fromJsonArray(gson.fromJson(questionsJson, JsonArray.class));
+    }
+    
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+    
+    private record MemoryEntry(String questionsJson, long expiresAt) {
+    }
+}
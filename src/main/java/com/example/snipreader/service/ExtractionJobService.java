@@ -0,0 +1,396 @@
+package com.example.snipreader.service;
+
+import com.example.snipreader.model.ExtractionJob;
+import com.example.snipreader.model.ExtractionJob.Stage;
+import com.example.snipreader.model.Question;
+import com.example.snipreader.service.QuestionExtractionService.ExtractionResult;
+import com.example.snipreader.service.resilience.GeminiUnavailableException;
+import com.google.gson.Gson;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Runs screenshot extractions on a bounded worker pool so request threads are not held
+ * for the duration of the Gemini call. Progress is published to Server-Sent Event subscribers
+ * and can also be polled through {@link #getJob(String)}.
+ */
+@Service
+public class ExtractionJobService {
+    private static final Logger logger = LoggerFactory.getLogger(ExtractionJobService.class);
+    
+    private final QuestionExtractionService questionExtractionService;
+    private final ScrollCaptureService scrollCaptureService;
+    private final MeterRegistry meterRegistry;
+    private final ThreadPoolExecutor executor;
+    private final Map<String, ExtractionJob> jobs = new ConcurrentHashMap<>();
+    private final Map<String, List<SseEmitter>> subscribers = new ConcurrentHashMap<>();
+    // Queues a job's input again without the similarity check, kept while the job may still match an earlier set.
+    // Each holds the job's image, so only the most recent ones are kept
+    private final Map<String, Supplier<ExtractionJob>> resubmissions = Collections.synchronizedMap(
+            new LinkedHashMap<>() {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Supplier<ExtractionJob>> eldest) {
+                    return size() > maxResubmissions;
+                }
+            });
+    private final Gson gson = new Gson();
+    private final Duration retention;
+    private final long emitterTimeoutMillis;
+    private final int maxResubmissions;
+    
+    private final Counter completedJobs;
+    private final Counter failedJobs;
+    private final Counter rejectedJobs;
+    
+    public ExtractionJobService(QuestionExtractionService questionExtractionService,
+                                ScrollCaptureService scrollCaptureService,
+                                MeterRegistry meterRegistry,
+                                @Value("${snipreader.jobs.workers:4}") int workers,
+                                @Value("${snipreader.jobs.queue-capacity:100}") int queueCapacity,
+                                @Value("${snipreader.jobs.retention:PT1H}") Duration retention,
+                                @Value("${snipreader.jobs.sse-timeout:PT5M}") Duration sseTimeout,
+                                @Value("${snipreader.jobs.max-resubmissions:20}") int maxResubmissions) {
+        this.questionExtractionService = questionExtractionService;
+        this.scrollCaptureService = scrollCaptureService;
+        this.meterRegistry = meterRegistry;
+        this.retention = retention;
+        this.emitterTimeoutMillis = sseTimeout.toMillis();
+        this.maxResubmissions = maxResubmissions;
+        
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(workers, workers, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+                    Thread thread = new Thread(runnable, "extraction-worker-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        
+        meterRegistry.gauge("snipreader.jobs.queue.depth", executor, pool -> pool.getQueue().size());
+        meterRegistry.gauge("snipreader.jobs.workers.active", executor, ThreadPoolExecutor::getActiveCount);
+        meterRegistry.gauge("snipreader.jobs.workers.max", executor, ThreadPoolExecutor::getMaximumPoolSize);
+        this.completedJobs = Counter.builder("snipreader.jobs").tag("outcome", "completed").register(meterRegistry);
+        this.failedJobs = Counter.builder("snipreader.jobs").tag("outcome", "failed").register(meterRegistry);
+        this.rejectedJobs = Counter.builder("snipreader.jobs").tag("outcome", "rejected").register(meterRegistry);
+    }
+    
+    /**
+     * Queues a screenshot for extraction.
+     *
+     * @param imageBytes the decoded image bytes
+     * @param title the title for the question set
+     * @param skipSimilar true to always extract, even when a similar screenshot has been processed before
+     * @return the queued job
+     * @throws RejectedExecutionException if the queue is full
+     */
+    public ExtractionJob submit(byte[] imageBytes, String title, boolean skipSimilar) {
+        return submit(title, listener -> questionExtractionService.extract(imageBytes, title, skipSimilar, listener),
+                skipSimilar ? null : () -> submit(imageBytes, title, true), executor);
+    }
+    
+    /**
+     * Queues pasted question text for answering.
+     *
+     * @param text the pasted text
+     * @param imageBytes a screenshot of the same questions to fall back to, or null
+     * @param title the title for the question set
+     * @param skipSimilar passed on to the screenshot path when it is used
+     * @return the queued job
+     * @throws RejectedExecutionException if the queue is full
+     */
+    public ExtractionJob submitText(String text, byte[] imageBytes, String title, boolean skipSimilar) {
+        return submit(title, listener -> questionExtractionService.extractText(text, imageBytes, title, skipSimilar,
+                listener), skipSimilar || imageBytes == null ? null : () -> submitText(text, imageBytes, title, true),
+                executor);
+    }
+    
+    /**
+     * Queues the next screenshot of a scrolling capture. Only the part not seen in the capture's
+     * previous screenshot is extracted, and its questions go into the capture's question set.
+     * <p>
+     * A capture's screenshots go through its own queue, so a worker only picks one up once the screenshots
+     * before it have finished, and this returns straight away even while an earlier one is still extracting.
+     *
+     * @param captureId the capture ID from {@link ScrollCaptureService#startCapture()}
+     * @param imageBytes the decoded image bytes
+     * @param title the title for the question set
+     * @return the queued job
+     * @throws RejectedExecutionException if the queue, or the capture's queue, is full
+     */
+    public ExtractionJob submitScreenshot(String captureId, byte[] imageBytes, String title) {
+        ScrollCaptureService.Ticket ticket = scrollCaptureService.queue(captureId);
+        return submit(title, listener -> scrollCaptureService.addScreenshot(ticket, imageBytes, title, listener),
+                null, task -> scrollCaptureService.execute(ticket, executor, task));
+    }
+    
+    /**
+     * Processes the input of a job that matched an earlier question set again, this time without
+     * looking for similar screenshots, for when the match was wrong.
+     *
+     * @param jobId the ID of the job that matched an earlier set
+     * @return the queued job, or empty if the job did not match a set, is no longer retained, or its input
+     *         has been let go to make room for the input of newer jobs
+     * @throws RejectedExecutionException if the queue is full
+     */
+    public Optional<ExtractionJob> processAnyway(String jobId) {
+        ExtractionJob job = jobs.get(jobId);
+        Supplier<ExtractionJob> resubmission = job != null && job.isSimilarMatch() ? resubmissions.remove(jobId) : null;
+        if (resubmission == null) {
+            return Optional.empty();
+        }
+        
+        try {
+            return Optional.of(resubmission.get());
+        } catch (RejectedExecutionException e) {
+            resubmissions.put(jobId, resubmission);
+            throw e;
+        }
+    }
+    
+    private ExtractionJob submit(String title, ExtractionTask task, Supplier<ExtractionJob> resubmission,
+                                 Executor jobExecutor) {
+        ExtractionJob job = new ExtractionJob(title);
+        jobs.put(job.getId(), job);
+        if (resubmission != null) {
+            resubmissions.put(job.getId(), resubmission);
+        }
+        try {
+            jobExecutor.execute(() -> run(job, task));
+        } catch (RejectedExecutionException e) {
+            jobs.remove(job.getId());
+            resubmissions.remove(job.getId());
+            rejectedJobs.increment();
+            throw e;
+        }
+        
+        logger.info("Queued extraction job {} ({} waiting)", job.getId(), executor.getQueue().size());
+        return job;
+    }
+    
+    /**
+     * Finds a job by ID.
+     *
+     * @param jobId the job ID
+     * @return the job, if it is still retained
+     */
+    public Optional<ExtractionJob> getJob(String jobId) {
+        return Optional.ofNullable(jobs.get(jobId));
+    }
+    
+    /**
+     * Subscribes to the progress of a job. Questions streamed so far and the current stage are sent
+     * straight away, and the emitter is completed once the job finishes.
+     *
+     * @param job the job to follow
+     * @return the emitter streaming the job's events
+     */
+    public SseEmitter subscribe(ExtractionJob job) {
+        SseEmitter emitter = new SseEmitter(emitterTimeoutMillis);
+        List<SseEmitter> jobSubscribers = subscribers.computeIfAbsent(job.getId(), id -> new CopyOnWriteArrayList<>());
+        emitter.onCompletion(() -> jobSubscribers.remove(emitter));
+        emitter.onTimeout(() -> jobSubscribers.remove(emitter));
+        emitter.onError(e -> jobSubscribers.remove(emitter));
+        
+        synchronized (job) {
+            jobSubscribers.add(emitter);
+            for (String questionJson : job.getPreviewQuestions()) {
+                sendQuestion(job, emitter, questionJson);
+            }
+            send(job, emitter);
+        }
+        return emitter;
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+    
+    private void run(ExtractionJob job, ExtractionTask task) {
+        StageTimer stageTimer = new StageTimer(job);
+        try {
+            ExtractionResult result = task.run(stageTimer);
+            stageTimer.finish();
+            
+            synchronized (job) {
+                if (result.questionSetId() == null) {
+                    job.setError("No questions could be extracted");
+                    job.setStage(Stage.FAILED);
+                } else {
+                    job.setQuestionSetId(result.questionSetId());
+                    job.setSimilarMatch(result.similarMatch());
+                    job.setStage(Stage.COMPLETED);
+                }
+            }
+        } catch (GeminiUnavailableException e) {
+            logger.warn("Gemini unavailable for job {}", job.getId(), e);
+            fail(job, stageTimer, e.getMessage());
+        } catch (IOException e) {
+            logger.error("Error processing the image for job {}", job.getId(), e);
+            fail(job, stageTimer, "Error processing the image: " + e.getMessage());
+        } catch (Exception e) {
+            logger.error("Unexpected error in job {}", job.getId(), e);
+            fail(job, stageTimer, "An unexpected error occurred: " + e.getMessage());
+        }
+        
+        if (!job.isSimilarMatch()) {
+            // Only a job that matched an earlier set offers to process its input again
+            resubmissions.remove(job.getId());
+        }
+        (job.getStage() == Stage.COMPLETED ? completedJobs : failedJobs).increment();
+        publish(job);
+    }
+    
+    private void fail(ExtractionJob job, StageTimer stageTimer, String message) {
+        stageTimer.finish();
+        synchronized (job) {
+            job.setError(message);
+            job.setStage(Stage.FAILED);
+        }
+    }
+    
+    private void publish(ExtractionJob job) {
+        List<SseEmitter> jobSubscribers = subscribers.get(job.getId());
+        if (jobSubscribers == null) {
+            return;
+        }
+        synchronized (job) {
+            for (SseEmitter emitter : jobSubscribers) {
+                send(job, emitter);
+            }
+        }
+    }
+    
+    private void publishQuestion(ExtractionJob job, Question question) {
+        String questionJson = gson.toJson(QuestionJsonMapper.toJson(question));
+        synchronized (job) {
+            job.getPreviewQuestions().add(questionJson);
+            List<SseEmitter> jobSubscribers = subscribers.get(job.getId());
+            if (jobSubscribers != null) {
+                for (SseEmitter emitter : jobSubscribers) {
+                    sendQuestion(job, emitter, questionJson);
+                }
+            }
+        }
+    }
+    
+    private void sendQuestion(ExtractionJob job, SseEmitter emitter, String questionJson) {
+        try {
+            emitter.send(SseEmitter.event().name("question").data(questionJson, MediaType.APPLICATION_JSON));
+        } catch (IOException | IllegalStateException e) {
+            logger.debug("Could not send question for job {}", job.getId(), e);
+        }
+    }
+    
+    private void send(ExtractionJob job, SseEmitter emitter) {
+        try {
+            if (job.getStage() == Stage.COMPLETED) {
+                emitter.send(SseEmitter.event().name("completed").data(job.getResultUrl()));
+                emitter.complete();
+            } else if (job.getStage() == Stage.FAILED) {
+                emitter.send(SseEmitter.event().name("failed").data(job.getError()));
+                emitter.complete();
+            } else {
+                emitter.send(SseEmitter.event().name("stage").data(job.getStage().name()));
+            }
+        } catch (IOException | IllegalStateException e) {
+            // The browser went away; the emitter's callbacks take care of unsubscribing it
+            logger.debug("Could not send event for job {}", job.getId(), e);
+        }
+    }
+    
+    /**
+     * Forgets jobs that finished longer ago than the retention period, along with their subscribers and
+     * the input kept to process them again.
+     */
+    @Scheduled(fixedDelayString = "${snipreader.jobs.eviction-interval:PT1M}")
+    public void evictExpiredJobs() {
+        Instant cutoff = Instant.now().minus(retention);
+        jobs.values().removeIf(job -> {
+            boolean expired = job.getFinishedAt() != null && job.getFinishedAt().isBefore(cutoff);
+            if (expired) {
+                subscribers.remove(job.getId());
+                resubmissions.remove(job.getId());
+            }
+            return expired;
+        });
+    }
+    
+    /**
+     * The work a job does, reporting progress to the given listener.
+     */
+    @FunctionalInterface
+    private interface ExtractionTask {
+        ExtractionResult run(ExtractionListener listener) throws IOException;
+    }
+    
+    /**
+     * Moves a job through its stages, publishing each one and timing how long it took.
+     */
+    private class StageTimer implements ExtractionListener {
+        private final ExtractionJob job;
+        private Stage currentStage;
+        private long stageStart;
+        
+        StageTimer(ExtractionJob job) {
+            this.job = job;
+            // Time spent waiting for a worker counts as the queued stage
+            stageTimer(Stage.QUEUED).record(Duration.between(job.getCreatedAt(), Instant.now()));
+        }
+        
+        @Override
+        public void onStage(Stage stage) {
+            finish();
+            currentStage = stage;
+            stageStart = System.nanoTime();
+            synchronized (job) {
+                job.setStage(stage);
+            }
+            publish(job);
+        }
+        
+        @Override
+        public void onQuestion(Question question) {
+            publishQuestion(job, question);
+        }
+        
+        void finish() {
+            if (currentStage != null) {
+                stageTimer(currentStage).record(System.nanoTime() - stageStart, TimeUnit.NANOSECONDS);
+                currentStage = null;
+            }
+        }
+        
+        private Timer stageTimer(Stage stage) {
+            return Timer.builder("snipreader.jobs.stage")
+                    .tag("stage", stage.name().toLowerCase())
+                    .register(meterRegistry);
+        }
+    }
+}
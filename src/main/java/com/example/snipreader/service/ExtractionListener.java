@@ -0,0 +1,32 @@
+package com.example.snipreader.service;
+
+import com.example.snipreader.model.ExtractionJob;
+import com.example.snipreader.model.Question;
+
+/**
+ * Callback for following a screenshot through the extraction pipeline.
+ */
+public interface ExtractionListener {
+    
+    /**
+     * Listener that ignores all progress.
+     */
+    ExtractionListener NONE = new ExtractionListener() {
+    };
+    
+    /**
+     * Called when the pipeline moves on to a new stage.
+     *
+     * @param stage the stage that is starting
+     */
+    default void onStage(ExtractionJob.Stage stage) {
+    }
+    
+    /**
+     * Called for each question as soon as it has been extracted, before the set is saved.
+     *
+     * @param question the extracted question
+     */
+    default void onQuestion(Question question) {
+    }
+}
@@ -0,0 +1,119 @@
+package com.example.snipreader.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.client.RestTemplateBuilder;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.http.StreamingHttpOutputMessage;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StreamUtils;
+import org.springframework.web.client.ResponseExtractor;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.http.HttpClient;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * HTTP client for the Gemini REST API.
+ * A single JDK {@link HttpClient} is shared by all calls, so connections (and their TLS sessions)
+ * are kept alive and reused, and concurrent calls are multiplexed over HTTP/2 where the server allows it.
+ * Request bodies are written as the client sends them, with no Content-Length, so they go out chunked
+ * (or as HTTP/2 data frames) without being held in memory; every call has a deadline.
+ */
+@Component
+public class GeminiClient {
+    private static final Logger logger = LoggerFactory.getLogger(GeminiClient.class);
+    private static final String GENERATE_CONTENT_PATH = "/models/{model}:generateContent";
+    private static final String STREAM_GENERATE_CONTENT_PATH = "/models/{model}:streamGenerateContent?alt=sse";
+    
+    private final RestTemplate restTemplate;
+    private final String baseUrl;
+    private final String apiKey;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    
+    /**
+     * Reads the body of a Gemini response.
+     */
+    @FunctionalInterface
+    interface BodyReader<T> {
+        T read(InputStream body) throws IOException;
+    }
+    
+    public GeminiClient(RestTemplateBuilder restTemplateBuilder,
+                        MeterRegistry meterRegistry,
+                        @Value("${gemini.api.key}") String apiKey,
+                        @Value("${gemini.base-url:https://generativelanguage.googleapis.com/v1beta}") String baseUrl,
+                        @Value("${gemini.connect-timeout:PT10S}") Duration connectTimeout,
+                        @Value("${gemini.request-timeout:PT120S}") Duration requestTimeout,
+                        @Value("${gemini.http2:true}") boolean http2) {
+        this.apiKey = apiKey;
+        this.baseUrl = baseUrl.endsWith("/") ? baseUrl.substring(0, baseUrl.length() - 1) : baseUrl;
+        
+        HttpClient httpClient = HttpClient.newBuilder()
+                .version(http2 ? HttpClient.Version.HTTP_2 : HttpClient.Version.HTTP_1_1)
+                .connectTimeout(connectTimeout)
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .build();
+        
+        JdkClientHttpRequestFactory requestFactory = new JdkClientHttpRequestFactory(httpClient);
+        requestFactory.setReadTimeout(requestTimeout);
+        
+        // The builder adds the http.client.requests observation, so every call is timed by status and outcome
+        this.restTemplate = restTemplateBuilder.requestFactory(() -> requestFactory).build();
+        
+        meterRegistry.gauge("snipreader.gemini.requests.in-flight", inFlight);
+        logger.info("Gemini client using {} over {}", this.baseUrl, httpClient.version());
+    }
+    
+    /**
+     * Calls {@code generateContent} and returns the raw response JSON.
+     *
+     * @param model the Gemini model name
+     * @param body the request body
+     * @return the response JSON
+     */
+    String generateContent(String model, GeminiRequestBody body) {
+        return post(GENERATE_CONTENT_PATH, model, body,
+                responseBody -> StreamUtils.copyToString(responseBody, StandardCharsets.UTF_8));
+    }
+    
+    /**
+     * Calls {@code streamGenerateContent} in Server-Sent Events mode, passing the open event stream to the reader.
+     *
+     * @param model the Gemini model name
+     * @param body the request body
+     * @param reader reads the event stream as it arrives
+     * @return the value produced by the reader
+     */
+    <T> T streamGenerateContent(String model, GeminiRequestBody body, BodyReader<T> reader) {
+        return post(STREAM_GENERATE_CONTENT_PATH, model, body, reader);
+    }
+    
+    private <T> T post(String path, String model, GeminiRequestBody body, BodyReader<T> reader) {
+        ResponseExtractor<T> extractor = response -> reader.read(response.getBody());
+        
+        inFlight.incrementAndGet();
+        try {
+            return restTemplate.execute(baseUrl + path, HttpMethod.POST, request -> {
+                request.getHeaders().setContentType(MediaType.APPLICATION_JSON);
+                request.getHeaders().set("x-goog-api-key", apiKey);
+                if (request instanceof StreamingHttpOutputMessage streamingRequest) {
+                    // Pulled by the JDK client as it sends; getBody() would collect the whole body in memory first
+                    streamingRequest.setBody(body::writeTo);
+                } else {
+                    body.writeTo(request.getBody());
+                }
+            }, extractor, model);
+        } finally {
+            inFlight.decrementAndGet();
+        }
+    }
+}
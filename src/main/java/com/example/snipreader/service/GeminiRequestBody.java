@@ -0,0 +1,76 @@
+package com.example.snipreader.service;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import org.apache.commons.io.output.CloseShieldOutputStream;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * JSON body of a Gemini {@code generateContent} request, written straight to the HTTP connection.
+ * The image is Base64-encoded on the fly while it is copied from its input stream, so no encoded
+ * String, JSON tree or serialized body of the full payload is ever built in memory.
+ */
+final class GeminiRequestBody {
+    
+    private static final Gson GSON = new Gson();
+    
+    /**
+     * Opens the image to be sent; called once per write, so a retried request can re-read it.
+     */
+    @FunctionalInterface
+    interface ImageSource {
+        InputStream open() throws IOException;
+    }
+    
+    private final String prompt;
+    private final String mimeType;
+    private final ImageSource image;
+    private final JsonObject generationConfig;
+    
+    /**
+     * Creates a request body.
+     *
+     * @param prompt the text prompt
+     * @param mimeType the MIME type of the image, or null for a text-only request
+     * @param image the image to send, or null for a text-only request
+     * @param generationConfig the generation config object
+     */
+    GeminiRequestBody(String prompt, String mimeType, ImageSource image, JsonObject generationConfig) {
+        this.prompt = prompt;
+        this.mimeType = mimeType;
+        this.image = image;
+        this.generationConfig = generationConfig;
+    }
+    
+    /**
+     * Writes the request JSON to the given stream, which is left open.
+     *
+     * @param out the stream to write to
+     * @throws IOException if the image cannot be read or the stream cannot be written
+     */
+    void writeTo(OutputStream out) throws IOException {
+        StringBuilder prefix = new StringBuilder(prompt.length() + 128)
+                .append("{\"contents\":[{\"parts\":[{\"text\":").append(GSON.toJson(prompt)).append('}');
+        if (image != null) {
+            prefix.append(",{\"inlineData\":{\"mimeType\":").append(GSON.toJson(mimeType)).append(",\"data\":\"");
+        }
+        out.write(prefix.toString().getBytes(StandardCharsets.UTF_8));
+        
+        if (image != null) {
+            // Base64 output is JSON-safe, so it can go between the quotes unescaped
+            try (InputStream imageStream = image.open();
+                 OutputStream base64 = Base64.getEncoder().wrap(CloseShieldOutputStream.wrap(out))) {
+                imageStream.transferTo(base64);
+            }
+            out.write("\"}}".getBytes(StandardCharsets.UTF_8));
+        }
+        
+        out.write(("]}],\"generationConfig\":" + GSON.toJson(generationConfig) + "}").getBytes(StandardCharsets.UTF_8));
+        out.flush();
+    }
+}
@@ -1,23 +1,43 @@
 package com.example.snipreader.service;
 
 import com.example.snipreader.model.Question;
+import com.example.snipreader.service.image.ImagePreprocessor;
+import com.example.snipreader.service.image.PreparedImage;
+import com.example.snipreader.service.resilience.GeminiResilience;
 import com.google.gson.Gson;
 import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
+import com.google.gson.stream.JsonReader;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
 import org.apache.commons.codec.binary.Base64;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.http.HttpEntity;
-import org.springframework.http.HttpHeaders;
-import org.springframework.http.MediaType;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.RestTemplate;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
 
 /**
  * Service for processing images with Google's Gemini 2.5 Flash API to extract MCQ questions and generate answers.
@@ -25,10 +45,57 @@ import java.util.List;
 @Service
 public class GeminiService {
     private static final Logger logger = LoggerFactory.getLogger(GeminiService.class);
-    private static final String GEMINI_API_URL = "https://generativelanguage.googleapis.com/v1beta/models/%s:generateContent?key=%s";
     
-    @Value("${gemini.api.key}")
-    private String apiKey;
+    // Bump whenever EXTRACTION_PROMPT changes so cached extractions are not reused
+    static final String PROMPT_VERSION = "v1";
+    
+    static final String EXTRACTION_PROMPT = "Analyze this image containing questions. " +
+            "The questions could be multiple-choice questions (MCQs) or general questions without options. " +
+            "Extract each question and provide the correct answer with a brief explanation. " +
+            "Format your response as a JSON array with objects for each question. " +
+            
+            "For MCQ questions: " +
+            "Include 'questionText', 'options' (as an array), 'answer' (just the letter), 'explanation', and set 'type' to 'MCQ'. " +
+            "Example: [{\"type\":\"MCQ\",\"questionText\":\"What is 2+2?\",\"options\":[\"3\",\"4\",\"5\",\"6\"],\"answer\":\"B\",\"explanation\":\"2+2=4\"}] " +
+            
+            "For general questions without options: " +
+            "Include 'questionText', 'answer' (the full answer text), 'explanation', and set 'type' to 'GENERAL'. " +
+            "Example: [{\"type\":\"GENERAL\",\"questionText\":\"What is the capital of France?\",\"answer\":\"Paris\",\"explanation\":\"Paris is the capital and most populous city of France.\"}] " +
+            
+            "If you're not sure if it's an MCQ, process it as a general question.";
+    
+    // Bump whenever STRUCTURED_PROMPT or the response schema changes
+    static final String STRUCTURED_PROMPT_VERSION = "v2-structured";
+    
+    // The response schema fixes the JSON shape, so the prompt only has to describe the task
+    static final String STRUCTURED_PROMPT = "Extract every question in this image and answer it. " +
+            "Use type MCQ with the options in order and the answer as the option letter, " +
+            "or type GENERAL with the full answer text when there are no options or you are unsure. " +
+            "Keep each explanation brief.";
+    
+    // Prefix for the versions of the text-only prompts below
+    static final String TEXT_PROMPT_VERSION = "text-v2";
+    
+    static final String STRUCTURED_ANSWER_PROMPT = "Answer each of the following questions. " +
+            "Return one item per question, in the same order, with the question text and options as given and a brief explanation. " +
+            "Use type MCQ with the answer as the option letter for questions with options, " +
+            "or type GENERAL with the full answer text for questions without options.";
+    
+    static final String ANSWER_PROMPT = STRUCTURED_ANSWER_PROMPT + " " +
+            "Format your response as a JSON array of objects with 'type', 'questionText', 'options', 'answer' and 'explanation'. " +
+            "Example: [{\"type\":\"MCQ\",\"questionText\":\"What is 2+2?\",\"options\":[\"3\",\"4\",\"5\",\"6\"],\"answer\":\"B\",\"explanation\":\"2+2=4\"}]";
+    
+    // Prefix for the versions of the transcription prompts below
+    static final String TRANSCRIBE_PROMPT_VERSION = "transcribe-v1";
+    
+    // Transcription leaves the answers empty, so Gemini only writes out the questions
+    static final String STRUCTURED_TRANSCRIBE_PROMPT = "Transcribe every question in this image exactly as written, " +
+            "without answering it. Use type MCQ with the options in order, or type GENERAL when there are no options. " +
+            "Leave answer and explanation as empty strings.";
+    
+    static final String TRANSCRIBE_PROMPT = STRUCTURED_TRANSCRIBE_PROMPT + " " +
+            "Format your response as a JSON array of objects with 'type', 'questionText', 'options', 'answer' and 'explanation'. " +
+            "Example: [{\"type\":\"MCQ\",\"questionText\":\"What is 2+2?\",\"options\":[\"3\",\"4\",\"5\",\"6\"],\"answer\":\"\",\"explanation\":\"\"}]";
     
     @Value("${gemini.model}")
     private String model;
@@ -39,12 +106,46 @@ public class GeminiService {
     @Value("${gemini.temperature:0.4}")
     private double temperature;
     
-    private final RestTemplate restTemplate;
+    @Value("${gemini.streaming:true}")
+    private boolean streaming;
+    
+    @Value("${gemini.structured-output:true}")
+    private boolean structuredOutput;
+    
+    private final GeminiClient geminiClient;
     private final Gson gson;
+    private final ExtractionCache extractionCache;
+    private final ImagePreprocessor imagePreprocessor;
+    private final GeminiResilience resilience;
+    private final SingleFlight<String, List<Question>> extractions = new SingleFlight<>();
+    private final Counter coalescedRequests;
+    private final MeterRegistry meterRegistry;
+    private final ExecutorService tileExecutor;
     
-    public GeminiService() {
-        this.restTemplate = new RestTemplate();
+    public GeminiService(GeminiClient geminiClient, ExtractionCache extractionCache, ImagePreprocessor imagePreprocessor,
+                         GeminiResilience resilience, MeterRegistry meterRegistry,
+                         @Value("${snipreader.tiling.parallelism:4}") int tileParallelism) {
+        this.geminiClient = geminiClient;
         this.gson = new Gson();
+        this.extractionCache = extractionCache;
+        this.imagePreprocessor = imagePreprocessor;
+        this.resilience = resilience;
+        this.meterRegistry = meterRegistry;
+        this.coalescedRequests = Counter.builder("snipreader.extraction.coalesced").register(meterRegistry);
+        meterRegistry.gauge("snipreader.extraction.in-flight", extractions, SingleFlight::size);
+        
+        // Tile requests still pass through the rate limiter and concurrency limit, so this only bounds threads
+        AtomicInteger tileThreads = new AtomicInteger();
+        this.tileExecutor = Executors.newFixedThreadPool(tileParallelism, runnable -> {
+            Thread thread = new Thread(runnable, "tile-worker-" + tileThreads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        tileExecutor.shutdownNow();
     }
     
     /**
@@ -58,11 +159,7 @@ public class GeminiService {
     public List<Question> processImageForQuestions(MultipartFile imageFile) throws IOException {
         logger.info("Processing image with Gemini 2.5 Flash: {}", imageFile.getOriginalFilename());
         
-        // Convert image to Base64
-        byte[] imageBytes = imageFile.getBytes();
-        String base64Image = Base64.encodeBase64String(imageBytes);
-        
-        return processBase64ImageForQuestions(base64Image);
+        return processImageBytesForQuestions(imageFile.getBytes());
     }
     
     /**
@@ -75,74 +172,426 @@ public class GeminiService {
      */
     public List<Question> processBase64ImageForQuestions(String base64Image) throws IOException {
         logger.info("Processing base64 image with Gemini 2.5 Flash");
+        return processImageBytesForQuestions(Base64.decodeBase64(base64Image));
+    }
+    
+    /**
+     * Processes decoded image bytes, answering from the extraction cache when the same image
+     * has already been extracted with the current model and prompt.
+     *
+     * @param imageBytes the decoded image bytes
+     * @return a list of Question objects with answers
+     * @throws IOException if there's an error handling the data
+     */
+    public List<Question> processImageBytesForQuestions(byte[] imageBytes) throws IOException {
+        return processImageBytesForQuestions(imageBytes, ExtractionListener.NONE);
+    }
+    
+    /**
+     * Processes decoded image bytes, passing each question to the listener as soon as it is available.
+     * When streaming is enabled, questions are emitted while Gemini is still generating the rest of the response;
+     * the returned list is always parsed from the complete response. Concurrent calls for the same image
+     * are coalesced into one Gemini call, and the callers that joined it are sent its questions once it completes.
+     * Tall screenshots are split into tiles that are extracted in parallel and merged; tiles are not streamed.
+     *
+     * @param imageBytes the decoded image bytes
+     * @param listener the listener to notify of each question
+     * @return a list of Question objects with answers
+     * @throws IOException if there's an error handling the data
+     */
+    public List<Question> processImageBytesForQuestions(byte[] imageBytes, ExtractionListener listener) throws IOException {
+        String imageDigest = ExtractionCache.digest(imageBytes);
+        return coalesce(imageDigest, promptVersion(), listener, () -> {
+            // Shrink the image and detect its real format before sending it
+            List<PreparedImage> tiles = imagePreprocessor.prepareTiles(imageBytes);
+            if (tiles.size() > 1) {
+                return extractTiles(tiles, extractionPrompt(), "image", listener);
+            }
+            return streaming
+                    ? streamQuestions(tiles.get(0), listener)
+                    : requestQuestions(tiles.get(0), extractionPrompt(), "image");
+        });
+    }
+    
+    /**
+     * Transcribes the questions in an image without answering them, which costs far fewer output
+     * tokens than a full extraction. The returned questions have empty answers and explanations;
+     * they are meant to be looked up in the {@link AnswerBank} and only the unknown ones answered.
+     *
+     * @param imageBytes the decoded image bytes
+     * @return a list of unanswered Question objects
+     */
+    public List<Question> transcribeQuestions(byte[] imageBytes) {
+        String imageDigest = ExtractionCache.digest(imageBytes);
+        String prompt = structuredOutput ? STRUCTURED_TRANSCRIBE_PROMPT : TRANSCRIBE_PROMPT;
+        return coalesce(imageDigest, TRANSCRIBE_PROMPT_VERSION + "-" + promptVersion(), ExtractionListener.NONE, () -> {
+            List<PreparedImage> tiles = imagePreprocessor.prepareTiles(imageBytes);
+            return tiles.size() > 1
+                    ? extractTiles(tiles, prompt, "transcription", ExtractionListener.NONE)
+                    : requestQuestions(tiles.get(0), prompt, "transcription");
+        });
+    }
+    
+    /**
+     * Answers questions that were parsed locally from pasted text, or transcribed from an image.
+     * Only the question text and options are sent, in a text-only request, which costs far fewer tokens than an image.
+     * The returned questions keep the parsed text and options and take Gemini's answer and explanation.
+     *
+     * @param parsedQuestions the questions parsed from the text, without answers
+     * @param listener the listener to notify of each answered question
+     * @return a list of Question objects with answers
+     */
+    public List<Question> answerQuestions(List<Question> parsedQuestions, ExtractionListener listener) {
+        String questionsText = formatQuestions(parsedQuestions);
+        String textDigest = ExtractionCache.digest(questionsText.getBytes(StandardCharsets.UTF_8));
+        return coalesce(textDigest, TEXT_PROMPT_VERSION + "-" + promptVersion(), listener, () -> {
+            List<Question> questions = requestAnswers(parsedQuestions, questionsText);
+            questions.forEach(listener::onQuestion);
+            return questions;
+        });
+    }
+    
+    /**
+     * Runs an extraction through the single-flight group and the extraction cache.
+     * Identical requests arriving together share one lookup and one Gemini call. The cache is checked
+     * inside the flight and filled before it ends, so a duplicate arriving afterwards hits the cache.
+     *
+     * @param digest the hex digest of the request content
+     * @param promptVersion the version of the prompt the content is sent with
+     * @param listener the listener to notify of each question
+     * @param extraction calls Gemini on a cache miss
+     * @return fresh copies of the extracted questions
+     */
+    private List<Question> coalesce(String digest, String promptVersion, ExtractionListener listener,
+                                    Supplier<List<Question>> extraction) {
+        String cacheKey = ExtractionCache.keyFor(digest, model, promptVersion);
+        SingleFlight.Result<List<Question>> result = extractions.run(cacheKey,
+                () -> extract(digest, cacheKey, promptVersion, listener, extraction));
         
-        // Create request payload
-        JsonObject requestBody = createRequestPayload(base64Image);
+        if (result.shared()) {
+            logger.info("Joined in-flight extraction for {}", digest);
+            coalescedRequests.increment();
+        }
         
-        // Set up headers
-        HttpHeaders headers = new HttpHeaders();
-        headers.setContentType(MediaType.APPLICATION_JSON);
+        // Every caller saves its own question set, so each gets its own copies of the shared result
+        List<Question> questions = QuestionJsonMapper.fromJsonArray(QuestionJsonMapper.toJsonArray(result.value()));
+        if (result.shared()) {
+            questions.forEach(listener::onQuestion);
+        }
+        return questions;
+    }
+    
+    /**
+     * Answers from the extraction cache or, on a miss, extracts the questions with Gemini and caches them.
+     *
+     * @param digest the hex digest of the request content
+     * @param cacheKey the extraction cache key
+     * @param promptVersion the version of the prompt the content is sent with
+     * @param listener the listener to notify of each question
+     * @param extraction calls Gemini
+     * @return a list of Question objects with answers
+     */
+    private List<Question> extract(String digest, String cacheKey, String promptVersion, ExtractionListener listener,
+                                   Supplier<List<Question>> extraction) {
+        Optional<List<Question>> cached = extractionCache.get(cacheKey);
+        if (cached.isPresent()) {
+            logger.info("Extraction cache hit for {}", digest);
+            cached.get().forEach(listener::onQuestion);
+            return cached.get();
+        }
         
-        // Create HTTP entity
-        HttpEntity<String> requestEntity = new HttpEntity<>(requestBody.toString(), headers);
+        List<Question> questions = extraction.get();
         
-        // Make API call
-        String apiUrl = String.format(GEMINI_API_URL, model, apiKey);
-        String response = restTemplate.postForObject(apiUrl, requestEntity, String.class);
+        // Only cache successful extractions so a bad response can be retried
+        if (!questions.isEmpty()) {
+            extractionCache.put(cacheKey, digest, model, promptVersion, questions);
+        }
+        
+        return questions;
+    }
+    
+    /**
+     * Sends an image to the Gemini 2.5 Flash API and parses the questions from its response.
+     * The request body is streamed to the connection rather than built in memory.
+     *
+     * @param image the image to send
+     * @param prompt the prompt to send with it
+     * @param input the kind of request, for the latency timer
+     * @return a list of Question objects
+     */
+    private List<Question> requestQuestions(PreparedImage image, String prompt, String input) {
+        // Create request payload
+        GeminiRequestBody requestBody = createRequestPayload(image, prompt);
+        
+        // Make API call, retrying overload and server errors
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String response = resilience.execute(() -> geminiClient.generateContent(model, requestBody));
+        sample.stop(latencyTimer(input, false));
         
         // Parse response and extract questions
         return parseGeminiResponse(response);
     }
     
     /**
-     * Creates the request payload for the Gemini 2.5 Flash API.
+     * Extracts the questions from each tile of a screenshot in parallel and merges them in reading order.
+     * Questions read from both sides of a cut are only kept once.
      *
-     * @param base64Image the Base64-encoded image
-     * @return the request payload as a JsonObject
+     * @param tiles the prepared tiles, top to bottom
+     * @param prompt the prompt to send with each tile
+     * @param input the kind of request, for the latency timer
+     * @param listener the listener to notify of each merged question
+     * @return a list of Question objects
      */
-    private JsonObject createRequestPayload(String base64Image) {
-        JsonObject requestBody = new JsonObject();
-        JsonArray contents = new JsonArray();
-        JsonObject content = new JsonObject();
-        JsonArray parts = new JsonArray();
+    private List<Question> extractTiles(List<PreparedImage> tiles, String prompt, String input,
+                                        ExtractionListener listener) {
+        List<CompletableFuture<List<Question>>> futures = new ArrayList<>(tiles.size());
+        for (PreparedImage tile : tiles) {
+            futures.add(CompletableFuture.supplyAsync(() -> requestQuestions(tile, prompt, input), tileExecutor));
+        }
         
-        // Add text part (prompt)
-        JsonObject textPart = new JsonObject();
-        textPart.addProperty("text", "Analyze this image containing questions. " +
-                "The questions could be multiple-choice questions (MCQs) or general questions without options. " +
-                "Extract each question and provide the correct answer with a brief explanation. " +
-                "Format your response as a JSON array with objects for each question. " +
-                
-                "For MCQ questions: " +
-                "Include 'questionText', 'options' (as an array), 'answer' (just the letter), 'explanation', and set 'type' to 'MCQ'. " +
-                "Example: [{\"type\":\"MCQ\",\"questionText\":\"What is 2+2?\",\"options\":[\"3\",\"4\",\"5\",\"6\"],\"answer\":\"B\",\"explanation\":\"2+2=4\"}] " +
-                
-                "For general questions without options: " +
-                "Include 'questionText', 'answer' (the full answer text), 'explanation', and set 'type' to 'GENERAL'. " +
-                "Example: [{\"type\":\"GENERAL\",\"questionText\":\"What is the capital of France?\",\"answer\":\"Paris\",\"explanation\":\"Paris is the capital and most populous city of France.\"}] " +
-                
-                "If you're not sure if it's an MCQ, process it as a general question.");
-        parts.add(textPart);
-        
-        // Add image part
-        JsonObject imagePart = new JsonObject();
-        JsonObject inlineData = new JsonObject();
-        inlineData.addProperty("mimeType", "image/jpeg");
-        inlineData.addProperty("data", base64Image);
-        imagePart.add("inlineData", inlineData);
-        parts.add(imagePart);
-        
-        content.add("parts", parts);
-        contents.add(content);
-        requestBody.add("contents", contents);
-        
-        // Add generation config
+        List<List<Question>> tileQuestions = new ArrayList<>(tiles.size());
+        try {
+            for (CompletableFuture<List<Question>> future : futures) {
+                tileQuestions.add(future.join());
+            }
+        } catch (CompletionException e) {
+            futures.forEach(future -> future.cancel(true));
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+        
+        List<Question> questions = TileMerger.merge(tileQuestions);
+        logger.info("Merged {} tiles into {} questions", tiles.size(), questions.size());
+        questions.forEach(listener::onQuestion);
+        return questions;
+    }
+    
+    /**
+     * Sends parsed questions to Gemini in a text-only request and merges the answers back into them.
+     *
+     * @param parsedQuestions the questions parsed from the text
+     * @param questionsText the questions formatted for the prompt
+     * @return a list of Question objects with answers
+     */
+    private List<Question> requestAnswers(List<Question> parsedQuestions, String questionsText) {
+        String prompt = (structuredOutput ? STRUCTURED_ANSWER_PROMPT : ANSWER_PROMPT) + "\n\n" + questionsText;
+        GeminiRequestBody requestBody = new GeminiRequestBody(prompt, null, null, createGenerationConfig());
+        
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String response = resilience.execute(() -> geminiClient.generateContent(model, requestBody));
+        sample.stop(latencyTimer("text", false));
+        
+        List<Question> answered = parseGeminiResponse(response);
+        if (answered.size() != parsedQuestions.size()) {
+            // The answers cannot be matched up by position, so use Gemini's own reading of the questions
+            logger.warn("Gemini answered {} of {} parsed questions", answered.size(), parsedQuestions.size());
+            return answered;
+        }
+        
+        List<Question> questions = new ArrayList<>(parsedQuestions.size());
+        for (int i = 0; i < parsedQuestions.size(); i++) {
+            Question question = new Question(parsedQuestions.get(i).getQuestionText(),
+                    new ArrayList<>(parsedQuestions.get(i).getOptions()));
+            question.setQuestionType(parsedQuestions.get(i).getQuestionType());
+            question.setAnswer(answered.get(i).getAnswer());
+            question.setExplanation(answered.get(i).getExplanation());
+            questions.add(question);
+        }
+        return questions;
+    }
+    
+    /**
+     * Formats parsed questions as numbered questions with lettered options.
+     *
+     * @param questions the questions to format
+     * @return the questions as prompt text
+     */
+    private String formatQuestions(List<Question> questions) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < questions.size(); i++) {
+            Question question = questions.get(i);
+            text.append(i + 1).append(". ").append(question.getQuestionText()).append('\n');
+            List<String> options = question.getOptions();
+            for (int j = 0; j < options.size(); j++) {
+                text.append(optionLabel(j)).append(") ").append(options.get(j)).append('\n');
+            }
+            text.append('\n');
+        }
+        return text.toString();
+    }
+    
+    private static String optionLabel(int index) {
+        return String.valueOf((char) ('A' + index));
+    }
+    
+    /**
+     * Sends an image to the streaming Gemini 2.5 Flash endpoint, emitting each question
+     * to the listener as soon as its JSON object is complete.
+     *
+     * @param image the image to send
+     * @param listener the listener to notify of each question
+     * @return a list of Question objects parsed from the complete response
+     */
+    private List<Question> streamQuestions(PreparedImage image, ExtractionListener listener) {
+        GeminiRequestBody requestBody = createRequestPayload(image, extractionPrompt());
+        
+        // Once a question has been shown, a retry would show it again, so only retry before that
+        AtomicBoolean emitted = new AtomicBoolean();
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String text = resilience.execute(() -> geminiClient.streamGenerateContent(model, requestBody,
+                body -> readEventStream(body, new IncrementalQuestionParser(question -> {
+                    emitted.set(true);
+                    listener.onQuestion(question);
+                }))), () -> !emitted.get());
+        sample.stop(latencyTimer("image", true));
+        
+        // Parse the complete text exactly as the non-streaming path does
+        return parseQuestionsText(text);
+    }
+    
+    /**
+     * Reads a Server-Sent Events stream of partial Gemini responses, feeding the text of each
+     * chunk to the incremental parser.
+     *
+     * @param body the response body
+     * @param parser the parser to feed
+     * @return the complete response text
+     * @throws IOException if the stream cannot be read
+     */
+    private String readEventStream(InputStream body, IncrementalQuestionParser parser) throws IOException {
+        StringBuilder text = new StringBuilder();
+        StringBuilder eventData = new StringBuilder();
+        String lastEvent = null;
+        BufferedReader reader = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8));
+        
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (line.startsWith("data:")) {
+                eventData.append(line.substring(5).trim());
+            } else if (line.isEmpty() && eventData.length() > 0) {
+                String chunk = extractChunkText(eventData.toString());
+                text.append(chunk);
+                parser.feed(chunk);
+                lastEvent = eventData.toString();
+                eventData.setLength(0);
+            }
+        }
+        
+        // The stream may end without a trailing blank line
+        if (eventData.length() > 0) {
+            String chunk = extractChunkText(eventData.toString());
+            text.append(chunk);
+            parser.feed(chunk);
+            lastEvent = eventData.toString();
+        }
+        
+        // The last chunk carries the token counts for the whole response
+        if (lastEvent != null) {
+            recordUsage(gson.fromJson(lastEvent, JsonObject.class));
+        }
+        
+        return text.toString();
+    }
+    
+    /**
+     * Extracts the generated text from one streamed response chunk.
+     *
+     * @param chunkJson the JSON of a single streamed response
+     * @return the text in the chunk, or an empty string if it has none
+     */
+    private String extractChunkText(String chunkJson) {
+        JsonObject chunk = gson.fromJson(chunkJson, JsonObject.class);
+        if (!chunk.has("candidates")) {
+            return "";
+        }
+        
+        JsonObject candidate = chunk.getAsJsonArray("candidates").get(0).getAsJsonObject();
+        if (!candidate.has("content") || !candidate.getAsJsonObject("content").has("parts")) {
+            return "";
+        }
+        
+        StringBuilder text = new StringBuilder();
+        for (JsonElement part : candidate.getAsJsonObject("content").getAsJsonArray("parts")) {
+            JsonObject partJson = part.getAsJsonObject();
+            if (partJson.has("text")) {
+                text.append(partJson.get("text").getAsString());
+            }
+        }
+        return text.toString();
+    }
+    
+    /**
+     * Creates the request body for the Gemini 2.5 Flash API.
+     *
+     * @param image the image to send
+     * @param prompt the prompt to send with it
+     * @return the request body, written to the connection when the request is sent
+     */
+    private GeminiRequestBody createRequestPayload(PreparedImage image, String prompt) {
+        return new GeminiRequestBody(prompt, image.mimeType(),
+                () -> new ByteArrayInputStream(image.data()), createGenerationConfig());
+    }
+    
+    /**
+     * Creates the generation config shared by all requests.
+     *
+     * @return the generation config as a JsonObject
+     */
+    private JsonObject createGenerationConfig() {
         JsonObject generationConfig = new JsonObject();
         generationConfig.addProperty("temperature", temperature);
         generationConfig.addProperty("maxOutputTokens", maxTokens);
-        requestBody.add("generationConfig", generationConfig);
+        if (structuredOutput) {
+            generationConfig.addProperty("responseMimeType", "application/json");
+            generationConfig.add("responseSchema", createResponseSchema());
+        }
+        return generationConfig;
+    }
+    
+    /**
+     * Creates the response schema for structured output: an array of objects in the shape
+     * read by {@link QuestionJsonMapper}.
+     *
+     * @return the response schema as a JsonObject
+     */
+    private JsonObject createResponseSchema() {
+        JsonObject properties = new JsonObject();
+        
+        JsonObject type = schema("STRING");
+        JsonArray types = new JsonArray();
+        types.add("MCQ");
+        types.add("GENERAL");
+        type.add("enum", types);
+        properties.add("type", type);
+        
+        properties.add("questionText", schema("STRING"));
+        JsonObject options = schema("ARRAY");
+        options.add("items", schema("STRING"));
+        properties.add("options", options);
+        properties.add("answer", schema("STRING"));
+        properties.add("explanation", schema("STRING"));
+        
+        JsonArray required = new JsonArray();
+        List.of("type", "questionText", "answer", "explanation").forEach(required::add);
+        JsonArray ordering = new JsonArray();
+        List.of("type", "questionText", "options", "answer", "explanation").forEach(ordering::add);
+        
+        JsonObject question = schema("OBJECT");
+        question.add("properties", properties);
+        question.add("required", required);
+        question.add("propertyOrdering", ordering);
         
-        return requestBody;
+        JsonObject responseSchema = schema("ARRAY");
+        responseSchema.add("items", question);
+        return responseSchema;
+    }
+    
+    private static JsonObject schema(String type) {
+        JsonObject schema = new JsonObject();
+        schema.addProperty("type", type);
+        return schema;
     }
     
     /**
@@ -152,10 +601,9 @@ public class GeminiService {
      * @return a list of Question objects
      */
     private List<Question> parseGeminiResponse(String response) {
-        List<Question> questions = new ArrayList<>();
-        
         try {
             JsonObject responseJson = gson.fromJson(response, JsonObject.class);
+            recordUsage(responseJson);
             
             // Extract the text from the response
             String text = responseJson
@@ -169,6 +617,27 @@ public class GeminiService {
                     .get("text")
                     .getAsString();
             
+            return parseQuestionsText(text);
+        } catch (Exception e) {
+            logger.error("Error parsing Gemini 2.5 Flash response", e);
+            return new ArrayList<>();
+        }
+    }
+    
+    /**
+     * Parses the JSON array of questions out of the text generated by Gemini 2.5 Flash.
+     *
+     * @param text the generated text
+     * @return a list of Question objects
+     */
+    private List<Question> parseQuestionsText(String text) {
+        if (structuredOutput) {
+            return parseStructuredText(text);
+        }
+        
+        List<Question> questions = new ArrayList<>();
+        
+        try {
             // Find the JSON array in the text
             int startIndex = text.indexOf('[');
             int endIndex = text.lastIndexOf(']') + 1;
@@ -180,46 +649,7 @@ public class GeminiService {
                 JsonArray questionsArray = gson.fromJson(jsonArrayString, JsonArray.class);
                 
                 // Convert each JSON object to a Question
-                for (int i = 0; i < questionsArray.size(); i++) {
-                    JsonObject questionJson = questionsArray.get(i).getAsJsonObject();
-                    
-                    Question question = new Question();
-                    question.setQuestionText(questionJson.get("questionText").getAsString());
-                    
-                    // Determine question type
-                    String type = questionJson.has("type") ? 
-                            questionJson.get("type").getAsString() : "MCQ"; // Default to MCQ for backward compatibility
-                    
-                    if ("GENERAL".equals(type)) {
-                        // Set as general question
-                        question.setQuestionType(Question.QuestionType.GENERAL);
-                        question.setOptions(new ArrayList<>()); // Empty options list
-                    } else {
-                        // Set as MCQ question
-                        question.setQuestionType(Question.QuestionType.MCQ);
-                        
-                        // Parse options
-                        List<String> options = new ArrayList<>();
-                        if (questionJson.has("options")) {
-                            JsonArray optionsArray = questionJson.getAsJsonArray("options");
-                            for (int j = 0; j < optionsArray.size(); j++) {
-                                options.add(optionsArray.get(j).getAsString());
-                            }
-                        }
-                        question.setOptions(options);
-                    }
-                    
-                    // Set answer and explanation
-                    question.setAnswer(questionJson.get("answer").getAsString());
-                    
-                    if (questionJson.has("explanation")) {
-                        question.setExplanation(questionJson.get("explanation").getAsString());
-                    } else {
-                        question.setExplanation(""); // Default empty explanation if not provided
-                    }
-                    
-                    questions.add(question);
-                }
+                questions.addAll(QuestionJsonMapper.fromJsonArray(questionsArray));
             } else {
                 logger.error("Could not find JSON array in Gemini 2.5 Flash response");
             }
@@ -229,4 +659,66 @@ public class GeminiService {
         
         return questions;
     }
-}
\ No newline at end of file
+    
+    /**
+     * Parses structured output, which is exactly the JSON array described by the response schema,
+     * reading it straight into Question entities.
+     *
+     * @param text the generated text
+     * @return a list of Question objects
+     */
+    private List<Question> parseStructuredText(String text) {
+        try (JsonReader reader = new JsonReader(new StringReader(text))) {
+            return QuestionJsonMapper.read(reader);
+        } catch (IOException | RuntimeException e) {
+            logger.error("Structured Gemini 2.5 Flash response is not a valid question array", e);
+            Counter.builder("snipreader.gemini.parse.failures").tag("mode", mode()).register(meterRegistry).increment();
+            return new ArrayList<>();
+        }
+    }
+    
+    /**
+     * Records the token counts reported in a response's usage metadata, tagged by output mode
+     * so the structured and prompt-only modes can be compared.
+     *
+     * @param response the complete response, or the last streamed chunk
+     */
+    private void recordUsage(JsonObject response) {
+        if (response == null || !response.has("usageMetadata")) {
+            return;
+        }
+        
+        JsonObject usage = response.getAsJsonObject("usageMetadata");
+        for (String kind : List.of("prompt", "candidates", "total")) {
+            String field = kind + "TokenCount";
+            if (usage.has(field)) {
+                DistributionSummary.builder("snipreader.gemini.tokens")
+                        .tag("mode", mode())
+                        .tag("kind", kind)
+                        .register(meterRegistry)
+                        .record(usage.get(field).getAsDouble());
+            }
+        }
+        logger.info("Gemini usage ({} mode): {}", mode(), usage);
+    }
+    
+    private Timer latencyTimer(String input, boolean streamed) {
+        return Timer.builder("snipreader.gemini.extraction")
+                .tag("mode", mode())
+                .tag("input", input)
+                .tag("streaming", String.valueOf(streamed))
+                .register(meterRegistry);
+    }
+    
+    private String mode() {
+        return structuredOutput ? "structured" : "prompt";
+    }
+    
+    private String extractionPrompt() {
+        return structuredOutput ? STRUCTURED_PROMPT : EXTRACTION_PROMPT;
+    }
+    
+    private String promptVersion() {
+        return structuredOutput ? STRUCTURED_PROMPT_VERSION : PROMPT_VERSION;
+    }
+}
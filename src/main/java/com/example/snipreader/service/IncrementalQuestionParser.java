@@ -0,0 +1,94 @@
+package com.example.snipreader.service;
+
+import com.example.snipreader.model.Question;
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.function.Consumer;
+
+/**
+ * Incremental parser for the JSON array of questions in a streamed Gemini response.
+ * Text is fed in as it arrives, and each question is emitted as soon as its object closes,
+ * without waiting for the rest of the array.
+ */
+final class IncrementalQuestionParser {
+    private static final Logger logger = LoggerFactory.getLogger(IncrementalQuestionParser.class);
+    
+    private final Gson gson = new Gson();
+    private final Consumer<Question> onQuestion;
+    private final StringBuilder currentObject = new StringBuilder();
+    
+    private boolean inArray;
+    private boolean finished;
+    private int depth;
+    private boolean inString;
+    private boolean escaped;
+    
+    IncrementalQuestionParser(Consumer<Question> onQuestion) {
+        this.onQuestion = onQuestion;
+    }
+    
+    /**
+     * Feeds the next chunk of response text to the parser.
+     *
+     * @param chunk the text received since the previous call
+     */
+    void feed(CharSequence chunk) {
+        for (int i = 0; i < chunk.length() && !finished; i++) {
+            char c = chunk.charAt(i);
+            
+            // Skip any prose or code fence before the array starts
+            if (!inArray) {
+                inArray = c == '[';
+                continue;
+            }
+            
+            if (depth > 0) {
+                currentObject.append(c);
+            }
+            
+            if (inString) {
+                if (escaped) {
+                    escaped = false;
+                } else if (c == '\\') {
+                    escaped = true;
+                } else if (c == '"') {
+                    inString = false;
+                }
+                continue;
+            }
+            
+            if (c == '"') {
+                inString = true;
+            } else if (c == '{' || c == '[') {
+                if (depth == 0) {
+                    currentObject.append(c);
+                }
+                depth++;
+            } else if (c == '}' || c == ']') {
+                if (depth == 0) {
+                    // End of the top-level array; ignore anything after it
+                    finished = true;
+                    continue;
+                }
+                depth--;
+                if (depth == 0) {
+                    emit();
+                }
+            }
+        }
+    }
+    
+    private void emit() {
+        try {
+            onQuestion.accept(QuestionJsonMapper.fromJson(gson.fromJson(currentObject.toString(), JsonObject.class)));
+        } catch (Exception e) {
+            // The complete response is parsed again at the end, so a bad element only loses its preview
+            logger.debug("Could not parse streamed question: {}", currentObject, e);
+        } finally {
+            currentObject.setLength(0);
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package com.example.snipreader.service;
+
+import java.awt.Graphics2D;
+import java.awt.Image;
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+
+/**
+ * 256-bit difference hash (dHash) of an image.
+ * The image is downscaled to a 17x16 grayscale grid and each bit records whether a pixel is
+ * brighter than its right-hand neighbour, so re-captures with a slightly different crop,
+ * compression or cursor position land within a small Hamming distance of each other.
+ */
+public final class PerceptualHash {
+    
+    static final int BITS = 256;
+    private static final int WIDTH = 17;
+    private static final int HEIGHT = 16;
+    
+    private final long[] words;
+    
+    private PerceptualHash(long[] words) {
+        this.words = words;
+    }
+    
+    /**
+     * Computes the difference hash of an image.
+     *
+     * @param image the decoded image
+     * @return the perceptual hash
+     */
+    public static PerceptualHash of(BufferedImage image) {
+        BufferedImage gray = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_BYTE_GRAY);
+        Graphics2D graphics = gray.createGraphics();
+        try {
+            // Area averaging keeps thin text strokes from aliasing away on large screenshots
+            graphics.drawImage(image.getScaledInstance(WIDTH, HEIGHT, Image.SCALE_AREA_AVERAGING), 0, 0, null);
+        } finally {
+            graphics.dispose();
+        }
+        
+        long[] words = new long[BITS / Long.SIZE];
+        int bit = 0;
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH - 1; x++) {
+                int left = gray.getRaster().getSample(x, y, 0);
+                int right = gray.getRaster().getSample(x + 1, y, 0);
+                if (left > right) {
+                    words[bit / Long.SIZE] |= 1L << (bit % Long.SIZE);
+                }
+                bit++;
+            }
+        }
+        return new PerceptualHash(words);
+    }
+    
+    /**
+     * Parses a hash previously produced by {@link #toHex()}.
+     *
+     * @param hex the hex representation
+     * @return the perceptual hash
+     */
+    public static PerceptualHash fromHex(String hex) {
+        long[] words = new long[BITS / Long.SIZE];
+        for (int i = 0; i < words.length; i++) {
+            words[i] = Long.parseUnsignedLong(hex.substring(i * 16, (i + 1) * 16), 16);
+        }
+        return new PerceptualHash(words);
+    }
+    
+    /**
+     * Returns the fixed-width hex representation stored in the database.
+     */
+    public String toHex() {
+        StringBuilder hex = new StringBuilder(BITS / 4);
+        for (long word : words) {
+            String part = Long.toHexString(word);
+            hex.append("0".repeat(16 - part.length())).append(part);
+        }
+        return hex.toString();
+    }
+    
+    /**
+     * Returns the Hamming distance to another hash.
+     */
+    public int distance(PerceptualHash other) {
+        int distance = 0;
+        for (int i = 0; i < words.length; i++) {
+            distance += Long.bitCount(words[i] ^ other.words[i]);
+        }
+        return distance;
+    }
+    
+    /**
+     * Extracts {@code length} bits (at most 64) starting at bit {@code from}.
+     */
+    long bits(int from, int length) {
+        long value = 0;
+        for (int i = 0; i < length; i++) {
+            int bit = from + i;
+            if ((words[bit / Long.SIZE] & (1L << (bit % Long.SIZE))) != 0) {
+                value |= 1L << i;
+            }
+        }
+        return value;
+    }
+    
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof PerceptualHash other && Arrays.equals(words, other.words);
+    }
+    
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(words);
+    }
+    
+    @Override
+    public String toString() {
+        return toHex();
+    }
+}
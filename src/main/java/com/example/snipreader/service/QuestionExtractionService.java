@@ -0,0 +1,232 @@
+package com.example.snipreader.service;
+
+import com.example.snipreader.model.ExtractionJob.Stage;
+import com.example.snipreader.model.Question;
+import com.example.snipreader.model.QuestionSet;
+import com.example.snipreader.repository.QuestionSetRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Runs the full screenshot pipeline: near-duplicate lookup, Gemini extraction and persistence,
+ * and the cheaper pipeline for questions pasted as text. Questions already in the {@link AnswerBank}
+ * are answered from it instead of by Gemini.
+ */
+@Service
+public class QuestionExtractionService {
+    private static final Logger logger = LoggerFactory.getLogger(QuestionExtractionService.class);
+    
+    private final GeminiService geminiService;
+    private final QuestionSetRepository questionSetRepository;
+    private final SimilarImageIndex similarImageIndex;
+    private final QuestionParserService questionParserService;
+    private final AnswerBank answerBank;
+    private final boolean transcribeFirst;
+    
+    public QuestionExtractionService(GeminiService geminiService, QuestionSetRepository questionSetRepository,
+                                     SimilarImageIndex similarImageIndex, QuestionParserService questionParserService,
+                                     AnswerBank answerBank,
+                                     @Value("${snipreader.answer-bank.transcribe-first:false}") boolean transcribeFirst) {
+        this.geminiService = geminiService;
+        this.questionSetRepository = questionSetRepository;
+        this.similarImageIndex = similarImageIndex;
+        this.questionParserService = questionParserService;
+        this.answerBank = answerBank;
+        this.transcribeFirst = transcribeFirst;
+    }
+    
+    /**
+     * Result of processing a screenshot.
+     *
+     * @param questionSetId the ID of the saved (or matched) question set, or null if no questions were found
+     * @param similarMatch true if nothing was extracted because an earlier set's screenshot looks near-identical
+     */
+    public record ExtractionResult(Long questionSetId, boolean similarMatch) {
+    }
+    
+    /**
+     * Extracts questions from a screenshot and saves them as a new question set.
+     * If a previously processed screenshot is perceptually near-identical, its set is returned as a match
+     * instead of paying for another Gemini call. A perceptual hash cannot tell apart every screenshot of
+     * the same layout, so the match is only offered; the screenshot can still be processed anyway.
+     *
+     * @param imageBytes the decoded image bytes
+     * @param title the title for a newly created question set
+     * @param skipSimilar true to always extract, even when a similar screenshot has been processed before
+     * @return the extraction result
+     * @throws IOException if there's an error handling the image
+     */
+    public ExtractionResult extract(byte[] imageBytes, String title, boolean skipSimilar) throws IOException {
+        return extract(imageBytes, title, skipSimilar, ExtractionListener.NONE);
+    }
+    
+    /**
+     * Extracts questions from a screenshot and saves them, reporting each pipeline stage to a listener.
+     * With transcribe-first enabled, Gemini only transcribes the questions; those in the answer bank are
+     * answered from it and the rest in one text-only request.
+     *
+     * @param imageBytes the decoded image bytes
+     * @param title the title for a newly created question set
+     * @param skipSimilar true to always extract, even when a similar screenshot has been processed before
+     * @param listener the listener to notify as the pipeline progresses
+     * @return the extraction result
+     * @throws IOException if there's an error handling the image
+     */
+    public ExtractionResult extract(byte[] imageBytes, String title, boolean skipSimilar,
+                                    ExtractionListener listener) throws IOException {
+        listener.onStage(Stage.MATCHING);
+        PerceptualHash imageHash = hashImage(imageBytes);
+        
+        if (imageHash != null && !skipSimilar) {
+            Optional<Long> similarSetId = similarImageIndex.findSimilar(imageHash);
+            if (similarSetId.isPresent()) {
+                logger.info("Screenshot matches previously processed question set {}", similarSetId.get());
+                return new ExtractionResult(similarSetId.get(), true);
+            }
+        }
+        
+        listener.onStage(Stage.EXTRACTING);
+        List<Question> questions = transcribeFirst
+                ? answer(geminiService.transcribeQuestions(imageBytes), listener).orElse(null)
+                : geminiService.processImageBytesForQuestions(imageBytes, listener);
+        if (questions == null) {
+            logger.info("Gemini's answers did not line up with the transcribed questions, extracting the screenshot");
+            questions = geminiService.processImageBytesForQuestions(imageBytes, listener);
+        }
+        if (questions.isEmpty()) {
+            return new ExtractionResult(null, false);
+        }
+        
+        // Create and save a new QuestionSet
+        listener.onStage(Stage.SAVING);
+        return save(title, questions, imageHash);
+    }
+    
+    /**
+     * Answers questions copied as text. The text is parsed locally and only the parsed questions are
+     * sent to Gemini, in a text-only request. If the parser rejects any block and a screenshot of the
+     * same questions was supplied, the screenshot is processed instead. The screenshot is also processed
+     * if Gemini's answers cannot be matched up with the parsed questions; without one, Gemini answers
+     * every parsed question itself, including those the answer bank knew.
+     *
+     * @param text the pasted text
+     * @param imageBytes a screenshot to fall back to, or null
+     * @param title the title for a newly created question set
+     * @param skipSimilar passed on to the screenshot path when it is used
+     * @param listener the listener to notify as the pipeline progresses
+     * @return the extraction result
+     * @throws IOException if there's an error handling the fallback image
+     */
+    public ExtractionResult extractText(String text, byte[] imageBytes, String title, boolean skipSimilar,
+                                        ExtractionListener listener) throws IOException {
+        QuestionParserService.ParseResult parsed = questionParserService.parse(text);
+        
+        if (!parsed.rejectedBlocks().isEmpty() || parsed.questions().isEmpty()) {
+            if (imageBytes != null && imageBytes.length > 0) {
+                logger.info("Parser rejected {} text blocks, falling back to the screenshot",
+                        parsed.rejectedBlocks().size());
+                return extract(imageBytes, title, skipSimilar, listener);
+            }
+            logger.warn("Parser rejected {} text blocks and no screenshot was supplied",
+                    parsed.rejectedBlocks().size());
+        }
+        if (parsed.questions().isEmpty()) {
+            return new ExtractionResult(null, false);
+        }
+        
+        listener.onStage(Stage.EXTRACTING);
+        Optional<List<Question>> answered = answer(parsed.questions(), listener);
+        if (answered.isEmpty() && imageBytes != null && imageBytes.length > 0) {
+            logger.info("Gemini's answers did not line up with the parsed questions, "
+                    + "falling back to the screenshot");
+            return extract(imageBytes, title, skipSimilar, listener);
+        }
+        List<Question> questions = answered.orElseGet(() -> geminiService.answerQuestions(parsed.questions(), listener));
+        if (questions.isEmpty()) {
+            return new ExtractionResult(null, false);
+        }
+        
+        listener.onStage(Stage.SAVING);
+        return save(title, questions, null);
+    }
+    
+    /**
+     * Answers unanswered questions, taking known answers from the answer bank and asking Gemini
+     * for the rest in a single text-only request.
+     *
+     * @param questions the questions to answer
+     * @param listener the listener to notify of each answered question
+     * @return the answered questions, in their original order, or empty if Gemini answered a different number
+     *         of questions than it was asked, so its answers cannot be put back in place
+     */
+    private Optional<List<Question>> answer(List<Question> questions, ExtractionListener listener) {
+        List<Question> answered = new ArrayList<>(questions.size());
+        List<Question> unknown = new ArrayList<>();
+        for (Question question : questions) {
+            Optional<Question> known = answerBank.answer(question);
+            known.ifPresent(listener::onQuestion);
+            answered.add(known.orElse(null));
+            if (known.isEmpty()) {
+                unknown.add(question);
+            }
+        }
+        logger.info("Answer bank knew {} of {} questions", questions.size() - unknown.size(), questions.size());
+        if (unknown.isEmpty()) {
+            return Optional.of(answered);
+        }
+        
+        List<Question> fromGemini = geminiService.answerQuestions(unknown, listener);
+        if (fromGemini.size() != unknown.size()) {
+            logger.warn("Gemini answered {} of {} questions", fromGemini.size(), unknown.size());
+            return Optional.empty();
+        }
+        for (int i = 0, next = 0; i < answered.size(); i++) {
+            if (answered.get(i) == null) {
+                answered.set(i, fromGemini.get(next++));
+            }
+        }
+        return Optional.of(answered);
+    }
+    
+    /**
+     * Saves extracted questions as a new question set.
+     */
+    private ExtractionResult save(String title, List<Question> questions, PerceptualHash imageHash) {
+        QuestionSet questionSet = new QuestionSet(title);
+        if (imageHash != null) {
+            questionSet.setImageHash(imageHash.toHex());
+        }
+        
+        // Add all questions to the question set
+        for (Question question : questions) {
+            questionSet.addQuestion(question);
+        }
+        
+        // Save to database
+        questionSet = questionSetRepository.save(questionSet);
+        return new ExtractionResult(questionSet.getId(), false);
+    }
+    
+    /**
+     * Computes the perceptual hash of an image, or returns null if the format cannot be decoded.
+     */
+    private PerceptualHash hashImage(byte[] imageBytes) {
+        try {
+            BufferedImage image = ImageIO.read(new ByteArrayInputStream(imageBytes));
+            return image != null ? PerceptualHash.of(image) : null;
+        } catch (IOException e) {
+            logger.warn("Could not decode image for perceptual hashing", e);
+            return null;
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package com.example.snipreader.service;
+
+import com.example.snipreader.model.Question;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.stream.JsonReader;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Converts between {@link Question} entities and the JSON shape Gemini is asked to return:
+ * {@code {"type", "questionText", "options", "answer", "explanation"}}.
+ */
+final class QuestionJsonMapper {
+    
+    private QuestionJsonMapper() {
+    }
+    
+    /**
+     * Converts a JSON array of question objects into new, unsaved Question entities.
+     *
+     * @param questionsArray the JSON array to convert
+     * @return a list of Question objects
+     */
+    static List<Question> fromJsonArray(JsonArray questionsArray) {
+        List<Question> questions = new ArrayList<>(questionsArray.size());
+        for (int i = 0; i < questionsArray.size(); i++) {
+            questions.add(fromJson(questionsArray.get(i).getAsJsonObject()));
+        }
+        return questions;
+    }
+    
+    /**
+     * Converts a single JSON question object into a new, unsaved Question entity.
+     *
+     * @param questionJson the JSON object to convert
+     * @return the Question object
+     */
+    static Question fromJson(JsonObject questionJson) {
+        Question question = new Question();
+        question.setQuestionText(questionJson.get("questionText").getAsString());
+        
+        // Determine question type
+        String type = questionJson.has("type") ? 
+                questionJson.get("type").getAsString() : "MCQ"; // Default to MCQ for backward compatibility
+        
+        if ("GENERAL".equals(type)) {
+            // Set as general question
+            question.setQuestionType(Question.QuestionType.GENERAL);
+            question.setOptions(new ArrayList<>()); // Empty options list
+        } else {
+            // Set as MCQ question
+            question.setQuestionType(Question.QuestionType.MCQ);
+            
+            // Parse options
+            List<String> options = new ArrayList<>();
+            if (questionJson.has("options")) {
+                JsonArray optionsArray = questionJson.getAsJsonArray("options");
+                for (int j = 0; j < optionsArray.size(); j++) {
+                    options.add(optionsArray.get(j).getAsString());
+                }
+            }
+            question.setOptions(options);
+        }
+        
+        // Set answer and explanation
+        question.setAnswer(questionJson.get("answer").getAsString());
+        
+        if (questionJson.has("explanation")) {
+            question.setExplanation(questionJson.get("explanation").getAsString());
+        } else {
+            question.setExplanation(""); // Default empty explanation if not provided
+        }
+        
+        return question;
+    }
+    
+    /**
+     * Reads a JSON array of question objects straight from a stream into new, unsaved Question entities,
+     * without building an intermediate JSON tree. Defaults match {@link #fromJson(JsonObject)}.
+     *
+     * @param reader the reader positioned at the start of the array
+     * @return a list of Question objects
+     * @throws IOException if the JSON cannot be read
+     */
+    static List<Question> read(JsonReader reader) throws IOException {
+        List<Question> questions = new ArrayList<>();
+        reader.beginArray();
+        while (reader.hasNext()) {
+            questions.add(readQuestion(reader));
+        }
+        reader.endArray();
+        return questions;
+    }
+    
+    private static Question readQuestion(JsonReader reader) throws IOException {
+        String type = "MCQ";
+        String questionText = null;
+        List<String> options = new ArrayList<>();
+        String answer = null;
+        String explanation = "";
+        
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "type" -> type = reader.nextString();
+                case "questionText" -> questionText = reader.nextString();
+                case "answer" -> answer = reader.nextString();
+                case "explanation" -> explanation = reader.nextString();
+                case "options" -> {
+                    reader.beginArray();
+                    while (reader.hasNext()) {
+                        options.add(reader.nextString());
+                    }
+                    reader.endArray();
+                }
+                default -> reader.skipValue();
+            }
+        }
+        reader.endObject();
+        
+        if (questionText == null || answer == null) {
+            throw new JsonParseException("Question is missing questionText or answer at " + reader.getPath());
+        }
+        
+        Question question = new Question();
+        question.setQuestionText(questionText);
+        if ("GENERAL".equals(type)) {
+            question.setQuestionType(Question.QuestionType.GENERAL);
+            question.setOptions(new ArrayList<>());
+        } else {
+            question.setQuestionType(Question.QuestionType.MCQ);
+            question.setOptions(options);
+        }
+        question.setAnswer(answer);
+        question.setExplanation(explanation);
+        return question;
+    }
+    
+    /**
+     * Converts questions back into the JSON array shape accepted by {@link #fromJsonArray(JsonArray)}.
+     *
+     * @param questions the questions to convert
+     * @return the JSON array
+     */
+    static JsonArray toJsonArray(List<Question> questions) {
+        JsonArray questionsArray = new JsonArray();
+        for (Question question : questions) {
+            questionsArray.add(toJson(question));
+        }
+        return questionsArray;
+    }
+    
+    /**
+     * Converts a single question into the JSON object shape accepted by {@link #fromJson(JsonObject)}.
+     *
+     * @param question the question to convert
+     * @return the JSON object
+     */
+    static JsonObject toJson(Question question) {
+        JsonObject questionJson = new JsonObject();
+        questionJson.addProperty("type", question.getQuestionType().name());
+        questionJson.addProperty("questionText", question.getQuestionText());
+        
+        JsonArray optionsArray = new JsonArray();
+        if (question.getOptions() != null) {
+            question.getOptions().forEach(optionsArray::add);
+        }
+        questionJson.add("options", optionsArray);
+        
+        questionJson.addProperty("answer", question.getAnswer() != null ? question.getAnswer() : "");
+        questionJson.addProperty("explanation", question.getExplanation() != null ? question.getExplanation() : "");
+        return questionJson;
+    }
+}
@@ -0,0 +1,131 @@
+package com.example.snipreader.service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Normalizes question text so the same question read from different screenshots compares equal:
+ * case, runs of whitespace and any leading question number are ignored. Options are normalized the
+ * same way, without their leading label, and sorted when building a {@link #key(String, List) key}
+ * so a different option order still finds the question.
+ */
+public final class QuestionNormalizer {
+    
+    private QuestionNormalizer() {
+    }
+    
+    /**
+     * Normalizes question text.
+     *
+     * @param text the question text, may be null
+     * @return the normalized text, empty for null
+     */
+    public static String normalizeText(String text) {
+        return text == null ? "" : normalize(text, skipNumbering(text));
+    }
+    
+    /**
+     * Normalizes option text, dropping a leading "A)", "(b)", "c." or similar label.
+     *
+     * @param option the option text, may be null
+     * @return the normalized text, empty for null
+     */
+    public static String normalizeOption(String option) {
+        return option == null ? "" : normalize(option, skipOptionLabel(option));
+    }
+    
+    /**
+     * Builds the lookup key of a question from its normalized text and sorted, normalized options.
+     *
+     * @param questionText the question text
+     * @param options the options, may be null or empty
+     * @return the key
+     */
+    public static String key(String questionText, List<String> options) {
+        StringBuilder key = new StringBuilder(normalizeText(questionText));
+        if (options != null && !options.isEmpty()) {
+            List<String> sorted = new ArrayList<>(options.size());
+            for (String option : options) {
+                sorted.add(normalizeOption(option));
+            }
+            Collections.sort(sorted);
+            for (String option : sorted) {
+                // A control character that does not occur in real text keeps options from running together
+                key.append('\u0001').append(option);
+            }
+        }
+        return key.toString();
+    }
+    
+    private static String normalize(String text, int start) {
+        StringBuilder normalized = new StringBuilder(text.length());
+        boolean space = false;
+        for (int i = start; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (Character.isWhitespace(c)) {
+                space = normalized.length() > 0;
+            } else {
+                if (space) {
+                    normalized.append(' ');
+                    space = false;
+                }
+                normalized.append(c);
+            }
+        }
+        return normalized.toString().toLowerCase(Locale.ROOT);
+    }
+    
+    /**
+     * Returns the index just past a leading "12.", "12)", "Q12:" or similar question number, or the
+     * first non-blank character if there is none.
+     */
+    private static int skipNumbering(String text) {
+        int i = 0;
+        while (i < text.length() && Character.isWhitespace(text.charAt(i))) {
+            i++;
+        }
+        int start = i;
+        if (i < text.length() && (text.charAt(i) == 'Q' || text.charAt(i) == 'q')) {
+            i++;
+        }
+        int digits = i;
+        while (i < text.length() && Character.isDigit(text.charAt(i))) {
+            i++;
+        }
+        if (i == digits || i >= text.length() || ".):".indexOf(text.charAt(i)) < 0) {
+            return start;
+        }
+        return i + 1;
+    }
+    
+    /**
+     * Returns the index just past a leading option label followed by whitespace, or the
+     * first non-blank character if there is none.
+     */
+    private static int skipOptionLabel(String text) {
+        int i = 0;
+        while (i < text.length() && Character.isWhitespace(text.charAt(i))) {
+            i++;
+        }
+        int start = i;
+        boolean parenthesized = i < text.length() && text.charAt(i) == '(';
+        if (parenthesized) {
+            i++;
+        }
+        int label = i;
+        while (i < text.length() && i - label < 2 && Character.isLetterOrDigit(text.charAt(i))) {
+            i++;
+        }
+        if (i == label || i >= text.length()) {
+            return start;
+        }
+        char close = text.charAt(i);
+        boolean closed = parenthesized ? close == ')' : close == ')' || close == '.' || close == ':';
+        if (!closed || i + 1 >= text.length() || !Character.isWhitespace(text.charAt(i + 1))) {
+            return start;
+        }
+        return i + 1;
+    }
+}
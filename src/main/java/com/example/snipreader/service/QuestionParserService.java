@@ -7,164 +7,129 @@ import org.springframework.stereotype.Service;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 /**
- * Service for parsing OCR text into structured Question objects.
+ * Service for parsing OCR or pasted text into structured Question objects.
+ * The text is scanned once by {@link QuestionScanner}; strings are only created for the
+ * question and option texts that end up in the result.
  */
 @Service
 public class QuestionParserService {
     private static final Logger logger = LoggerFactory.getLogger(QuestionParserService.class);
     
-    // Pattern to match question numbers (e.g., "1.", "Q1.", "Question 1:")
-    private static final Pattern QUESTION_NUMBER_PATTERN = 
-            Pattern.compile("(?:^|\\n)\\s*(?:Q(?:uestion)?\\s*)?\\d+[.:]\\s*", Pattern.CASE_INSENSITIVE);
-    
-    // Pattern to match option labels (e.g., "A)", "a.", "(B)", "C.")
-    private static final Pattern OPTION_PATTERN = 
-            Pattern.compile("(?:^|\\n)\\s*(?:\\()?([A-D])(?:\\)|\\.)\\s*", Pattern.CASE_INSENSITIVE);
-
     /**
-     * Parses OCR text into a list of structured Question objects.
+     * Result of parsing text: the questions that could be read and the blocks that could not.
      *
-     * @param ocrText the text extracted from the image
-     * @return a list of Question objects
+     * @param questions the parsed questions, without answers
+     * @param rejectedBlocks the question blocks that had no question text or no options
      */
-    public List<Question> parseQuestions(String ocrText) {
-        List<Question> questions = new ArrayList<>();
-        
-        try {
-            // Split the text into question blocks
-            List<String> questionBlocks = splitIntoQuestionBlocks(ocrText);
-            
-            for (String block : questionBlocks) {
-                Question question = parseQuestionBlock(block);
-                if (question != null) {
-                    questions.add(question);
-                    logger.info("Parsed question: {}", question.getQuestionText());
-                }
-            }
-        } catch (Exception e) {
-            logger.error("Error parsing questions from OCR text", e);
-        }
-        
-        return questions;
+    public record ParseResult(List<Question> questions, List<String> rejectedBlocks) {
     }
     
     /**
-     * Splits the OCR text into individual question blocks.
+     * Parses OCR text into a list of structured Question objects.
      *
      * @param ocrText the text extracted from the image
-     * @return a list of question blocks
+     * @return a list of Question objects
      */
-    private List<String> splitIntoQuestionBlocks(String ocrText) {
-        List<String> blocks = new ArrayList<>();
-        Matcher matcher = QUESTION_NUMBER_PATTERN.matcher(ocrText);
-        
-        int startIndex = 0;
-        int endIndex;
-        
-        while (matcher.find()) {
-            if (startIndex > 0) {
-                endIndex = matcher.start();
-                blocks.add(ocrText.substring(startIndex, endIndex).trim());
-            }
-            startIndex = matcher.start();
-        }
-        
-        // Add the last question block
-        if (startIndex < ocrText.length()) {
-            blocks.add(ocrText.substring(startIndex).trim());
-        }
-        
-        // If no questions were found, treat the entire text as one question
-        if (blocks.isEmpty() && !ocrText.trim().isEmpty()) {
-            blocks.add(ocrText.trim());
-        }
-        
-        return blocks;
+    public List<Question> parseQuestions(String ocrText) {
+        return parse(ocrText).questions();
     }
     
     /**
-     * Parses a question block into a Question object.
+     * Parses text into structured Question objects, also reporting the blocks that were rejected.
+     * Each question runs from its number to the next question number; text before the first
+     * question number is ignored, and text without any question number is treated as one question.
      *
-     * @param block the question block text
-     * @return a Question object
+     * @param text the text to parse
+     * @return the parse result
      */
-    private Question parseQuestionBlock(String block) {
-        // Skip empty blocks
-        if (block == null || block.trim().isEmpty()) {
-            return null;
+    public ParseResult parse(CharSequence text) {
+        List<Question> questions = new ArrayList<>();
+        List<String> rejectedBlocks = new ArrayList<>();
+        if (text == null) {
+            return new ParseResult(questions, rejectedBlocks);
         }
         
-        // Extract question text (everything before the first option)
-        String questionText = extractQuestionText(block);
-        if (questionText == null || questionText.trim().isEmpty()) {
-            return null;
+        QuestionScanner labels = QuestionScanner.scan(text);
+        
+        int first = 0;
+        while (first < labels.size() && labels.kind(first) != QuestionScanner.QUESTION) {
+            first++;
         }
         
-        // Extract options
-        List<String> options = extractOptions(block);
-        if (options.isEmpty()) {
-            return null;
+        if (first == labels.size()) {
+            // No question numbers: the whole text is one question
+            int start = QuestionScanner.skipWhitespace(text, 0, text.length());
+            if (start < text.length()) {
+                parseBlock(text, labels, start, start, 0, labels.size(), text.length(), questions, rejectedBlocks);
+            }
+        } else {
+            int question = first;
+            while (question < labels.size()) {
+                int next = question + 1;
+                while (next < labels.size() && labels.kind(next) != QuestionScanner.QUESTION) {
+                    next++;
+                }
+                int blockEnd = next < labels.size() ? labels.labelStart(next) : text.length();
+                parseBlock(text, labels, labels.labelStart(question), labels.contentStart(question),
+                        question + 1, next, blockEnd, questions, rejectedBlocks);
+                question = next;
+            }
         }
         
-        return new Question(questionText.trim(), options);
+        return new ParseResult(questions, rejectedBlocks);
     }
     
     /**
-     * Extracts the question text from a question block.
+     * Parses one question block: the question text runs up to the first option label,
+     * and each option up to the next label or the end of the block.
      *
-     * @param block the question block text
-     * @return the question text
+     * @param text the text being parsed
+     * @param labels the labels found by the scanner
+     * @param blockStart the start of the block
+     * @param textStart the start of the question text, after any question number
+     * @param firstOption the index of the block's first option label
+     * @param endOption the index just past the block's last option label
+     * @param blockEnd the end of the block
+     * @param questions receives the question if the block is valid
+     * @param rejectedBlocks receives the block text if it is not
      */
-    private String extractQuestionText(String block) {
-        // Remove question number if present
-        Matcher numberMatcher = QUESTION_NUMBER_PATTERN.matcher(block);
-        if (numberMatcher.find()) {
-            block = block.substring(numberMatcher.end());
+    private void parseBlock(CharSequence text, QuestionScanner labels, int blockStart, int textStart,
+                            int firstOption, int endOption, int blockEnd,
+                            List<Question> questions, List<String> rejectedBlocks) {
+        int textEnd = firstOption < endOption ? labels.labelStart(firstOption) : blockEnd;
+        String questionText = trimmed(text, textStart, textEnd);
+        
+        List<String> options = new ArrayList<>(Math.max(0, endOption - firstOption));
+        for (int option = firstOption; option < endOption; option++) {
+            int optionEnd = option + 1 < endOption ? labels.labelStart(option + 1) : blockEnd;
+            String optionText = trimmed(text, labels.contentStart(option), optionEnd);
+            // A label with nothing after it at the end of the block is not an option
+            if (!optionText.isEmpty() || option + 1 < endOption) {
+                options.add(optionText);
+            }
         }
         
-        // Find the first option
-        Matcher optionMatcher = OPTION_PATTERN.matcher(block);
-        if (optionMatcher.find()) {
-            return block.substring(0, optionMatcher.start()).trim();
+        if (questionText.isEmpty() || options.isEmpty()) {
+            rejectedBlocks.add(trimmed(text, blockStart, blockEnd));
+            return;
         }
         
-        // If no options are found, return the entire block
-        return block.trim();
+        questions.add(new Question(questionText, options));
+        logger.debug("Parsed question: {}", questionText);
     }
     
     /**
-     * Extracts the options from a question block.
-     *
-     * @param block the question block text
-     * @return a list of options
+     * Returns the given range of the text with leading and trailing whitespace removed, as {@link String#trim()} does.
      */
-    private List<String> extractOptions(String block) {
-        List<String> options = new ArrayList<>();
-        Matcher matcher = OPTION_PATTERN.matcher(block);
-        
-        int startIndex = -1;
-        String currentOption = null;
-        
-        while (matcher.find()) {
-            if (startIndex != -1 && currentOption != null) {
-                String optionText = block.substring(startIndex, matcher.start()).trim();
-                options.add(optionText);
-            }
-            
-            currentOption = matcher.group(1).toUpperCase();
-            startIndex = matcher.end();
+    private static String trimmed(CharSequence text, int start, int end) {
+        while (start < end && text.charAt(start) <= ' ') {
+            start++;
         }
-        
-        // Add the last option
-        if (startIndex != -1 && currentOption != null && startIndex < block.length()) {
-            String optionText = block.substring(startIndex).trim();
-            options.add(optionText);
+        while (end > start && text.charAt(end - 1) <= ' ') {
+            end--;
         }
-        
-        return options;
+        return text.subSequence(start, end).toString();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,227 @@
+package com.example.snipreader.service;
+
+import java.util.Arrays;
+
+/**
+ * Single-pass scanner for question text. It walks the text once, looking only at the first
+ * non-whitespace character of each line, and records every question label ("1.", "Q2:", "Question 3.")
+ * and option label as index ranges, without creating substrings.
+ * <p>
+ * Option labels are letters ("A)", "(b)", "C."), roman numerals ("ii)", "IV.") and numbers ("1)", "(2)").
+ * Labels other than A-D must be followed by whitespace, so that lines such as "e.g." or "i.e." are not
+ * mistaken for options.
+ */
+final class QuestionScanner {
+    
+    static final int QUESTION = 0;
+    static final int OPTION = 1;
+    
+    // Each label takes three ints: kind, label start and content start
+    private static final int STRIDE = 3;
+    
+    private int[] labels = new int[16 * STRIDE];
+    private int size;
+    
+    private QuestionScanner() {
+    }
+    
+    /**
+     * Scans the text for question and option labels.
+     *
+     * @param text the text to scan
+     * @return the labels found, in text order
+     */
+    static QuestionScanner scan(CharSequence text) {
+        QuestionScanner scanner = new QuestionScanner();
+        int length = text.length();
+        boolean lineStart = true;
+        
+        int i = 0;
+        while (i < length) {
+            char c = text.charAt(i);
+            if (lineStart) {
+                if (isWhitespace(c)) {
+                    i++;
+                    continue;
+                }
+                lineStart = false;
+                
+                int end = matchQuestionLabel(text, i, length);
+                int kind = QUESTION;
+                if (end < 0) {
+                    end = matchOptionLabel(text, i, length);
+                    kind = OPTION;
+                }
+                if (end >= 0) {
+                    scanner.add(kind, i, skipWhitespace(text, end, length));
+                    // Continue at the end of the label so a newline after it still starts a line
+                    i = end;
+                    continue;
+                }
+            }
+            if (c == '\n') {
+                lineStart = true;
+            }
+            i++;
+        }
+        return scanner;
+    }
+    
+    /**
+     * Returns the number of labels found.
+     */
+    int size() {
+        return size;
+    }
+    
+    /**
+     * Returns {@link #QUESTION} or {@link #OPTION}.
+     */
+    int kind(int index) {
+        return labels[index * STRIDE];
+    }
+    
+    /**
+     * Returns the index of the first character of the label.
+     */
+    int labelStart(int index) {
+        return labels[index * STRIDE + 1];
+    }
+    
+    /**
+     * Returns the index of the first non-whitespace character after the label.
+     */
+    int contentStart(int index) {
+        return labels[index * STRIDE + 2];
+    }
+    
+    private void add(int kind, int labelStart, int contentStart) {
+        if ((size + 1) * STRIDE > labels.length) {
+            labels = Arrays.copyOf(labels, labels.length * 2);
+        }
+        int offset = size * STRIDE;
+        labels[offset] = kind;
+        labels[offset + 1] = labelStart;
+        labels[offset + 2] = contentStart;
+        size++;
+    }
+    
+    /**
+     * Matches "1.", "12:", "Q3.", "Q 4:" or "Question 5." (case-insensitive).
+     *
+     * @return the index just past the label, or -1 if there is none
+     */
+    private static int matchQuestionLabel(CharSequence text, int start, int length) {
+        int p = start;
+        if ((text.charAt(p) | 0x20) == 'q') {
+            p++;
+            if (regionMatchesIgnoreCase(text, p, length, "uestion")) {
+                p += 7;
+            }
+            p = skipWhitespace(text, p, length);
+        }
+        
+        int digitsStart = p;
+        while (p < length && isDigit(text.charAt(p))) {
+            p++;
+        }
+        if (p == digitsStart || p >= length) {
+            return -1;
+        }
+        char terminator = text.charAt(p);
+        return terminator == '.' || terminator == ':' ? p + 1 : -1;
+    }
+    
+    /**
+     * Matches an option label with an optional opening parenthesis and a closing ')' or '.'.
+     *
+     * @return the index just past the label, or -1 if there is none
+     */
+    private static int matchOptionLabel(CharSequence text, int start, int length) {
+        int p = start;
+        if (text.charAt(p) == '(') {
+            p++;
+        }
+        
+        int labelStart = p;
+        if (p < length && isDigit(text.charAt(p))) {
+            // Numbers only close with ')', since "1." is a question number
+            while (p < length && isDigit(text.charAt(p)) && p - labelStart < 2) {
+                p++;
+            }
+            if (p >= length || text.charAt(p) != ')') {
+                return -1;
+            }
+            return isSeparated(text, p + 1, length) ? p + 1 : -1;
+        }
+        
+        while (p < length && isAsciiLetter(text.charAt(p)) && p - labelStart < 5) {
+            p++;
+        }
+        int labelLength = p - labelStart;
+        if (labelLength == 0 || p >= length || (text.charAt(p) != ')' && text.charAt(p) != '.')) {
+            return -1;
+        }
+        
+        int end = p + 1;
+        if (labelLength == 1) {
+            char letter = (char) (text.charAt(labelStart) & ~0x20);
+            return letter <= 'D' || isSeparated(text, end, length) ? end : -1;
+        }
+        return isRomanNumeral(text, labelStart, p) && isSeparated(text, end, length) ? end : -1;
+    }
+    
+    private static boolean isRomanNumeral(CharSequence text, int start, int end) {
+        if (end - start > 4) {
+            return false;
+        }
+        boolean lowerCase = text.charAt(start) >= 'a';
+        for (int i = start; i < end; i++) {
+            char c = text.charAt(i);
+            if ((c >= 'a') != lowerCase) {
+                return false;
+            }
+            char upper = (char) (c & ~0x20);
+            if (upper != 'I' && upper != 'V' && upper != 'X') {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    private static boolean isSeparated(CharSequence text, int index, int length) {
+        return index >= length || isWhitespace(text.charAt(index));
+    }
+    
+    private static boolean regionMatchesIgnoreCase(CharSequence text, int start, int length, String expected) {
+        if (start + expected.length() > length) {
+            return false;
+        }
+        for (int i = 0; i < expected.length(); i++) {
+            if ((text.charAt(start + i) | 0x20) != expected.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    static int skipWhitespace(CharSequence text, int index, int length) {
+        while (index < length && isWhitespace(text.charAt(index))) {
+            index++;
+        }
+        return index;
+    }
+    
+    // Same set as the regex \s
+    private static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+    }
+    
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+    
+    private static boolean isAsciiLetter(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+    }
+}
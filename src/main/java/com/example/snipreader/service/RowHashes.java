@@ -0,0 +1,128 @@
+package com.example.snipreader.service;
+
+import com.example.snipreader.service.image.RowLuminance;
+
+import java.awt.image.BufferedImage;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * One 64-bit hash per pixel row of a screenshot, used to find where consecutive screenshots
+ * taken while scrolling overlap. Luminance is quantized before hashing so compression noise
+ * does not change a row's hash, and {@link RowLuminance blank rows} are marked as such since
+ * they match any other blank row.
+ */
+public final class RowHashes {
+    
+    // Drop the low bits of each luminance value so near-identical pixels hash alike
+    private static final int QUANTIZATION_SHIFT = 4;
+    // At least this share of the compared text rows must match for an overlap to count
+    private static final double MIN_MATCH_RATIO = 0.9;
+    
+    private final int width;
+    private final long[] hashes;
+    private final boolean[] blank;
+    
+    private RowHashes(int width, long[] hashes, boolean[] blank) {
+        this.width = width;
+        this.hashes = hashes;
+        this.blank = blank;
+    }
+    
+    /**
+     * Hashes every row of an image.
+     *
+     * @param image the decoded image
+     * @return the row hashes
+     */
+    public static RowHashes of(BufferedImage image) {
+        int width = image.getWidth();
+        int[] pixels = new int[width];
+        int[] luminance = new int[width];
+        long[] hashes = new long[image.getHeight()];
+        boolean[] blank = new boolean[image.getHeight()];
+        for (int y = 0; y < hashes.length; y++) {
+            blank[y] = RowLuminance.read(image, y, pixels, luminance);
+            long hash = 0xcbf29ce484222325L;
+            for (int value : luminance) {
+                hash = (hash ^ (value >> QUANTIZATION_SHIFT)) * 0x100000001b3L;
+            }
+            hashes[y] = hash;
+        }
+        return new RowHashes(width, hashes, blank);
+    }
+    
+    /**
+     * Returns the number of rows at the top of this image that repeat the bottom of the previous one.
+     * Each text row here votes for the offset at which the same row appears in the previous image;
+     * the most common offset is then checked row by row. Returns 0 if no offset matches, including
+     * when the two images have different widths.
+     *
+     * @param previous the hashes of the previous screenshot
+     * @param minRows the minimum number of matching text rows for an overlap to count
+     * @return the number of rows already seen in the previous screenshot
+     */
+    public int overlapWith(RowHashes previous, int minRows) {
+        if (width != previous.width) {
+            return 0;
+        }
+        
+        Map<Long, Integer> rowsByHash = new HashMap<>();
+        for (int y = 0; y < previous.hashes.length; y++) {
+            if (!previous.blank[y]) {
+                // Rows repeated within the image (rules, list bullets) cannot anchor an offset
+                rowsByHash.merge(previous.hashes[y], y, (first, second) -> -1);
+            }
+        }
+        
+        Map<Integer, Integer> votes = new HashMap<>();
+        for (int y = 0; y < hashes.length; y++) {
+            Integer previousRow = blank[y] ? null : rowsByHash.get(hashes[y]);
+            if (previousRow != null && previousRow >= y) {
+                votes.merge(previousRow - y, 1, Integer::sum);
+            }
+        }
+        
+        int bestOffset = -1;
+        int bestVotes = 0;
+        for (Map.Entry<Integer, Integer> vote : votes.entrySet()) {
+            if (vote.getValue() > bestVotes) {
+                bestOffset = vote.getKey();
+                bestVotes = vote.getValue();
+            }
+        }
+        if (bestOffset < 0 || bestVotes < minRows) {
+            return 0;
+        }
+        
+        // Fixed toolbars sit outside the scrolled region, so only the rows between the first and last match count
+        int overlap = Math.min(hashes.length, previous.hashes.length - bestOffset);
+        int first = -1;
+        int last = -1;
+        for (int y = 0; y < overlap; y++) {
+            if (!blank[y] && hashes[y] == previous.hashes[y + bestOffset]) {
+                first = first < 0 ? y : first;
+                last = y;
+            }
+        }
+        
+        int compared = 0;
+        int matched = 0;
+        for (int y = first; y <= last && y >= 0; y++) {
+            if (!blank[y]) {
+                compared++;
+                if (hashes[y] == previous.hashes[y + bestOffset]) {
+                    matched++;
+                }
+            }
+        }
+        return matched >= minRows && matched >= compared * MIN_MATCH_RATIO ? last + 1 : 0;
+    }
+    
+    /**
+     * Returns the number of rows hashed.
+     */
+    public int height() {
+        return hashes.length;
+    }
+}
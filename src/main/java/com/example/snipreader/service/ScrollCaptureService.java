@@ -0,0 +1,327 @@
+package com.example.snipreader.service;
+
+import com.example.snipreader.model.ExtractionJob.Stage;
+import com.example.snipreader.model.Question;
+import com.example.snipreader.model.QuestionSet;
+import com.example.snipreader.repository.QuestionSetRepository;
+import com.example.snipreader.service.QuestionExtractionService.ExtractionResult;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Stitches a long quiz captured as several screenshots taken while scrolling into one question set.
+ * Each screenshot is compared with the previous one in its capture using {@link RowHashes}; only the
+ * rows that were not on screen before, plus a few rows of context, are sent to Gemini. Questions that
+ * were cut off at the bottom of the previous screenshot are read again in full and replace their copy.
+ * <p>
+ * A capture's screenshots run one at a time in the order they arrived. Each capture keeps its own queue,
+ * which a single worker works through, so no worker is ever held waiting for another screenshot's turn.
+ */
+@Service
+public class ScrollCaptureService {
+    private static final Logger logger = LoggerFactory.getLogger(ScrollCaptureService.class);
+    
+    private final GeminiService geminiService;
+    private final QuestionSetRepository questionSetRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final Map<String, Capture> captures = new ConcurrentHashMap<>();
+    private final Duration timeout;
+    private final int minOverlapRows;
+    private final int minNewRows;
+    private final int contextRows;
+    private final int maxQueued;
+    
+    private final Counter newRows;
+    private final Counter skippedRows;
+    
+    /**
+     * State of one scrolling capture: the last saved screenshot's row hashes and the questions it added,
+     * and the screenshots waiting to run. The other fields are only used by the screenshot that is running.
+     */
+    private static final class Capture {
+        private Long questionSetId;
+        private RowHashes previous;
+        private List<Question> previousQuestions = List.of();
+        private volatile Instant lastUsed = Instant.now();
+        // Guarded by the capture; running is true while a worker is working through the queue
+        private final Deque<Runnable> pending = new ArrayDeque<>();
+        private boolean running;
+    }
+    
+    /**
+     * The capture a screenshot belongs to, taken when the screenshot arrives.
+     */
+    public static final class Ticket {
+        private final String captureId;
+        private final Capture capture;
+        
+        private Ticket(String captureId, Capture capture) {
+            this.captureId = captureId;
+            this.capture = capture;
+        }
+    }
+    
+    public ScrollCaptureService(GeminiService geminiService, QuestionSetRepository questionSetRepository,
+                                PlatformTransactionManager transactionManager, MeterRegistry meterRegistry,
+                                @Value("${snipreader.scroll.timeout:PT30M}") Duration timeout,
+                                @Value("${snipreader.scroll.min-overlap-rows:24}") int minOverlapRows,
+                                @Value("${snipreader.scroll.min-new-rows:32}") int minNewRows,
+                                @Value("${snipreader.scroll.context-rows:48}") int contextRows,
+                                @Value("${snipreader.scroll.max-queued:10}") int maxQueued) {
+        this.geminiService = geminiService;
+        this.questionSetRepository = questionSetRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.timeout = timeout;
+        this.minOverlapRows = minOverlapRows;
+        this.minNewRows = minNewRows;
+        this.contextRows = contextRows;
+        this.maxQueued = maxQueued;
+        
+        this.newRows = Counter.builder("snipreader.scroll.rows").tag("kind", "new").register(meterRegistry);
+        this.skippedRows = Counter.builder("snipreader.scroll.rows").tag("kind", "overlap").register(meterRegistry);
+        meterRegistry.gauge("snipreader.scroll.captures", captures, Map::size);
+    }
+    
+    /**
+     * Starts a new scrolling capture.
+     *
+     * @return the capture ID to pass to {@link #addScreenshot}
+     */
+    public String startCapture() {
+        evictExpiredCaptures();
+        String captureId = UUID.randomUUID().toString();
+        captures.put(captureId, new Capture());
+        return captureId;
+    }
+    
+    /**
+     * Returns true if the capture exists and has not timed out.
+     *
+     * @param captureId the capture ID
+     * @return true if screenshots can still be added to the capture
+     */
+    public boolean isActive(String captureId) {
+        Capture capture = captureId != null ? captures.get(captureId) : null;
+        return capture != null && capture.lastUsed.plus(timeout).isAfter(Instant.now());
+    }
+    
+    /**
+     * Finds the capture a screenshot belongs to as it arrives. An unknown or expired capture ID starts a
+     * new capture.
+     *
+     * @param captureId the capture ID
+     * @return the screenshot's ticket, to pass to {@link #execute} and {@link #addScreenshot}
+     */
+    public Ticket queue(String captureId) {
+        Capture capture = captures.compute(captureId, (id, existing) -> existing != null
+                && existing.lastUsed.plus(timeout).isAfter(Instant.now()) ? existing : new Capture());
+        capture.lastUsed = Instant.now();
+        return new Ticket(captureId, capture);
+    }
+    
+    /**
+     * Runs a task for a screenshot once the screenshots queued before it in its capture have finished. If none
+     * is running, a worker is taken to work through the capture's queue; otherwise the task waits in the queue,
+     * without holding a worker, for the one already working through it.
+     *
+     * @param ticket the ticket from {@link #queue}
+     * @param workers the executor to take a worker from
+     * @param task the task, usually one that calls {@link #addScreenshot}
+     * @throws RejectedExecutionException if the workers reject the task, or too many screenshots of the
+     *                                    capture are already waiting
+     */
+    public void execute(Ticket ticket, Executor workers, Runnable task) {
+        Capture capture = ticket.capture;
+        synchronized (capture) {
+            if (capture.pending.size() >= maxQueued) {
+                throw new RejectedExecutionException(capture.pending.size()
+                        + " screenshots are already waiting in capture " + ticket.captureId);
+            }
+            capture.pending.add(task);
+            if (capture.running) {
+                return;
+            }
+            try {
+                workers.execute(() -> drain(capture));
+                capture.running = true;
+            } catch (RejectedExecutionException e) {
+                capture.pending.removeLast();
+                throw e;
+            }
+        }
+    }
+    
+    /**
+     * Runs a capture's queued tasks one after another until the queue is empty.
+     */
+    private void drain(Capture capture) {
+        boolean drained = false;
+        try {
+            while (true) {
+                Runnable task;
+                synchronized (capture) {
+                    task = capture.pending.poll();
+                    if (task == null) {
+                        capture.running = false;
+                        drained = true;
+                        return;
+                    }
+                }
+                task.run();
+            }
+        } finally {
+            if (!drained) {
+                // A task threw; the tasks after it start on the next worker taken for the capture
+                synchronized (capture) {
+                    capture.running = false;
+                }
+            }
+        }
+    }
+    
+    /**
+     * Adds a screenshot of a capture, extracting only the region that was not in the last saved one and
+     * adding its questions to the capture's question set. Must be called from a task run through
+     * {@link #execute}, so that screenshots of the same capture are added one at a time in order.
+     *
+     * @param ticket the ticket from {@link #queue}
+     * @param imageBytes the decoded image bytes
+     * @param title the title for the question set, used by the first screenshot
+     * @param listener the listener to notify as the pipeline progresses
+     * @return the extraction result for the capture's question set
+     * @throws IOException if there's an error handling the image
+     */
+    public ExtractionResult addScreenshot(Ticket ticket, byte[] imageBytes, String title,
+                                          ExtractionListener listener) throws IOException {
+        Capture capture = ticket.capture;
+        String captureId = ticket.captureId;
+        capture.lastUsed = Instant.now();
+        
+        listener.onStage(Stage.MATCHING);
+        BufferedImage image = ImageIO.read(new ByteArrayInputStream(imageBytes));
+        RowHashes rows = image != null ? RowHashes.of(image) : null;
+        int overlap = rows != null && capture.previous != null ? rows.overlapWith(capture.previous, minOverlapRows) : 0;
+        
+        if (overlap > 0 && image.getHeight() - overlap < minNewRows) {
+            logger.info("Screenshot adds nothing new to capture {}", captureId);
+            skippedRows.increment(image.getHeight());
+            return new ExtractionResult(capture.questionSetId, false);
+        }
+        
+        byte[] region = imageBytes;
+        if (overlap > 0) {
+            // Keep a few rows above the new region so a question cut off at the previous bottom edge is read whole
+            int top = Math.max(0, overlap - contextRows);
+            region = encodePng(image.getSubimage(0, top, image.getWidth(), image.getHeight() - top));
+            logger.info("Screenshot overlaps the previous one in capture {} by {} of {} rows",
+                    captureId, overlap, image.getHeight());
+            skippedRows.increment(top);
+            newRows.increment(image.getHeight() - top);
+        } else if (image != null) {
+            newRows.increment(image.getHeight());
+        }
+        
+        listener.onStage(Stage.EXTRACTING);
+        List<Question> questions = geminiService.processImageBytesForQuestions(region, listener);
+        if (questions.isEmpty()) {
+            return new ExtractionResult(capture.questionSetId, false);
+        }
+        
+        listener.onStage(Stage.SAVING);
+        Long questionSetId = transactionTemplate.execute(status -> save(capture, title, questions));
+        capture.questionSetId = questionSetId;
+        // Only a saved screenshot counts as seen; after a failure the next one is compared with the last saved one
+        capture.previous = rows;
+        return new ExtractionResult(questionSetId, false);
+    }
+    
+    /**
+     * Adds a screenshot's questions to the capture's question set, creating the set on the first screenshot.
+     * Questions that repeat one from the previous screenshot are dropped, or replace it if they were read more fully.
+     */
+    private Long save(Capture capture, String title, List<Question> questions) {
+        QuestionSet questionSet = capture.questionSetId != null
+                ? questionSetRepository.findById(capture.questionSetId).orElse(null)
+                : null;
+        if (questionSet == null) {
+            questionSet = new QuestionSet(title);
+            capture.previousQuestions = List.of();
+        }
+        
+        // The questions of this screenshot as saved, which the next screenshot is compared with
+        List<Question> current = new ArrayList<>(questions.size());
+        int added = 0;
+        for (Question question : questions) {
+            int duplicate = TileMerger.findDuplicate(capture.previousQuestions, 0,
+                    capture.previousQuestions.size(), question);
+            if (duplicate < 0) {
+                questionSet.addQuestion(question);
+                current.add(question);
+                added++;
+            } else if (TileMerger.isBetter(question, capture.previousQuestions.get(duplicate))) {
+                current.add(replace(questionSet, capture.previousQuestions.get(duplicate), question));
+            } else {
+                current.add(capture.previousQuestions.get(duplicate));
+            }
+        }
+        
+        questionSet = questionSetRepository.save(questionSet);
+        capture.previousQuestions = current;
+        logger.info("Added {} of {} questions to question set {}", added, questions.size(), questionSet.getId());
+        return questionSet.getId();
+    }
+    
+    /**
+     * Copies a more complete reading of a question over its saved copy.
+     *
+     * @return the saved copy, or the previous question if it is no longer in the set
+     */
+    private Question replace(QuestionSet questionSet, Question previous, Question question) {
+        for (Question saved : questionSet.getQuestions()) {
+            // Saving may replace new questions with managed copies, so match on the text rather than the ID
+            if (saved.getQuestionText().equals(previous.getQuestionText())) {
+                saved.setQuestionText(question.getQuestionText());
+                saved.setQuestionType(question.getQuestionType());
+                saved.setOptions(question.getOptions());
+                saved.setAnswer(question.getAnswer());
+                saved.setExplanation(question.getExplanation());
+                return saved;
+            }
+        }
+        return previous;
+    }
+    
+    private byte[] encodePng(BufferedImage image) throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", outputStream);
+        return outputStream.toByteArray();
+    }
+    
+    private void evictExpiredCaptures() {
+        Instant cutoff = Instant.now().minus(timeout);
+        captures.values().removeIf(capture -> capture.lastUsed.isBefore(cutoff));
+    }
+}
@@ -0,0 +1,151 @@
+package com.example.snipreader.service;
+
+import com.example.snipreader.model.QuestionSet;
+import com.example.snipreader.model.QuestionSetSavedEvent;
+import com.example.snipreader.repository.QuestionSetRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory index of the perceptual hashes of previously processed screenshots.
+ * Uses multi-index hashing: the 256-bit hash is split into {@code maxDistance + 1} chunks, so by the
+ * pigeonhole principle any hash within {@code maxDistance} of a query matches it exactly on at least
+ * one chunk. A lookup is a handful of hash-table probes followed by verifying the few candidates.
+ */
+@Service
+public class SimilarImageIndex {
+    private static final Logger logger = LoggerFactory.getLogger(SimilarImageIndex.class);
+    
+    private final QuestionSetRepository questionSetRepository;
+    private final boolean enabled;
+    private final int maxDistance;
+    private final int[] chunkStarts;
+    private final int[] chunkLengths;
+    private final List<Map<Long, List<Entry>>> chunkTables;
+    private final Set<Long> indexedIds = new HashSet<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    
+    public SimilarImageIndex(QuestionSetRepository questionSetRepository,
+                             @Value("${snipreader.similarity.enabled:true}") boolean enabled,
+                             @Value("${snipreader.similarity.max-distance:8}") int maxDistance) {
+        this.questionSetRepository = questionSetRepository;
+        this.enabled = enabled;
+        this.maxDistance = maxDistance;
+        
+        // At least four chunks so every chunk fits in a long
+        int chunks = Math.max(maxDistance + 1, PerceptualHash.BITS / Long.SIZE);
+        this.chunkStarts = new int[chunks];
+        this.chunkLengths = new int[chunks];
+        this.chunkTables = new ArrayList<>(chunks);
+        int start = 0;
+        for (int i = 0; i < chunks; i++) {
+            int length = (PerceptualHash.BITS - start) / (chunks - i);
+            chunkStarts[i] = start;
+            chunkLengths[i] = length;
+            chunkTables.add(new HashMap<>());
+            start += length;
+        }
+    }
+    
+    /**
+     * Loads the hashes of all stored question sets once the application has started.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        if (!enabled) {
+            return;
+        }
+        
+        int count = 0;
+        for (Object[] row : questionSetRepository.findAllImageHashes()) {
+            add((Long) row[0], PerceptualHash.fromHex((String) row[1]));
+            count++;
+        }
+        logger.info("Loaded {} image hashes into the similar image index", count);
+    }
+    
+    /**
+     * Adds newly saved question sets to the index.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onQuestionSetSaved(QuestionSetSavedEvent event) {
+        QuestionSet questionSet = event.questionSet();
+        if (enabled && questionSet.getImageHash() != null) {
+            add(questionSet.getId(), PerceptualHash.fromHex(questionSet.getImageHash()));
+        }
+    }
+    
+    /**
+     * Finds the stored question set whose screenshot is closest to the given hash.
+     *
+     * @param hash the perceptual hash of the new screenshot
+     * @return the ID of the closest question set within the configured distance, if any
+     */
+    public Optional<Long> findSimilar(PerceptualHash hash) {
+        if (!enabled) {
+            return Optional.empty();
+        }
+        
+        Entry best = null;
+        int bestDistance = Integer.MAX_VALUE;
+        
+        lock.readLock().lock();
+        try {
+            for (int i = 0; i < chunkTables.size(); i++) {
+                List<Entry> candidates = chunkTables.get(i).get(hash.bits(chunkStarts[i], chunkLengths[i]));
+                if (candidates == null) {
+                    continue;
+                }
+                for (Entry candidate : candidates) {
+                    int distance = candidate.hash.distance(hash);
+                    // Prefer the closest match, then the most recent set
+                    if (distance <= maxDistance && (distance < bestDistance
+                            || (distance == bestDistance && candidate.questionSetId > best.questionSetId))) {
+                        best = candidate;
+                        bestDistance = distance;
+                    }
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        
+        return Optional.ofNullable(best).map(Entry::questionSetId);
+    }
+    
+    private void add(Long questionSetId, PerceptualHash hash) {
+        Entry entry = new Entry(questionSetId, hash);
+        lock.writeLock().lock();
+        try {
+            // Sets are re-saved when they change; their screenshot hash does not
+            if (!indexedIds.add(questionSetId)) {
+                return;
+            }
+            for (int i = 0; i < chunkTables.size(); i++) {
+                chunkTables.get(i)
+                        .computeIfAbsent(hash.bits(chunkStarts[i], chunkLengths[i]), key -> new ArrayList<>(1))
+                        .add(entry);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    private record Entry(Long questionSetId, PerceptualHash hash) {
+    }
+}
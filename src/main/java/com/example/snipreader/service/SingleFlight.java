@@ -0,0 +1,74 @@
+package com.example.snipreader.service;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Coalesces concurrent calls for the same key: the first caller runs the call, and callers arriving
+ * while it is in flight wait for and share its result instead of running it again.
+ * Once the call finishes the key is forgotten, so later callers start a new call.
+ */
+final class SingleFlight<K, V> {
+    
+    private final Map<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+    
+    /**
+     * The result of a coalesced call.
+     *
+     * @param value the call's result
+     * @param shared true if this caller waited for another caller's call
+     */
+    record Result<V>(V value, boolean shared) {
+    }
+    
+    /**
+     * Runs the call unless one is already in flight for the key, in which case its result is awaited.
+     * Failures are rethrown to every waiting caller.
+     *
+     * @param key the key identifying identical calls
+     * @param call the call to run
+     * @return the result and whether it was shared
+     */
+    Result<V> run(K key, Supplier<V> call) {
+        CompletableFuture<V> created = new CompletableFuture<>();
+        CompletableFuture<V> existing = inFlight.putIfAbsent(key, created);
+        if (existing != null) {
+            return new Result<>(await(existing), true);
+        }
+        
+        try {
+            V value = call.get();
+            created.complete(value);
+            return new Result<>(value, false);
+        } catch (RuntimeException | Error e) {
+            created.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, created);
+        }
+    }
+    
+    /**
+     * Returns the number of keys with a call in flight.
+     */
+    int size() {
+        return inFlight.size();
+    }
+    
+    private V await(CompletableFuture<V> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            if (e.getCause() instanceof Error cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+}
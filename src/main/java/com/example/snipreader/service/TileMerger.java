@@ -0,0 +1,85 @@
+package com.example.snipreader.service;
+
+import com.example.snipreader.model.Question;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Merges the questions extracted from the tiles of one screenshot, or from consecutive screenshots of
+ * a scrolling capture. Tiles overlap, so a question that straddles a cut can be read from both tiles,
+ * once in full and once cut short; only the better copy is kept.
+ */
+final class TileMerger {
+    
+    // A cut-off copy must have at least this much text in common to count as the same question
+    private static final int MIN_PARTIAL_LENGTH = 16;
+    
+    private TileMerger() {
+    }
+    
+    /**
+     * Merges per-tile question lists, given top to bottom, into one list in reading order.
+     * Each tile is only compared with the tile above it, since that is the only one it overlaps.
+     *
+     * @param tiles the questions extracted from each tile
+     * @return the merged questions
+     */
+    static List<Question> merge(List<List<Question>> tiles) {
+        List<Question> merged = new ArrayList<>();
+        int previousStart = 0;
+        for (List<Question> tile : tiles) {
+            int tileStart = merged.size();
+            for (Question question : tile) {
+                int duplicate = findDuplicate(merged, previousStart, tileStart, question);
+                if (duplicate < 0) {
+                    merged.add(question);
+                } else if (isBetter(question, merged.get(duplicate))) {
+                    merged.set(duplicate, question);
+                }
+            }
+            previousStart = tileStart;
+        }
+        return merged;
+    }
+    
+    /**
+     * Finds the question in the given range that is the same as the question, read in full or cut short.
+     *
+     * @return the index of the duplicate, or -1 if there is none
+     */
+    static int findDuplicate(List<Question> merged, int from, int to, Question question) {
+        String text = QuestionNormalizer.normalizeText(question.getQuestionText());
+        for (int i = from; i < to; i++) {
+            if (isSameQuestion(text, QuestionNormalizer.normalizeText(merged.get(i).getQuestionText()))) {
+                return i;
+            }
+        }
+        return -1;
+    }
+    
+    private static boolean isSameQuestion(String a, String b) {
+        if (a.equals(b)) {
+            return true;
+        }
+        String shorter = a.length() < b.length() ? a : b;
+        String longer = shorter == a ? b : a;
+        // The cut takes either the end of the question above it or the start of the one below
+        return shorter.length() >= MIN_PARTIAL_LENGTH && (longer.startsWith(shorter) || longer.endsWith(shorter));
+    }
+    
+    /**
+     * Prefers the copy with more options, then the one with more question text.
+     */
+    static boolean isBetter(Question candidate, Question current) {
+        int options = optionCount(candidate) - optionCount(current);
+        if (options != 0) {
+            return options > 0;
+        }
+        return candidate.getQuestionText().length() > current.getQuestionText().length();
+    }
+    
+    private static int optionCount(Question question) {
+        return question.getOptions() != null ? question.getOptions().size() : 0;
+    }
+}
@@ -0,0 +1,92 @@
+package com.example.snipreader.service.image;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import java.awt.image.BufferedImage;
+
+/**
+ * Crops uniform borders (window chrome backgrounds, page margins) around the content,
+ * keeping a small padding so text at the edge is not clipped.
+ */
+@Component
+@Order(10)
+@ConditionalOnProperty(name = "snipreader.preprocessing.crop-borders", havingValue = "true", matchIfMissing = true)
+public class BorderCropStep implements ImageProcessingStep {
+    
+    private final int tolerance;
+    private final int padding;
+    
+    public BorderCropStep(@Value("${snipreader.preprocessing.crop-tolerance:12}") int tolerance,
+                          @Value("${snipreader.preprocessing.crop-padding:8}") int padding) {
+        this.tolerance = tolerance;
+        this.padding = padding;
+    }
+    
+    @Override
+    public BufferedImage apply(BufferedImage image) {
+        int border = image.getRGB(0, 0);
+        int width = image.getWidth();
+        int height = image.getHeight();
+        
+        int top = 0;
+        while (top < height && isUniformRow(image, top, border)) {
+            top++;
+        }
+        if (top == height) {
+            // The whole image is one colour; nothing to crop to
+            return image;
+        }
+        
+        int bottom = height - 1;
+        while (bottom > top && isUniformRow(image, bottom, border)) {
+            bottom--;
+        }
+        
+        int left = 0;
+        while (left < width && isUniformColumn(image, left, top, bottom, border)) {
+            left++;
+        }
+        
+        int right = width - 1;
+        while (right > left && isUniformColumn(image, right, top, bottom, border)) {
+            right--;
+        }
+        
+        int x = Math.max(0, left - padding);
+        int y = Math.max(0, top - padding);
+        int cropWidth = Math.min(width, right + padding + 1) - x;
+        int cropHeight = Math.min(height, bottom + padding + 1) - y;
+        
+        if (cropWidth == width && cropHeight == height) {
+            return image;
+        }
+        return image.getSubimage(x, y, cropWidth, cropHeight);
+    }
+    
+    private boolean isUniformRow(BufferedImage image, int y, int border) {
+        for (int x = 0; x < image.getWidth(); x++) {
+            if (!isClose(image.getRGB(x, y), border)) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    private boolean isUniformColumn(BufferedImage image, int x, int top, int bottom, int border) {
+        for (int y = top; y <= bottom; y++) {
+            if (!isClose(image.getRGB(x, y), border)) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    private boolean isClose(int rgb, int border) {
+        return Math.abs(((rgb >> 16) & 0xFF) - ((border >> 16) & 0xFF)) <= tolerance
+                && Math.abs(((rgb >> 8) & 0xFF) - ((border >> 8) & 0xFF)) <= tolerance
+                && Math.abs((rgb & 0xFF) - (border & 0xFF)) <= tolerance;
+    }
+}
@@ -0,0 +1,62 @@
+package com.example.snipreader.service.image;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+
+/**
+ * Downscales images whose longest side exceeds the configured maximum. Scaling is done in
+ * successive halvings so small text stays legible instead of aliasing.
+ */
+@Component
+@Order(20)
+public class DownscaleStep implements ImageProcessingStep {
+    
+    private final int maxDimension;
+    
+    public DownscaleStep(@Value("${snipreader.preprocessing.max-dimension:2048}") int maxDimension) {
+        this.maxDimension = maxDimension;
+    }
+    
+    @Override
+    public BufferedImage apply(BufferedImage image) {
+        int longestSide = Math.max(image.getWidth(), image.getHeight());
+        if (maxDimension <= 0 || longestSide <= maxDimension) {
+            return image;
+        }
+        
+        double scale = (double) maxDimension / longestSide;
+        int targetWidth = Math.max(1, (int) Math.round(image.getWidth() * scale));
+        int targetHeight = Math.max(1, (int) Math.round(image.getHeight() * scale));
+        
+        BufferedImage current = image;
+        int width = image.getWidth();
+        int height = image.getHeight();
+        do {
+            width = Math.max(targetWidth, width / 2);
+            height = Math.max(targetHeight, height / 2);
+            current = resize(current, width, height);
+        } while (width != targetWidth || height != targetHeight);
+        
+        return current;
+    }
+    
+    private BufferedImage resize(BufferedImage source, int width, int height) {
+        int type = source.getType() == BufferedImage.TYPE_BYTE_GRAY
+                ? BufferedImage.TYPE_BYTE_GRAY : BufferedImage.TYPE_INT_RGB;
+        BufferedImage resized = new BufferedImage(width, height, type);
+        Graphics2D graphics = resized.createGraphics();
+        try {
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            graphics.drawImage(source, 0, 0, width, height, null);
+        } finally {
+            graphics.dispose();
+        }
+        return resized;
+    }
+}
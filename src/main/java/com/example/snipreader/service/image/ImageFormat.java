@@ -0,0 +1,69 @@
+package com.example.snipreader.service.image;
+
+/**
+ * Image formats recognised from their magic bytes, with the MIME type sent to Gemini.
+ */
+public enum ImageFormat {
+    PNG("image/png", true),
+    JPEG("image/jpeg", true),
+    WEBP("image/webp", true),
+    GIF("image/gif", false),
+    BMP("image/bmp", false),
+    UNKNOWN("image/jpeg", false); // Matches what was always sent before formats were detected
+    
+    private final String mimeType;
+    private final boolean supportedByGemini;
+    
+    ImageFormat(String mimeType, boolean supportedByGemini) {
+        this.mimeType = mimeType;
+        this.supportedByGemini = supportedByGemini;
+    }
+    
+    public String getMimeType() {
+        return mimeType;
+    }
+    
+    /**
+     * Returns true if Gemini accepts this format as inline data without re-encoding.
+     */
+    public boolean isSupportedByGemini() {
+        return supportedByGemini;
+    }
+    
+    /**
+     * Detects the format of an image from its leading magic bytes.
+     *
+     * @param data the encoded image
+     * @return the detected format, or UNKNOWN
+     */
+    public static ImageFormat detect(byte[] data) {
+        if (startsWith(data, 0, 0x89, 'P', 'N', 'G')) {
+            return PNG;
+        }
+        if (startsWith(data, 0, 0xFF, 0xD8, 0xFF)) {
+            return JPEG;
+        }
+        if (startsWith(data, 0, 'G', 'I', 'F', '8')) {
+            return GIF;
+        }
+        if (startsWith(data, 0, 'B', 'M')) {
+            return BMP;
+        }
+        if (startsWith(data, 0, 'R', 'I', 'F', 'F') && startsWith(data, 8, 'W', 'E', 'B', 'P')) {
+            return WEBP;
+        }
+        return UNKNOWN;
+    }
+    
+    private static boolean startsWith(byte[] data, int offset, int... magic) {
+        if (data.length < offset + magic.length) {
+            return false;
+        }
+        for (int i = 0; i < magic.length; i++) {
+            if ((data[offset + i] & 0xFF) != magic[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,186 @@
+package com.example.snipreader.service.image;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Shrinks screenshots before they are sent to Gemini: detects the real format, runs the image
+ * through every {@link ImageProcessingStep} bean and re-encodes it compactly. The original bytes are
+ * kept whenever they are already smaller and in a format Gemini accepts. Tall screenshots can
+ * be split into tiles first so small text survives the downscale.
+ */
+@Service
+public class ImagePreprocessor {
+    private static final Logger logger = LoggerFactory.getLogger(ImagePreprocessor.class);
+    
+    private final List<ImageProcessingStep> steps;
+    private final ImageTiler imageTiler;
+    private final boolean enabled;
+    private final String outputFormat;
+    private final float jpegQuality;
+    private final DistributionSummary bytesSaved;
+    
+    public ImagePreprocessor(List<ImageProcessingStep> steps,
+                             ImageTiler imageTiler,
+                             MeterRegistry meterRegistry,
+                             @Value("${snipreader.preprocessing.enabled:true}") boolean enabled,
+                             @Value("${snipreader.preprocessing.output-format:auto}") String outputFormat,
+                             @Value("${snipreader.preprocessing.jpeg-quality:0.85}") float jpegQuality) {
+        this.steps = steps;
+        this.imageTiler = imageTiler;
+        this.enabled = enabled;
+        this.outputFormat = outputFormat;
+        this.jpegQuality = jpegQuality;
+        this.bytesSaved = DistributionSummary.builder("snipreader.preprocessing.bytes.saved")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+    }
+    
+    /**
+     * Prepares an uploaded image for Gemini.
+     *
+     * @param imageBytes the image as uploaded
+     * @return the image to send, with its real MIME type
+     */
+    public PreparedImage prepare(byte[] imageBytes) {
+        return prepare(imageBytes, false).get(0);
+    }
+    
+    /**
+     * Prepares an uploaded image for Gemini, splitting it into tiles first if it is tall enough
+     * for {@link ImageTiler}. Each tile is processed and encoded separately.
+     *
+     * @param imageBytes the image as uploaded
+     * @return the images to send, top to bottom; a single image if it was not split
+     */
+    public List<PreparedImage> prepareTiles(byte[] imageBytes) {
+        return prepare(imageBytes, true);
+    }
+    
+    private List<PreparedImage> prepare(byte[] imageBytes, boolean tile) {
+        ImageFormat format = ImageFormat.detect(imageBytes);
+        PreparedImage original = new PreparedImage(imageBytes, format.getMimeType(), imageBytes.length);
+        
+        if (!enabled && !tile && format.isSupportedByGemini()) {
+            return List.of(original);
+        }
+        
+        try {
+            BufferedImage image = ImageIO.read(new ByteArrayInputStream(imageBytes));
+            if (image == null) {
+                // ImageIO cannot decode this format (e.g. WebP); send it as it is
+                return List.of(original);
+            }
+            
+            image = toRgb(image);
+            if (tile && imageTiler.shouldTile(image)) {
+                List<BufferedImage> tiles = imageTiler.split(image);
+                List<PreparedImage> prepared = new ArrayList<>(tiles.size());
+                for (BufferedImage tileImage : tiles) {
+                    prepared.add(encode(process(tileImage), imageBytes.length / tiles.size()));
+                }
+                logger.info("Split {}x{} {} image into {} tiles", image.getWidth(), image.getHeight(), format,
+                        tiles.size());
+                return prepared;
+            }
+            if (!enabled && format.isSupportedByGemini()) {
+                return List.of(original);
+            }
+            
+            image = process(image);
+            PreparedImage prepared = encode(image, imageBytes.length);
+            if (prepared.data().length >= imageBytes.length && format.isSupportedByGemini()) {
+                prepared = original;
+            }
+            
+            bytesSaved.record(prepared.bytesSaved());
+            logger.info("Preprocessed {} image: {} -> {} bytes ({} {}x{})", format, imageBytes.length,
+                    prepared.data().length, prepared.mimeType(), image.getWidth(), image.getHeight());
+            return List.of(prepared);
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Could not preprocess image, sending the original", e);
+            return List.of(original);
+        }
+    }
+    
+    private BufferedImage process(BufferedImage image) {
+        if (enabled) {
+            for (ImageProcessingStep step : steps) {
+                image = step.apply(image);
+            }
+        }
+        return image;
+    }
+    
+    private PreparedImage encode(BufferedImage image, int originalSize) throws IOException {
+        byte[] png = "jpeg".equals(outputFormat) ? null : encodePng(image);
+        byte[] jpeg = "png".equals(outputFormat) ? null : encodeJpeg(image);
+        
+        if (jpeg == null || (png != null && png.length <= jpeg.length)) {
+            return new PreparedImage(png, ImageFormat.PNG.getMimeType(), originalSize);
+        }
+        return new PreparedImage(jpeg, ImageFormat.JPEG.getMimeType(), originalSize);
+    }
+    
+    private byte[] encodePng(BufferedImage image) throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", outputStream);
+        return outputStream.toByteArray();
+    }
+    
+    private byte[] encodeJpeg(BufferedImage image) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        try (ImageOutputStream imageOutputStream = ImageIO.createImageOutputStream(outputStream)) {
+            writer.setOutput(imageOutputStream);
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(jpegQuality);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return outputStream.toByteArray();
+    }
+    
+    /**
+     * Redraws indexed and transparent images as opaque RGB on white, since the JPEG encoder
+     * rejects palettes and has no transparency (transparent pixels would otherwise turn black).
+     */
+    private BufferedImage toRgb(BufferedImage image) {
+        int type = image.getType();
+        if (type == BufferedImage.TYPE_INT_RGB || type == BufferedImage.TYPE_3BYTE_BGR
+                || type == BufferedImage.TYPE_BYTE_GRAY) {
+            return image;
+        }
+        
+        BufferedImage flattened = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = flattened.createGraphics();
+        try {
+            graphics.setColor(Color.WHITE);
+            graphics.fillRect(0, 0, image.getWidth(), image.getHeight());
+            graphics.drawImage(image, 0, 0, null);
+        } finally {
+            graphics.dispose();
+        }
+        return flattened;
+    }
+}
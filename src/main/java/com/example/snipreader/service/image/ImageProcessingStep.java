@@ -0,0 +1,18 @@
+package com.example.snipreader.service.image;
+
+import java.awt.image.BufferedImage;
+
+/**
+ * A step in the image preprocessing pipeline. Every bean implementing this interface is applied
+ * in {@link org.springframework.core.annotation.Order} order, so new steps can be added as components.
+ */
+public interface ImageProcessingStep {
+    
+    /**
+     * Transforms an image.
+     *
+     * @param image the image produced by the previous step
+     * @return the transformed image, or the same instance if nothing changed
+     */
+    BufferedImage apply(BufferedImage image);
+}
@@ -0,0 +1,93 @@
+package com.example.snipreader.service.image;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Splits tall screenshots into horizontal tiles so each one can be sent to Gemini at full resolution.
+ * Cuts are placed in the middle of the longest run of blank rows near each target position, which is
+ * normally the gap between two questions, and every tile also repeats a few rows of the one above it
+ * in case a cut has to go through text.
+ */
+@Component
+public class ImageTiler {
+    
+    private final boolean enabled;
+    private final int minHeight;
+    private final int tileHeight;
+    private final int overlap;
+    
+    public ImageTiler(@Value("${snipreader.tiling.enabled:true}") boolean enabled,
+                      @Value("${snipreader.tiling.min-height:2400}") int minHeight,
+                      @Value("${snipreader.tiling.tile-height:1600}") int tileHeight,
+                      @Value("${snipreader.tiling.overlap:48}") int overlap) {
+        this.enabled = enabled;
+        this.minHeight = minHeight;
+        this.tileHeight = tileHeight;
+        this.overlap = overlap;
+    }
+    
+    /**
+     * Returns true if the image is tall enough to be split.
+     */
+    public boolean shouldTile(BufferedImage image) {
+        return enabled && image.getHeight() >= minHeight && image.getHeight() > image.getWidth();
+    }
+    
+    /**
+     * Splits an image into tiles from top to bottom.
+     *
+     * @param image the image to split
+     * @return the tiles, sharing the image's pixels
+     */
+    public List<BufferedImage> split(BufferedImage image) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        boolean[] blank = RowLuminance.blankRows(image);
+        
+        List<BufferedImage> tiles = new ArrayList<>();
+        int start = 0;
+        while (start < height) {
+            // Let the last tile run a little long rather than leave a sliver
+            int end = height - start <= tileHeight * 5 / 4
+                    ? height
+                    : cutNear(blank, start + tileHeight, tileHeight / 4);
+            int top = Math.max(0, start - overlap);
+            tiles.add(image.getSubimage(0, top, width, end - top));
+            start = end;
+        }
+        return tiles;
+    }
+    
+    /**
+     * Finds the middle of the longest blank run within {@code window} rows of the target,
+     * or the target itself if there is none.
+     */
+    private int cutNear(boolean[] blank, int target, int window) {
+        int from = Math.max(1, target - window);
+        int to = Math.min(blank.length - 1, target + window);
+        
+        int bestStart = -1;
+        int bestLength = 0;
+        int runStart = -1;
+        for (int y = from; y <= to; y++) {
+            if (blank[y]) {
+                if (runStart < 0) {
+                    runStart = y;
+                }
+                int length = y - runStart + 1;
+                if (length > bestLength) {
+                    bestLength = length;
+                    bestStart = runStart;
+                }
+            } else {
+                runStart = -1;
+            }
+        }
+        return bestStart < 0 ? target : bestStart + bestLength / 2;
+    }
+}
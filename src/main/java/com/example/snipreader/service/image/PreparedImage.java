@@ -0,0 +1,18 @@
+package com.example.snipreader.service.image;
+
+/**
+ * An image ready to be sent to Gemini.
+ *
+ * @param data the encoded image bytes
+ * @param mimeType the MIME type of the encoded bytes
+ * @param originalSize the size of the image as uploaded, in bytes
+ */
+public record PreparedImage(byte[] data, String mimeType, int originalSize) {
+    
+    /**
+     * Returns how many bytes preprocessing saved compared to the upload.
+     */
+    public int bytesSaved() {
+        return originalSize - data.length;
+    }
+}
@@ -0,0 +1,57 @@
+package com.example.snipreader.service.image;
+
+import java.awt.image.BufferedImage;
+
+/**
+ * Reads the luminance of pixel rows and tells blank rows apart, the way both screenshot tiling and
+ * scroll stitching look at rows. A row is blank when its luminance varies so little that it holds no
+ * text, such as the gap between two questions.
+ */
+public final class RowLuminance {
+    
+    // Rows whose luminance varies less than this are treated as blank
+    private static final int BLANK_ROW_TOLERANCE = 24;
+    
+    private RowLuminance() {
+    }
+    
+    /**
+     * Reads the luminance of one row, from 0 for black to 255 for white.
+     *
+     * @param image the image to read
+     * @param y the row to read
+     * @param pixels a buffer for the row's pixels, at least as long as the image is wide
+     * @param luminance receives the luminance of each pixel, at least as long as the image is wide
+     * @return true if the row is blank
+     */
+    public static boolean read(BufferedImage image, int y, int[] pixels, int[] luminance) {
+        int width = image.getWidth();
+        image.getRGB(0, y, width, 1, pixels, 0, width);
+        int min = 255;
+        int max = 0;
+        for (int x = 0; x < width; x++) {
+            int rgb = pixels[x];
+            int value = (((rgb >> 16) & 0xff) * 77 + ((rgb >> 8) & 0xff) * 150 + (rgb & 0xff) * 29) >> 8;
+            luminance[x] = value;
+            min = Math.min(min, value);
+            max = Math.max(max, value);
+        }
+        return max - min < BLANK_ROW_TOLERANCE;
+    }
+    
+    /**
+     * Finds the blank rows of an image.
+     *
+     * @param image the image to read
+     * @return whether each row is blank, indexed by row
+     */
+    public static boolean[] blankRows(BufferedImage image) {
+        int[] pixels = new int[image.getWidth()];
+        int[] luminance = new int[image.getWidth()];
+        boolean[] blank = new boolean[image.getHeight()];
+        for (int y = 0; y < blank.length; y++) {
+            blank[y] = read(image, y, pixels, luminance);
+        }
+        return blank;
+    }
+}
@@ -0,0 +1,105 @@
+package com.example.snipreader.service.resilience;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Concurrency limiter whose limit adapts with additive-increase/multiplicative-decrease (AIMD).
+ * Each fast success raises the limit by roughly one per limit's worth of calls; a slow call,
+ * a timeout or a 429 cuts it by the backoff ratio.
+ */
+public class AdaptiveConcurrencyLimiter {
+    
+    private final int minLimit;
+    private final int maxLimit;
+    private final long latencyThresholdNanos;
+    private final double backoffRatio;
+    private double limit;
+    private int inFlight;
+    
+    /**
+     * Creates a limiter.
+     *
+     * @param initialLimit the starting limit
+     * @param minLimit the lowest the limit can fall to
+     * @param maxLimit the highest the limit can grow to
+     * @param latencyThreshold calls slower than this count as a sign of overload
+     * @param backoffRatio the factor the limit is multiplied by on overload
+     */
+    public AdaptiveConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit,
+                                      Duration latencyThreshold, double backoffRatio) {
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.latencyThresholdNanos = latencyThreshold.toNanos();
+        this.backoffRatio = backoffRatio;
+        this.limit = Math.max(minLimit, Math.min(maxLimit, initialLimit));
+    }
+    
+    /**
+     * Takes a slot, waiting up to {@code maxWait} for the number of calls in flight to drop below the limit.
+     * Every successful acquire must be followed by exactly one of {@link #onSuccess(long)},
+     * {@link #onOverload()} or {@link #onIgnore()}.
+     *
+     * @param maxWait the longest time to wait
+     * @return true if a slot was taken
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public synchronized boolean acquire(Duration maxWait) throws InterruptedException {
+        long deadline = System.nanoTime() + maxWait.toNanos();
+        while (inFlight >= (int) limit) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                return false;
+            }
+            TimeUnit.NANOSECONDS.timedWait(this, remaining);
+        }
+        inFlight++;
+        return true;
+    }
+    
+    /**
+     * Releases a slot after a successful call.
+     *
+     * @param latencyNanos how long the call took
+     */
+    public synchronized void onSuccess(long latencyNanos) {
+        if (latencyNanos > latencyThresholdNanos) {
+            decrease();
+        } else {
+            limit = Math.min(maxLimit, limit + 1.0 / limit);
+        }
+        release();
+    }
+    
+    /**
+     * Releases a slot after the backend signalled overload (429 or timeout).
+     */
+    public synchronized void onOverload() {
+        decrease();
+        release();
+    }
+    
+    /**
+     * Releases a slot without adjusting the limit.
+     */
+    public synchronized void onIgnore() {
+        release();
+    }
+    
+    public synchronized double getLimit() {
+        return limit;
+    }
+    
+    public synchronized int getInFlight() {
+        return inFlight;
+    }
+    
+    private void decrease() {
+        limit = Math.max(minLimit, limit * backoffRatio);
+    }
+    
+    private void release() {
+        inFlight--;
+        notifyAll();
+    }
+}
@@ -0,0 +1,99 @@
+package com.example.snipreader.service.resilience;
+
+import java.time.Duration;
+
+/**
+ * Consecutive-failure circuit breaker. After {@code failureThreshold} failures in a row the circuit opens
+ * and calls fail fast; once {@code openDuration} has passed, a limited number of trial calls are let
+ * through (half-open) and the first result decides whether it closes again or re-opens.
+ */
+public class CircuitBreaker {
+    
+    /**
+     * Enum to represent the state of the circuit
+     */
+    public enum State {
+        CLOSED,     // Calls flow normally
+        OPEN,       // Calls fail fast
+        HALF_OPEN   // Trial calls decide whether to close
+    }
+    
+    private final int failureThreshold;
+    private final long openDurationNanos;
+    private final int halfOpenMaxCalls;
+    private State state = State.CLOSED;
+    private int consecutiveFailures;
+    private int halfOpenCalls;
+    private long openedAt;
+    
+    public CircuitBreaker(int failureThreshold, Duration openDuration, int halfOpenMaxCalls) {
+        this.failureThreshold = failureThreshold;
+        this.openDurationNanos = openDuration.toNanos();
+        this.halfOpenMaxCalls = halfOpenMaxCalls;
+    }
+    
+    /**
+     * Asks permission to make a call. Every permitted call must be followed by exactly one of
+     * {@link #onSuccess()}, {@link #onFailure()} or {@link #onIgnore()}.
+     *
+     * @return true if the call may go ahead
+     */
+    public synchronized boolean tryAcquire() {
+        if (state == State.OPEN) {
+            if (System.nanoTime() - openedAt < openDurationNanos) {
+                return false;
+            }
+            state = State.HALF_OPEN;
+            halfOpenCalls = 0;
+        }
+        if (state == State.HALF_OPEN) {
+            if (halfOpenCalls >= halfOpenMaxCalls) {
+                return false;
+            }
+            halfOpenCalls++;
+        }
+        return true;
+    }
+    
+    /**
+     * Records a call that reached a healthy backend.
+     */
+    public synchronized void onSuccess() {
+        consecutiveFailures = 0;
+        state = State.CLOSED;
+    }
+    
+    /**
+     * Records a call that failed because the backend is unhealthy.
+     */
+    public synchronized void onFailure() {
+        consecutiveFailures++;
+        if (state == State.HALF_OPEN || consecutiveFailures >= failureThreshold) {
+            state = State.OPEN;
+            openedAt = System.nanoTime();
+        }
+    }
+    
+    /**
+     * Records a call whose outcome says nothing about the backend's health.
+     */
+    public synchronized void onIgnore() {
+        if (state == State.HALF_OPEN && halfOpenCalls > 0) {
+            halfOpenCalls--;
+        }
+    }
+    
+    public synchronized State getState() {
+        return state;
+    }
+    
+    /**
+     * Returns how long until an open circuit lets a trial call through.
+     */
+    public synchronized Duration getRemainingOpenTime() {
+        if (state != State.OPEN) {
+            return Duration.ZERO;
+        }
+        return Duration.ofNanos(Math.max(0, openDurationNanos - (System.nanoTime() - openedAt)));
+    }
+}
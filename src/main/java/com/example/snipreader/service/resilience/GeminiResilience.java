@@ -0,0 +1,212 @@
+package com.example.snipreader.service.resilience;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.HttpStatusCodeException;
+import org.springframework.web.client.ResourceAccessException;
+
+import java.time.Duration;
+import java.util.function.BooleanSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Guards calls to Gemini. Each attempt must pass the circuit breaker, take a token from the rate limiter
+ * (sized to the API quota) and a slot from the adaptive concurrency limiter. Overload (429) and server errors
+ * (5xx, timeouts) are retried with jittered exponential backoff that honours {@code Retry-After}; when the
+ * call cannot be made or keeps failing, a {@link GeminiUnavailableException} with a readable message is thrown.
+ * Other client errors are passed through unchanged.
+ */
+@Component
+public class GeminiResilience {
+    private static final Logger logger = LoggerFactory.getLogger(GeminiResilience.class);
+    
+    private final TokenBucketRateLimiter rateLimiter;
+    private final AdaptiveConcurrencyLimiter concurrencyLimiter;
+    private final CircuitBreaker circuitBreaker;
+    private final RetryPolicy retryPolicy;
+    private final Duration maxWait;
+    private final MeterRegistry meterRegistry;
+    private final Counter retries;
+    
+    public GeminiResilience(MeterRegistry meterRegistry,
+                            @Value("${gemini.resilience.rate-limit.permits-per-second:1}") double permitsPerSecond,
+                            @Value("${gemini.resilience.rate-limit.burst:5}") int burst,
+                            @Value("${gemini.resilience.max-wait:PT30S}") Duration maxWait,
+                            @Value("${gemini.resilience.concurrency.initial:4}") int initialConcurrency,
+                            @Value("${gemini.resilience.concurrency.min:1}") int minConcurrency,
+                            @Value("${gemini.resilience.concurrency.max:16}") int maxConcurrency,
+                            @Value("${gemini.resilience.concurrency.latency-threshold:PT60S}") Duration latencyThreshold,
+                            @Value("${gemini.resilience.concurrency.backoff-ratio:0.5}") double backoffRatio,
+                            @Value("${gemini.resilience.retry.max-attempts:4}") int maxAttempts,
+                            @Value("${gemini.resilience.retry.base-delay:PT1S}") Duration baseDelay,
+                            @Value("${gemini.resilience.retry.max-delay:PT30S}") Duration maxDelay,
+                            @Value("${gemini.resilience.circuit-breaker.failure-threshold:5}") int failureThreshold,
+                            @Value("${gemini.resilience.circuit-breaker.open-duration:PT30S}") Duration openDuration,
+                            @Value("${gemini.resilience.circuit-breaker.half-open-calls:1}") int halfOpenCalls) {
+        this.rateLimiter = new TokenBucketRateLimiter(permitsPerSecond, burst);
+        this.concurrencyLimiter = new AdaptiveConcurrencyLimiter(initialConcurrency, minConcurrency, maxConcurrency,
+                latencyThreshold, backoffRatio);
+        this.circuitBreaker = new CircuitBreaker(failureThreshold, openDuration, halfOpenCalls);
+        this.retryPolicy = new RetryPolicy(maxAttempts, baseDelay, maxDelay);
+        this.maxWait = maxWait;
+        this.meterRegistry = meterRegistry;
+        
+        meterRegistry.gauge("snipreader.gemini.rate-limit.permits", rateLimiter,
+                TokenBucketRateLimiter::availablePermits);
+        meterRegistry.gauge("snipreader.gemini.concurrency.limit", concurrencyLimiter,
+                AdaptiveConcurrencyLimiter::getLimit);
+        meterRegistry.gauge("snipreader.gemini.concurrency.in-flight", concurrencyLimiter,
+                AdaptiveConcurrencyLimiter::getInFlight);
+        // 0 = closed, 1 = half-open, 2 = open
+        meterRegistry.gauge("snipreader.gemini.circuit.state", circuitBreaker, breaker -> switch (breaker.getState()) {
+            case CLOSED -> 0;
+            case HALF_OPEN -> 1;
+            case OPEN -> 2;
+        });
+        this.retries = Counter.builder("snipreader.gemini.retries").register(meterRegistry);
+    }
+    
+    /**
+     * Runs a Gemini call under the rate limiter, concurrency limiter, retry policy and circuit breaker.
+     *
+     * @param call the call to make
+     * @return the call's result
+     * @throws GeminiUnavailableException if the call was not attempted or failed after all retries
+     */
+    public <T> T execute(Supplier<T> call) {
+        return execute(call, () -> true);
+    }
+    
+    /**
+     * Runs a Gemini call like {@link #execute(Supplier)}, retrying only while {@code retryAllowed} says so
+     * (e.g. not once a streamed response has already been partly delivered).
+     *
+     * @param call the call to make
+     * @param retryAllowed checked after a retryable failure
+     * @return the call's result
+     * @throws GeminiUnavailableException if the call was not attempted or failed after all retries
+     */
+    public <T> T execute(Supplier<T> call, BooleanSupplier retryAllowed) {
+        for (int attempt = 1; ; attempt++) {
+            acquire();
+            
+            long start = System.nanoTime();
+            RuntimeException failure;
+            Duration retryAfter = null;
+            try {
+                T result = call.get();
+                concurrencyLimiter.onSuccess(System.nanoTime() - start);
+                circuitBreaker.onSuccess();
+                return result;
+            } catch (HttpStatusCodeException e) {
+                int status = e.getStatusCode().value();
+                if (status == 429) {
+                    // Quota exhausted: shrink concurrency and hold every caller off for as long as asked
+                    concurrencyLimiter.onOverload();
+                    circuitBreaker.onIgnore();
+                    retryAfter = retryAfter(e.getResponseHeaders());
+                    if (retryAfter != null) {
+                        rateLimiter.pause(retryAfter);
+                    }
+                } else if (e.getStatusCode().is5xxServerError()) {
+                    concurrencyLimiter.onIgnore();
+                    circuitBreaker.onFailure();
+                    retryAfter = retryAfter(e.getResponseHeaders());
+                } else {
+                    // The request itself is wrong; retrying will not help
+                    concurrencyLimiter.onIgnore();
+                    circuitBreaker.onIgnore();
+                    throw e;
+                }
+                failure = e;
+            } catch (ResourceAccessException e) {
+                // Connection failures and timeouts
+                concurrencyLimiter.onOverload();
+                circuitBreaker.onFailure();
+                failure = e;
+            } catch (RuntimeException e) {
+                concurrencyLimiter.onIgnore();
+                circuitBreaker.onIgnore();
+                throw e;
+            }
+            
+            outcome(failure);
+            if (!retryPolicy.canRetry(attempt) || !retryAllowed.getAsBoolean()) {
+                throw new GeminiUnavailableException(describe(failure), failure);
+            }
+            
+            Duration delay = retryPolicy.delayFor(attempt, retryAfter);
+            logger.warn("Gemini call failed on attempt {} ({}), retrying in {} ms",
+                    attempt, failure.getMessage(), delay.toMillis());
+            retries.increment();
+            sleep(delay);
+        }
+    }
+    
+    public CircuitBreaker.State getCircuitState() {
+        return circuitBreaker.getState();
+    }
+    
+    private void acquire() {
+        if (!circuitBreaker.tryAcquire()) {
+            rejected("circuit-open");
+            throw new GeminiUnavailableException("The AI service is temporarily unavailable. Please try again in "
+                    + Math.max(1, circuitBreaker.getRemainingOpenTime().toSeconds()) + " seconds.");
+        }
+        try {
+            if (!rateLimiter.tryAcquire(maxWait)) {
+                circuitBreaker.onIgnore();
+                rejected("rate-limited");
+                throw new GeminiUnavailableException("Too many requests are being processed right now. Please try again shortly.");
+            }
+            if (!concurrencyLimiter.acquire(maxWait)) {
+                circuitBreaker.onIgnore();
+                rejected("concurrency-limited");
+                throw new GeminiUnavailableException("Too many requests are being processed right now. Please try again shortly.");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            circuitBreaker.onIgnore();
+            throw new GeminiUnavailableException("Interrupted while waiting for the AI service", e);
+        }
+    }
+    
+    private Duration retryAfter(HttpHeaders headers) {
+        return headers == null ? null : RetryPolicy.parseRetryAfter(headers.getFirst(HttpHeaders.RETRY_AFTER));
+    }
+    
+    private String describe(RuntimeException failure) {
+        if (failure instanceof HttpStatusCodeException e && e.getStatusCode().value() == 429) {
+            return "The AI service quota has been exceeded. Please try again in a minute.";
+        }
+        if (failure instanceof ResourceAccessException) {
+            return "The AI service did not respond in time. Please try again.";
+        }
+        return "The AI service is having problems right now. Please try again later.";
+    }
+    
+    private void outcome(RuntimeException failure) {
+        String reason = failure instanceof HttpStatusCodeException e
+                ? String.valueOf(e.getStatusCode().value())
+                : "io";
+        Counter.builder("snipreader.gemini.failures").tag("reason", reason).register(meterRegistry).increment();
+    }
+    
+    private void rejected(String reason) {
+        Counter.builder("snipreader.gemini.rejections").tag("reason", reason).register(meterRegistry).increment();
+    }
+    
+    private void sleep(Duration delay) {
+        try {
+            Thread.sleep(delay.toMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new GeminiUnavailableException("Interrupted while waiting to retry the AI service", e);
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package com.example.snipreader.service.resilience;
+
+/**
+ * Thrown when a Gemini call is not attempted or has failed after all retries because the backend
+ * is overloaded or unhealthy. The message is suitable for showing to the user.
+ */
+public class GeminiUnavailableException extends RuntimeException {
+    
+    public GeminiUnavailableException(String message) {
+        super(message);
+    }
+    
+    public GeminiUnavailableException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
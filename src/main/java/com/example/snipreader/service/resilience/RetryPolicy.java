@@ -0,0 +1,69 @@
+package com.example.snipreader.service.resilience;
+
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Exponential backoff with full jitter, never shorter than a server-provided {@code Retry-After}.
+ */
+public class RetryPolicy {
+    
+    private final int maxAttempts;
+    private final long baseDelayMillis;
+    private final long maxDelayMillis;
+    
+    public RetryPolicy(int maxAttempts, Duration baseDelay, Duration maxDelay) {
+        this.maxAttempts = maxAttempts;
+        this.baseDelayMillis = baseDelay.toMillis();
+        this.maxDelayMillis = maxDelay.toMillis();
+    }
+    
+    /**
+     * Returns true if another attempt may be made after the given (1-based) attempt failed.
+     */
+    public boolean canRetry(int attempt) {
+        return attempt < maxAttempts;
+    }
+    
+    /**
+     * Returns how long to wait before the next attempt.
+     *
+     * @param attempt the (1-based) attempt that just failed
+     * @param retryAfter the delay the server asked for, or null
+     * @return the delay before retrying
+     */
+    public Duration delayFor(int attempt, Duration retryAfter) {
+        long ceiling = Math.min(maxDelayMillis, baseDelayMillis << Math.min(attempt - 1, 30));
+        long jittered = ThreadLocalRandom.current().nextLong(ceiling + 1);
+        if (retryAfter != null && retryAfter.toMillis() > jittered) {
+            return retryAfter;
+        }
+        return Duration.ofMillis(jittered);
+    }
+    
+    /**
+     * Parses a {@code Retry-After} header, given either in seconds or as an HTTP date.
+     *
+     * @param header the header value, or null
+     * @return the delay, or null if the header is missing or malformed
+     */
+    public static Duration parseRetryAfter(String header) {
+        if (header == null || header.isBlank()) {
+            return null;
+        }
+        try {
+            return Duration.ofSeconds(Math.max(0, Long.parseLong(header.trim())));
+        } catch (NumberFormatException e) {
+            try {
+                ZonedDateTime retryAt = ZonedDateTime.parse(header.trim(), DateTimeFormatter.RFC_1123_DATE_TIME);
+                Duration delay = Duration.between(ZonedDateTime.now(retryAt.getZone()), retryAt);
+                return delay.isNegative() ? Duration.ZERO : delay;
+            } catch (DateTimeParseException ignored) {
+                return null;
+            }
+        }
+    }
+}
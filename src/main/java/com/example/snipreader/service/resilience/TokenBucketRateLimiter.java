@@ -0,0 +1,80 @@
+package com.example.snipreader.service.resilience;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token-bucket rate limiter. Tokens refill continuously at a fixed rate up to a burst capacity,
+ * and each call takes one token, waiting for it if necessary.
+ */
+public class TokenBucketRateLimiter {
+    
+    private final double permitsPerNano;
+    private final double capacity;
+    private double tokens;
+    private long lastRefill;
+    
+    /**
+     * Creates a limiter that starts full.
+     *
+     * @param permitsPerSecond the sustained rate
+     * @param burst the maximum number of calls that can be made back to back
+     */
+    public TokenBucketRateLimiter(double permitsPerSecond, int burst) {
+        this.permitsPerNano = permitsPerSecond / TimeUnit.SECONDS.toNanos(1);
+        this.capacity = burst;
+        this.tokens = burst;
+        this.lastRefill = System.nanoTime();
+    }
+    
+    /**
+     * Takes a token, waiting up to {@code maxWait} for one to become available.
+     *
+     * @param maxWait the longest time to wait
+     * @return true if a token was taken, false if none would be available in time
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public boolean tryAcquire(Duration maxWait) throws InterruptedException {
+        long deadline = System.nanoTime() + maxWait.toNanos();
+        while (true) {
+            long waitNanos;
+            synchronized (this) {
+                refill();
+                if (tokens >= 1) {
+                    tokens -= 1;
+                    return true;
+                }
+                waitNanos = (long) Math.ceil((1 - tokens) / permitsPerNano);
+            }
+            if (System.nanoTime() + waitNanos > deadline) {
+                return false;
+            }
+            TimeUnit.NANOSECONDS.sleep(waitNanos);
+        }
+    }
+    
+    /**
+     * Empties the bucket so that no call is let through for at least the given time,
+     * e.g. when the server has answered with {@code Retry-After}.
+     *
+     * @param duration how long callers should hold off
+     */
+    public synchronized void pause(Duration duration) {
+        refill();
+        tokens = Math.min(tokens, -duration.toNanos() * permitsPerNano);
+    }
+    
+    /**
+     * Returns the number of tokens currently available (negative while paused).
+     */
+    public synchronized double availablePermits() {
+        refill();
+        return tokens;
+    }
+    
+    private void refill() {
+        long now = System.nanoTime();
+        tokens = Math.min(capacity, tokens + (now - lastRefill) * permitsPerNano);
+        lastRefill = now;
+    }
+}
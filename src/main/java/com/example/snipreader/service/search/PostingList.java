@@ -0,0 +1,303 @@
+package com.example.snipreader.service.search;
+
+import java.util.Arrays;
+
+/**
+ * The documents containing one term, in increasing document order, stored compactly as variable-length
+ * integers: for each document the gap from the previous document, the field-weighted term frequency and
+ * the term's positions as gaps. Every {@value #SKIP_INTERVAL} entries a skip point records where the entry
+ * starts, so a {@link Cursor} can jump close to a target document instead of decoding everything before it.
+ * The entries from one skip point to the next form a block, which also keeps the frequency and length pairs
+ * no other document in it beats on both, so a search can bound the score of any document in the block and
+ * pass over a whole block without decoding it.
+ */
+final class PostingList {
+    
+    static final int SKIP_INTERVAL = 64;
+    
+    private byte[] data = new byte[16];
+    private int length;
+    private int size;
+    private int lastDoc = -1;
+    
+    // Document before the skip point, and the byte offset of the skip point's entry
+    private int[] skipDocs = new int[0];
+    private int[] skipOffsets = new int[0];
+    
+    // Each block's competitive frequency and document length pairs, those of block b starting at impactStarts[b]
+    private int[] impactStarts = new int[0];
+    private int[] impactFrequencies = new int[4];
+    private int[] impactLengths = new int[4];
+    private int impactCount;
+    
+    /**
+     * Appends a document; documents must be added in increasing order.
+     *
+     * @param doc the document number
+     * @param frequency the field-weighted number of occurrences
+     * @param documentLength the field-weighted length of the document
+     * @param positions the positions of the term in the document, increasing
+     * @param count the number of positions
+     */
+    void add(int doc, int frequency, int documentLength, int[] positions, int count) {
+        append(doc, frequency, documentLength, count);
+        int previous = 0;
+        for (int i = 0; i < count; i++) {
+            writeVarInt(positions[i] - previous);
+            previous = positions[i];
+        }
+    }
+    
+    /**
+     * Appends a document's entry up to its positions, which the caller writes next.
+     */
+    private void append(int doc, int frequency, int documentLength, int count) {
+        if (doc <= lastDoc) {
+            throw new IllegalArgumentException("Documents must be added in increasing order");
+        }
+        int block = size / SKIP_INTERVAL;
+        if (size % SKIP_INTERVAL == 0) {
+            if (block == skipDocs.length) {
+                skipDocs = Arrays.copyOf(skipDocs, Math.max(4, block * 2));
+                skipOffsets = Arrays.copyOf(skipOffsets, skipDocs.length);
+                impactStarts = Arrays.copyOf(impactStarts, skipDocs.length);
+            }
+            skipDocs[block] = lastDoc;
+            skipOffsets[block] = length;
+            impactStarts[block] = impactCount;
+        }
+        addImpact(impactStarts[block], frequency, documentLength);
+        
+        writeVarInt(doc - lastDoc);
+        writeVarInt(frequency);
+        writeVarInt(count);
+        lastDoc = doc;
+        size++;
+    }
+    
+    /**
+     * Returns the number of documents in the list, including deleted ones.
+     */
+    int size() {
+        return size;
+    }
+    
+    /**
+     * Returns the approximate memory used, in bytes.
+     */
+    long memoryBytes() {
+        return data.length + 12L * skipDocs.length + 4L * (impactFrequencies.length + impactLengths.length);
+    }
+    
+    /**
+     * Returns the block holding the first document at or after the target, or -1 if there is none.
+     */
+    int block(int target) {
+        if (target > lastDoc) {
+            return -1;
+        }
+        int block = Arrays.binarySearch(skipDocs, 0, blocks(), target - 1);
+        return block >= 0 ? block : -block - 2;
+    }
+    
+    /**
+     * Returns the last document of a block.
+     */
+    int blockLastDoc(int block) {
+        return block + 1 < blocks() ? skipDocs[block + 1] : lastDoc;
+    }
+    
+    /**
+     * Returns the highest score of a document in a block.
+     *
+     * @param block the block
+     * @param scorer a score that does not fall as the frequency rises or as the document gets shorter
+     */
+    double blockMaxScore(int block, Scorer scorer) {
+        int end = block + 1 < blocks() ? impactStarts[block + 1] : impactCount;
+        double maxScore = 0;
+        for (int i = impactStarts[block]; i < end; i++) {
+            maxScore = Math.max(maxScore, scorer.score(impactFrequencies[i], impactLengths[i]));
+        }
+        return maxScore;
+    }
+    
+    /**
+     * Copies the list without the documents renumbered to -1, giving the others their new numbers. Positions
+     * are stored as gaps within a document, so their bytes are copied as they are.
+     *
+     * @param renumbered the new number of each document, increasing, or -1 to drop it
+     * @param documentLengths the field-weighted length of each document, by new number
+     * @return the renumbered list, which may be empty
+     */
+    PostingList renumber(int[] renumbered, int[] documentLengths) {
+        PostingList copy = new PostingList();
+        // Gaps between the kept documents only shrink, so the copy fits in as many bytes
+        copy.data = new byte[Math.max(length, copy.data.length)];
+        Cursor cursor = new Cursor();
+        while (cursor.offset < length) {
+            cursor.next();
+            int doc = renumbered[cursor.doc];
+            if (doc >= 0) {
+                copy.append(doc, cursor.frequency, documentLengths[doc], cursor.positionCount);
+                copy.writeBytes(data, cursor.positionsOffset, cursor.offset - cursor.positionsOffset);
+            }
+        }
+        return copy;
+    }
+    
+    private int blocks() {
+        return (size + SKIP_INTERVAL - 1) / SKIP_INTERVAL;
+    }
+    
+    Cursor cursor() {
+        return new Cursor();
+    }
+    
+    /**
+     * Adds a document's frequency and length to the pairs of the last block, unless a document already in
+     * the block has at least the frequency and at most the length, dropping the pairs it beats.
+     */
+    private void addImpact(int start, int frequency, int documentLength) {
+        int kept = start;
+        for (int i = start; i < impactCount; i++) {
+            if (impactFrequencies[i] >= frequency && impactLengths[i] <= documentLength) {
+                return;
+            }
+            if (impactFrequencies[i] > frequency || impactLengths[i] < documentLength) {
+                impactFrequencies[kept] = impactFrequencies[i];
+                impactLengths[kept] = impactLengths[i];
+                kept++;
+            }
+        }
+        if (kept == impactFrequencies.length) {
+            impactFrequencies = Arrays.copyOf(impactFrequencies, kept * 2);
+            impactLengths = Arrays.copyOf(impactLengths, kept * 2);
+        }
+        impactFrequencies[kept] = frequency;
+        impactLengths[kept] = documentLength;
+        impactCount = kept + 1;
+    }
+    
+    private void writeVarInt(int value) {
+        if (length + 5 > data.length) {
+            data = Arrays.copyOf(data, data.length * 2);
+        }
+        while ((value & ~0x7f) != 0) {
+            data[length++] = (byte) ((value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        data[length++] = (byte) value;
+    }
+    
+    private void writeBytes(byte[] bytes, int offset, int count) {
+        if (length + count > data.length) {
+            data = Arrays.copyOf(data, Math.max(data.length * 2, length + count));
+        }
+        System.arraycopy(bytes, offset, data, length, count);
+        length += count;
+    }
+    
+    /**
+     * Scores a document from the term's frequency in it and the document's length.
+     */
+    @FunctionalInterface
+    interface Scorer {
+        double score(int frequency, int documentLength);
+    }
+    
+    /**
+     * Walks a posting list forwards. A cursor must not be used while documents are being added.
+     */
+    final class Cursor {
+        private int offset;
+        private int doc = -1;
+        private int frequency;
+        private int positionCount;
+        private int positionsOffset;
+        
+        /**
+         * Returns the current document, -1 before the first call to {@link #advance}, or
+         * {@link Integer#MAX_VALUE} once the list is exhausted.
+         */
+        int doc() {
+            return doc;
+        }
+        
+        int frequency() {
+            return frequency;
+        }
+        
+        /**
+         * Moves to the first document at or after the target.
+         *
+         * @param target the document to move to
+         * @return the new current document, or {@link Integer#MAX_VALUE} if there is none
+         */
+        int advance(int target) {
+            if (doc >= target) {
+                return doc;
+            }
+            
+            // Jump to the last skip point before the target, if that is ahead of the cursor
+            int skip = Arrays.binarySearch(skipDocs, 0, blocks(), target - 1);
+            skip = skip >= 0 ? skip : -skip - 2;
+            if (skip >= 0 && skipOffsets[skip] > offset) {
+                offset = skipOffsets[skip];
+                doc = skipDocs[skip];
+            }
+            
+            while (offset < length) {
+                next();
+                if (doc >= target) {
+                    return doc;
+                }
+            }
+            doc = Integer.MAX_VALUE;
+            return doc;
+        }
+        
+        /**
+         * Decodes the entry after the current one; there must be one.
+         */
+        private void next() {
+            doc += readVarInt();
+            frequency = readVarInt();
+            positionCount = readVarInt();
+            positionsOffset = offset;
+            for (int i = 0; i < positionCount; i++) {
+                readVarInt();
+            }
+        }
+        
+        /**
+         * Decodes the positions of the term in the current document.
+         *
+         * @return the positions, in increasing order
+         */
+        int[] positions() {
+            int resume = offset;
+            offset = positionsOffset;
+            int[] positions = new int[positionCount];
+            int position = 0;
+            for (int i = 0; i < positionCount; i++) {
+                position += readVarInt();
+                positions[i] = position;
+            }
+            offset = resume;
+            return positions;
+        }
+        
+        private int readVarInt() {
+            int value = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = data[offset++];
+                value |= (b & 0x7f) << shift;
+                shift += 7;
+            } while (b < 0);
+            return value;
+        }
+    }
+}
@@ -0,0 +1,717 @@
+package com.example.snipreader.service.search;
+
+import com.example.snipreader.model.Question;
+import com.example.snipreader.model.QuestionSet;
+import com.example.snipreader.model.QuestionSetSavedEvent;
+import com.example.snipreader.repository.QuestionRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory inverted index over the text, options, answer and explanation of every stored question.
+ * Queries match all of their terms, with prefix and phrase clauses (see {@link SearchQuery}), and
+ * results are ranked with BM25 over field-weighted term frequencies. Posting lists are compressed and
+ * have skip points, and clauses are intersected by leapfrogging their cursors, so a query only decodes
+ * the parts of the lists near documents that can still match. Once enough hits have been found, blocks
+ * of postings whose best possible score cannot beat the worst of them are passed over.
+ * <p>
+ * The index is rebuilt from the database at startup, in batches, and updated whenever a question set
+ * is saved; documents of a re-saved set are marked deleted and added again. Once deleted documents make
+ * up more than a set share of the index, the posting lists are rewritten without them.
+ */
+@Service
+public class QuestionSearchIndex {
+    private static final Logger logger = LoggerFactory.getLogger(QuestionSearchIndex.class);
+    
+    // Field weights: a match in the question text counts for more than one in the explanation
+    private static final int QUESTION_WEIGHT = 3;
+    private static final int OPTION_WEIGHT = 2;
+    private static final int ANSWER_WEIGHT = 2;
+    private static final int EXPLANATION_WEIGHT = 1;
+    
+    // Gap left between fields and options so a phrase cannot match across them
+    private static final int FIELD_GAP = 16;
+    
+    // BM25 parameters
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+    
+    // Terms matched by a prefix score less than the exact term
+    private static final double PREFIX_EXPANSION_WEIGHT = 0.5;
+    
+    private final QuestionRepository questionRepository;
+    private final boolean enabled;
+    private final int maxPrefixTerms;
+    private final double maxDeletedShare;
+    private final Timer searchTimer;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    
+    private final TreeMap<String, PostingList> terms = new TreeMap<>();
+    private final Map<Long, int[]> docsBySet = new HashMap<>();
+    private final BitSet deleted = new BitSet();
+    private long[] questionIds = new long[1024];
+    private long[] questionSetIds = new long[1024];
+    private int[] lengths = new int[1024];
+    private int docCount;
+    private int liveDocs;
+    private long totalLength;
+    // Sets indexed as they were saved before the rebuild finished, which it leaves alone; null afterwards
+    private Set<Long> savedBeforeRebuilt = new HashSet<>();
+    
+    public QuestionSearchIndex(QuestionRepository questionRepository, MeterRegistry meterRegistry,
+                               @Value("${snipreader.search.enabled:true}") boolean enabled,
+                               @Value("${snipreader.search.max-prefix-terms:64}") int maxPrefixTerms,
+                               @Value("${snipreader.search.max-deleted-share:0.2}") double maxDeletedShare) {
+        this.questionRepository = questionRepository;
+        this.enabled = enabled;
+        this.maxPrefixTerms = maxPrefixTerms;
+        this.maxDeletedShare = maxDeletedShare;
+        this.searchTimer = Timer.builder("snipreader.search.latency").register(meterRegistry);
+        meterRegistry.gauge("snipreader.search.documents", this, QuestionSearchIndex::size);
+        meterRegistry.gauge("snipreader.search.terms", this, QuestionSearchIndex::termCount);
+    }
+    
+    /**
+     * Indexes every stored question once the application has started.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        if (!enabled) {
+            return;
+        }
+        
+        questionRepository.forEachBatch(questionRepository::findAllAfter, this::indexStored);
+        
+        lock.writeLock().lock();
+        try {
+            savedBeforeRebuilt = null;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        logger.info("Indexed {} questions ({} terms) for search", size(), termCount());
+    }
+    
+    /**
+     * Re-indexes the questions of newly saved question sets.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onQuestionSetSaved(QuestionSetSavedEvent event) {
+        QuestionSet questionSet = event.questionSet();
+        if (!enabled || questionSet.getId() == null) {
+            return;
+        }
+        
+        lock.writeLock().lock();
+        try {
+            index(questionSet.getId(), questionSet.getQuestions());
+            if (savedBeforeRebuilt != null) {
+                savedBeforeRebuilt.add(questionSet.getId());
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    /**
+     * Finds the questions matching a query, best first.
+     *
+     * @param query the query, see {@link SearchQuery}
+     * @param limit the maximum number of hits to return
+     * @return the matching questions, best first
+     */
+    public List<SearchHit> search(String query, int limit) {
+        SearchQuery parsed = SearchQuery.parse(query);
+        if (!enabled || parsed.clauses().isEmpty() || limit <= 0) {
+            return List.of();
+        }
+        
+        long start = System.nanoTime();
+        lock.readLock().lock();
+        try {
+            return search(parsed, limit);
+        } finally {
+            lock.readLock().unlock();
+            searchTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+    
+    /**
+     * Returns the number of indexed questions, not counting deleted ones.
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return liveDocs;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    private int termCount() {
+        lock.readLock().lock();
+        try {
+            return terms.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    private List<SearchHit> search(SearchQuery query, int limit) {
+        List<Matcher> matchers = new ArrayList<>(query.clauses().size());
+        for (SearchQuery.Clause clause : query.clauses()) {
+            Matcher matcher = matcher(clause);
+            if (matcher == null) {
+                // Every clause must match, so a clause with no documents means no results
+                return List.of();
+            }
+            matchers.add(matcher);
+        }
+        // Leading with the rarest clause makes the others skip furthest
+        matchers.sort(Comparator.comparingLong(Matcher::cost));
+        
+        double averageLength = liveDocs > 0 ? (double) totalLength / liveDocs : 1;
+        PriorityQueue<ScoredDoc> best = new PriorityQueue<>(limit + 1, ScoredDoc.ORDER);
+        // Bound on the score of every document up to the last one the current blocks cover
+        double blockMaxScore = 0;
+        int blockLastDoc = -1;
+        int doc = 0;
+        while (true) {
+            doc = matchers.get(0).advance(doc);
+            if (best.size() == limit && doc != Integer.MAX_VALUE) {
+                if (doc > blockLastDoc) {
+                    blockLastDoc = Integer.MAX_VALUE;
+                    for (Matcher matcher : matchers) {
+                        blockLastDoc = Math.min(blockLastDoc, matcher.blockLastDoc(doc));
+                    }
+                    blockMaxScore = 0;
+                    for (Matcher matcher : matchers) {
+                        blockMaxScore += matcher.maxScore(doc, blockLastDoc, averageLength);
+                    }
+                }
+                // Pass over the blocks if no document in them can beat the worst hit; one that ties it
+                // still would, as the newer question wins
+                if (blockMaxScore < best.peek().score()) {
+                    if (blockLastDoc == Integer.MAX_VALUE) {
+                        break;
+                    }
+                    doc = blockLastDoc + 1;
+                    continue;
+                }
+            }
+            int agreed = 1;
+            for (int i = 1; i < matchers.size() && doc != Integer.MAX_VALUE; i++) {
+                int next = matchers.get(i).advance(doc);
+                if (next != doc) {
+                    doc = next;
+                    break;
+                }
+                agreed++;
+            }
+            if (doc == Integer.MAX_VALUE) {
+                break;
+            }
+            if (agreed < matchers.size()) {
+                continue;
+            }
+            
+            if (!deleted.get(doc) && matchesAll(matchers, doc)) {
+                double lengthNorm = lengthNorm(lengths[doc], averageLength);
+                double score = 0;
+                for (Matcher matcher : matchers) {
+                    score += matcher.score(lengthNorm);
+                }
+                best.add(new ScoredDoc(doc, score));
+                if (best.size() > limit) {
+                    best.poll();
+                }
+            }
+            doc++;
+        }
+        
+        List<SearchHit> hits = new ArrayList<>(best.size());
+        while (!best.isEmpty()) {
+            ScoredDoc scored = best.poll();
+            hits.add(new SearchHit(questionIds[scored.doc], questionSetIds[scored.doc], scored.score));
+        }
+        Collections.reverse(hits);
+        return hits;
+    }
+    
+    private static boolean matchesAll(List<Matcher> matchers, int doc) {
+        for (Matcher matcher : matchers) {
+            if (!matcher.matches(doc)) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    /**
+     * Returns {@code k1 * (1 - b + b * length / averageLength)}, the BM25 length normalization.
+     */
+    private static double lengthNorm(int length, double averageLength) {
+        return K1 * (1 - B + B * length / averageLength);
+    }
+    
+    /**
+     * Creates the matcher for a clause, or returns null if no document can match it.
+     */
+    private Matcher matcher(SearchQuery.Clause clause) {
+        if (clause.prefix()) {
+            String prefix = clause.terms().get(0);
+            NavigableMap<String, PostingList> expansions = terms.subMap(prefix, true, prefix + Character.MAX_VALUE, false);
+            if (expansions.isEmpty()) {
+                return null;
+            }
+            
+            List<Map.Entry<String, PostingList>> entries = new ArrayList<>(expansions.entrySet());
+            if (entries.size() > maxPrefixTerms) {
+                // Keep the most common expansions, which are the likeliest completions
+                entries.sort(Comparator.comparingInt((Map.Entry<String, PostingList> entry) -> entry.getValue().size())
+                        .reversed());
+                entries = entries.subList(0, maxPrefixTerms);
+            }
+            
+            List<TermCursor> cursors = new ArrayList<>(entries.size());
+            for (Map.Entry<String, PostingList> entry : entries) {
+                double weight = entry.getKey().equals(prefix) ? 1 : PREFIX_EXPANSION_WEIGHT;
+                cursors.add(new TermCursor(entry.getValue(), weight * idf(entry.getValue())));
+            }
+            return new AnyTermMatcher(cursors);
+        }
+        
+        List<TermCursor> cursors = new ArrayList<>(clause.terms().size());
+        for (String term : clause.terms()) {
+            PostingList postings = terms.get(term);
+            if (postings == null) {
+                return null;
+            }
+            cursors.add(new TermCursor(postings, idf(postings)));
+        }
+        return clause.phrase() ? new PhraseMatcher(cursors) : new AllTermsMatcher(cursors);
+    }
+    
+    /**
+     * Adds a batch of stored questions while rebuilding, except those of sets saved since it began.
+     */
+    private void indexStored(List<Question> questions) {
+        lock.writeLock().lock();
+        try {
+            for (Question question : questions) {
+                Long questionSetId = question.getQuestionSet().getId();
+                if (!savedBeforeRebuilt.contains(questionSetId)) {
+                    int[] docs = docsBySet.getOrDefault(questionSetId, new int[0]);
+                    docs = Arrays.copyOf(docs, docs.length + 1);
+                    docs[docs.length - 1] = add(questionSetId, question);
+                    docsBySet.put(questionSetId, docs);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    /**
+     * Replaces the documents of a question set with its current questions. Must hold the write lock.
+     */
+    private void index(Long questionSetId, List<Question> questions) {
+        int[] previous = docsBySet.remove(questionSetId);
+        if (previous != null) {
+            for (int doc : previous) {
+                if (!deleted.get(doc)) {
+                    deleted.set(doc);
+                    liveDocs--;
+                    totalLength -= lengths[doc];
+                }
+            }
+        }
+        
+        int[] docs = new int[questions.size()];
+        for (int i = 0; i < questions.size(); i++) {
+            docs[i] = add(questionSetId, questions.get(i));
+        }
+        docsBySet.put(questionSetId, docs);
+        
+        if (docCount - liveDocs > maxDeletedShare * docCount) {
+            compact();
+        }
+    }
+    
+    /**
+     * Rewrites the posting lists without the deleted documents, numbering the rest from zero in the same
+     * order, and drops the terms only deleted documents had. Must hold the write lock.
+     */
+    private void compact() {
+        int[] renumbered = new int[docCount];
+        int kept = 0;
+        for (int doc = 0; doc < docCount; doc++) {
+            if (deleted.get(doc)) {
+                renumbered[doc] = -1;
+                continue;
+            }
+            renumbered[doc] = kept;
+            questionIds[kept] = questionIds[doc];
+            questionSetIds[kept] = questionSetIds[doc];
+            lengths[kept] = lengths[doc];
+            kept++;
+        }
+        
+        Iterator<Map.Entry<String, PostingList>> entries = terms.entrySet().iterator();
+        while (entries.hasNext()) {
+            Map.Entry<String, PostingList> entry = entries.next();
+            PostingList compacted = entry.getValue().renumber(renumbered, lengths);
+            if (compacted.size() == 0) {
+                entries.remove();
+            } else {
+                entry.setValue(compacted);
+            }
+        }
+        
+        for (int[] docs : docsBySet.values()) {
+            for (int i = 0; i < docs.length; i++) {
+                docs[i] = renumbered[docs[i]];
+            }
+        }
+        logger.debug("Compacted the search index from {} to {} documents", docCount, kept);
+        deleted.clear();
+        docCount = kept;
+    }
+    
+    private int add(Long questionSetId, Question question) {
+        int doc = docCount++;
+        if (doc == questionIds.length) {
+            questionIds = Arrays.copyOf(questionIds, doc * 2);
+            questionSetIds = Arrays.copyOf(questionSetIds, doc * 2);
+            lengths = Arrays.copyOf(lengths, doc * 2);
+        }
+        
+        DocumentTerms documentTerms = new DocumentTerms();
+        documentTerms.addField(question.getQuestionText(), QUESTION_WEIGHT);
+        if (question.getOptions() != null) {
+            for (String option : question.getOptions()) {
+                documentTerms.addField(option, OPTION_WEIGHT);
+            }
+        }
+        // A bare option letter says nothing on its own; the option text is already indexed
+        String answer = question.getAnswer();
+        if (answer != null && answer.trim().length() > 1) {
+            documentTerms.addField(answer, ANSWER_WEIGHT);
+        }
+        documentTerms.addField(question.getExplanation(), EXPLANATION_WEIGHT);
+        
+        documentTerms.terms.forEach((term, occurrences) -> terms.computeIfAbsent(term, key -> new PostingList())
+                .add(doc, occurrences.frequency, documentTerms.length, occurrences.positions,
+                        occurrences.count));
+        
+        questionIds[doc] = question.getId() != null ? question.getId() : -1;
+        questionSetIds[doc] = questionSetId;
+        lengths[doc] = documentTerms.length;
+        liveDocs++;
+        totalLength += documentTerms.length;
+        return doc;
+    }
+    
+    /**
+     * Returns the BM25 IDF of a term. Its posting list still counts deleted documents until the index is
+     * compacted, so they are counted in the total too; otherwise a term in many re-saved documents could
+     * seem to be in more documents than there are.
+     */
+    private double idf(PostingList postings) {
+        int df = postings.size();
+        return Math.log(1 + (docCount - df + 0.5) / (df + 0.5));
+    }
+    
+    /**
+     * The terms of one question being indexed, with their weighted frequencies and positions.
+     */
+    private static final class DocumentTerms {
+        private final Map<String, Occurrences> terms = new HashMap<>();
+        private int position;
+        private int length;
+        
+        void addField(String text, int weight) {
+            int start = position;
+            int count = SearchQuery.tokenize(text, (term, offset) -> terms.computeIfAbsent(term, key -> new Occurrences())
+                    .add(start + offset, weight));
+            position += count + FIELD_GAP;
+            length += count * weight;
+        }
+    }
+    
+    private static final class Occurrences {
+        private int[] positions = new int[2];
+        private int count;
+        private int frequency;
+        
+        void add(int position, int weight) {
+            if (count == positions.length) {
+                positions = Arrays.copyOf(positions, count * 2);
+            }
+            positions[count++] = position;
+            frequency += weight;
+        }
+    }
+    
+    /**
+     * A cursor over one term's postings, with the weight its matches are scored at: the term's IDF,
+     * reduced for a prefix expansion.
+     */
+    private record TermCursor(PostingList postings, PostingList.Cursor cursor, double weight) {
+        
+        TermCursor(PostingList postings, double weight) {
+            this(postings, postings.cursor(), weight);
+        }
+        
+        int documents() {
+            return postings.size();
+        }
+        
+        /**
+         * Scores the current document with BM25.
+         *
+         * @param lengthNorm {@code k1 * (1 - b + b * length / averageLength)} for the document
+         */
+        double score(double lengthNorm) {
+            return score(cursor.frequency(), lengthNorm);
+        }
+        
+        /**
+         * Returns the highest score of a document in the block holding the first document at or after the
+         * target, or 0 if there is no such document up to {@code upTo}.
+         */
+        double maxScore(int target, int upTo, double averageLength) {
+            int next = next(target);
+            int block = next <= upTo ? postings.block(next) : -1;
+            if (block < 0) {
+                return 0;
+            }
+            return postings.blockMaxScore(block,
+                    (frequency, length) -> score(frequency, lengthNorm(length, averageLength)));
+        }
+        
+        /**
+         * Returns the last document of the block holding the first document at or after the target, or
+         * {@link Integer#MAX_VALUE} if there is no such document.
+         */
+        int blockLastDoc(int target) {
+            int block = postings.block(next(target));
+            return block >= 0 ? postings.blockLastDoc(block) : Integer.MAX_VALUE;
+        }
+        
+        /**
+         * Returns where the term's first document at or after the target can be; a cursor already past the
+         * target is on it, as cursors only move forwards and the targets of a search only increase.
+         */
+        private int next(int target) {
+            return Math.max(target, cursor.doc());
+        }
+        
+        private double score(double frequency, double lengthNorm) {
+            return weight * frequency * (K1 + 1) / (frequency + lengthNorm);
+        }
+    }
+    
+    /**
+     * Matches the documents of one query clause.
+     */
+    private interface Matcher {
+        
+        /**
+         * Moves to the first candidate document at or after the target, or {@link Integer#MAX_VALUE}.
+         */
+        int advance(int target);
+        
+        /**
+         * Checks a candidate document that every clause has advanced to.
+         */
+        default boolean matches(int doc) {
+            return true;
+        }
+        
+        double score(double lengthNorm);
+        
+        List<TermCursor> cursors();
+        
+        /**
+         * Returns the last document of the blocks holding each term's first document at or after the target.
+         */
+        default int blockLastDoc(int target) {
+            int blockLastDoc = Integer.MAX_VALUE;
+            for (TermCursor cursor : cursors()) {
+                blockLastDoc = Math.min(blockLastDoc, cursor.blockLastDoc(target));
+            }
+            return blockLastDoc;
+        }
+        
+        /**
+         * Bounds the score of any document from the target up to a document no later than
+         * {@link #blockLastDoc}.
+         */
+        default double maxScore(int target, int upTo, double averageLength) {
+            double maxScore = 0;
+            for (TermCursor cursor : cursors()) {
+                maxScore += cursor.maxScore(target, upTo, averageLength);
+            }
+            return maxScore;
+        }
+        
+        /**
+         * Estimates how many documents the matcher visits.
+         */
+        long cost();
+    }
+    
+    /**
+     * Matches documents containing every term, in any order.
+     */
+    private static class AllTermsMatcher implements Matcher {
+        final List<TermCursor> cursors;
+        
+        AllTermsMatcher(List<TermCursor> cursors) {
+            this.cursors = cursors;
+        }
+        
+        @Override
+        public int advance(int target) {
+            int doc = target;
+            int agreed = 0;
+            int i = 0;
+            while (agreed < cursors.size()) {
+                int next = cursors.get(i).cursor().advance(doc);
+                if (next == Integer.MAX_VALUE) {
+                    return next;
+                }
+                agreed = next == doc ? agreed + 1 : 1;
+                doc = next;
+                i = (i + 1) % cursors.size();
+            }
+            return doc;
+        }
+        
+        @Override
+        public double score(double lengthNorm) {
+            double score = 0;
+            for (TermCursor cursor : cursors) {
+                score += cursor.score(lengthNorm);
+            }
+            return score;
+        }
+        
+        @Override
+        public List<TermCursor> cursors() {
+            return cursors;
+        }
+        
+        @Override
+        public long cost() {
+            return cursors.stream().mapToLong(cursor -> cursor.documents()).min().orElse(0);
+        }
+    }
+    
+    /**
+     * Matches documents containing the terms next to each other, in order.
+     */
+    private static final class PhraseMatcher extends AllTermsMatcher {
+        
+        PhraseMatcher(List<TermCursor> cursors) {
+            super(cursors);
+        }
+        
+        @Override
+        public boolean matches(int doc) {
+            int[][] positions = new int[cursors.size()][];
+            for (int i = 0; i < positions.length; i++) {
+                positions[i] = cursors.get(i).cursor().positions();
+            }
+            for (int start : positions[0]) {
+                boolean found = true;
+                for (int i = 1; i < positions.length && found; i++) {
+                    found = Arrays.binarySearch(positions[i], start + i) >= 0;
+                }
+                if (found) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+    
+    /**
+     * Matches documents containing any of the terms a prefix expands to.
+     */
+    private static final class AnyTermMatcher implements Matcher {
+        private final List<TermCursor> cursors;
+        // Ordered by current document, so only the cursors behind the target are advanced
+        private final PriorityQueue<TermCursor> queue;
+        private int doc = -1;
+        
+        AnyTermMatcher(List<TermCursor> cursors) {
+            this.cursors = cursors;
+            this.queue = new PriorityQueue<>(cursors.size(), Comparator.comparingInt(cursor -> cursor.cursor().doc()));
+            this.queue.addAll(cursors);
+        }
+        
+        @Override
+        public int advance(int target) {
+            while (queue.peek().cursor().doc() < target) {
+                TermCursor cursor = queue.poll();
+                cursor.cursor().advance(target);
+                queue.add(cursor);
+            }
+            doc = queue.peek().cursor().doc();
+            return doc;
+        }
+        
+        @Override
+        public double score(double lengthNorm) {
+            double score = 0;
+            for (TermCursor cursor : cursors) {
+                if (cursor.cursor().doc() == doc) {
+                    score += cursor.score(lengthNorm);
+                }
+            }
+            return score;
+        }
+        
+        @Override
+        public List<TermCursor> cursors() {
+            return cursors;
+        }
+        
+        @Override
+        public long cost() {
+            return cursors.stream().mapToLong(cursor -> cursor.documents()).sum();
+        }
+    }
+    
+    private record ScoredDoc(int doc, double score) {
+        // Lowest score first, so the queue can drop it; among equal scores the older question goes first
+        static final Comparator<ScoredDoc> ORDER = Comparator.comparingDouble(ScoredDoc::score)
+                .thenComparingInt(ScoredDoc::doc);
+    }
+}
@@ -0,0 +1,11 @@
+package com.example.snipreader.service.search;
+
+/**
+ * A question matching a search, with its relevance score.
+ *
+ * @param questionId the ID of the matching question
+ * @param questionSetId the ID of the question set it belongs to
+ * @param score the BM25 relevance score, higher is better
+ */
+public record SearchHit(long questionId, long questionSetId, double score) {
+}
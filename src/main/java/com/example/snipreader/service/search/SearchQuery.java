@@ -0,0 +1,100 @@
+package com.example.snipreader.service.search;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.ObjIntConsumer;
+
+/**
+ * A parsed search query: every clause must match. Quoted text is a phrase, a word ending in {@code *}
+ * is a prefix, and so is the last word when the query does not end in a space, so results can follow
+ * the user's typing.
+ *
+ * @param clauses the clauses of the query
+ */
+record SearchQuery(List<Clause> clauses) {
+    
+    // Longer tokens are almost always noise such as URLs or base64
+    static final int MAX_TOKEN_LENGTH = 40;
+    
+    /**
+     * One clause of a query.
+     *
+     * @param terms the terms, more than one only for a phrase
+     * @param phrase true if the terms must appear next to each other, in order
+     * @param prefix true if the single term also matches longer terms starting with it
+     */
+    record Clause(List<String> terms, boolean phrase, boolean prefix) {
+    }
+    
+    /**
+     * Parses a query string.
+     *
+     * @param query the query as typed
+     * @return the parsed query, with no clauses if the query has no terms
+     */
+    static SearchQuery parse(String query) {
+        List<Clause> clauses = new ArrayList<>();
+        if (query == null) {
+            return new SearchQuery(clauses);
+        }
+        
+        int i = 0;
+        while (i < query.length()) {
+            char c = query.charAt(i);
+            if (c == '"') {
+                int close = query.indexOf('"', i + 1);
+                int end = close < 0 ? query.length() : close;
+                List<String> terms = new ArrayList<>();
+                tokenize(query.substring(i + 1, end), (term, position) -> terms.add(term));
+                if (terms.size() == 1) {
+                    clauses.add(new Clause(terms, false, false));
+                } else if (!terms.isEmpty()) {
+                    clauses.add(new Clause(terms, true, false));
+                }
+                i = end + 1;
+            } else if (Character.isLetterOrDigit(c)) {
+                int end = i;
+                while (end < query.length() && Character.isLetterOrDigit(query.charAt(end))) {
+                    end++;
+                }
+                boolean prefix = end == query.length() || query.charAt(end) == '*';
+                String term = query.substring(i, Math.min(end, i + MAX_TOKEN_LENGTH)).toLowerCase(Locale.ROOT);
+                clauses.add(new Clause(List.of(term), false, prefix));
+                i = end;
+            } else {
+                i++;
+            }
+        }
+        return new SearchQuery(clauses);
+    }
+    
+    /**
+     * Splits text into lower-case runs of letters and digits, the same way for indexing and querying.
+     *
+     * @param text the text to split
+     * @param consumer receives each term and its position, counting from 0
+     * @return the number of terms
+     */
+    static int tokenize(String text, ObjIntConsumer<String> consumer) {
+        if (text == null) {
+            return 0;
+        }
+        
+        int position = 0;
+        int i = 0;
+        while (i < text.length()) {
+            if (!Character.isLetterOrDigit(text.charAt(i))) {
+                i++;
+                continue;
+            }
+            int end = i;
+            while (end < text.length() && Character.isLetterOrDigit(text.charAt(end))) {
+                end++;
+            }
+            consumer.accept(text.substring(i, Math.min(end, i + MAX_TOKEN_LENGTH)).toLowerCase(Locale.ROOT), position++);
+            i = end;
+        }
+        return position;
+    }
+}
@@ -0,0 +1,37 @@
+-- Schema for the prod profile, matching the JPA mapping; later changes go in new V<n>__*.sql files
+
+create sequence question_sets_seq start with 1 increment by 50;
+create sequence questions_seq start with 1 increment by 50;
+
+create table question_sets (
+    id bigint not null primary key,
+    created_at timestamp(6),
+    title varchar(255),
+    image_hash varchar(64)
+);
+
+-- History pages and previous/next navigation seek on (created_at, id)
+create index idx_question_sets_created_at on question_sets (created_at, id);
+
+create table questions (
+    id bigint not null primary key,
+    question_text varchar(1000),
+    question_type enum ('MCQ', 'GENERAL'),
+    options varchar(65535),
+    answer varchar(65535),
+    explanation varchar(2000),
+    question_set_id bigint,
+    constraint fk_questions_question_set foreign key (question_set_id) references question_sets (id)
+);
+
+-- Loading a set's questions and counting them for the history page look questions up by set
+create index idx_questions_question_set_id on questions (question_set_id);
+
+create table extraction_cache (
+    cache_key varchar(64) not null primary key,
+    image_digest varchar(64),
+    model varchar(255),
+    prompt_version varchar(32),
+    questions_json clob,
+    created_at timestamp(6)
+);
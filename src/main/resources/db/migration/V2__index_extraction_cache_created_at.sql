@@ -0,0 +1,2 @@
+-- The scheduled cleanup deletes extraction cache entries older than the persistent TTL
+create index idx_extraction_cache_created_at on extraction_cache (created_at);
@@ -0,0 +1,191 @@
+package com.example.snipreader.controller;
+
+import com.example.snipreader.model.ExtractionJob;
+import com.example.snipreader.model.ExtractionJob.Stage;
+import com.example.snipreader.model.Question;
+import com.example.snipreader.repository.QuestionSetRepository;
+import com.example.snipreader.service.ExtractionJobService;
+import com.example.snipreader.service.ExtractionListener;
+import com.example.snipreader.service.QuestionExtractionService;
+import com.example.snipreader.service.QuestionExtractionService.ExtractionResult;
+import com.example.snipreader.service.ScrollCaptureService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.multipart;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.flash;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.redirectedUrl;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+import static org.springframework.test.web.servlet.setup.MockMvcBuilders.standaloneSetup;
+
+class JobControllerTests {
+
+    private final ExtractionJobService extractionJobService = mock(ExtractionJobService.class);
+    private final QuestionSetRepository questionSetRepository = mock(QuestionSetRepository.class);
+    private final MockMvc mockMvc = standaloneSetup(new JobController(extractionJobService, questionSetRepository))
+            .build();
+
+    @Test
+    void acceptsAnUploadedScreenshotWithTheLocationOfItsStatus() throws Exception {
+        ExtractionJob job = new ExtractionJob("Uploaded Image: quiz.png");
+        when(extractionJobService.submit(any(), anyString(), anyBoolean())).thenReturn(job);
+
+        MockMultipartFile image = new MockMultipartFile("image", "quiz.png", "image/png", new byte[] {1, 2, 3});
+
+        mockMvc.perform(multipart("/api/jobs").file(image))
+                .andExpect(status().isAccepted())
+                .andExpect(header().string("Location", "/jobs/" + job.getId() + "/status"))
+                .andExpect(jsonPath("$.id").value(job.getId()))
+                .andExpect(jsonPath("$.stage").value("QUEUED"));
+
+        verify(extractionJobService).submit(new byte[] {1, 2, 3}, "Uploaded Image: quiz.png", false);
+    }
+
+    @Test
+    void acceptsAPastedScreenshot() throws Exception {
+        ExtractionJob job = new ExtractionJob("Pasted Image");
+        when(extractionJobService.submit(any(), anyString(), anyBoolean())).thenReturn(job);
+
+        mockMvc.perform(post("/api/jobs").param("base64Image", "AQID").param("skipSimilar", "true"))
+                .andExpect(status().isAccepted())
+                .andExpect(header().string("Location", "/jobs/" + job.getId() + "/status"));
+
+        verify(extractionJobService).submit(new byte[] {1, 2, 3}, "Pasted Image", true);
+    }
+
+    @Test
+    void turnsSubmissionsAwayWhileTheQueueIsFull() throws Exception {
+        when(extractionJobService.submit(any(), anyString(), anyBoolean())).thenThrow(new RejectedExecutionException());
+
+        mockMvc.perform(post("/api/jobs").param("base64Image", "AQID"))
+                .andExpect(status().isServiceUnavailable());
+    }
+
+    @Test
+    void rejectsASubmissionWithoutAScreenshot() throws Exception {
+        mockMvc.perform(post("/api/jobs"))
+                .andExpect(status().isBadRequest());
+
+        verify(extractionJobService, never()).submit(any(), anyString(), anyBoolean());
+    }
+
+    @Test
+    void reportsTheStatusOfAJob() throws Exception {
+        ExtractionJob job = new ExtractionJob("Quiz");
+        job.setQuestionSetId(4L);
+        job.setSimilarMatch(true);
+        job.setStage(Stage.COMPLETED);
+        when(extractionJobService.getJob(job.getId())).thenReturn(Optional.of(job));
+
+        mockMvc.perform(get("/jobs/" + job.getId() + "/status"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.stage").value("COMPLETED"))
+                .andExpect(jsonPath("$.questionSetId").value(4))
+                .andExpect(jsonPath("$.similarMatch").value(true))
+                .andExpect(jsonPath("$.resultUrl").value("/jobs/" + job.getId()));
+        mockMvc.perform(get("/jobs/unknown/status"))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void followsTheJobThatProcessesASimilarMatchAnyway() throws Exception {
+        ExtractionJob job = new ExtractionJob("Quiz");
+        when(extractionJobService.processAnyway("matched")).thenReturn(Optional.of(job));
+
+        mockMvc.perform(post("/jobs/matched/process-anyway"))
+                .andExpect(redirectedUrl("/jobs/" + job.getId()));
+    }
+
+    @Test
+    void asksForTheScreenshotAgainOnceItsInputIsGone() throws Exception {
+        when(extractionJobService.processAnyway("matched")).thenReturn(Optional.empty());
+
+        mockMvc.perform(post("/jobs/matched/process-anyway"))
+                .andExpect(redirectedUrl("/"))
+                .andExpect(flash().attribute("error",
+                        "The screenshot is no longer available. Please upload it again."));
+    }
+
+    @Test
+    void staysOnTheMatchWhileTheQueueIsFull() throws Exception {
+        when(extractionJobService.processAnyway("matched")).thenThrow(new RejectedExecutionException());
+
+        mockMvc.perform(post("/jobs/matched/process-anyway"))
+                .andExpect(redirectedUrl("/jobs/matched"))
+                .andExpect(flash().attribute("error",
+                        "The server is busy processing other screenshots. Please try again shortly."));
+    }
+
+    @Test
+    void replaysTheQuestionsStreamedSoFarToANewSubscriber() throws Exception {
+        QuestionExtractionService questionExtractionService = mock(QuestionExtractionService.class);
+        CountDownLatch streamed = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(questionExtractionService.extract(any(), any(), anyBoolean(), any())).thenAnswer(invocation -> {
+            ExtractionListener listener = invocation.getArgument(3);
+            listener.onStage(Stage.EXTRACTING);
+            listener.onQuestion(new Question("Which planet is known as the Red Planet?", List.of("Venus", "Mars")));
+            listener.onQuestion(new Question("What is the capital of France?", List.of("Paris", "Lyon")));
+            streamed.countDown();
+            assertTrue(release.await(10, TimeUnit.SECONDS));
+            return new ExtractionResult(4L, false);
+        });
+        ExtractionJobService jobService = new ExtractionJobService(questionExtractionService,
+                mock(ScrollCaptureService.class), new SimpleMeterRegistry(), 1, 10, Duration.ofHours(1),
+                Duration.ofMinutes(5), 20);
+        try {
+            ExtractionJob job = jobService.submit(new byte[] {1}, "Quiz", false);
+            assertTrue(streamed.await(10, TimeUnit.SECONDS));
+
+            MvcResult result = standaloneSetup(new JobController(jobService, questionSetRepository)).build()
+                    .perform(get("/jobs/" + job.getId() + "/events"))
+                    .andExpect(request().asyncStarted())
+                    .andReturn();
+
+            // Joining late, the subscriber is sent each question so far in order, then the current stage
+            String replayed = result.getResponse().getContentAsString();
+            List<String> events = Arrays.stream(replayed.split("\n\n"))
+                    .map(event -> event.lines().findFirst().orElseThrow())
+                    .toList();
+            assertEquals(List.of("event:question", "event:question", "event:stage"), events);
+            assertTrue(replayed.indexOf("Red Planet") < replayed.indexOf("capital of France"));
+            assertTrue(replayed.endsWith("event:stage\ndata:EXTRACTING\n\n"));
+
+            release.countDown();
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+            while (!result.getResponse().getContentAsString().contains("event:completed")
+                    && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+            assertEquals(replayed + "event:completed\ndata:/results/4\n\n", result.getResponse().getContentAsString());
+        } finally {
+            release.countDown();
+            jobService.shutdown();
+        }
+    }
+}
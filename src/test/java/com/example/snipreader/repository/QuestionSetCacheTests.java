@@ -0,0 +1,114 @@
+package com.example.snipreader.repository;
+
+import com.example.snipreader.model.Question;
+import com.example.snipreader.model.QuestionSet;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.data.domain.Limit;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Each step commits, as requests do, since the second-level cache only sees committed changes
+@DataJpaTest
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class QuestionSetCacheTests {
+
+    @Autowired
+    private QuestionSetRepository questionSetRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private TransactionTemplate transactionTemplate;
+    private Statistics statistics;
+    private Long id;
+
+    @BeforeEach
+    void setUp() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        // Other test contexts share the cache manager, and so the regions
+        entityManagerFactory.getCache().evictAll();
+
+        QuestionSet questionSet = new QuestionSet("Cached quiz");
+        for (int i = 0; i < 3; i++) {
+            questionSet.addQuestion(new Question("Question " + i, new ArrayList<>(List.of("First", "Second"))));
+        }
+        id = questionSetRepository.save(questionSet).getId();
+
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+
+    @AfterEach
+    void tearDown() {
+        questionSetRepository.deleteAll();
+    }
+
+    @Test
+    void loadsACachedSetWithItsQuestionsWithoutStatements() {
+        questionSetRepository.findWithQuestionsById(id);
+        statistics.clear();
+
+        QuestionSet questionSet = questionSetRepository.findWithQuestionsById(id).orElseThrow();
+
+        assertEquals(0, statistics.getPrepareStatementCount());
+        assertTrue(statistics.getSecondLevelCacheHitCount() > 0);
+        assertEquals(List.of("First", "Second"), questionSet.getQuestions().get(2).getOptions());
+    }
+
+    @Test
+    void seesChangesSavedAfterTheSetWasCached() {
+        questionSetRepository.findWithQuestionsById(id);
+
+        transactionTemplate.executeWithoutResult(status -> {
+            QuestionSet questionSet = questionSetRepository.findWithQuestionsById(id).orElseThrow();
+            questionSet.setTitle("Renamed quiz");
+            questionSet.getQuestions().get(0).setOptions(new ArrayList<>(List.of("Only")));
+            questionSet.addQuestion(new Question("Question 3", new ArrayList<>(List.of("Another"))));
+        });
+
+        QuestionSet questionSet = questionSetRepository.findWithQuestionsById(id).orElseThrow();
+        assertEquals("Renamed quiz", questionSet.getTitle());
+        assertEquals(List.of("Only"), questionSet.getQuestions().get(0).getOptions());
+        assertEquals(4, questionSet.getQuestions().size());
+    }
+
+    @Test
+    void forgetsADeletedSet() {
+        questionSetRepository.findWithQuestionsById(id);
+
+        questionSetRepository.deleteById(id);
+
+        assertTrue(questionSetRepository.findWithQuestionsById(id).isEmpty());
+        assertTrue(questionSetRepository.findSummaries(Limit.of(10)).isEmpty());
+    }
+
+    @Test
+    void refreshesCachedHistoryWhenASetIsSaved() {
+        assertEquals(1, questionSetRepository.findSummaries(Limit.of(10)).size());
+        questionSetRepository.findSummaries(Limit.of(10));
+        assertEquals(1, statistics.getQueryCacheHitCount());
+
+        questionSetRepository.save(new QuestionSet("Newer quiz"));
+
+        List<QuestionSetSummary> summaries = questionSetRepository.findSummaries(Limit.of(10));
+        assertEquals(List.of("Newer quiz", "Cached quiz"), summaries.stream().map(QuestionSetSummary::getTitle).toList());
+    }
+}
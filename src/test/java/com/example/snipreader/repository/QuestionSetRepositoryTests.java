@@ -0,0 +1,94 @@
+package com.example.snipreader.repository;
+
+import com.example.snipreader.model.Question;
+import com.example.snipreader.model.QuestionSet;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.data.domain.Limit;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+class QuestionSetRepositoryTests {
+
+    private static final int SETS = 12;
+    private static final int QUESTIONS_PER_SET = 5;
+
+    @Autowired
+    private QuestionSetRepository questionSetRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private final List<Long> ids = new ArrayList<>();
+    private Statistics statistics;
+
+    @BeforeEach
+    void setUp() {
+        LocalDateTime start = LocalDateTime.of(2024, 1, 1, 9, 0);
+        for (int i = 0; i < SETS; i++) {
+            QuestionSet questionSet = new QuestionSet("Quiz " + i);
+            questionSet.setCreatedAt(start.plusMinutes(i));
+            for (int j = 0; j < QUESTIONS_PER_SET; j++) {
+                questionSet.addQuestion(new Question("Question " + j + " of quiz " + i,
+                        new ArrayList<>(List.of("First", "Second", "Third"))));
+            }
+            ids.add(questionSetRepository.save(questionSet).getId());
+        }
+        entityManager.flush();
+        entityManager.clear();
+
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+
+    @Test
+    void summarizesAPageOfHistoryInOneStatement() {
+        List<QuestionSetSummary> firstPage = questionSetRepository.findSummaries(Limit.of(5));
+        QuestionSetSummary last = firstPage.get(firstPage.size() - 1);
+        List<QuestionSetSummary> secondPage = questionSetRepository.findSummariesOlderThan(
+                last.getCreatedAt(), last.getId(), Limit.of(5));
+
+        assertEquals(2, statistics.getPrepareStatementCount());
+        assertEquals(List.of("Quiz 11", "Quiz 10", "Quiz 9", "Quiz 8", "Quiz 7"),
+                firstPage.stream().map(QuestionSetSummary::getTitle).toList());
+        assertEquals("Quiz 6", secondPage.get(0).getTitle());
+        firstPage.forEach(summary -> assertEquals(QUESTIONS_PER_SET, summary.getQuestionCount()));
+    }
+
+    @Test
+    void storesOptionsInOrderWithTheirQuestion() {
+        QuestionSet questionSet = questionSetRepository.findAllWithQuestionsById(List.of(ids.get(0))).get(0);
+
+        assertEquals(List.of("First", "Second", "Third"), questionSet.getQuestions().get(0).getOptions());
+    }
+
+    @Test
+    void loadsSetsForExportInOneStatementHoweverManyThereAre() {
+        List<QuestionSet> questionSets = questionSetRepository.findAllWithQuestionsById(ids);
+
+        int options = 0;
+        for (QuestionSet questionSet : questionSets) {
+            for (Question question : questionSet.getQuestions()) {
+                options += question.getOptions().size();
+            }
+        }
+
+        assertEquals(1, statistics.getPrepareStatementCount());
+        assertEquals(SETS, questionSets.size());
+        assertEquals(SETS * QUESTIONS_PER_SET * 3, options);
+    }
+}
@@ -0,0 +1,66 @@
+package com.example.snipreader.service;
+
+import com.example.snipreader.model.Question;
+import com.example.snipreader.repository.QuestionRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doCallRealMethod;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class AnswerBankTests {
+
+    @Test
+    void answersTheSameQuestionWithDifferentLayoutAndOptionOrder() {
+        Question stored = new Question("12. What is the capital of France?", List.of("Berlin", "Paris", "Rome", "Madrid"));
+        stored.setAnswer("B");
+        stored.setExplanation("Paris is the capital of France.");
+        AnswerBank answerBank = answerBank(stored);
+
+        Question seen = new Question("Q3:  what is the CAPITAL of\nFrance?", List.of("A) Madrid", "B) Rome", "C) Paris", "D) Berlin"));
+        Optional<Question> answered = answerBank.answer(seen);
+
+        assertTrue(answered.isPresent());
+        assertEquals("C", answered.get().getAnswer());
+        assertEquals("Paris is the capital of France.", answered.get().getExplanation());
+        assertEquals(seen.getQuestionText(), answered.get().getQuestionText());
+    }
+
+    @Test
+    void storesAnswersGivenAsOptionText() {
+        Question stored = new Question("Which number is prime?", List.of("4", "6", "7", "9"));
+        stored.setAnswer("7");
+        AnswerBank answerBank = answerBank(stored);
+
+        assertEquals("A", answerBank.answer(new Question("Which number is prime?", List.of("7", "4", "9", "6")))
+                .orElseThrow().getAnswer());
+    }
+
+    @Test
+    void missesQuestionsWithDifferentOptions() {
+        Question stored = new Question("Which number is prime?", List.of("4", "6", "7", "9"));
+        stored.setAnswer("C");
+        AnswerBank answerBank = answerBank(stored);
+
+        assertTrue(answerBank.answer(new Question("Which number is prime?", List.of("4", "6", "8", "9"))).isEmpty());
+        assertTrue(answerBank.answer(new Question("Which number is even?", List.of("4", "6", "7", "9"))).isEmpty());
+    }
+
+    private AnswerBank answerBank(Question... questions) {
+        QuestionRepository questionRepository = mock(QuestionRepository.class);
+        when(questionRepository.findAnsweredAfter(eq(0L), any())).thenReturn(List.of(questions));
+        doCallRealMethod().when(questionRepository).forEachBatch(any(), any());
+        AnswerBank answerBank = new AnswerBank(questionRepository, new SimpleMeterRegistry(), true);
+        answerBank.rebuild();
+        assertEquals(questions.length, answerBank.size());
+        return answerBank;
+    }
+}
@@ -0,0 +1,102 @@
+package com.example.snipreader.service;
+
+import com.example.snipreader.model.Question;
+import com.example.snipreader.model.QuestionSet;
+import org.apache.poi.xwpf.usermodel.ParagraphAlignment;
+import org.apache.poi.xwpf.usermodel.XWPFDocument;
+import org.apache.poi.xwpf.usermodel.XWPFParagraph;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DocumentServiceTests {
+
+    private final DocumentService documentService = new DocumentService();
+
+    @Test
+    void writesAWordDocumentThatPoiCanRead() throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        documentService.writeWord(questionSet("Biology quiz", 2), outputStream);
+
+        try (XWPFDocument document = new XWPFDocument(new ByteArrayInputStream(outputStream.toByteArray()))) {
+            List<String> texts = document.getParagraphs().stream().map(XWPFParagraph::getText).toList();
+            assertEquals("Biology quiz", texts.get(0));
+            assertEquals(ParagraphAlignment.CENTER, document.getParagraphs().get(0).getAlignment());
+            assertTrue(texts.contains("Question 2: Which organelle is numbered 2 <in> the diagram?\n"));
+            assertTrue(texts.contains("B) Mitochondrion"));
+            assertTrue(document.getParagraphs().get(texts.indexOf("B) Mitochondrion")).getRuns().get(0).isBold());
+            assertTrue(texts.contains("Because it is"));
+        }
+    }
+
+    @Test
+    void writesEverySelectedSetIntoOneWordDocument() throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        documentService.writeWordFromMultiple(List.of(questionSet("First quiz", 1), questionSet("Second quiz", 3)),
+                outputStream);
+
+        try (XWPFDocument document = new XWPFDocument(new ByteArrayInputStream(outputStream.toByteArray()))) {
+            List<String> texts = document.getParagraphs().stream().map(XWPFParagraph::getText).toList();
+            assertEquals("Selected Question Sets\n", texts.get(0));
+            assertTrue(texts.contains("First quiz"));
+            assertTrue(texts.contains("Second quiz"));
+            assertEquals(4, texts.stream().filter(text -> text.startsWith("Question ")).count());
+        }
+    }
+
+    @Test
+    void writesAPdfAndLeavesTheStreamOpen() throws Exception {
+        StreamCloseTracker outputStream = new StreamCloseTracker();
+        documentService.writePdfFromMultiple(List.of(questionSet("First quiz", 1), questionSet("Second quiz", 3)),
+                outputStream);
+
+        String pdf = outputStream.toString(StandardCharsets.ISO_8859_1);
+        assertTrue(pdf.startsWith("%PDF-"));
+        assertTrue(pdf.stripTrailing().endsWith("%%EOF"));
+        assertFalse(outputStream.closed);
+    }
+
+    @Test
+    void changesTheContentVersionOnlyWhenTheExportWouldChange() {
+        QuestionSet questionSet = questionSet("Biology quiz", 2);
+        String version = documentService.contentVersion(questionSet);
+
+        assertEquals(version, documentService.contentVersion(questionSet("Biology quiz", 2)));
+        questionSet.getQuestions().get(1).setAnswer("C");
+        assertNotEquals(version, documentService.contentVersion(questionSet));
+    }
+
+    private static QuestionSet questionSet(String title, int questions) {
+        QuestionSet questionSet = new QuestionSet(title);
+        questionSet.setCreatedAt(LocalDateTime.of(2024, 5, 1, 10, 30));
+        for (int i = 0; i < questions; i++) {
+            Question question = new Question("Which organelle is numbered " + (i + 1) + " <in> the diagram?",
+                    new ArrayList<>(List.of("Nucleus", "Mitochondrion", "Ribosome")));
+            question.setAnswer("B");
+            question.setExplanation("Because it is");
+            questionSet.addQuestion(question);
+        }
+        return questionSet;
+    }
+
+    private static class StreamCloseTracker extends ByteArrayOutputStream {
+
+        boolean closed;
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
+}
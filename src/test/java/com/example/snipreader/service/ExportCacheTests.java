@@ -0,0 +1,193 @@
+package com.example.snipreader.service;
+
+import com.example.snipreader.model.QuestionSet;
+import com.example.snipreader.model.QuestionSetSavedEvent;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ExportCacheTests {
+
+    @TempDir
+    Path directory;
+
+    private final AtomicInteger renders = new AtomicInteger();
+
+    @Test
+    void rendersAnExportOnceAndServesItFromDiskAfterwards() throws IOException {
+        ExportCache exportCache = exportCache(1024);
+
+        Path first = get(exportCache, 7L, "v1", "pdf", "first");
+        Path second = get(exportCache, 7L, "v1", "pdf", "second");
+
+        assertEquals(first, second);
+        assertEquals(1, renders.get());
+        assertEquals("first", Files.readString(second));
+    }
+
+    @Test
+    void rendersANewVersionAfresh() throws IOException {
+        ExportCache exportCache = exportCache(1024);
+
+        get(exportCache, 7L, "v1", "pdf", "old");
+        Path file = get(exportCache, 7L, "v2", "pdf", "new");
+
+        assertEquals(2, renders.get());
+        assertEquals("new", Files.readString(file));
+    }
+
+    @Test
+    void evictsTheLeastRecentlyDownloadedExportsBeyondTheSizeLimit() throws IOException {
+        ExportCache exportCache = exportCache(15);
+
+        Path a = get(exportCache, 1L, "v", "pdf", "aaaaa");
+        Path b = get(exportCache, 2L, "v", "pdf", "bbbbb");
+        get(exportCache, 1L, "v", "pdf", "aaaaa");
+        Path c = get(exportCache, 3L, "v", "pdf", "ccccc");
+        Path d = get(exportCache, 4L, "v", "pdf", "ddddd");
+
+        assertTrue(Files.exists(a));
+        assertFalse(Files.exists(b));
+        assertTrue(Files.exists(c));
+        assertTrue(Files.exists(d));
+    }
+
+    @Test
+    void dropsASetsExportsWhenTheSetIsSaved() throws IOException {
+        ExportCache exportCache = exportCache(1024);
+        Path pdf = get(exportCache, 1L, "v", "pdf", "pdf");
+        Path word = get(exportCache, 1L, "v", "docx", "docx");
+        Path otherSet = get(exportCache, 12L, "v", "pdf", "other");
+
+        exportCache.onQuestionSetSaved(new QuestionSetSavedEvent(savedSet(1L)));
+
+        assertFalse(Files.exists(pdf));
+        assertFalse(Files.exists(word));
+        assertTrue(Files.exists(otherSet));
+    }
+
+    @Test
+    void keepsAnExportOnDiskUntilItsDownloadFinishes() throws IOException {
+        ExportCache exportCache = exportCache(10);
+        ExportCache.Export downloading = exportCache.get(1L, "v", "pdf", writing("aaaaa"));
+
+        get(exportCache, 2L, "v", "pdf", "bbbbb");
+        get(exportCache, 3L, "v", "pdf", "ccccc");
+        assertTrue(Files.exists(downloading.file()));
+
+        exportCache.evict(1L);
+        assertEquals("aaaaa", Files.readString(downloading.file()));
+
+        downloading.close();
+        assertFalse(Files.exists(downloading.file()));
+    }
+
+    @Test
+    void keepsARenderedAgainExportWhenAnOlderDownloadOfItFinishes() throws IOException {
+        ExportCache exportCache = exportCache(1024);
+        ExportCache.Export downloading = exportCache.get(1L, "v", "pdf", writing("old"));
+
+        exportCache.onQuestionSetSaved(new QuestionSetSavedEvent(savedSet(1L)));
+        Path rendered = get(exportCache, 1L, "v", "pdf", "new");
+        downloading.close();
+
+        assertEquals("new", Files.readString(rendered));
+        assertEquals("new", Files.readString(get(exportCache, 1L, "v", "pdf", "newer")));
+    }
+
+    @Test
+    void keepsAnExportSentAfterItsRequestUntilTheReleaseDelayHasPassed() throws Exception {
+        ExportCache exportCache = new ExportCache(new SimpleMeterRegistry(), true, directory.toString(),
+                DataSize.ofBytes(1024), Duration.ofMillis(200));
+        ExportCache.Export sending = exportCache.get(1L, "v", "pdf", writing("aaaaa"));
+
+        exportCache.closeLater(sending);
+        exportCache.evict(1L);
+        assertEquals("aaaaa", Files.readString(sending.file()));
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (Files.exists(sending.file()) && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertFalse(Files.exists(sending.file()));
+    }
+
+    @Test
+    void leavesExportsToBeStreamedWhenTurnedOff() {
+        ExportCache exportCache = new ExportCache(new SimpleMeterRegistry(), false, directory.toString(),
+                DataSize.ofBytes(1024), Duration.ofSeconds(30));
+
+        assertFalse(exportCache.isEnabled());
+        assertThrows(IllegalStateException.class, () -> exportCache.get(1L, "v", "pdf", writing("pdf")));
+        assertEquals(0, renders.get());
+    }
+
+    @Test
+    void keepsExportsFromAPreviousRunAndRemovesUnfinishedOnes() throws IOException {
+        Files.writeString(directory.resolve("3-v.pdf"), "rendered earlier");
+        Path unfinished = Files.writeString(directory.resolve("3-123.tmp"), "half");
+
+        Path file = get(exportCache(1024), 3L, "v", "pdf", "rendered again");
+
+        assertEquals(0, renders.get());
+        assertEquals("rendered earlier", Files.readString(file));
+        assertFalse(Files.exists(unfinished));
+    }
+
+    @Test
+    void leavesNothingBehindWhenRenderingFails() throws IOException {
+        ExportCache exportCache = exportCache(1024);
+
+        assertThrows(IOException.class, () -> exportCache.get(5L, "v", "pdf", outputStream -> {
+            outputStream.write(1);
+            throw new IOException("Disk full");
+        }));
+
+        try (Stream<Path> files = Files.list(directory)) {
+            assertEquals(0, files.count());
+        }
+    }
+
+    private ExportCache exportCache(long maxBytes) {
+        return new ExportCache(new SimpleMeterRegistry(), true, directory.toString(), DataSize.ofBytes(maxBytes),
+                Duration.ofSeconds(30));
+    }
+
+    /**
+     * Gets an export as a download would, closing it straight after.
+     */
+    private Path get(ExportCache exportCache, Long setId, String version, String extension, String content)
+            throws IOException {
+        try (ExportCache.Export export = exportCache.get(setId, version, extension, writing(content))) {
+            return export.file();
+        }
+    }
+
+    private static QuestionSet savedSet(Long id) {
+        QuestionSet questionSet = new QuestionSet("Saved quiz");
+        questionSet.setId(id);
+        return questionSet;
+    }
+
+    private DocumentWriter writing(String content) {
+        return outputStream -> {
+            renders.incrementAndGet();
+            outputStream.write(content.getBytes(StandardCharsets.UTF_8));
+        };
+    }
+}
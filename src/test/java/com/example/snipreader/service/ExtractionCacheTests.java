@@ -0,0 +1,196 @@
+package com.example.snipreader.service;
+
+import com.example.snipreader.model.ExtractionCacheEntry;
+import com.example.snipreader.model.Question;
+import com.example.snipreader.repository.ExtractionCacheRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ExtractionCacheTests {
+
+    private static final String IMAGE_DIGEST = ExtractionCache.digest(new byte[] {1, 2, 3});
+
+    private final ExtractionCacheRepository repository = mock(ExtractionCacheRepository.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void keysEachImageByModelAndPromptVersion() {
+        String key = ExtractionCache.keyFor(IMAGE_DIGEST, "gemini-2.5-flash", "v3");
+
+        assertEquals(key, ExtractionCache.keyFor(IMAGE_DIGEST, "gemini-2.5-flash", "v3"));
+        assertNotEquals(key, ExtractionCache.keyFor(IMAGE_DIGEST, "gemini-2.5-pro", "v3"));
+        assertNotEquals(key, ExtractionCache.keyFor(IMAGE_DIGEST, "gemini-2.5-flash", "v4"));
+        String otherImage = ExtractionCache.digest(new byte[] {1, 2});
+        assertNotEquals(key, ExtractionCache.keyFor(otherImage, "gemini-2.5-flash", "v3"));
+
+        // A result extracted with an older prompt is not reused once the version is bumped
+        ExtractionCache cache = cache(16, Duration.ofHours(1), Duration.ofDays(30));
+        cache.put(key, IMAGE_DIGEST, "gemini-2.5-flash", "v3", questions("Which planet is known as the Red Planet?"));
+        assertTrue(cache.get(ExtractionCache.keyFor(IMAGE_DIGEST, "gemini-2.5-flash", "v4")).isEmpty());
+        assertEquals(1, cache.get(key).orElseThrow().size());
+    }
+
+    @Test
+    void returnsFreshCopiesOfTheCachedQuestions() {
+        ExtractionCache cache = cache(16, Duration.ofHours(1), Duration.ofDays(30));
+        cache.put("a", IMAGE_DIGEST, "gemini-2.5-flash", "v3", questions("Which planet is known as the Red Planet?"));
+
+        Question first = cache.get("a").orElseThrow().get(0);
+        first.setAnswer("Venus");
+        Question second = cache.get("a").orElseThrow().get(0);
+
+        assertNotSame(first, second);
+        assertNull(second.getId());
+        assertEquals("Which planet is known as the Red Planet?", second.getQuestionText());
+        assertEquals(List.of("Venus", "Mars"), second.getOptions());
+        assertEquals("Mars", second.getAnswer());
+        verify(repository).save(any());
+    }
+
+    @Test
+    void evictsTheLeastRecentlyUsedEntryFromMemory() {
+        ExtractionCache cache = cache(2, Duration.ofHours(1), Duration.ofDays(30));
+        cache.put("a", IMAGE_DIGEST, "gemini-2.5-flash", "v3", questions("A?"));
+        cache.put("b", IMAGE_DIGEST, "gemini-2.5-flash", "v3", questions("B?"));
+        cache.get("a");
+        cache.put("c", IMAGE_DIGEST, "gemini-2.5-flash", "v3", questions("C?"));
+
+        assertTrue(cache.get("a").isPresent());
+        assertTrue(cache.get("c").isPresent());
+        assertTrue(cache.get("b").isEmpty());
+        verify(repository, never()).findById("a");
+        verify(repository).findById("b");
+        assertEquals(3, hits("memory"));
+        assertEquals(1, misses());
+    }
+
+    @Test
+    void expiresMemoryEntriesAfterTheTtl() throws InterruptedException {
+        ExtractionCache cache = cache(16, Duration.ZERO, Duration.ofDays(30));
+        cache.put("a", IMAGE_DIGEST, "gemini-2.5-flash", "v3", questions("A?"));
+        Thread.sleep(5);
+
+        assertTrue(cache.get("a").isEmpty());
+        verify(repository).findById("a");
+        assertEquals(0, hits("memory"));
+        assertEquals(1, misses());
+    }
+
+    @Test
+    void promotesPersistentHitsIntoMemory() {
+        ExtractionCache cache = cache(16, Duration.ofHours(1), Duration.ofDays(30));
+        when(repository.findById("a")).thenReturn(Optional.of(entry("a", LocalDateTime.now().minusDays(1))));
+
+        assertEquals("A?", cache.get("a").orElseThrow().get(0).getQuestionText());
+        assertEquals("A?", cache.get("a").orElseThrow().get(0).getQuestionText());
+
+        verify(repository, times(1)).findById("a");
+        assertEquals(1, hits("persistent"));
+        assertEquals(1, hits("memory"));
+        assertEquals(0, misses());
+    }
+
+    @Test
+    void ignoresPersistentEntriesOlderThanTheirTtl() {
+        ExtractionCache cache = cache(16, Duration.ofHours(1), Duration.ofDays(30));
+        when(repository.findById("a")).thenReturn(Optional.of(entry("a", LocalDateTime.now().minusDays(31))));
+
+        assertTrue(cache.get("a").isEmpty());
+        assertTrue(cache.get("a").isEmpty());
+
+        // Not promoted, so each lookup goes back to the database until the entry is deleted or replaced
+        verify(repository, times(2)).findById("a");
+        assertEquals(0, hits("persistent"));
+        assertEquals(2, misses());
+    }
+
+    @Test
+    void deletesPersistentEntriesOlderThanTheirTtl() throws InterruptedException {
+        ExtractionCache cache = cache(16, Duration.ZERO, Duration.ofDays(30));
+        cache.put("a", IMAGE_DIGEST, "gemini-2.5-flash", "v3", questions("A?"));
+        Thread.sleep(5);
+
+        LocalDateTime before = LocalDateTime.now().minusDays(30);
+        cache.evictExpiredEntries();
+        LocalDateTime after = LocalDateTime.now().minusDays(30);
+
+        ArgumentCaptor<LocalDateTime> cutoff = ArgumentCaptor.forClass(LocalDateTime.class);
+        verify(repository).deleteCreatedBefore(cutoff.capture());
+        assertTrue(!cutoff.getValue().isBefore(before) && !cutoff.getValue().isAfter(after));
+        assertEquals(0, meterRegistry.get("snipreader.extraction.cache.memory.size").gauge().value());
+    }
+
+    @Test
+    void keepsWorkingWhenTheDatabaseFails() {
+        ExtractionCache cache = cache(16, Duration.ofHours(1), Duration.ofDays(30));
+        when(repository.findById(anyString())).thenThrow(new IllegalStateException("Database is down"));
+        when(repository.save(any())).thenThrow(new IllegalStateException("Database is down"));
+        when(repository.deleteCreatedBefore(any())).thenThrow(new IllegalStateException("Database is down"));
+
+        cache.put("a", IMAGE_DIGEST, "gemini-2.5-flash", "v3", questions("A?"));
+        cache.evictExpiredEntries();
+
+        assertTrue(cache.get("a").isPresent());
+        assertTrue(cache.get("b").isEmpty());
+        assertEquals(1, misses());
+    }
+
+    @Test
+    void neitherReadsNorWritesWhenDisabled() {
+        ExtractionCache cache = new ExtractionCache(repository, meterRegistry, false, 16, Duration.ofHours(1),
+                Duration.ofDays(30));
+
+        cache.put("a", IMAGE_DIGEST, "gemini-2.5-flash", "v3", questions("A?"));
+
+        assertTrue(cache.get("a").isEmpty());
+        verify(repository, never()).save(any());
+        verify(repository, never()).findById(anyString());
+        assertEquals(0, misses());
+    }
+
+    private ExtractionCache cache(int maxEntries, Duration ttl, Duration persistentTtl) {
+        return new ExtractionCache(repository, meterRegistry, true, maxEntries, ttl, persistentTtl);
+    }
+
+    private double hits(String tier) {
+        return meterRegistry.get("snipreader.extraction.cache").tag("result", "hit").tag("tier", tier).counter()
+                .count();
+    }
+
+    private double misses() {
+        return meterRegistry.get("snipreader.extraction.cache").tag("result", "miss").counter().count();
+    }
+
+    private static List<Question> questions(String questionText) {
+        Question question = new Question(questionText, List.of("Venus", "Mars"));
+        question.setQuestionType(Question.QuestionType.MCQ);
+        question.setAnswer("Mars");
+        return List.of(question);
+    }
+
+    private static ExtractionCacheEntry entry(String cacheKey, LocalDateTime createdAt) {
+        ExtractionCacheEntry entry = new ExtractionCacheEntry(cacheKey, IMAGE_DIGEST, "gemini-2.5-flash", "v3",
+                "[{\"type\":\"GENERAL\",\"questionText\":\"A?\",\"answer\":\"Mars\"}]");
+        entry.setCreatedAt(createdAt);
+        return entry;
+    }
+}
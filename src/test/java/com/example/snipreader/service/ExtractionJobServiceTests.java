@@ -0,0 +1,193 @@
+package com.example.snipreader.service;
+
+import com.example.snipreader.model.ExtractionJob;
+import com.example.snipreader.model.ExtractionJob.Stage;
+import com.example.snipreader.service.QuestionExtractionService.ExtractionResult;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ExtractionJobServiceTests {
+
+    private final QuestionExtractionService questionExtractionService = mock(QuestionExtractionService.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final CountDownLatch extracting = new CountDownLatch(1);
+    private final CountDownLatch release = new CountDownLatch(1);
+    private ExtractionJobService extractionJobService;
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        extractionJobService.shutdown();
+    }
+
+    @Test
+    void movesAJobThroughTheStagesItsExtractionReports() throws Exception {
+        extractionJobService = extractionJobService(Duration.ofHours(1), 20, 10);
+        when(questionExtractionService.extract(any(), any(), anyBoolean(), any())).thenAnswer(invocation -> {
+            ExtractionListener listener = invocation.getArgument(3);
+            listener.onStage(Stage.MATCHING);
+            listener.onStage(Stage.EXTRACTING);
+            extracting.countDown();
+            assertTrue(release.await(10, TimeUnit.SECONDS));
+            listener.onStage(Stage.SAVING);
+            return new ExtractionResult(4L, false);
+        });
+
+        ExtractionJob job = extractionJobService.submit(new byte[] {1}, "Quiz", false);
+        assertTrue(extracting.await(10, TimeUnit.SECONDS));
+        assertEquals(Stage.EXTRACTING, job.getStage());
+        assertNull(job.getResultUrl());
+
+        release.countDown();
+        awaitStage(job, Stage.COMPLETED);
+        assertEquals(4L, job.getQuestionSetId());
+        assertEquals("/results/4", job.getResultUrl());
+        for (String stage : List.of("queued", "matching", "extracting", "saving")) {
+            assertEquals(1, meterRegistry.get("snipreader.jobs.stage").tag("stage", stage).timer().count(), stage);
+        }
+        assertEquals(1, meterRegistry.get("snipreader.jobs").tag("outcome", "completed").counter().count());
+    }
+
+    @Test
+    void failsJobsThatExtractNothingOrCannotReadTheImage() throws Exception {
+        extractionJobService = extractionJobService(Duration.ofHours(1), 20, 10);
+        when(questionExtractionService.extract(eq(new byte[] {1}), any(), anyBoolean(), any()))
+                .thenReturn(new ExtractionResult(null, false));
+        when(questionExtractionService.extract(eq(new byte[] {2}), any(), anyBoolean(), any()))
+                .thenThrow(new IOException("Unsupported image format"));
+
+        ExtractionJob empty = extractionJobService.submit(new byte[] {1}, "Quiz", false);
+        ExtractionJob unreadable = extractionJobService.submit(new byte[] {2}, "Quiz", false);
+        awaitStage(empty, Stage.FAILED);
+        awaitStage(unreadable, Stage.FAILED);
+
+        assertEquals("No questions could be extracted", empty.getError());
+        assertEquals("Error processing the image: Unsupported image format", unreadable.getError());
+        assertNull(empty.getResultUrl());
+        assertEquals(2, meterRegistry.get("snipreader.jobs").tag("outcome", "failed").counter().count());
+    }
+
+    @Test
+    void rejectsJobsOnceTheQueueIsFull() throws Exception {
+        extractionJobService = extractionJobService(Duration.ofHours(1), 20, 1);
+        blockExtractions(false);
+
+        ExtractionJob running = extractionJobService.submit(new byte[] {1}, "Quiz", false);
+        assertTrue(extracting.await(10, TimeUnit.SECONDS));
+        ExtractionJob queued = extractionJobService.submit(new byte[] {2}, "Quiz", false);
+
+        assertThrows(RejectedExecutionException.class,
+                () -> extractionJobService.submit(new byte[] {3}, "Quiz", false));
+        assertEquals(Stage.QUEUED, queued.getStage());
+        assertEquals(1, meterRegistry.get("snipreader.jobs").tag("outcome", "rejected").counter().count());
+
+        release.countDown();
+        awaitStage(running, Stage.COMPLETED);
+        awaitStage(queued, Stage.COMPLETED);
+    }
+
+    @Test
+    void keepsTheInputOfASimilarMatchWhenProcessingItAnywayIsRejected() throws Exception {
+        extractionJobService = extractionJobService(Duration.ofHours(1), 20, 1);
+        when(questionExtractionService.extract(any(), any(), eq(false), any()))
+                .thenReturn(new ExtractionResult(4L, true));
+        blockExtractions(true);
+        ExtractionJob first = extractionJobService.submit(new byte[] {1}, "Quiz", false);
+        ExtractionJob second = extractionJobService.submit(new byte[] {2}, "Quiz", false);
+        awaitStage(first, Stage.COMPLETED);
+        awaitStage(second, Stage.COMPLETED);
+        assertEquals("/jobs/" + first.getId(), first.getResultUrl());
+
+        // The first one processed anyway takes the only worker, and another job the only place in the queue
+        ExtractionJob processed = extractionJobService.processAnyway(first.getId()).orElseThrow();
+        assertTrue(extracting.await(10, TimeUnit.SECONDS));
+        extractionJobService.submit(new byte[] {3}, "Quiz", true);
+        assertThrows(RejectedExecutionException.class, () -> extractionJobService.processAnyway(second.getId()));
+
+        release.countDown();
+        awaitStage(processed, Stage.COMPLETED);
+        assertEquals(5L, processed.getQuestionSetId());
+        ExtractionJob retried = extractionJobService.processAnyway(second.getId()).orElseThrow();
+        awaitStage(retried, Stage.COMPLETED);
+        assertEquals(5L, retried.getQuestionSetId());
+        assertTrue(extractionJobService.processAnyway(first.getId()).isEmpty());
+    }
+
+    @Test
+    void forgetsFinishedJobsAfterTheRetentionPeriod() throws Exception {
+        extractionJobService = extractionJobService(Duration.ZERO, 20, 10);
+        when(questionExtractionService.extract(any(), any(), anyBoolean(), any()))
+                .thenReturn(new ExtractionResult(4L, true));
+
+        ExtractionJob job = extractionJobService.submit(new byte[] {1}, "Quiz", false);
+        awaitStage(job, Stage.COMPLETED);
+        Thread.sleep(5);
+        extractionJobService.evictExpiredJobs();
+
+        assertTrue(extractionJobService.getJob(job.getId()).isEmpty());
+        assertTrue(extractionJobService.processAnyway(job.getId()).isEmpty());
+    }
+
+    @Test
+    void keepsTheInputOfOnlyTheMostRecentSimilarMatches() throws Exception {
+        extractionJobService = extractionJobService(Duration.ofHours(1), 1, 10);
+        when(questionExtractionService.extract(any(), any(), eq(false), any()))
+                .thenReturn(new ExtractionResult(4L, true));
+        when(questionExtractionService.extract(any(), any(), eq(true), any()))
+                .thenReturn(new ExtractionResult(5L, false));
+
+        ExtractionJob older = extractionJobService.submit(new byte[] {1}, "Quiz", false);
+        awaitStage(older, Stage.COMPLETED);
+        ExtractionJob newer = extractionJobService.submit(new byte[] {2}, "Quiz", false);
+        awaitStage(newer, Stage.COMPLETED);
+
+        // The older job is still retained, but its image made room for the newer one's
+        assertTrue(older.isSimilarMatch());
+        assertTrue(extractionJobService.processAnyway(older.getId()).isEmpty());
+        ExtractionJob processed = extractionJobService.processAnyway(newer.getId()).orElseThrow();
+        awaitStage(processed, Stage.COMPLETED);
+        assertEquals(5L, processed.getQuestionSetId());
+    }
+
+    private ExtractionJobService extractionJobService(Duration retention, int maxResubmissions, int queueCapacity) {
+        return new ExtractionJobService(questionExtractionService, mock(ScrollCaptureService.class), meterRegistry, 1,
+                queueCapacity, retention, Duration.ofMinutes(5), maxResubmissions);
+    }
+
+    /**
+     * Holds extractions with the given skip-similar flag until released, then saves them as set 5.
+     */
+    private void blockExtractions(boolean skipSimilar) throws IOException {
+        when(questionExtractionService.extract(any(), any(), eq(skipSimilar), any())).thenAnswer(invocation -> {
+            extracting.countDown();
+            assertTrue(release.await(10, TimeUnit.SECONDS));
+            return new ExtractionResult(5L, false);
+        });
+    }
+
+    private static void awaitStage(ExtractionJob job, Stage stage) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (job.getStage() != stage && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(stage, job.getStage());
+    }
+}
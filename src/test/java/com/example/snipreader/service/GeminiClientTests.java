@@ -0,0 +1,115 @@
+package com.example.snipreader.service;
+
+import com.google.gson.JsonObject;
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.web.client.RestTemplateBuilder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.SequenceInputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class GeminiClientTests {
+
+    private static final String RESPONSE = "{\"candidates\":[]}";
+
+    private HttpServer server;
+    private volatile String requestPath;
+    private volatile Headers requestHeaders;
+    private volatile byte[] requestBody;
+    private final CountDownLatch bodyStarted = new CountDownLatch(1);
+
+    @BeforeEach
+    void setUp() throws IOException {
+        // Stands in for Gemini at the configurable base URL
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/", exchange -> {
+            requestPath = exchange.getRequestURI().getPath();
+            requestHeaders = exchange.getRequestHeaders();
+            try (InputStream in = exchange.getRequestBody()) {
+                byte[] start = in.readNBytes(1024);
+                bodyStarted.countDown();
+                byte[] rest = in.readAllBytes();
+                requestBody = Arrays.copyOf(start, start.length + rest.length);
+                System.arraycopy(rest, 0, requestBody, start.length, rest.length);
+            }
+            byte[] response = RESPONSE.getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, response.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(response);
+            }
+        });
+        server.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.stop(0);
+    }
+
+    @Test
+    void streamsTheRequestBodyChunkedInsteadOfBufferingIt() throws IOException {
+        GeminiClient geminiClient = new GeminiClient(new RestTemplateBuilder(), new SimpleMeterRegistry(), "test-key",
+                "http://localhost:" + server.getAddress().getPort() + "/v1beta/", Duration.ofSeconds(5),
+                Duration.ofSeconds(30), false);
+        byte[] image = new byte[300_000];
+        new Random(3).nextBytes(image);
+        // The second half of the image is only read once the server has received the start of the body,
+        // which never happens if the client collects the whole body before sending it
+        InputStream secondHalf = new FilterInputStream(new ByteArrayInputStream(image, 150_000, 150_000)) {
+            private boolean started;
+
+            @Override
+            public int read(byte[] buffer, int offset, int length) throws IOException {
+                if (!started) {
+                    try {
+                        if (!bodyStarted.await(10, TimeUnit.SECONDS)) {
+                            throw new IOException("Nothing was sent before the whole body had been written");
+                        }
+                    } catch (InterruptedException e) {
+                        throw new IOException(e);
+                    }
+                    started = true;
+                }
+                return super.read(buffer, offset, length);
+            }
+        };
+        InputStream firstHalf = new ByteArrayInputStream(image, 0, 150_000);
+        GeminiRequestBody body = new GeminiRequestBody("Extract the questions", "image/png",
+                () -> new SequenceInputStream(firstHalf, secondHalf), new JsonObject());
+
+        assertEquals(RESPONSE, geminiClient.generateContent("test-model", body));
+
+        assertEquals("/v1beta/models/test-model:generateContent", requestPath);
+        assertEquals("test-key", requestHeaders.getFirst("x-goog-api-key"));
+        // Sent as it is written, so its length is not known up front
+        assertEquals("chunked", requestHeaders.getFirst("Transfer-Encoding"));
+        assertNull(requestHeaders.getFirst("Content-Length"));
+
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        new GeminiRequestBody("Extract the questions", "image/png", () -> new ByteArrayInputStream(image),
+                new JsonObject()).writeTo(expected);
+        assertArrayEquals(expected.toByteArray(), requestBody);
+    }
+}
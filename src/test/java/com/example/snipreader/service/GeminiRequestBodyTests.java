@@ -0,0 +1,51 @@
+package com.example.snipreader.service;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+class GeminiRequestBodyTests {
+
+    private final Gson gson = new Gson();
+
+    @Test
+    void writesValidRequestWithStreamedImage() throws Exception {
+        byte[] image = new byte[100_003];
+        new Random(7).nextBytes(image);
+        JsonObject generationConfig = new JsonObject();
+        generationConfig.addProperty("temperature", 0.4);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new GeminiRequestBody("Say \"hi\" ✓", "image/png", () -> new ByteArrayInputStream(image), generationConfig)
+                .writeTo(out);
+
+        JsonObject request = gson.fromJson(out.toString(StandardCharsets.UTF_8), JsonObject.class);
+        JsonObject content = request.getAsJsonArray("contents").get(0).getAsJsonObject();
+        assertEquals("Say \"hi\" ✓", content.getAsJsonArray("parts").get(0).getAsJsonObject().get("text").getAsString());
+
+        JsonObject inlineData = content.getAsJsonArray("parts").get(1).getAsJsonObject().getAsJsonObject("inlineData");
+        assertEquals("image/png", inlineData.get("mimeType").getAsString());
+        assertArrayEquals(image, Base64.getDecoder().decode(inlineData.get("data").getAsString()));
+        assertEquals(0.4, request.getAsJsonObject("generationConfig").get("temperature").getAsDouble());
+    }
+
+    @Test
+    void writesTextOnlyRequestWithoutImage() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new GeminiRequestBody("Answer these", null, null, new JsonObject()).writeTo(out);
+
+        JsonObject request = gson.fromJson(out.toString(StandardCharsets.UTF_8), JsonObject.class);
+        assertEquals(1, request.getAsJsonArray("contents").get(0).getAsJsonObject().getAsJsonArray("parts").size());
+        assertFalse(out.toString(StandardCharsets.UTF_8).contains("inlineData"));
+    }
+}
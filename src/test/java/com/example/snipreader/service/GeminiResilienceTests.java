@@ -0,0 +1,139 @@
+package com.example.snipreader.service;
+
+import com.example.snipreader.service.resilience.CircuitBreaker;
+import com.example.snipreader.service.resilience.GeminiResilience;
+import com.example.snipreader.service.resilience.GeminiUnavailableException;
+import com.google.gson.JsonObject;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.web.client.RestTemplateBuilder;
+import org.springframework.web.client.HttpClientErrorException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs the Gemini client and resilience layer against a local stub that fails on demand.
+ */
+class GeminiResilienceTests {
+
+    private static final String OK_RESPONSE = "{\"candidates\":[{\"content\":{\"parts\":[{\"text\":\"[]\"}]}}]}";
+
+    private HttpServer server;
+    private final Queue<Integer> faults = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger requests = new AtomicInteger();
+    private SimpleMeterRegistry meterRegistry;
+    private GeminiClient client;
+
+    @BeforeEach
+    void startStub() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", exchange -> {
+            requests.incrementAndGet();
+            try (InputStream body = exchange.getRequestBody()) {
+                body.readAllBytes();
+            }
+            Integer status = faults.poll();
+            byte[] response = (status == null ? OK_RESPONSE : "{\"error\":{}}").getBytes(StandardCharsets.UTF_8);
+            if (status != null && status == 429) {
+                exchange.getResponseHeaders().set("Retry-After", "0");
+            }
+            exchange.sendResponseHeaders(status == null ? 200 : status, response.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(response);
+            }
+        });
+        server.start();
+
+        meterRegistry = new SimpleMeterRegistry();
+        client = new GeminiClient(new RestTemplateBuilder(), meterRegistry, "test-key",
+                "http://127.0.0.1:" + server.getAddress().getPort(), Duration.ofSeconds(2), Duration.ofSeconds(5), false);
+    }
+
+    @AfterEach
+    void stopStub() {
+        server.stop(0);
+    }
+
+    @Test
+    void retriesOverloadAndServerErrors() {
+        GeminiResilience resilience = resilience(4, 5);
+        faults.add(429);
+        faults.add(503);
+        faults.add(500);
+
+        String response = resilience.execute(() -> client.generateContent("test-model", requestBody()));
+
+        assertEquals(OK_RESPONSE, response);
+        assertEquals(4, requests.get());
+        assertEquals(3.0, meterRegistry.get("snipreader.gemini.retries").counter().count());
+        assertEquals(CircuitBreaker.State.CLOSED, resilience.getCircuitState());
+    }
+
+    @Test
+    void givesUpWithReadableMessageAfterMaxAttempts() {
+        GeminiResilience resilience = resilience(2, 5);
+        faults.add(503);
+        faults.add(503);
+
+        GeminiUnavailableException e = assertThrows(GeminiUnavailableException.class,
+                () -> resilience.execute(() -> client.generateContent("test-model", requestBody())));
+
+        assertEquals(2, requests.get());
+        assertTrue(e.getMessage().startsWith("The AI service"));
+    }
+
+    @Test
+    void doesNotRetryClientErrors() {
+        GeminiResilience resilience = resilience(4, 5);
+        faults.add(400);
+
+        assertThrows(HttpClientErrorException.class,
+                () -> resilience.execute(() -> client.generateContent("test-model", requestBody())));
+        assertEquals(1, requests.get());
+    }
+
+    @Test
+    void circuitOpensAndFailsFast() {
+        GeminiResilience resilience = resilience(1, 2);
+        faults.add(500);
+        faults.add(500);
+
+        for (int i = 0; i < 2; i++) {
+            assertThrows(GeminiUnavailableException.class,
+                    () -> resilience.execute(() -> client.generateContent("test-model", requestBody())));
+        }
+        assertEquals(CircuitBreaker.State.OPEN, resilience.getCircuitState());
+
+        // The stub would now succeed, but the open circuit must not even call it
+        assertThrows(GeminiUnavailableException.class,
+                () -> resilience.execute(() -> client.generateContent("test-model", requestBody())));
+        assertEquals(2, requests.get());
+        assertEquals(2.0, meterRegistry.get("snipreader.gemini.circuit.state").gauge().value());
+    }
+
+    private GeminiResilience resilience(int maxAttempts, int failureThreshold) {
+        return new GeminiResilience(meterRegistry, 100, 10, Duration.ofSeconds(1),
+                4, 1, 16, Duration.ofSeconds(10), 0.5,
+                maxAttempts, Duration.ofMillis(1), Duration.ofMillis(10),
+                failureThreshold, Duration.ofMinutes(1), 1);
+    }
+
+    private GeminiRequestBody requestBody() {
+        return new GeminiRequestBody("prompt", null, null, new JsonObject());
+    }
+}
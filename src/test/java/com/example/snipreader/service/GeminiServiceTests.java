@@ -0,0 +1,150 @@
+package com.example.snipreader.service;
+
+import com.example.snipreader.model.Question;
+import com.example.snipreader.service.image.ImagePreprocessor;
+import com.example.snipreader.service.image.PreparedImage;
+import com.example.snipreader.service.resilience.GeminiResilience;
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class GeminiServiceTests {
+
+    private static final String RESPONSE = "{\"candidates\":[{\"content\":{\"parts\":[{\"text\":"
+            + "\"[{\\\"type\\\":\\\"GENERAL\\\",\\\"questionText\\\":\\\"What is 2+2?\\\",\\\"answer\\\":\\\"4\\\"}]\"}]}}]}";
+
+    private final AtomicInteger upstreamCalls = new AtomicInteger();
+    private final List<GeminiRequestBody> requestBodies = new CopyOnWriteArrayList<>();
+    private GeminiService geminiService;
+
+    @BeforeEach
+    void setUp() {
+        GeminiClient geminiClient = mock(GeminiClient.class);
+        when(geminiClient.generateContent(anyString(), any())).thenAnswer(invocation -> {
+            upstreamCalls.incrementAndGet();
+            requestBodies.add(invocation.getArgument(1));
+            // Keep the call in flight long enough for every duplicate to arrive
+            Thread.sleep(300);
+            return RESPONSE;
+        });
+
+        ExtractionCache extractionCache = mock(ExtractionCache.class);
+        when(extractionCache.get(anyString())).thenReturn(Optional.empty());
+
+        ImagePreprocessor imagePreprocessor = mock(ImagePreprocessor.class);
+        when(imagePreprocessor.prepareTiles(any()))
+                .thenAnswer(invocation -> List.of(new PreparedImage(invocation.getArgument(0), "image/png", 0)));
+
+        GeminiResilience resilience = mock(GeminiResilience.class);
+        when(resilience.execute(any())).thenAnswer(invocation -> invocation.<Supplier<?>>getArgument(0).get());
+
+        geminiService = new GeminiService(geminiClient, extractionCache, imagePreprocessor, resilience,
+                new SimpleMeterRegistry(), 4);
+        ReflectionTestUtils.setField(geminiService, "model", "test-model");
+        ReflectionTestUtils.setField(geminiService, "streaming", false);
+    }
+
+    @Test
+    void concurrentIdenticalImagesMakeOneUpstreamCall() throws Exception {
+        int callers = 32;
+        byte[] shared = {1, 2, 3};
+        byte[] other = {4, 5, 6};
+        ExecutorService executor = Executors.newFixedThreadPool(callers + 1);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<List<Question>>> results = new ArrayList<>();
+            for (int i = 0; i < callers; i++) {
+                results.add(executor.submit(() -> {
+                    start.await();
+                    return geminiService.processImageBytesForQuestions(shared.clone());
+                }));
+            }
+            Future<List<Question>> otherResult = executor.submit(() -> {
+                start.await();
+                return geminiService.processImageBytesForQuestions(other);
+            });
+            start.countDown();
+
+            List<Question> first = results.get(0).get(10, TimeUnit.SECONDS);
+            for (Future<List<Question>> result : results) {
+                List<Question> questions = result.get(10, TimeUnit.SECONDS);
+                assertEquals(1, questions.size());
+                assertEquals("What is 2+2?", questions.get(0).getQuestionText());
+                if (result != results.get(0)) {
+                    // Each caller saves its own question set, so it must not share entities
+                    assertNotSame(first.get(0), questions.get(0));
+                }
+            }
+            assertEquals(1, otherResult.get(10, TimeUnit.SECONDS).size());
+        } finally {
+            executor.shutdownNow();
+        }
+
+        // One call for the shared image and one for the other image
+        assertEquals(2, upstreamCalls.get());
+    }
+
+    @Test
+    void structuredOutputSendsSchemaAndReadsQuestions() throws Exception {
+        ReflectionTestUtils.setField(geminiService, "structuredOutput", true);
+
+        List<Question> questions = geminiService.processImageBytesForQuestions(new byte[] {7});
+
+        assertEquals(1, questions.size());
+        assertEquals(Question.QuestionType.GENERAL, questions.get(0).getQuestionType());
+        assertEquals("4", questions.get(0).getAnswer());
+        assertEquals("", questions.get(0).getExplanation());
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        requestBodies.get(0).writeTo(out);
+        JsonObject request = new Gson().fromJson(out.toString(StandardCharsets.UTF_8), JsonObject.class);
+        JsonObject generationConfig = request.getAsJsonObject("generationConfig");
+        assertEquals("application/json", generationConfig.get("responseMimeType").getAsString());
+        assertEquals("ARRAY", generationConfig.getAsJsonObject("responseSchema").get("type").getAsString());
+        assertEquals(GeminiService.STRUCTURED_PROMPT, request.getAsJsonArray("contents").get(0).getAsJsonObject()
+                .getAsJsonArray("parts").get(0).getAsJsonObject().get("text").getAsString());
+    }
+
+    @Test
+    void answersParsedTextQuestionsWithTextOnlyRequest() throws Exception {
+        List<Question> parsed = new QuestionParserService().parseQuestions("1. What is 2+2?\nA) 3\nB) 4\nC) 5\nD) 6");
+
+        List<Question> questions = geminiService.answerQuestions(parsed, ExtractionListener.NONE);
+
+        assertEquals(1, questions.size());
+        assertEquals(List.of("3", "4", "5", "6"), questions.get(0).getOptions());
+        assertEquals("4", questions.get(0).getAnswer());
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        requestBodies.get(0).writeTo(out);
+        String request = out.toString(StandardCharsets.UTF_8);
+        assertTrue(request.contains("1. What is 2+2?\\nA) 3\\nB) 4"));
+        assertFalse(request.contains("inlineData"));
+    }
+}
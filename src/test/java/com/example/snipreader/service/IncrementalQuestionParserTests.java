@@ -0,0 +1,131 @@
+package com.example.snipreader.service;
+
+import com.example.snipreader.model.Question;
+import com.google.gson.stream.JsonReader;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class IncrementalQuestionParserTests {
+
+    // Braces, brackets and quotes inside strings, escapes ending right before a closing quote,
+    // and unknown fields holding nested objects and arrays
+    private static final String RESPONSE = """
+            [
+              {
+                "type": "MCQ",
+                "questionText": "Which of these closes a JSON object: } or ]?",
+                "options": ["}", "]", "{\\"nested\\": [1]}", "\\\\"],
+                "answer": "}",
+                "explanation": "A backslash before a quote escapes it, as in \\"}\\", unless it is escaped too: \\\\"
+              },
+              {"type": "GENERAL", "questionText": "What does caf\\u00e9 mean?", "answer": "A coffee shop",
+               "meta": {"tags": ["[", {"x": "}"}], "confidence": 0.9}},
+              {"questionText": "Pick the prime", "options": ["4", "6", "7"], "answer": "7"}
+            ]
+            """;
+
+    @Test
+    void emitsTheQuestionsOfAWholeResponse() throws IOException {
+        List<Question> expected = read(RESPONSE);
+        assertEquals(3, expected.size());
+        assertEquals(List.of("}", "]", "{\"nested\": [1]}", "\\"), expected.get(0).getOptions());
+        assertEquals("What does caf\u00e9 mean?", expected.get(1).getQuestionText());
+
+        assertEquals(view(expected), view(parse(List.of(RESPONSE))));
+    }
+
+    @Test
+    void emitsTheSameQuestionsWhereverTheResponseIsSplit() throws IOException {
+        List<List<Object>> expected = view(read(RESPONSE));
+
+        // Every split point falls in a string, an escape, an object or between them somewhere
+        for (int i = 0; i <= RESPONSE.length(); i++) {
+            List<String> chunks = List.of(RESPONSE.substring(0, i), RESPONSE.substring(i));
+            assertEquals(expected, view(parse(chunks)), "split at " + i);
+        }
+    }
+
+    @Test
+    void emitsTheSameQuestionsFromSmallChunksOfAnySize() throws IOException {
+        List<List<Object>> expected = view(read(RESPONSE));
+        Random random = new Random(11);
+
+        for (int run = 0; run < 200; run++) {
+            List<String> chunks = new ArrayList<>();
+            int start = 0;
+            while (start < RESPONSE.length()) {
+                int end = Math.min(RESPONSE.length(), start + 1 + random.nextInt(8));
+                chunks.add(RESPONSE.substring(start, end));
+                start = end;
+            }
+            assertEquals(expected, view(parse(chunks)), "chunks " + chunks);
+        }
+    }
+
+    @Test
+    void emitsEachQuestionAsSoonAsItsObjectCloses() {
+        List<Question> emitted = new ArrayList<>();
+        IncrementalQuestionParser parser = new IncrementalQuestionParser(emitted::add);
+        int firstClosed = RESPONSE.indexOf("},\n") + 1;
+
+        for (int i = 0; i < firstClosed - 1; i++) {
+            parser.feed(RESPONSE.substring(i, i + 1));
+        }
+        assertEquals(0, emitted.size());
+
+        parser.feed(RESPONSE.substring(firstClosed - 1, firstClosed));
+        assertEquals(1, emitted.size());
+        assertEquals("Which of these closes a JSON object: } or ]?", emitted.get(0).getQuestionText());
+    }
+
+    @Test
+    void ignoresTextAroundTheArray() throws IOException {
+        String response = "Here are the questions:\n```json\n" + RESPONSE
+                + "```\nLet me know [if] you need {more}.\n";
+
+        assertEquals(view(read(RESPONSE)), view(parse(List.of(response))));
+    }
+
+    @Test
+    void skipsQuestionsItCannotReadAndKeepsGoing() {
+        String response = """
+                [{"questionText": "No answer given"},
+                 {"questionText": "Pick the prime", "options": ["4", "7"], "answer": "7"}]
+                """;
+
+        List<Question> questions = parse(List.of(response));
+
+        assertEquals(1, questions.size());
+        assertEquals("Pick the prime", questions.get(0).getQuestionText());
+    }
+
+    private static List<Question> parse(List<String> chunks) {
+        List<Question> questions = new ArrayList<>();
+        IncrementalQuestionParser parser = new IncrementalQuestionParser(questions::add);
+        chunks.forEach(parser::feed);
+        return questions;
+    }
+
+    private static List<Question> read(String response) throws IOException {
+        try (JsonReader reader = new JsonReader(new StringReader(response))) {
+            return QuestionJsonMapper.read(reader);
+        }
+    }
+
+    /**
+     * Questions have no equals, so compare what they were parsed into.
+     */
+    private static List<List<Object>> view(List<Question> questions) {
+        return questions.stream()
+                .map(question -> List.<Object>of(question.getQuestionType(), question.getQuestionText(),
+                        question.getOptions(), question.getAnswer(), question.getExplanation()))
+                .toList();
+    }
+}
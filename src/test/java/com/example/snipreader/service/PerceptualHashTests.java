@@ -0,0 +1,133 @@
+package com.example.snipreader.service;
+
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PerceptualHashTests {
+
+    // The default snipreader.similarity.max-distance
+    private static final int MAX_DISTANCE = 8;
+
+    @Test
+    void setsABitWhereACellIsBrighterThanItsRightHandNeighbour() {
+        assertEquals("f".repeat(64), PerceptualHash.of(gradient(true, true)).toHex());
+        assertEquals("0".repeat(64), PerceptualHash.of(gradient(false, false)).toHex());
+        // Bits run row by row, so the top eight rows fill the first 128 bits
+        assertEquals("f".repeat(32) + "0".repeat(32), PerceptualHash.of(gradient(true, false)).toHex());
+    }
+
+    @Test
+    void roundTripsThroughHex() {
+        PerceptualHash hash = PerceptualHash.of(screenshot(1));
+
+        assertEquals(hash, PerceptualHash.fromHex(hash.toHex()));
+        assertEquals(64, hash.toHex().length());
+        assertEquals(0, hash.distance(PerceptualHash.fromHex(hash.toHex())));
+    }
+
+    @Test
+    void countsTheDifferingBits() {
+        PerceptualHash zeros = PerceptualHash.fromHex("0".repeat(64));
+
+        assertEquals(256, zeros.distance(PerceptualHash.fromHex("f".repeat(64))));
+        assertEquals(5, zeros.distance(PerceptualHash.fromHex("0".repeat(15) + "1" + "0".repeat(47) + "f")));
+    }
+
+    @Test
+    void keepsRecompressedAndRecroppedCapturesWithinTheDefaultDistance() throws IOException {
+        BufferedImage screenshot = screenshot(5);
+        PerceptualHash hash = PerceptualHash.of(screenshot);
+
+        assertTrue(hash.distance(PerceptualHash.of(jpeg(screenshot))) <= MAX_DISTANCE);
+        assertTrue(hash.distance(PerceptualHash.of(crop(screenshot, 1))) <= MAX_DISTANCE);
+        assertTrue(hash.distance(PerceptualHash.of(jpeg(crop(screenshot, 1)))) <= MAX_DISTANCE);
+    }
+
+    @Test
+    void keepsDifferentScreenshotsFarApart() {
+        PerceptualHash hash = PerceptualHash.of(screenshot(5));
+
+        for (int seed = 6; seed <= 10; seed++) {
+            assertTrue(hash.distance(PerceptualHash.of(screenshot(seed))) > 4 * MAX_DISTANCE);
+        }
+    }
+
+    /**
+     * Draws a horizontal gradient over 17x16 cells, falling to the right in the top and bottom halves as asked.
+     */
+    private static BufferedImage gradient(boolean topFalls, boolean bottomFalls) {
+        BufferedImage image = new BufferedImage(170, 160, BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < image.getHeight(); y++) {
+            boolean falls = y < image.getHeight() / 2 ? topFalls : bottomFalls;
+            for (int x = 0; x < image.getWidth(); x++) {
+                int gray = falls ? 250 - x : 80 + x;
+                image.setRGB(x, y, new Color(gray, gray, gray).getRGB());
+            }
+        }
+        return image;
+    }
+
+    /**
+     * Draws a quiz-like screenshot: a title bar, then lines of word-sized blocks that differ with the seed.
+     */
+    static BufferedImage screenshot(long seed) {
+        BufferedImage image = new BufferedImage(800, 600, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = image.createGraphics();
+        graphics.setColor(Color.WHITE);
+        graphics.fillRect(0, 0, 800, 600);
+        graphics.setColor(new Color(40, 90, 160));
+        graphics.fillRect(0, 0, 800, 50);
+        graphics.setColor(Color.DARK_GRAY);
+        Random random = new Random(seed);
+        for (int line = 0, y = 80; y < 580; line++, y += 30) {
+            // Every fifth line starts a question; the lines after it are indented options
+            int x = line % 5 == 0 ? 30 : 60;
+            while (random.nextInt(12) > 0) {
+                int width = 20 + random.nextInt(70);
+                if (x + width > 770) {
+                    break;
+                }
+                if (random.nextInt(6) > 0) {
+                    graphics.fillRect(x, y, width, 12);
+                }
+                x += width + 10;
+            }
+        }
+        graphics.dispose();
+        return image;
+    }
+
+    private static BufferedImage crop(BufferedImage image, int margin) {
+        return image.getSubimage(margin, margin, image.getWidth() - 2 * margin, image.getHeight() - 2 * margin);
+    }
+
+    private static BufferedImage jpeg(BufferedImage image) throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        ImageWriteParam param = writer.getDefaultWriteParam();
+        param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+        param.setCompressionQuality(0.5f);
+        try (ImageOutputStream imageOutputStream = ImageIO.createImageOutputStream(outputStream)) {
+            writer.setOutput(imageOutputStream);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return ImageIO.read(new ByteArrayInputStream(outputStream.toByteArray()));
+    }
+}
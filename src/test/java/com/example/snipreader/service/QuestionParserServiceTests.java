@@ -0,0 +1,104 @@
+package com.example.snipreader.service;
+
+import com.example.snipreader.model.Question;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class QuestionParserServiceTests {
+
+    private final QuestionParserService parser = new QuestionParserService();
+    private final LegacyQuestionParser legacyParser = new LegacyQuestionParser();
+
+    static Stream<String> goldenCases() {
+        return Stream.of(
+                "Chapter 3 quiz\n1. What is 2+2?\nA) 3\nB) 4\nC) 5\nD) 6\n2. Capital of France?\nA. Paris\nB. Rome\n",
+                "Review\nQ1. Which planet is red?\n(a) Mars\n(b) Venus\n(c) Jupiter\nQ2: Largest ocean?\n(A) Pacific\n(B) Atlantic",
+                "Quiz\nQuestion 1: First?\n  a) one\n  b) two\n\n\nQuestion 2. Second?\n   c. three\n   d. four\n",
+                "Intro\n1. Consider the code below\nint x = 1;\nWhat is x?\nA) 1\nB) 2",
+                "Header\n1. Explain photosynthesis.\n2. Pick one\nA) x\nB) y",
+                "What color is the sky?\nA) Blue\nB) Green",
+                "Test\r\n1. One?\r\nA) a\r\nB) b\r\n2. Two?\r\nA) c\r\nB) d\r\n",
+                "x\n1. Q?\nA) first line\ncontinued\nB) second",
+                "1. Only question?\nA) yes\nB) no",
+                "",
+                "   \n ",
+                "x\n1. Q?\nA) a\nB)",
+                "x\n  3.   Spaces?\n\tA)\tone\n\tB)\ttwo",
+                "x\nq5. lower?\na. one\nb. two",
+                "x\n1. Is A. the answer or B. the answer?\nA) A\nB) B",
+                "Notes before\nA) stray option\n7: Real question?\nA) r\nB) s\nC) t",
+                "x\nQ 12. Spaced number?\nD) last\nC) reversed\nB) order\nA) works",
+                "No options here at all, just prose.\nSecond line.");
+    }
+
+    @ParameterizedTest
+    @MethodSource("goldenCases")
+    void matchesLegacyParser(String text) {
+        assertSameQuestions(legacyParser.parseQuestions(text), parser.parseQuestions(text));
+    }
+
+    @Test
+    void keepsFirstQuestionAtStartOfText() {
+        // The regex parser dropped the first question when the text started with its number
+        List<Question> questions = parser.parseQuestions("1. First?\nA) a\nB) b\n2. Second?\nA) c\nB) d");
+
+        assertEquals(2, questions.size());
+        assertEquals("First?", questions.get(0).getQuestionText());
+        assertEquals(List.of("c", "d"), questions.get(1).getOptions());
+    }
+
+    @Test
+    void readsExtendedOptionLabels() {
+        List<Question> questions = parser.parseQuestions("""
+                Quiz
+                1. Pick a letter
+                A) a
+                B) b
+                C) c
+                D) d
+                E) e
+                F) f
+                2. Pick a numeral
+                i. one
+                ii. two
+                iii. three
+                iv. four
+                3. Pick a number
+                (1) one
+                (2) two
+                10) ten
+                4. Abbreviations are not options
+                a) first, e.g. this
+                e.g. still the first option
+                b) second
+                """);
+
+        assertEquals(4, questions.size());
+        assertEquals(List.of("a", "b", "c", "d", "e", "f"), questions.get(0).getOptions());
+        assertEquals(List.of("one", "two", "three", "four"), questions.get(1).getOptions());
+        assertEquals(List.of("one", "two", "ten"), questions.get(2).getOptions());
+        assertEquals(List.of("first, e.g. this\ne.g. still the first option", "second"), questions.get(3).getOptions());
+    }
+
+    @Test
+    void reportsRejectedBlocks() {
+        QuestionParserService.ParseResult result = parser.parse("Quiz\n1. Explain gravity.\n2. Pick\nA) x\nB) y");
+
+        assertEquals(1, result.questions().size());
+        assertEquals(List.of("1. Explain gravity."), result.rejectedBlocks());
+    }
+
+    private void assertSameQuestions(List<Question> expected, List<Question> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).getQuestionText(), actual.get(i).getQuestionText());
+            assertEquals(expected.get(i).getOptions(), actual.get(i).getOptions());
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.example.snipreader.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class RowHashesTests {
+
+    private static final int WIDTH = 600;
+
+    @Test
+    void findsTheRowsSharedWithThePreviousScreenshot() {
+        BufferedImage page = page(3000);
+        BufferedImage first = window(page, 0, 1000, 0);
+        BufferedImage second = window(page, 700, 1000, 0);
+
+        // The second screenshot starts 700 rows further down, so its first 300 rows were already seen
+        assertEquals(300, RowHashes.of(second).overlapWith(RowHashes.of(first), 24));
+    }
+
+    @Test
+    void ignoresAToolbarFixedAtTheTop() {
+        BufferedImage page = page(3000);
+        BufferedImage first = window(page, 0, 1000, 80);
+        BufferedImage second = window(page, 500, 1000, 80);
+
+        // Rows 80-499 of the second screenshot show page rows 580-999, the last ones in the first
+        assertEquals(500, RowHashes.of(second).overlapWith(RowHashes.of(first), 24));
+    }
+
+    @Test
+    void reportsNoOverlapForUnrelatedScreenshots() {
+        BufferedImage page = page(3000);
+        BufferedImage first = window(page, 0, 1000, 0);
+        BufferedImage second = window(page, 1500, 1000, 0);
+
+        assertEquals(0, RowHashes.of(second).overlapWith(RowHashes.of(first), 24));
+        assertEquals(0, RowHashes.of(new BufferedImage(500, 1000, BufferedImage.TYPE_INT_RGB))
+                .overlapWith(RowHashes.of(first), 24));
+    }
+
+    /**
+     * Draws a page of pseudo-random text lines separated by blank gaps.
+     */
+    private static BufferedImage page(int height) {
+        BufferedImage page = new BufferedImage(WIDTH, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = page.createGraphics();
+        graphics.setColor(Color.WHITE);
+        graphics.fillRect(0, 0, WIDTH, height);
+        graphics.setColor(Color.BLACK);
+        Random random = new Random(42);
+        for (int y = 0; y < height; y++) {
+            if (y % 24 < 16) {
+                for (int x = 20; x < WIDTH - 20; x += 4) {
+                    if (random.nextInt(3) == 0) {
+                        graphics.fillRect(x, y, 3, 1);
+                    }
+                }
+            }
+        }
+        graphics.dispose();
+        return page;
+    }
+
+    /**
+     * Returns what the screen shows when scrolled to the given row, with an optional toolbar over the top.
+     */
+    private static BufferedImage window(BufferedImage page, int scroll, int height, int toolbar) {
+        BufferedImage window = new BufferedImage(WIDTH, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = window.createGraphics();
+        graphics.drawImage(page.getSubimage(0, scroll, WIDTH, height), 0, 0, null);
+        if (toolbar > 0) {
+            graphics.setColor(Color.DARK_GRAY);
+            graphics.fillRect(0, 0, WIDTH, toolbar);
+            graphics.setColor(Color.WHITE);
+            graphics.fillRect(20, toolbar / 2, 200, 8);
+        }
+        graphics.dispose();
+        return window;
+    }
+}
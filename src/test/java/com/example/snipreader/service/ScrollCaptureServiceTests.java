@@ -0,0 +1,96 @@
+package com.example.snipreader.service;
+
+import com.example.snipreader.model.ExtractionJob;
+import com.example.snipreader.model.ExtractionJob.Stage;
+import com.example.snipreader.model.Question;
+import com.example.snipreader.model.QuestionSet;
+import com.example.snipreader.repository.QuestionSetRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ScrollCaptureServiceTests {
+
+    private static final byte[] FIRST = {1};
+    private static final byte[] SECOND = {2};
+    private static final byte[] OTHER = {3};
+
+    private final CountDownLatch firstExtracting = new CountDownLatch(1);
+    private final CountDownLatch releaseFirst = new CountDownLatch(1);
+    private final List<Byte> extracted = new CopyOnWriteArrayList<>();
+    private ScrollCaptureService scrollCaptureService;
+    private ExtractionJobService extractionJobService;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        GeminiService geminiService = mock(GeminiService.class);
+        when(geminiService.processImageBytesForQuestions(any(), any())).thenAnswer(invocation -> {
+            byte[] imageBytes = invocation.getArgument(0);
+            if (imageBytes[0] == FIRST[0]) {
+                firstExtracting.countDown();
+                assertTrue(releaseFirst.await(10, TimeUnit.SECONDS));
+            }
+            extracted.add(imageBytes[0]);
+            return List.of(new Question("Question " + imageBytes[0], List.of("Yes", "No")));
+        });
+        QuestionSetRepository questionSetRepository = mock(QuestionSetRepository.class);
+        when(questionSetRepository.save(any())).thenAnswer(invocation -> {
+            QuestionSet questionSet = invocation.getArgument(0);
+            questionSet.setId(1L);
+            return questionSet;
+        });
+
+        scrollCaptureService = new ScrollCaptureService(geminiService, questionSetRepository,
+                mock(PlatformTransactionManager.class), new SimpleMeterRegistry(), Duration.ofMinutes(30), 24, 32, 48, 10);
+        extractionJobService = new ExtractionJobService(mock(QuestionExtractionService.class), scrollCaptureService,
+                new SimpleMeterRegistry(), 2, 10, Duration.ofHours(1), Duration.ofMinutes(5), 20);
+    }
+
+    @AfterEach
+    void tearDown() {
+        releaseFirst.countDown();
+        extractionJobService.shutdown();
+    }
+
+    @Test
+    void queuesAScreenshotWhileAnEarlierOneOfTheCaptureIsStillExtracting() throws Exception {
+        String captureId = scrollCaptureService.startCapture();
+        ExtractionJob first = extractionJobService.submitScreenshot(captureId, FIRST, "Quiz");
+        assertTrue(firstExtracting.await(10, TimeUnit.SECONDS));
+
+        ExtractionJob second = assertTimeoutPreemptively(Duration.ofSeconds(1),
+                () -> extractionJobService.submitScreenshot(captureId, SECOND, "Quiz"));
+        // The second screenshot waits in its capture's queue rather than on the other worker, which stays free
+        ExtractionJob other = extractionJobService.submitScreenshot(scrollCaptureService.startCapture(), OTHER, "Other");
+        awaitStage(other, Stage.COMPLETED);
+        assertEquals(Stage.QUEUED, second.getStage());
+
+        releaseFirst.countDown();
+        awaitStage(first, Stage.COMPLETED);
+        awaitStage(second, Stage.COMPLETED);
+        assertEquals(List.of(OTHER[0], FIRST[0], SECOND[0]), extracted);
+    }
+
+    private static void awaitStage(ExtractionJob job, Stage stage) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (job.getStage() != stage && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(stage, job.getStage());
+    }
+}
@@ -0,0 +1,145 @@
+package com.example.snipreader.service;
+
+import com.example.snipreader.model.QuestionSet;
+import com.example.snipreader.model.QuestionSetSavedEvent;
+import com.example.snipreader.repository.QuestionSetRepository;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class SimilarImageIndexTests {
+
+    private final Random random = new Random(11);
+
+    @Test
+    void findsEveryHashWithinTheDistanceWhereverItsBitsDiffer() {
+        // Two gives the minimum of four 64-bit chunks; eight and twelve split the hash into uneven chunks
+        for (int maxDistance : new int[] {2, 8, 12}) {
+            SimilarImageIndex index = index(maxDistance);
+            PerceptualHash stored = randomHash();
+            index.onQuestionSetSaved(saved(1L, stored));
+
+            // Differing bits spread evenly touch as many chunks as they can
+            int step = PerceptualHash.BITS / maxDistance;
+            for (int offset = 0; offset < step; offset++) {
+                int[] bits = new int[maxDistance];
+                for (int i = 0; i < maxDistance; i++) {
+                    bits[i] = offset + i * step;
+                }
+                assertEquals(Optional.of(1L), index.findSimilar(flip(stored, bits)), "max distance " + maxDistance);
+            }
+            for (int attempt = 0; attempt < 200; attempt++) {
+                assertEquals(Optional.of(1L), index.findSimilar(flip(stored, randomBits(maxDistance))));
+            }
+        }
+    }
+
+    @Test
+    void missesHashesJustPastTheDistance() {
+        for (int maxDistance : new int[] {2, 8, 12}) {
+            SimilarImageIndex index = index(maxDistance);
+            PerceptualHash stored = randomHash();
+            index.onQuestionSetSaved(saved(1L, stored));
+
+            for (int attempt = 0; attempt < 200; attempt++) {
+                assertTrue(index.findSimilar(flip(stored, randomBits(maxDistance + 1))).isEmpty());
+            }
+        }
+    }
+
+    @Test
+    void prefersTheClosestSetThenTheMostRecent() {
+        SimilarImageIndex index = index(8);
+        PerceptualHash query = randomHash();
+        index.onQuestionSetSaved(saved(1L, flip(query, 3, 70, 140)));
+        index.onQuestionSetSaved(saved(2L, flip(query, 10)));
+        index.onQuestionSetSaved(saved(3L, flip(query, 200)));
+        index.onQuestionSetSaved(saved(4L, flip(query, 5, 90, 250)));
+
+        // Sets 2 and 3 are both one bit away; set 3 is the more recent
+        assertEquals(Optional.of(3L), index.findSimilar(query));
+    }
+
+    @Test
+    void keepsTheFirstHashOfAResavedSet() {
+        SimilarImageIndex index = index(8);
+        PerceptualHash first = randomHash();
+        PerceptualHash second = randomHash();
+        index.onQuestionSetSaved(saved(1L, first));
+        index.onQuestionSetSaved(saved(1L, second));
+
+        assertEquals(Optional.of(1L), index.findSimilar(first));
+        assertTrue(index.findSimilar(second).isEmpty());
+    }
+
+    @Test
+    void loadsTheStoredHashesOnRebuild() {
+        PerceptualHash stored = randomHash();
+        QuestionSetRepository questionSetRepository = mock(QuestionSetRepository.class);
+        when(questionSetRepository.findAllImageHashes()).thenReturn(List.<Object[]>of(new Object[] {7L, stored.toHex()}));
+        SimilarImageIndex index = new SimilarImageIndex(questionSetRepository, true, 8);
+
+        index.rebuild();
+
+        assertEquals(Optional.of(7L), index.findSimilar(flip(stored, 1, 2, 3)));
+    }
+
+    @Test
+    void findsNothingWhenTurnedOff() {
+        SimilarImageIndex index = new SimilarImageIndex(mock(QuestionSetRepository.class), false, 8);
+        PerceptualHash stored = randomHash();
+        index.onQuestionSetSaved(saved(1L, stored));
+
+        assertTrue(index.findSimilar(stored).isEmpty());
+    }
+
+    private static SimilarImageIndex index(int maxDistance) {
+        return new SimilarImageIndex(mock(QuestionSetRepository.class), true, maxDistance);
+    }
+
+    private static QuestionSetSavedEvent saved(Long id, PerceptualHash hash) {
+        QuestionSet questionSet = new QuestionSet("Quiz " + id);
+        questionSet.setId(id);
+        questionSet.setImageHash(hash.toHex());
+        return new QuestionSetSavedEvent(questionSet);
+    }
+
+    private PerceptualHash randomHash() {
+        StringBuilder hex = new StringBuilder();
+        for (int i = 0; i < PerceptualHash.BITS / Long.SIZE; i++) {
+            String word = Long.toHexString(random.nextLong());
+            hex.append("0".repeat(16 - word.length())).append(word);
+        }
+        return PerceptualHash.fromHex(hex.toString());
+    }
+
+    private int[] randomBits(int count) {
+        return random.ints(0, PerceptualHash.BITS).distinct().limit(count).toArray();
+    }
+
+    /**
+     * Returns the hash with the given bits inverted.
+     */
+    static PerceptualHash flip(PerceptualHash hash, int... bits) {
+        long[] words = new long[PerceptualHash.BITS / Long.SIZE];
+        for (int i = 0; i < words.length; i++) {
+            words[i] = hash.bits(i * Long.SIZE, Long.SIZE);
+        }
+        for (int bit : bits) {
+            words[bit / Long.SIZE] ^= 1L << (bit % Long.SIZE);
+        }
+        StringBuilder hex = new StringBuilder();
+        for (long word : words) {
+            String part = Long.toHexString(word);
+            hex.append("0".repeat(16 - part.length())).append(part);
+        }
+        return PerceptualHash.fromHex(hex.toString());
+    }
+}
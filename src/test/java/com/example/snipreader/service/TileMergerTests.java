@@ -0,0 +1,50 @@
+package com.example.snipreader.service;
+
+import com.example.snipreader.model.Question;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class TileMergerTests {
+
+    @Test
+    void keepsOneCopyOfQuestionsReadFromBothSidesOfACut() {
+        List<Question> top = List.of(
+                new Question("1. What is the capital of France?", List.of("Paris", "Rome", "Madrid", "Berlin")),
+                new Question("2. Which planet is known as the Red Planet?", List.of("Mars", "Venus")));
+        List<Question> bottom = List.of(
+                new Question("2. Which planet is known as the Red Planet?", List.of("Mars", "Venus", "Jupiter", "Saturn")),
+                new Question("3. What is 2+2?", List.of("3", "4", "5", "6")));
+
+        List<Question> merged = TileMerger.merge(List.of(top, bottom));
+
+        assertEquals(3, merged.size());
+        assertEquals("1. What is the capital of France?", merged.get(0).getQuestionText());
+        // The copy from the lower tile saw all four options
+        assertEquals(4, merged.get(1).getOptions().size());
+        assertEquals("3. What is 2+2?", merged.get(2).getQuestionText());
+    }
+
+    @Test
+    void matchesQuestionsWhoseTextWasCutShort() {
+        List<Question> top = List.of(new Question("Which of the following sorting algorithms", List.of()));
+        List<Question> bottom = List.of(
+                new Question("Which of the following sorting algorithms is stable?", List.of("Merge sort", "Heap sort")),
+                new Question("Which is prime?", List.of("4", "7")));
+
+        List<Question> merged = TileMerger.merge(List.of(top, bottom));
+
+        assertEquals(2, merged.size());
+        assertEquals("Which of the following sorting algorithms is stable?", merged.get(0).getQuestionText());
+    }
+
+    @Test
+    void doesNotMergeShortQuestionsThatMerelyShareAPrefix() {
+        List<Question> top = List.of(new Question("What is 2+2?", List.of("3", "4")));
+        List<Question> bottom = List.of(new Question("What is 2+2? Explain.", List.of("3", "4")));
+
+        assertEquals(2, TileMerger.merge(List.of(top, bottom)).size());
+    }
+}
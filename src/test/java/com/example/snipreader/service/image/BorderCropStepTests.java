@@ -0,0 +1,109 @@
+package com.example.snipreader.service.image;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class BorderCropStepTests {
+
+    private static final Color MARGIN = new Color(240, 240, 240);
+
+    private final BorderCropStep step = new BorderCropStep(12, 8);
+
+    @Test
+    void cropsUniformMarginsDownToTheContentWithPadding() {
+        BufferedImage image = canvas(400, 300, MARGIN);
+        fill(image, Color.BLACK, 100, 50, 150, 80);
+
+        BufferedImage cropped = step.apply(image);
+
+        assertEquals(150 + 2 * 8, cropped.getWidth());
+        assertEquals(80 + 2 * 8, cropped.getHeight());
+        assertEquals(MARGIN.getRGB(), cropped.getRGB(7, 7));
+        assertEquals(Color.BLACK.getRGB(), cropped.getRGB(8, 8));
+        assertEquals(Color.BLACK.getRGB(), cropped.getRGB(8 + 149, 8 + 79));
+    }
+
+    @Test
+    void treatsNoiseWithinTheToleranceAsMargin() {
+        BufferedImage image = canvas(400, 300, MARGIN);
+        Random random = new Random(3);
+        for (int i = 0; i < 2000; i++) {
+            int shade = 240 + random.nextInt(25) - 12;
+            image.setRGB(random.nextInt(400), random.nextInt(300), new Color(shade, shade, shade).getRGB());
+        }
+        fill(image, Color.BLACK, 100, 50, 150, 80);
+
+        BufferedImage cropped = step.apply(image);
+        assertEquals(166, cropped.getWidth());
+        assertEquals(96, cropped.getHeight());
+
+        // One pixel just past the tolerance counts as content
+        image.setRGB(30, 20, new Color(227, 227, 227).getRGB());
+        cropped = step.apply(image);
+        assertEquals(250 + 8 - (30 - 8), cropped.getWidth());
+        assertEquals(130 + 8 - (20 - 8), cropped.getHeight());
+    }
+
+    @Test
+    void keepsEdgesTheContentReaches() {
+        BufferedImage image = canvas(400, 300, MARGIN);
+        // Content running off the right and bottom edges, as in a screenshot cut short
+        fill(image, Color.BLACK, 100, 80, 300, 220);
+
+        BufferedImage cropped = step.apply(image);
+
+        assertEquals(400 - (100 - 8), cropped.getWidth());
+        assertEquals(300 - (80 - 8), cropped.getHeight());
+        assertEquals(Color.BLACK.getRGB(), cropped.getRGB(cropped.getWidth() - 1, cropped.getHeight() - 1));
+    }
+
+    @Test
+    void takesTheBorderColourFromTheTopLeftCorner() {
+        BufferedImage image = canvas(400, 300, MARGIN);
+        // A title bar across the top is the only border, so the margins around the content stay
+        fill(image, new Color(40, 90, 160), 0, 0, 400, 30);
+        fill(image, Color.BLACK, 100, 80, 150, 60);
+
+        BufferedImage cropped = step.apply(image);
+
+        assertEquals(400, cropped.getWidth());
+        assertEquals(300 - (30 - 8), cropped.getHeight());
+        assertEquals(MARGIN.getRGB(), cropped.getRGB(0, 8));
+    }
+
+    @Test
+    void leavesImagesWithoutAUniformMarginAlone() {
+        // Every row and column of a diagonal gradient changes shade
+        BufferedImage gradient = new BufferedImage(300, 200, BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < gradient.getHeight(); y++) {
+            for (int x = 0; x < gradient.getWidth(); x++) {
+                int shade = (x + y) / 2;
+                gradient.setRGB(x, y, new Color(shade, shade, shade).getRGB());
+            }
+        }
+        BufferedImage blank = canvas(300, 200, MARGIN);
+
+        assertSame(gradient, step.apply(gradient));
+        assertSame(blank, step.apply(blank));
+    }
+
+    private static BufferedImage canvas(int width, int height, Color color) {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        fill(image, color, 0, 0, width, height);
+        return image;
+    }
+
+    private static void fill(BufferedImage image, Color color, int x, int y, int width, int height) {
+        Graphics2D graphics = image.createGraphics();
+        graphics.setColor(color);
+        graphics.fillRect(x, y, width, height);
+        graphics.dispose();
+    }
+}
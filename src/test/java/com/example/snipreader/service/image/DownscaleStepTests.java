@@ -0,0 +1,55 @@
+package com.example.snipreader.service.image;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class DownscaleStepTests {
+
+    private final DownscaleStep step = new DownscaleStep(2048);
+
+    @Test
+    void shrinksTheLongestSideToTheMaximumKeepingTheAspectRatio() {
+        BufferedImage landscape = new BufferedImage(4000, 1000, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = landscape.createGraphics();
+        graphics.setColor(Color.WHITE);
+        graphics.fillRect(2000, 0, 2000, 1000);
+        graphics.dispose();
+
+        BufferedImage scaled = step.apply(landscape);
+
+        assertEquals(2048, scaled.getWidth());
+        assertEquals(512, scaled.getHeight());
+        assertEquals(BufferedImage.TYPE_INT_RGB, scaled.getType());
+        assertEquals(Color.BLACK.getRGB(), scaled.getRGB(500, 256));
+        assertEquals(Color.WHITE.getRGB(), scaled.getRGB(1500, 256));
+
+        BufferedImage portrait = step.apply(new BufferedImage(1500, 3001, BufferedImage.TYPE_4BYTE_ABGR));
+        assertEquals(1024, portrait.getWidth());
+        assertEquals(2048, portrait.getHeight());
+        assertEquals(BufferedImage.TYPE_INT_RGB, portrait.getType());
+    }
+
+    @Test
+    void keepsGrayscaleImagesGray() {
+        BufferedImage scaled = step.apply(new BufferedImage(3000, 2500, BufferedImage.TYPE_BYTE_GRAY));
+
+        assertEquals(2048, scaled.getWidth());
+        assertEquals(1707, scaled.getHeight());
+        assertEquals(BufferedImage.TYPE_BYTE_GRAY, scaled.getType());
+    }
+
+    @Test
+    void leavesImagesWithinTheMaximumAlone() {
+        BufferedImage fits = new BufferedImage(2048, 1200, BufferedImage.TYPE_INT_RGB);
+        BufferedImage large = new BufferedImage(4000, 3000, BufferedImage.TYPE_INT_RGB);
+
+        assertSame(fits, step.apply(fits));
+        assertSame(large, new DownscaleStep(0).apply(large));
+    }
+}
@@ -0,0 +1,43 @@
+package com.example.snipreader.service.image;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class GrayscaleStepTests {
+
+    private final GrayscaleStep step = new GrayscaleStep();
+
+    @Test
+    void convertsColourImagesToShadesOfGray() {
+        BufferedImage image = new BufferedImage(5, 1, BufferedImage.TYPE_INT_RGB);
+        int[] colors = {Color.BLACK.getRGB(), Color.BLUE.getRGB(), Color.RED.getRGB(), Color.GREEN.getRGB(),
+                Color.WHITE.getRGB()};
+        image.setRGB(0, 0, 5, 1, colors, 0, 5);
+
+        BufferedImage gray = step.apply(image);
+
+        assertEquals(BufferedImage.TYPE_BYTE_GRAY, gray.getType());
+        assertEquals(5, gray.getWidth());
+        assertEquals(1, gray.getHeight());
+        int[] shades = gray.getRaster().getSamples(0, 0, 5, 1, 0, (int[]) null);
+        // Weighted by how bright each primary looks, so the shades rise from black through blue, red and green
+        assertEquals(0, shades[0]);
+        for (int i = 1; i < shades.length; i++) {
+            assertTrue(shades[i - 1] < shades[i], "shade " + i);
+        }
+        assertEquals(255, shades[4]);
+    }
+
+    @Test
+    void leavesGrayImagesAsTheyAre() {
+        BufferedImage image = new BufferedImage(20, 10, BufferedImage.TYPE_BYTE_GRAY);
+
+        assertSame(image, step.apply(image));
+    }
+}
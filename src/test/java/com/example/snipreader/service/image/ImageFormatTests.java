@@ -0,0 +1,58 @@
+package com.example.snipreader.service.image;
+
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ImageFormatTests {
+
+    @Test
+    void detectsFormatsFromTheirMagicBytes() throws IOException {
+        BufferedImage image = new BufferedImage(8, 8, BufferedImage.TYPE_INT_RGB);
+
+        assertEquals(ImageFormat.PNG, ImageFormat.detect(encode(image, "png")));
+        assertEquals(ImageFormat.JPEG, ImageFormat.detect(encode(image, "jpeg")));
+        assertEquals(ImageFormat.GIF, ImageFormat.detect(encode(image, "gif")));
+        assertEquals(ImageFormat.BMP, ImageFormat.detect(encode(image, "bmp")));
+        // WebP is a RIFF container, with its form type after the 4-byte chunk size
+        assertEquals(ImageFormat.WEBP, ImageFormat.detect(ascii("RIFF\0\0\0\0WEBPVP8 ")));
+    }
+
+    @Test
+    void fallsBackToUnknownForOtherOrTruncatedData() {
+        assertEquals(ImageFormat.UNKNOWN, ImageFormat.detect(new byte[0]));
+        assertEquals(ImageFormat.UNKNOWN, ImageFormat.detect(new byte[] {(byte) 0x89, 'P', 'N'}));
+        assertEquals(ImageFormat.UNKNOWN, ImageFormat.detect(ascii("RIFF\0\0\0\0WAVEfmt ")));
+        assertEquals(ImageFormat.UNKNOWN, ImageFormat.detect(ascii("RIFF\0\0\0\0WEB")));
+        assertEquals(ImageFormat.UNKNOWN, ImageFormat.detect(ascii("%PDF-1.7")));
+        assertEquals("image/jpeg", ImageFormat.UNKNOWN.getMimeType());
+    }
+
+    @Test
+    void acceptsOnlyTheFormatsGeminiReadsAsTheyAre() {
+        assertTrue(ImageFormat.PNG.isSupportedByGemini());
+        assertTrue(ImageFormat.JPEG.isSupportedByGemini());
+        assertTrue(ImageFormat.WEBP.isSupportedByGemini());
+        assertFalse(ImageFormat.GIF.isSupportedByGemini());
+        assertFalse(ImageFormat.BMP.isSupportedByGemini());
+        assertFalse(ImageFormat.UNKNOWN.isSupportedByGemini());
+    }
+
+    private static byte[] encode(BufferedImage image, String format) throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        assertTrue(ImageIO.write(image, format, outputStream));
+        return outputStream.toByteArray();
+    }
+
+    private static byte[] ascii(String text) {
+        return text.getBytes(StandardCharsets.ISO_8859_1);
+    }
+}
@@ -0,0 +1,159 @@
+package com.example.snipreader.service.image;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ImagePreprocessorTests {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void cropsAndShrinksAScreenshot() throws IOException {
+        byte[] original = encode(screenshot(3000, 2000), "png");
+
+        PreparedImage prepared = preprocessor(true).prepare(original);
+
+        assertTrue(prepared.data().length < original.length);
+        assertEquals(ImageFormat.detect(prepared.data()).getMimeType(), prepared.mimeType());
+        BufferedImage decoded = ImageIO.read(new ByteArrayInputStream(prepared.data()));
+        // The margins are cropped to the 2600 by 1380 pixel text block, which is then scaled down to fit
+        assertEquals(2048, decoded.getWidth());
+        assertEquals(Math.round((1380 + 16) * 2048.0 / (2600 + 16)), decoded.getHeight());
+        DistributionSummary bytesSaved = meterRegistry.get("snipreader.preprocessing.bytes.saved").summary();
+        assertEquals(1, bytesSaved.count());
+        assertEquals(prepared.bytesSaved(), bytesSaved.totalAmount());
+    }
+
+    @Test
+    void keepsTheOriginalWhenReencodingWouldMakeItLarger() throws IOException {
+        // Noise saved at a low JPEG quality only grows when encoded again at the configured one
+        byte[] original = jpeg(noise(600, 400), 0.1f);
+
+        PreparedImage prepared = preprocessor(true).prepare(original);
+
+        assertSame(original, prepared.data());
+        assertEquals("image/jpeg", prepared.mimeType());
+        assertEquals(0, prepared.bytesSaved());
+        assertEquals(0, meterRegistry.get("snipreader.preprocessing.bytes.saved").summary().totalAmount());
+    }
+
+    @Test
+    void convertsFormatsGeminiDoesNotAcceptEvenWhenLarger() throws IOException {
+        // A palette image of a fine checkerboard, which LZW packs tighter than PNG or JPEG
+        BufferedImage checkerboard = new BufferedImage(300, 200, BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < checkerboard.getHeight(); y++) {
+            for (int x = 0; x < checkerboard.getWidth(); x++) {
+                checkerboard.setRGB(x, y, (x + y) % 2 == 0 ? Color.WHITE.getRGB() : Color.BLUE.getRGB());
+            }
+        }
+        byte[] original = encode(checkerboard, "gif");
+
+        PreparedImage prepared = preprocessor(true).prepare(original);
+
+        assertNotEquals(ImageFormat.GIF.getMimeType(), prepared.mimeType());
+        assertEquals(ImageFormat.detect(prepared.data()).getMimeType(), prepared.mimeType());
+        assertTrue(prepared.bytesSaved() < 0);
+    }
+
+    @Test
+    void sendsImagesItCannotDecodeAsTheyAre() {
+        byte[] webp = "RIFF\0\0\0\0WEBPVP8 not really an image".getBytes(StandardCharsets.ISO_8859_1);
+
+        PreparedImage prepared = preprocessor(true).prepare(webp);
+
+        assertSame(webp, prepared.data());
+        assertEquals("image/webp", prepared.mimeType());
+    }
+
+    @Test
+    void onlyConvertsUnsupportedFormatsWhenTurnedOff() throws IOException {
+        BufferedImage screenshot = screenshot(3000, 2000);
+        byte[] png = encode(screenshot, "png");
+        byte[] bmp = encode(screenshot, "bmp");
+
+        ImagePreprocessor preprocessor = preprocessor(false);
+        assertSame(png, preprocessor.prepare(png).data());
+
+        // Without the steps, the BMP is re-encoded but neither cropped nor scaled
+        PreparedImage converted = preprocessor.prepare(bmp);
+        assertEquals(ImageFormat.detect(converted.data()).getMimeType(), converted.mimeType());
+        BufferedImage decoded = ImageIO.read(new ByteArrayInputStream(converted.data()));
+        assertEquals(3000, decoded.getWidth());
+        assertEquals(2000, decoded.getHeight());
+    }
+
+    private ImagePreprocessor preprocessor(boolean enabled) {
+        return new ImagePreprocessor(List.of(new BorderCropStep(12, 8), new DownscaleStep(2048)),
+                new ImageTiler(true, 2400, 1600, 48), meterRegistry, enabled, "auto", 0.85f);
+    }
+
+    /**
+     * Draws lines of dark "text" on a white page, inside margins of 200 pixels at the sides and at least 300 at the top
+     * and bottom.
+     */
+    private static BufferedImage screenshot(int width, int height) {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = image.createGraphics();
+        graphics.setColor(Color.WHITE);
+        graphics.fillRect(0, 0, width, height);
+        graphics.setColor(Color.DARK_GRAY);
+        for (int y = 300; y < height - 300; y += 40) {
+            graphics.fillRect(200, y, width - 400, 20);
+        }
+        graphics.dispose();
+        return image;
+    }
+
+    private static BufferedImage noise(int width, int height) {
+        Random random = new Random(7);
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                image.setRGB(x, y, random.nextInt(0x1000000));
+            }
+        }
+        return image;
+    }
+
+    private static byte[] encode(BufferedImage image, String format) throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        assertTrue(ImageIO.write(image, format, outputStream));
+        return outputStream.toByteArray();
+    }
+
+    private static byte[] jpeg(BufferedImage image, float quality) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        try (ImageOutputStream imageOutputStream = ImageIO.createImageOutputStream(outputStream)) {
+            writer.setOutput(imageOutputStream);
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(quality);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return outputStream.toByteArray();
+    }
+}
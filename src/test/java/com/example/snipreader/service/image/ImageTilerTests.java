@@ -0,0 +1,54 @@
+package com.example.snipreader.service.image;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ImageTilerTests {
+
+    private final ImageTiler tiler = new ImageTiler(true, 2400, 1600, 48);
+
+    @Test
+    void cutsTallScreenshotsInTheGapsBetweenQuestions() {
+        // Text stripes everywhere except two gaps, each within reach of a target cut
+        BufferedImage image = new BufferedImage(1000, 4000, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = image.createGraphics();
+        graphics.setColor(Color.WHITE);
+        graphics.fillRect(0, 0, 1000, 4000);
+        graphics.setColor(Color.BLACK);
+        for (int y = 0; y < 4000; y += 4) {
+            if ((y < 1500 || y >= 1560) && (y < 3050 || y >= 3110)) {
+                graphics.fillRect(100, y, 800, 2);
+            }
+        }
+        graphics.dispose();
+
+        assertTrue(tiler.shouldTile(image));
+        List<BufferedImage> tiles = tiler.split(image);
+
+        // The blank rows run 1498-1559 and 3050-3111, so the cuts are at 1529 and 3081;
+        // later tiles repeat 48 rows of the one above
+        assertEquals(3, tiles.size());
+        assertEquals(1529, tiles.get(0).getHeight());
+        assertEquals(3081 - 1481, tiles.get(1).getHeight());
+        assertEquals(4000 - 3033, tiles.get(2).getHeight());
+        for (BufferedImage tile : tiles) {
+            assertEquals(1000, tile.getWidth());
+        }
+    }
+
+    @Test
+    void leavesShortAndWideImagesWhole() {
+        assertFalse(tiler.shouldTile(new BufferedImage(1000, 2000, BufferedImage.TYPE_INT_RGB)));
+        assertFalse(tiler.shouldTile(new BufferedImage(3000, 2500, BufferedImage.TYPE_INT_RGB)));
+        assertFalse(new ImageTiler(false, 2400, 1600, 48)
+                .shouldTile(new BufferedImage(1000, 4000, BufferedImage.TYPE_INT_RGB)));
+    }
+}
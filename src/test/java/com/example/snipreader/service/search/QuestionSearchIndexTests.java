@@ -0,0 +1,188 @@
+package com.example.snipreader.service.search;
+
+import com.example.snipreader.model.Question;
+import com.example.snipreader.model.QuestionSet;
+import com.example.snipreader.model.QuestionSetSavedEvent;
+import com.example.snipreader.repository.QuestionRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doCallRealMethod;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class QuestionSearchIndexTests {
+
+    private long nextId = 1;
+    private QuestionSet geography;
+    private QuestionRepository questionRepository;
+    private QuestionSearchIndex index;
+
+    @BeforeEach
+    void setUp() {
+        geography = questionSet(1L,
+                question("What is the capital of France?", "A", "Paris is the capital.", "Paris", "Lyon", "Nice"),
+                question("Which planet is known as the Red Planet?", "B", "Iron oxide makes Mars look red.", "Venus", "Mars"),
+                question("What does photosynthesis produce?", "Glucose and oxygen", "Plants store light as chemical energy."));
+
+        questionRepository = mock(QuestionRepository.class);
+        when(questionRepository.findAllAfter(eq(0L), any())).thenReturn(new ArrayList<>(geography.getQuestions()));
+        doCallRealMethod().when(questionRepository).forEachBatch(any(), any());
+        index = index(0.2);
+    }
+
+    @Test
+    void findsQuestionsContainingEveryTerm() {
+        assertEquals(List.of(2L), questionIds("mars red "));
+        assertEquals(List.of(1L), questionIds("CAPITAL paris "));
+        assertTrue(questionIds("capital mars ").isEmpty());
+    }
+
+    @Test
+    void matchesTheLastWordAsAPrefix() {
+        assertEquals(List.of(3L), questionIds("photo"));
+        assertEquals(List.of(3L), questionIds("photosyn* glucose "));
+        assertTrue(questionIds("photo ").isEmpty());
+    }
+
+    @Test
+    void matchesPhrasesInOrderWithinOneField() {
+        assertEquals(List.of(2L), questionIds("\"red planet\""));
+        assertTrue(questionIds("\"planet red\"").isEmpty());
+        // "capital" ends the question text and "paris" starts the options
+        assertTrue(questionIds("\"france paris\"").isEmpty());
+    }
+
+    @Test
+    void ranksMatchesInTheQuestionTextFirst() {
+        QuestionSet history = questionSet(2L,
+                question("Who founded the Roman Empire?", "A", "The empire's first capital was Rome.", "Augustus", "Nero"),
+                question("What is the capital of Italy?", "C", null, "Milan", "Naples", "Rome"));
+        index.onQuestionSetSaved(new QuestionSetSavedEvent(history));
+
+        List<SearchHit> hits = index.search("capital rome ", 10);
+
+        assertEquals(List.of(5L, 4L), hits.stream().map(SearchHit::questionId).toList());
+        assertEquals(2L, hits.get(0).questionSetId());
+    }
+
+    @Test
+    void replacesTheQuestionsOfAResavedSet() {
+        geography.getQuestions().remove(0);
+        geography.addQuestion(question("What is the capital of Spain?", "Madrid", null));
+        index.onQuestionSetSaved(new QuestionSetSavedEvent(geography));
+
+        assertEquals(List.of(4L), questionIds("capital "));
+        assertEquals(3, index.size());
+    }
+
+    @Test
+    void keepsTheBestHitsWhenPassingOverBlocksOfCommonTerms() {
+        Random random = new Random(42);
+        Question[] questions = new Question[2000];
+        for (int i = 0; i < questions.length; i++) {
+            String text = "Which common answer" + " filler".repeat(random.nextInt(20))
+                    + " common".repeat(random.nextInt(3));
+            questions[i] = question(text, "B", random.nextBoolean() ? "A common mistake." : null, "Yes", "No");
+        }
+        index.onQuestionSetSaved(new QuestionSetSavedEvent(questionSet(2L, questions)));
+
+        for (String query : List.of("common ", "common filler ", "commo")) {
+            List<SearchHit> everyHit = index.search(query, questions.length);
+            assertEquals(everyHit.subList(0, 10), index.search(query, 10));
+        }
+    }
+
+    @Test
+    void readsTheStoredQuestionsInBatches() {
+        Question[] questions = new Question[QuestionRepository.BATCH_SIZE + 1];
+        for (int i = 0; i < questions.length; i++) {
+            questions[i] = question("Batched question " + i, "A", null, "Yes", "No");
+        }
+        questionSet(2L, questions);
+        List<Question> first = new ArrayList<>(List.of(questions).subList(0, QuestionRepository.BATCH_SIZE));
+        when(questionRepository.findAllAfter(eq(0L), any())).thenReturn(first);
+        when(questionRepository.findAllAfter(eq(questions[QuestionRepository.BATCH_SIZE - 1].getId()), any()))
+                .thenReturn(List.of(questions[QuestionRepository.BATCH_SIZE]));
+
+        QuestionSearchIndex batched = index(0.2);
+
+        assertEquals(questions.length, batched.size());
+        assertEquals(List.of(questions[QuestionRepository.BATCH_SIZE].getId()),
+                batched.search("batched " + QuestionRepository.BATCH_SIZE + " ", 10).stream()
+                        .map(SearchHit::questionId).toList());
+    }
+
+    @Test
+    void dropsTheDocumentsOfResavedSetsOnceTooManyAreDeleted() {
+        QuestionSet history = questionSet(2L,
+                question("Who founded the Roman Empire?", "A", "Augustus was the first emperor of Rome.", "Augustus", "Nero"));
+        index.onQuestionSetSaved(new QuestionSetSavedEvent(history));
+        // Each save deletes the previous copies of the set's three questions; compaction keeps them in check
+        for (int save = 0; save < 50; save++) {
+            index.onQuestionSetSaved(new QuestionSetSavedEvent(geography));
+        }
+        geography.getQuestions().remove(0);
+        index.onQuestionSetSaved(new QuestionSetSavedEvent(geography));
+
+        assertEquals(3, index.size());
+        assertTrue(questionIds("capital ").isEmpty());
+        assertEquals(List.of(2L), questionIds("mars "));
+        assertEquals(List.of(3L), questionIds("photosynthesis "));
+        assertEquals(2L, index.search("rome ", 10).get(0).questionSetId());
+    }
+
+    @Test
+    void scoresResavedSetsAsAFreshIndexDoesOnceCompacted() {
+        QuestionSearchIndex compacting = index(0);
+        QuestionSet history = questionSet(2L,
+                question("What is the capital of Italy?", "C", null, "Milan", "Naples", "Rome"),
+                question("Which empire had Rome as its capital?", "Roman", null));
+        for (int save = 0; save < 5; save++) {
+            compacting.onQuestionSetSaved(new QuestionSetSavedEvent(geography));
+            compacting.onQuestionSetSaved(new QuestionSetSavedEvent(history));
+        }
+        index.onQuestionSetSaved(new QuestionSetSavedEvent(history));
+
+        for (String query : List.of("capital ", "rome ", "capi", "\"red planet\"")) {
+            assertEquals(index.search(query, 10), compacting.search(query, 10), query);
+        }
+    }
+
+    private QuestionSearchIndex index(double maxDeletedShare) {
+        QuestionSearchIndex index = new QuestionSearchIndex(questionRepository, new SimpleMeterRegistry(), true, 64,
+                maxDeletedShare);
+        index.rebuild();
+        return index;
+    }
+
+    private List<Long> questionIds(String query) {
+        return index.search(query, 10).stream().map(SearchHit::questionId).toList();
+    }
+
+    private Question question(String text, String answer, String explanation, String... options) {
+        Question question = new Question(text, new ArrayList<>(List.of(options)));
+        question.setId(nextId++);
+        question.setAnswer(answer);
+        question.setExplanation(explanation);
+        return question;
+    }
+
+    private static QuestionSet questionSet(Long id, Question... questions) {
+        QuestionSet questionSet = new QuestionSet("Quiz " + id);
+        questionSet.setId(id);
+        for (Question question : questions) {
+            questionSet.addQuestion(question);
+        }
+        return questionSet;
+    }
+}